@@ -0,0 +1,46 @@
+/*
+ * Jaris - Jar Indexed Search
+ * Copyright (C) 2006 Wei Ru (wei.ru@logicinspiration.com)
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation (See 
+ * license.txt for details).
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.weiru.jaris.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks selected on the command line, which takes the usual
+ * JMH options, with the GC profiler so that the allocation rate is reported 
+ * next to the throughput. On Java 9 and later the forks open 
+ * <code>java.nio</code>, which Lucene needs to unmap index files.
+ * <p>
+ * e.g. <code>java -jar benchmarks.jar Search -rf json</code>
+ */
+public class BenchmarkMain {
+
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+		CommandLineOptions cmdOptions = new CommandLineOptions(args);
+		ChainedOptionsBuilder options = new OptionsBuilder()
+				.parent(cmdOptions)
+				.addProfiler(GCProfiler.class);
+		if (!System.getProperty("java.specification.version").startsWith("1.")) {
+			options.jvmArgsPrepend("--add-opens=java.base/java.nio=ALL-UNNAMED", 
+					"--add-opens=java.base/jdk.internal.ref=ALL-UNNAMED");
+		}
+		new Runner(options.build()).run();
+	}
+}
@@ -0,0 +1,80 @@
+/*
+ * Jaris - Jar Indexed Search
+ * Copyright (C) 2006 Wei Ru (wei.ru@logicinspiration.com)
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation (See 
+ * license.txt for details).
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.weiru.jaris.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.weiru.jaris.config.Config;
+import com.weiru.jaris.indexing.IndexException;
+import com.weiru.jaris.jar.BuilderUtil;
+
+/**
+ * Builds the indexes of a generated corpus from scratch. Each invocation
+ * starts from an empty index.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BuildBenchmark {
+
+	@Param({"1", "4"})
+	public int parallelism;
+
+	private Workspace workspace;
+
+	@Setup
+	public void setUp() throws IOException {
+		workspace = new Workspace();
+		// the in-memory jar registry outlives the index cleared between iterations
+		Config.instance().getConfiguration().setProperty("indexing.skip-if-processed", false);
+		CorpusGenerator generator = new CorpusGenerator();
+		generator.setJars(50);
+		generator.setClassesPerJar(200);
+		generator.generate(workspace.getCorpus());
+	}
+
+	@Setup(Level.Invocation)
+	public void clearIndex() throws IndexException {
+		workspace.clearIndex();
+	}
+
+	@TearDown
+	public void tearDown() throws IndexException {
+		workspace.delete();
+	}
+
+	@Benchmark
+	public void buildIndexUnderDir() {
+		BuilderUtil.buildIndexUnderDir(workspace.getCorpus(), parallelism);
+	}
+}
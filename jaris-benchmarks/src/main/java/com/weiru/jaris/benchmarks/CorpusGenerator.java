@@ -0,0 +1,276 @@
+/*
+ * Jaris - Jar Indexed Search
+ * Copyright (C) 2006 Wei Ru (wei.ru@logicinspiration.com)
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation (See 
+ * license.txt for details).
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.weiru.jaris.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
+
+import com.google.common.io.Files;
+
+/**
+ * The <code>CorpusGenerator</code> writes jars of minimal class files with
+ * camel case names in nested packages. The same seed always generates the
+ * same corpus.
+ * <p>
+ * Each jar can hold archives nested under <code>lib/</code>, stored 
+ * uncompressed like the libraries of a fat jar, and class entries that 
+ * are truncated after the magic number. Byte identical copies of all jars 
+ * can be written to <code>copy-N</code> subdirectories.
+ */
+public class CorpusGenerator {
+
+	private static final String[] WORDS = {
+		"abstract", "array", "buffer", "builder", "cache", "channel", "class",
+		"config", "context", "decoder", "default", "encoder", "entry", "event",
+		"factory", "file", "filter", "handler", "hash", "index", "input",
+		"jar", "key", "list", "loader", "lock", "manager", "map", "node",
+		"output", "parser", "path", "pool", "provider", "proxy", "query",
+		"reader", "reference", "registry", "resource", "search", "service",
+		"session", "simple", "socket", "stream", "string", "table", "task",
+		"thread", "token", "type", "util", "value", "visitor", "writer"
+	};
+
+	private int jars = 10;
+	private int classesPerJar = 100;
+	private int packageDepth = 3;
+	private int nestedJars = 0;
+	private int duplicates = 0;
+	private int corruptEntries = 0;
+	private long seed = 42L;
+	private long classCount;
+	private long byteCount;
+
+	/**
+	 * Generates the corpus into a directory
+	 * @param directory the directory, created if it does not exist
+	 * @return List the generated jar files, copies included
+	 * @throws IOException
+	 */
+	public List<File> generate(File directory) throws IOException {
+		directory.mkdirs();
+		Random random = new Random(seed);
+		List<File> files = new ArrayList<File>(jars * (duplicates + 1));
+		classCount = 0;
+		byteCount = 0;
+		for (int i = 0; i < jars; i++) {
+			File file = new File(directory, word(random) + "-" + word(random) + "-" + i + ".jar");
+			try (OutputStream out = new FileOutputStream(file)) {
+				writeJar(out, random, nestedJars);
+			}
+			files.add(file);
+			byteCount += file.length();
+		}
+		for (int d = 1; d <= duplicates; d++) {
+			File copies = new File(directory, "copy-" + d);
+			copies.mkdirs();
+			for (int i = 0; i < jars; i++) {
+				File copy = new File(copies, files.get(i).getName());
+				Files.copy(files.get(i), copy);
+				files.add(copy);
+				byteCount += copy.length();
+			}
+		}
+		return files;
+	}
+
+	/**
+	 * Writes one jar and the jars nested in it
+	 * @param target the stream the jar is written to
+	 * @param random the source of names
+	 * @param nested the number of nested jars
+	 * @throws IOException
+	 */
+	private void writeJar(OutputStream target, Random random, int nested) throws IOException {
+		JarOutputStream out = new JarOutputStream(target);
+		String pkg = packageName(random);
+		for (int i = 0; i < classesPerJar; i++) {
+			if (i % 20 == 19) {
+				pkg = packageName(random);
+			}
+			String name = pkg + "/" + capitalize(word(random)) + capitalize(word(random)) + i;
+			out.putNextEntry(new JarEntry(name + ".class"));
+			out.write(classFile(name, i % 3 == 0 ? "java/io/Serializable" : null));
+			out.closeEntry();
+		}
+		classCount += classesPerJar;
+		for (int i = 0; i < corruptEntries; i++) {
+			out.putNextEntry(new JarEntry(pkg + "/Corrupt" + capitalize(word(random)) + i + ".class"));
+			out.write(new byte[] {(byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE, 0});
+			out.closeEntry();
+		}
+		for (int i = 0; i < nested; i++) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			writeJar(bytes, random, 0);
+			byte[] content = bytes.toByteArray();
+			CRC32 crc = new CRC32();
+			crc.update(content);
+			JarEntry entry = new JarEntry("lib/" + word(random) + "-" + i + ".jar");
+			entry.setMethod(JarEntry.STORED);
+			entry.setSize(content.length);
+			entry.setCompressedSize(content.length);
+			entry.setCrc(crc.getValue());
+			out.putNextEntry(entry);
+			out.write(content);
+			out.closeEntry();
+		}
+		out.finish();
+	}
+
+	/**
+	 * Returns a class file with no members
+	 * @param name the internal class name
+	 * @param interfaceName the internal name of an implemented interface, may be null
+	 * @return byte[] the class file
+	 * @throws IOException
+	 */
+	static byte[] classFile(String name, String interfaceName) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+		DataOutputStream data = new DataOutputStream(bytes);
+		data.writeInt(0xCAFEBABE);
+		data.writeShort(0);
+		data.writeShort(50);
+		data.writeShort(interfaceName == null ? 5 : 7);
+		data.writeByte(1);
+		data.writeUTF(name);
+		data.writeByte(7);
+		data.writeShort(1);
+		data.writeByte(1);
+		data.writeUTF("java/lang/Object");
+		data.writeByte(7);
+		data.writeShort(3);
+		if (interfaceName != null) {
+			data.writeByte(1);
+			data.writeUTF(interfaceName);
+			data.writeByte(7);
+			data.writeShort(5);
+		}
+		data.writeShort(0x0021);
+		data.writeShort(2);
+		data.writeShort(4);
+		if (interfaceName == null) {
+			data.writeShort(0);
+		} else {
+			data.writeShort(1);
+			data.writeShort(6);
+		}
+		data.writeShort(0); // fields
+		data.writeShort(0); // methods
+		data.writeShort(0); // attributes
+		data.flush();
+		return bytes.toByteArray();
+	}
+
+	private String packageName(Random random) {
+		StringBuilder sb = new StringBuilder("com/");
+		sb.append(word(random));
+		for (int i = 1; i < packageDepth; i++) {
+			sb.append('/').append(word(random));
+		}
+		return sb.toString();
+	}
+
+	static String word(Random random) {
+		return WORDS[random.nextInt(WORDS.length)];
+	}
+
+	static String capitalize(String word) {
+		return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+	}
+
+	/**
+	 * Sets the number of jars
+	 * @param jars the number of jars
+	 */
+	public void setJars(int jars) {
+		this.jars = jars;
+	}
+
+	/**
+	 * Sets the number of classes in each jar
+	 * @param classesPerJar the number of classes
+	 */
+	public void setClassesPerJar(int classesPerJar) {
+		this.classesPerJar = classesPerJar;
+	}
+
+	/**
+	 * Sets the number of package name segments below <code>com</code>
+	 * @param packageDepth the package depth
+	 */
+	public void setPackageDepth(int packageDepth) {
+		this.packageDepth = Math.max(1, packageDepth);
+	}
+
+	/**
+	 * Sets the number of jars nested in each jar, each with as many classes
+	 * as a jar
+	 * @param nestedJars the number of nested jars
+	 */
+	public void setNestedJars(int nestedJars) {
+		this.nestedJars = nestedJars;
+	}
+
+	/**
+	 * Sets the number of byte identical copies written of every jar
+	 * @param duplicates the number of copies
+	 */
+	public void setDuplicates(int duplicates) {
+		this.duplicates = duplicates;
+	}
+
+	/**
+	 * Sets the number of truncated class entries in each jar
+	 * @param corruptEntries the number of entries
+	 */
+	public void setCorruptEntries(int corruptEntries) {
+		this.corruptEntries = corruptEntries;
+	}
+
+	/**
+	 * Returns the number of valid classes generated by the last 
+	 * {@link #generate(File)}, copies excluded
+	 * @return long the count
+	 */
+	public long getClassCount() {
+		return classCount;
+	}
+
+	/**
+	 * Returns the size of the jars generated by the last 
+	 * {@link #generate(File)}, copies included
+	 * @return long the size in bytes
+	 */
+	public long getByteCount() {
+		return byteCount;
+	}
+
+	/**
+	 * Sets the seed the names are generated from
+	 * @param seed the seed
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+}
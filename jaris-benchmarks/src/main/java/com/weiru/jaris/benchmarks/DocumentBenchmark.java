@@ -0,0 +1,76 @@
+/*
+ * Jaris - Jar Indexed Search
+ * Copyright (C) 2006 Wei Ru (wei.ru@logicinspiration.com)
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation (See 
+ * license.txt for details).
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.weiru.jaris.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.document.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.weiru.jaris.indexing.Word;
+import com.weiru.jaris.indexing.WordCollection;
+import com.weiru.jaris.jar.ClassInfo;
+
+/**
+ * Converts the WordCollection of a class into a Lucene Document
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class DocumentBenchmark {
+
+	private WordCollection words;
+
+	@Setup
+	public void setUp() {
+		words = classWords("guava-12.0.jar", "com.google.common.cache", "LocalCache", 
+				"/repo/com/google/guava/guava/12.0/guava-12.0.jar");
+	}
+
+	@Benchmark
+	public Document document() {
+		return words.document();
+	}
+
+	/**
+	 * Returns the WordCollection the class index stores for a class
+	 */
+	static WordCollection classWords(String jarName, String packageName, String className, String jarPath) {
+		WordCollection kwc = new WordCollection();
+		Word jar = new Word(ClassInfo.Field.JAR_NAME.getFieldName(), jarName, true, true, true);
+		Word pkg = new Word(ClassInfo.Field.PACKAGE_NAME.getFieldName(), packageName, true, true, true);
+		Word cls = new Word(ClassInfo.Field.CLASS_NAME.getFieldName(), className, true, true, true);
+		jar.setDocValues(true);
+		pkg.setDocValues(true);
+		cls.setDocValues(true);
+		kwc.addKeyword(jar);
+		kwc.addKeyword(pkg);
+		kwc.addKeyword(cls);
+		kwc.addKeyword(new Word(ClassInfo.Field.JAR_PATH.getFieldName(), jarPath, false, false, false));
+		kwc.addKeyword(new Word(ClassInfo.Field.ACCESS_FLAGS.getFieldName(), "33", false, false, false));
+		kwc.addKeyword(new Word(ClassInfo.Field.SUPER_CLASS.getFieldName(), "java.util.AbstractMap", false, false, false));
+		kwc.addKeyword(new Word(ClassInfo.Field.INTERFACES.getFieldName(), "java.util.concurrent.ConcurrentMap", false, false, false));
+		return kwc;
+	}
+}
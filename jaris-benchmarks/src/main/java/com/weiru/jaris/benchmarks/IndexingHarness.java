@@ -0,0 +1,303 @@
+/*
+ * Jaris - Jar Indexed Search
+ * Copyright (C) 2006 Wei Ru (wei.ru@logicinspiration.com)
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation (See 
+ * license.txt for details).
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.weiru.jaris.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.weiru.jaris.indexing.IndexException;
+import com.weiru.jaris.jar.BuilderUtil;
+import com.weiru.jaris.jar.ClassInfo;
+import com.weiru.jaris.jar.ClassInfoIndexService;
+import com.weiru.jaris.jar.JarInfoIndexService;
+
+/**
+ * The <code>IndexingHarness</code> generates a corpus, builds its indexes 
+ * with {@link BuilderUtil#buildIndexUnderDir(File, int)} and runs a mix of
+ * searches against them. The indexing throughput, the index size on disk 
+ * and the latency percentiles of each kind of search are written as JSON.
+ * <p>
+ * Settings are given as <code>name=value</code> arguments, e.g.
+ * <code>java -cp benchmarks.jar com.weiru.jaris.benchmarks.IndexingHarness 
+ * jars=500 classes=200 duplicates=2 out=indexing.json</code>. 
+ * See {@link #DEFAULTS} for the names.
+ */
+public class IndexingHarness {
+
+	/**
+	 * The default settings
+	 */
+	public static final String[][] DEFAULTS = {
+		{"jars", "200"},
+		{"classes", "100"},
+		{"depth", "3"},
+		{"nested", "0"},
+		{"duplicates", "0"},
+		{"corrupt", "0"},
+		{"seed", "42"},
+		{"parallelism", String.valueOf(Runtime.getRuntime().availableProcessors())},
+		{"queries", "5000"},
+		{"warmup", "500"},
+		{"out", "indexing.json"}
+	};
+
+	private static final String[] QUERY_TYPES = {"term", "sample", "prefix", "camelCase", "suggest"};
+	// the share of each query type in the mix, in percent
+	private static final int[] QUERY_WEIGHTS = {40, 20, 20, 10, 10};
+
+	private Logger log = Logger.getLogger(IndexingHarness.class.getName());
+	private final Properties settings;
+
+	/**
+	 * Creates an IndexingHarness
+	 * @param settings the settings, defaults are used for those missing
+	 */
+	public IndexingHarness(Properties settings) {
+		this.settings = new Properties();
+		for (String[] setting : DEFAULTS) {
+			this.settings.setProperty(setting[0], setting[1]);
+		}
+		this.settings.putAll(settings);
+	}
+
+	public static void main(String[] args) throws IOException, IndexException {
+		Properties settings = new Properties();
+		for (String arg : args) {
+			int idx = arg.indexOf('=');
+			if (idx < 1) {
+				throw new IllegalArgumentException("not name=value : " + arg);
+			}
+			settings.setProperty(arg.substring(0, idx), arg.substring(idx + 1));
+		}
+		IndexingHarness harness = new IndexingHarness(settings);
+		File out = new File(harness.settings.getProperty("out"));
+		Map<String, Object> report = harness.run();
+		try (Writer writer = java.nio.file.Files.newBufferedWriter(out.toPath(), StandardCharsets.UTF_8)) {
+			writer.write(toJson(report, ""));
+			writer.write('\n');
+		}
+		harness.log.info("report written to " + out.getAbsolutePath());
+		System.exit(0);
+	}
+
+	/**
+	 * Generates the corpus, builds the indexes and runs the searches in a
+	 * new Workspace, which is deleted afterwards
+	 * @return Map the report
+	 * @throws IOException
+	 * @throws IndexException
+	 */
+	public Map<String, Object> run() throws IOException, IndexException {
+		Workspace workspace = new Workspace();
+		try {
+			Map<String, Object> report = new LinkedHashMap<String, Object>();
+			report.put("settings", new TreeMap<Object, Object>(settings));
+
+			CorpusGenerator generator = new CorpusGenerator();
+			generator.setJars(getInt("jars"));
+			generator.setClassesPerJar(getInt("classes"));
+			generator.setPackageDepth(getInt("depth"));
+			generator.setNestedJars(getInt("nested"));
+			generator.setDuplicates(getInt("duplicates"));
+			generator.setCorruptEntries(getInt("corrupt"));
+			generator.setSeed(getInt("seed"));
+			List<File> files = generator.generate(workspace.getCorpus());
+			Map<String, Object> corpus = new LinkedHashMap<String, Object>();
+			corpus.put("files", files.size());
+			corpus.put("classes", generator.getClassCount());
+			corpus.put("bytes", generator.getByteCount());
+			report.put("corpus", corpus);
+			log.info("generated " + files.size() + " jars");
+
+			long start = System.nanoTime();
+			BuilderUtil.buildIndexUnderDir(workspace.getCorpus(), getInt("parallelism"));
+			double seconds = (System.nanoTime() - start) / 1e9;
+			ClassInfoIndexService classIndex = ClassInfoIndexService.getService();
+			JarInfoIndexService jarIndex = JarInfoIndexService.getService();
+			Map<String, Object> build = new LinkedHashMap<String, Object>();
+			build.put("seconds", seconds);
+			build.put("jarsPerSecond", files.size() / seconds);
+			build.put("classesPerSecond", classIndex.getCount() / seconds);
+			build.put("classesIndexed", classIndex.getCount());
+			build.put("jarsRegistered", jarIndex.getCount());
+			build.put("contentsRegistered", jarIndex.getContentCount());
+			build.put("indexBytes", sizeOf(workspace.getIndex()));
+			report.put("build", build);
+			log.info("built in " + seconds + "s");
+
+			report.put("queries", runQueries(classIndex));
+			return report;
+		} finally {
+			workspace.delete();
+		}
+	}
+
+	/**
+	 * Runs the warmup and the measured searches of the query mix
+	 * @param classIndex the class index
+	 * @return Map the latencies and hits of each query type
+	 * @throws IndexException
+	 */
+	private Map<String, Object> runQueries(ClassInfoIndexService classIndex) throws IndexException {
+		// a different seed, so the queries are not only the first generated names
+		Random random = new Random(getInt("seed") + 1);
+		for (int i = getInt("warmup"); i > 0; i--) {
+			runQuery(classIndex, pickType(random), random);
+		}
+		int count = getInt("queries");
+		long[][] nanos = new long[QUERY_TYPES.length][count];
+		int[] counts = new int[QUERY_TYPES.length];
+		long[] hits = new long[QUERY_TYPES.length];
+		for (int i = 0; i < count; i++) {
+			int type = pickType(random);
+			long start = System.nanoTime();
+			hits[type] += runQuery(classIndex, type, random);
+			nanos[type][counts[type]++] = System.nanoTime() - start;
+		}
+		Map<String, Object> queries = new LinkedHashMap<String, Object>();
+		for (int type = 0; type < QUERY_TYPES.length; type++) {
+			long[] latencies = Arrays.copyOf(nanos[type], counts[type]);
+			Arrays.sort(latencies);
+			Map<String, Object> stats = new LinkedHashMap<String, Object>();
+			stats.put("count", latencies.length);
+			stats.put("hits", hits[type]);
+			stats.put("p50Micros", percentile(latencies, 50));
+			stats.put("p90Micros", percentile(latencies, 90));
+			stats.put("p99Micros", percentile(latencies, 99));
+			stats.put("p999Micros", percentile(latencies, 99.9));
+			stats.put("maxMicros", percentile(latencies, 100));
+			queries.put(QUERY_TYPES[type], stats);
+		}
+		return queries;
+	}
+
+	private static int pickType(Random random) {
+		int n = random.nextInt(100);
+		for (int type = 0; type < QUERY_WEIGHTS.length; type++) {
+			n -= QUERY_WEIGHTS[type];
+			if (n < 0) {
+				return type;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Runs one search made of generated words
+	 * @return int the number of hits
+	 */
+	private static int runQuery(ClassInfoIndexService classIndex, int type, Random random) 
+			throws IndexException {
+		String first = CorpusGenerator.capitalize(CorpusGenerator.word(random));
+		String second = CorpusGenerator.capitalize(CorpusGenerator.word(random));
+		switch (type) {
+		case 0:
+			return classIndex.searchByTerm(ClassInfo.Field.CLASS_NAME, first + second + "*").length;
+		case 1:
+			ClassInfo sample = new ClassInfo();
+			sample.setClassShortName(first + "*");
+			sample.setPackageName("com." + CorpusGenerator.word(random) + "*");
+			return classIndex.searchBySample(sample).length;
+		case 2:
+			return classIndex.searchByPrefix(first + second.substring(0, 2), 20).length;
+		case 3:
+			return classIndex.searchByCamelCase(first.substring(0, 1) + second.substring(0, 1), 20).length;
+		default:
+			return classIndex.suggest(first + second.substring(0, 1), 10).length;
+		}
+	}
+
+	/**
+	 * Returns a percentile of sorted latencies by the nearest rank
+	 * @return double the latency in microseconds
+	 */
+	private static double percentile(long[] sorted, double percent) {
+		if (sorted.length == 0) {
+			return 0;
+		}
+		int rank = (int) Math.ceil(percent / 100 * sorted.length);
+		long nanos = sorted[Math.max(0, Math.min(sorted.length, rank) - 1)];
+		return nanos / (double) TimeUnit.MICROSECONDS.toNanos(1);
+	}
+
+	private static long sizeOf(File file) {
+		File[] children = file.listFiles();
+		if (children == null) {
+			return file.length();
+		}
+		long size = 0;
+		for (File child : children) {
+			size += sizeOf(child);
+		}
+		return size;
+	}
+
+	private int getInt(String name) {
+		try {
+			return Integer.parseInt(settings.getProperty(name).trim());
+		} catch (NumberFormatException e) {
+			log.log(Level.SEVERE, "not a number : " + name, e);
+			throw e;
+		}
+	}
+
+	/**
+	 * Writes maps, numbers and strings as JSON
+	 */
+	private static String toJson(Object value, String indent) {
+		if (value instanceof Map) {
+			StringBuilder sb = new StringBuilder("{");
+			String separator = "\n";
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+				sb.append(separator).append(indent).append("  ");
+				sb.append(toJson(String.valueOf(entry.getKey()), "")).append(": ");
+				sb.append(toJson(entry.getValue(), indent + "  "));
+				separator = ",\n";
+			}
+			return sb.append('\n').append(indent).append('}').toString();
+		}
+		if (value instanceof Double) {
+			double d = (Double) value;
+			return Double.isNaN(d) || Double.isInfinite(d) ? "null" : String.format(Locale.ROOT, "%.3f", d);
+		}
+		if (value instanceof Number) {
+			return value.toString();
+		}
+		StringBuilder sb = new StringBuilder("\"");
+		for (char c : String.valueOf(value).toCharArray()) {
+			if (c == '"' || c == '\\') {
+				sb.append('\\').append(c);
+			} else if (c < 0x20) {
+				sb.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+			} else {
+				sb.append(c);
+			}
+		}
+		return sb.append('"').toString();
+	}
+}
@@ -0,0 +1,71 @@
+/*
+ * Jaris - Jar Indexed Search
+ * Copyright (C) 2006 Wei Ru (wei.ru@logicinspiration.com)
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation (See 
+ * license.txt for details).
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.weiru.jaris.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.weiru.jaris.indexing.IndexException;
+import com.weiru.jaris.jar.JarResource;
+
+/**
+ * Parses the class names and headers of a generated jar
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ParseBenchmark {
+
+	@Param({"100", "1000"})
+	public int classes;
+
+	private Workspace workspace;
+	private File jar;
+
+	@Setup
+	public void setUp() throws IOException {
+		workspace = new Workspace();
+		CorpusGenerator generator = new CorpusGenerator();
+		generator.setJars(1);
+		generator.setClassesPerJar(classes);
+		jar = generator.generate(workspace.getCorpus()).get(0);
+	}
+
+	@TearDown
+	public void tearDown() throws IndexException {
+		workspace.delete();
+	}
+
+	@Benchmark
+	public JarResource parseClasses() {
+		JarResource jarRes = new JarResource(jar);
+		jarRes.parseClasses();
+		return jarRes;
+	}
+}
@@ -0,0 +1,82 @@
+/*
+ * Jaris - Jar Indexed Search
+ * Copyright (C) 2006 Wei Ru (wei.ru@logicinspiration.com)
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation (See 
+ * license.txt for details).
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.weiru.jaris.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.weiru.jaris.indexing.IndexException;
+import com.weiru.jaris.jar.BuilderUtil;
+import com.weiru.jaris.jar.ClassInfo;
+import com.weiru.jaris.jar.ClassInfoIndexService;
+
+/**
+ * Searches the class index built from a generated corpus, with the result
+ * cache disabled
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SearchBenchmark {
+
+	@Param({"CacheReader*", "Cache*"})
+	public String term;
+
+	private Workspace workspace;
+	private ClassInfoIndexService classIndex;
+	private ClassInfo sample;
+
+	@Setup
+	public void setUp() throws IOException {
+		workspace = new Workspace();
+		CorpusGenerator generator = new CorpusGenerator();
+		generator.setJars(50);
+		generator.setClassesPerJar(200);
+		generator.generate(workspace.getCorpus());
+		BuilderUtil.buildIndexUnderDir(workspace.getCorpus());
+		classIndex = ClassInfoIndexService.getService();
+		sample = new ClassInfo();
+		sample.setClassShortName(term);
+		sample.setPackageName("com.index*");
+	}
+
+	@TearDown
+	public void tearDown() throws IndexException {
+		workspace.delete();
+	}
+
+	@Benchmark
+	public ClassInfo[] searchByTerm() throws IndexException {
+		return classIndex.searchByTerm(ClassInfo.Field.CLASS_NAME, term);
+	}
+
+	@Benchmark
+	public ClassInfo[] searchBySample() throws IndexException {
+		return classIndex.searchBySample(sample);
+	}
+}
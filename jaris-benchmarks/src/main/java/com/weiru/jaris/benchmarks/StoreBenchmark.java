@@ -0,0 +1,74 @@
+/*
+ * Jaris - Jar Indexed Search
+ * Copyright (C) 2006 Wei Ru (wei.ru@logicinspiration.com)
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation (See 
+ * license.txt for details).
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.weiru.jaris.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.weiru.jaris.indexing.IndexException;
+import com.weiru.jaris.indexing.Indexer;
+import com.weiru.jaris.indexing.WordCollection;
+
+/**
+ * Stores class documents into an Indexer within one writer session, 
+ * committing as the configured thresholds are reached
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class StoreBenchmark {
+
+	private Workspace workspace;
+	private Indexer indexer;
+	private WordCollection[] words;
+	private int next;
+
+	@Setup
+	public void setUp() throws IOException, IndexException {
+		workspace = new Workspace();
+		indexer = new Indexer(new File(workspace.getIndex(), "store").getAbsolutePath());
+		words = new WordCollection[1024];
+		for (int i = 0; i < words.length; i++) {
+			words[i] = DocumentBenchmark.classWords("store-" + (i % 16) + ".jar", "com.acme.p" + (i % 64), 
+					"StoredClass" + i, "/repo/store-" + (i % 16) + ".jar");
+		}
+		indexer.begin();
+	}
+
+	@TearDown
+	public void tearDown() throws IndexException {
+		indexer.end();
+		indexer.close();
+		workspace.delete();
+	}
+
+	@Benchmark
+	public void store() throws IndexException {
+		indexer.store(words[next++ & (words.length - 1)]);
+	}
+}
@@ -0,0 +1,96 @@
+/*
+ * Jaris - Jar Indexed Search
+ * Copyright (C) 2006 Wei Ru (wei.ru@logicinspiration.com)
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation (See 
+ * license.txt for details).
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.weiru.jaris.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.apache.commons.configuration.Configuration;
+
+import com.weiru.jaris.config.Config;
+import com.weiru.jaris.indexing.IndexException;
+import com.weiru.jaris.indexing.IndexerFactory;
+
+/**
+ * The <code>Workspace</code> is a temporary directory holding a generated
+ * corpus and the index built from it. Each benchmark fork has its own.
+ */
+public class Workspace {
+
+	private final File root;
+	private final File corpus;
+	private final File index;
+
+	/**
+	 * Creates a Workspace in a new temporary directory and points the
+	 * index location of Jaris at it
+	 * @throws IOException
+	 */
+	public Workspace() throws IOException {
+		root = Files.createTempDirectory("jaris-bench").toFile();
+		corpus = new File(root, "corpus");
+		index = new File(root, "index");
+		Configuration config = Config.instance().getConfiguration();
+		config.setProperty("index-location", index.getAbsolutePath());
+		// measure the searches, not the result cache
+		config.setProperty("search.result-cache-size", 0);
+	}
+
+	/**
+	 * Returns the corpus directory
+	 * @return File the directory
+	 */
+	public File getCorpus() {
+		return corpus;
+	}
+
+	/**
+	 * Returns the index directory
+	 * @return File the directory
+	 */
+	public File getIndex() {
+		return index;
+	}
+
+	/**
+	 * Closes the open Indexers and deletes the index, which the next use
+	 * of an index service creates again
+	 * @throws IndexException
+	 */
+	public void clearIndex() throws IndexException {
+		IndexerFactory.closeAll();
+		delete(index);
+	}
+
+	/**
+	 * Closes the open Indexers and deletes the Workspace
+	 * @throws IndexException
+	 */
+	public void delete() throws IndexException {
+		IndexerFactory.closeAll();
+		delete(root);
+	}
+
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+}
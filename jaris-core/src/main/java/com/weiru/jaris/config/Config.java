@@ -14,6 +14,9 @@
  */
 package com.weiru.jaris.config;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -62,7 +65,6 @@ public class Config {
 			configuration.setReloadingStrategy(strategy);
 
 		} catch (ConfigurationException e) {
-			e.printStackTrace();
 			LOG.log(Level.SEVERE,
 					String.format(ERROR_MESSAGE_LOADING_CONFIGURATION,
 					CONFIGURATION_FILE, e.getMessage()), e);
@@ -81,6 +83,311 @@ public class Config {
 		return getStringProperty("index-location");
 	}
 
+	/**
+	 * Returns the number of documents an open writer session may add 
+	 * before it is committed.
+	 * @return int the document count threshold
+	 */
+	public int getCommitMaxDocs() {
+		return configuration.getInt("indexing.commit.max-docs", 10000);
+	}
+
+	/**
+	 * Returns the size of the in-memory buffer of an open writer session 
+	 * in megabytes. Buffered documents are flushed to a new segment when 
+	 * the buffer is full.
+	 * @return double the buffer size in MB
+	 */
+	public double getCommitRamBufferSizeMB() {
+		return configuration.getDouble("indexing.commit.ram-buffer-mb", 64.0);
+	}
+
+	/**
+	 * Returns the maximum time in milliseconds an open writer session 
+	 * may hold uncommitted documents.
+	 * @return long the commit interval
+	 */
+	public long getCommitIntervalMillis() {
+		return configuration.getLong("indexing.commit.interval-ms", 60000L);
+	}
+
+	/**
+	 * Returns how long in milliseconds the writer of an index stays open 
+	 * without a session or write, holding the write lock of the index.
+	 * @return long the idle time
+	 */
+	public long getWriterIdleMillis() {
+		return configuration.getLong("indexing.writer.idle-ms", 5000L);
+	}
+
+	/**
+	 * Returns the number of documents an open writer session of one index 
+	 * may add before it is committed, by default the shared setting.
+	 * @param index the index name, e.g. clz or jar
+	 * @return int the document count threshold
+	 */
+	public int getCommitMaxDocs(String index) {
+		return configuration.getInt(indexKey(index, "commit.max-docs"), getCommitMaxDocs());
+	}
+
+	/**
+	 * Returns the size of the in-memory buffer of one index in megabytes, 
+	 * by default the shared setting.
+	 * @param index the index name, e.g. clz or jar
+	 * @return double the buffer size in MB
+	 */
+	public double getCommitRamBufferSizeMB(String index) {
+		return configuration.getDouble(indexKey(index, "commit.ram-buffer-mb"), getCommitRamBufferSizeMB());
+	}
+
+	/**
+	 * Returns the maximum time in milliseconds an open writer session of 
+	 * one index may hold uncommitted documents, by default the shared 
+	 * setting.
+	 * @param index the index name, e.g. clz or jar
+	 * @return long the commit interval
+	 */
+	public long getCommitIntervalMillis(String index) {
+		return configuration.getLong(indexKey(index, "commit.interval-ms"), getCommitIntervalMillis());
+	}
+
+	/**
+	 * Returns how many segments of one size tier an index may have before
+	 * they are merged, by default the shared setting.
+	 * @param index the index name, e.g. clz or jar
+	 * @return double the segments per tier
+	 */
+	public double getMergeSegmentsPerTier(String index) {
+		return configuration.getDouble(indexKey(index, "merge.segments-per-tier"), 
+				configuration.getDouble("indexing.merge.segments-per-tier", 10.0));
+	}
+
+	/**
+	 * Returns the size in megabytes beyond which segments of an index are
+	 * no longer merged, by default the shared setting.
+	 * @param index the index name, e.g. clz or jar
+	 * @return double the maximum merged segment size in MB
+	 */
+	public double getMergeMaxSegmentMB(String index) {
+		return configuration.getDouble(indexKey(index, "merge.max-segment-mb"), 
+				configuration.getDouble("indexing.merge.max-segment-mb", 5120.0));
+	}
+
+	/**
+	 * Returns the number of shards of one index, by default the shared 
+	 * setting. Changing it requires indexing all jars again.
+	 * @param index the index name, e.g. clz or jar
+	 * @return int the number of shards
+	 */
+	public int getShards(String index) {
+		return configuration.getInt(indexKey(index, "shards"), configuration.getInt("indexing.shards", 1));
+	}
+
+	/**
+	 * Returns the key of a setting overridden for one index
+	 * @param index the index name
+	 * @param key the key of the setting below indexing
+	 * @return String the key below indexing.index.&lt;index&gt;
+	 */
+	private String indexKey(String index, String key) {
+		return "indexing.index." + index + "." + key;
+	}
+
+	/**
+	 * Returns the number of threads crawling directories and parsing jars.
+	 * Defaults to the number of available processors.
+	 * @return int the number of crawler threads
+	 */
+	public int getCrawlerThreads() {
+		return configuration.getInt("indexing.crawler-threads", 
+				Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Returns the number of writer workers of the indexing pipeline.
+	 * @return int the number of writer workers
+	 */
+	public int getPipelineWriters() {
+		return configuration.getInt("indexing.pipeline.writers", 1);
+	}
+
+	/**
+	 * Returns the capacity of each queue of the indexing pipeline.
+	 * @return int the queue capacity
+	 */
+	public int getPipelineQueueCapacity() {
+		return configuration.getInt("indexing.pipeline.queue-capacity", 64);
+	}
+
+	/**
+	 * Returns the directories JarWatcher keeps indexed
+	 * @return List the directory paths, empty if none is watched
+	 */
+	public List<String> getWatchDirectories() {
+		return getListProperty("indexing.watch.directory");
+	}
+
+	/**
+	 * Returns how long a watched path must be quiet before it is indexed
+	 * @return long the quiet period in milliseconds
+	 */
+	public long getWatchDebounceMillis() {
+		return configuration.getLong("indexing.watch.debounce-ms", 2000);
+	}
+
+	/**
+	 * Returns the layout of the repositories crawled
+	 * @return String <code>maven</code> to read Maven coordinates from the
+	 * paths under the repository roots, <code>none</code> by default
+	 */
+	public String getRepositoryLayout() {
+		return configuration.getString("indexing.repository.layout", "none");
+	}
+
+	/**
+	 * Returns the root directories of the repositories with a layout
+	 * @return List the directory paths
+	 */
+	public List<String> getRepositoryRoots() {
+		return getListProperty("indexing.repository.root");
+	}
+
+	/**
+	 * Returns the classifiers of the Maven artifacts that are not indexed
+	 * @return List the classifiers, by default sources, javadoc, tests and test-sources
+	 */
+	public List<String> getRepositorySkippedClassifiers() {
+		if (!configuration.containsKey("indexing.repository.skip-classifiers")) {
+			return Arrays.asList("sources", "javadoc", "tests", "test-sources");
+		}
+		return getListProperty("indexing.repository.skip-classifiers");
+	}
+
+	/**
+	 * Returns how many of the newest versions of each Maven artifact are 
+	 * indexed
+	 * @return int the number of versions, 0 for all
+	 */
+	public int getRepositoryMaxVersions() {
+		return configuration.getInt("indexing.repository.max-versions", 0);
+	}
+
+	/**
+	 * Returns the reader jars are parsed with, "mapped" to read entry 
+	 * names from the memory-mapped central directory or "zipfile" to go 
+	 * through java.util.zip.ZipFile.
+	 * @return String the jar reader
+	 */
+	public String getJarReader() {
+		return configuration.getString("indexing.jar-reader", "mapped");
+	}
+
+	/**
+	 * Returns if the access flags, super class and interfaces are read from
+	 * the header of each class file while jars are parsed.
+	 * @return boolean read or not
+	 */
+	public boolean getReadClassHeaders() {
+		return configuration.getBoolean("indexing.class-headers", true);
+	}
+
+	/**
+	 * Returns how often in milliseconds searches check the index for 
+	 * commits made by other processes.
+	 * @return long the refresh interval
+	 */
+	public long getSearchRefreshIntervalMillis() {
+		return configuration.getLong("search.refresh-interval-ms", 1000L);
+	}
+
+	/**
+	 * Returns how long in seconds the cursor of a result page keeps the
+	 * index version of that page searchable.
+	 * @return long the cursor age
+	 */
+	public long getSearchCursorMaxAgeSeconds() {
+		return configuration.getLong("search.cursor-max-age-s", 600L);
+	}
+
+	/**
+	 * Returns how many search results each index service caches. Cached
+	 * results are dropped once a commit becomes visible; 0 disables caching.
+	 * @return long the maximum number of cached results
+	 */
+	public long getResultCacheSize() {
+		return configuration.getLong("search.result-cache-size", 1000L);
+	}
+
+	/**
+	 * Returns if class names are completed from an in-memory suggester 
+	 * instead of prefix searches on the index.
+	 * @return boolean enabled or not
+	 */
+	public boolean getSuggesterEnabled() {
+		return configuration.getBoolean("search.suggester", true);
+	}
+
+	/**
+	 * Returns the maximum number of searches the AsyncSearchService runs 
+	 * at a time
+	 * @return int the limit, defaults to four per available processor
+	 */
+	public int getSearchMaxConcurrent() {
+		int max = configuration.getInt("search.executor.max-concurrent", 0);
+		return max > 0 ? max : 4 * Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * Returns whether the AsyncSearchService runs searches on virtual 
+	 * threads where the JVM has them
+	 * @return boolean enabled or not
+	 */
+	public boolean getSearchVirtualThreads() {
+		return configuration.getBoolean("search.executor.virtual-threads", true);
+	}
+
+	/**
+	 * Returns the port the search server listens on, on the loopback
+	 * interface
+	 * @return int the port
+	 */
+	public int getServerPort() {
+		return configuration.getInt("server.port", 7080);
+	}
+
+	/**
+	 * Returns the number of requests the search server handles at a time
+	 * @return int the number of threads, defaults to two per available processor
+	 */
+	public int getServerThreads() {
+		int threads = configuration.getInt("server.threads", 0);
+		return threads > 0 ? threads : 2 * Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * Returns whether indexing and search metrics are published as JMX MBeans
+	 * @return boolean enabled or not
+	 */
+	public boolean getMetricsJmxEnabled() {
+		return configuration.getBoolean("metrics.jmx", true);
+	}
+
+	/**
+	 * Returns the non-empty values of a list property
+	 * @param key the property key
+	 * @return List the trimmed values
+	 */
+	private List<String> getListProperty(String key) {
+		List<String> values = new ArrayList<String>();
+		for (Object value : configuration.getList(key)) {
+			String s = String.valueOf(value).trim();
+			if (!s.isEmpty()) {
+				values.add(s);
+			}
+		}
+		return values;
+	}
+
 	private String getStringProperty(String propertyName) {
 		String prop = configuration.getString(propertyName);
 		if (prop == null) {
@@ -1,35 +1,101 @@
 package com.weiru.jaris.indexing;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
 import org.apache.lucene.index.DirectoryReader;
-import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TieredMergePolicy;
+import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
 
+import com.weiru.jaris.metrics.Metrics;
+
 /**
  * <code>Indexer</code> uses underlying Lucene search engine library to build
  * indexes for WordCollections. It delegates index calls to the underlying
  * Lucene search engine library.
+ * <p>
+ * The IndexWriter is opened by the first write. Documents can be stored
+ * in a writer session: between {@link #begin()} and {@link #end()} they 
+ * are committed whenever the configured document count or time threshold
+ * is reached, and when the outermost session ends; meanwhile searches see
+ * them through readers reopened from the IndexWriter. Outside of a session
+ * every write is committed before it returns.
+ * <p>
+ * Only one process may write an index at a time: the IndexWriter holds the
+ * write lock of the index from the first write until no session is open 
+ * and no write has been made for the writer idle time, when it is closed.
+ * A write while another process holds the lock fails with an 
+ * IndexException. Searches pick up the commits of other processes.
+ * <p>
+ * Searches are not serialized with writes: they share one long-lived
+ * {@link Searcher} which is refreshed after every commit.
+ * <p>
+ * An Indexer may be split into shards, each with its own directory and 
+ * IndexWriter. Documents are routed to a shard by a hash of their 
+ * partition field, and searches run over all shards concurrently.
  */
 public class Indexer {
 	private boolean writerOpen = false;
-	private boolean readerOpen = false;
-	private IndexWriter writer = null;
-	private IndexReader reader = null;
+	private IndexWriter[] writers = null;
+	private int shards = 1;
+	private String[] partitionFields = new String[0];
+	private ExecutorService searchExecutor = null;
+	private volatile Searcher searcher = null;
 	private Analyzer analyzer = null;
 	private String location = "idx";
+	private int sessionDepth = 0;
+	private int uncommittedDocs = 0;
+	private long lastCommitTime = 0L;
+	private int commitMaxDocs = 10000;
+	private double ramBufferSizeMB = IndexWriterConfig.DEFAULT_RAM_BUFFER_SIZE_MB;
+	private double segmentsPerTier = 10.0;
+	private double maxMergedSegmentMB = 5 * 1024;
+	private long commitIntervalMillis = 60000L;
+	private long refreshIntervalMillis = 1000L;
+	private double cursorMaxAgeSeconds = 600;
+	private long writerIdleMillis = 5000L;
+	private long lastWriteTime = 0L;
+	private boolean idleCloseScheduled = false;
+	// writes using the writers outside of the monitor, which close() waits for
+	private int activeWrites = 0;
+	private boolean closing = false;
+	private final Map<String, Suggester> suggesters = new HashMap<String, Suggester>();
 	private static Logger LOGGER = Logger.getLogger(Indexer.class.getName());
 
 	private static final String LOCATION_OPEN_ERROR_MESSAGE = "Unable to open the Indexer[%s].";
+	// closes the IndexWriters of all Indexers once they are idle
+	private static final ScheduledExecutorService IDLE_SCHEDULER = 
+			Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "jaris-writer-idle");
+					t.setDaemon(true);
+					return t;
+				}
+			});
 
 	/**
 	 * Create a Indexer specifying the location
@@ -45,13 +111,131 @@ public class Indexer {
 	}
 
 	/**
-	 * Opens the IndexWriter to the underlying Indexer
+	 * Starts a write, returning the IndexWriters of all shards and opening
+	 * them the first time. The writers stay open until the write is ended
+	 * by {@link #endWrite()}; while the Indexer is being closed it waits.
+	 * 
+	 * @return IndexWriter[] the IndexWriters, in the order of the shards
+	 * @throws IndexException
+	 */
+	private synchronized IndexWriter[] startWrite() throws IndexException {
+		try {
+			while (closing) {
+				wait();
+			}
+			if (!writerOpen) {
+				openWriter();
+			}
+			activeWrites++;
+			return writers;
+		} catch (IOException e) {
+			throw new IndexException(String.format("error on open : %s", e.getMessage()), e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IndexException("interrupted while the Indexer is closed", e);
+		}
+	}
+
+	/**
+	 * Ends a write started by {@link #startWrite()}
+	 */
+	private synchronized void endWrite() {
+		lastWriteTime = System.currentTimeMillis();
+		if (--activeWrites == 0) {
+			notifyAll();
+			scheduleIdleClose(writerIdleMillis);
+		}
+	}
+
+	/**
+	 * Schedules closing the IndexWriters after a delay, unless it is 
+	 * scheduled already
+	 * 
+	 * @param delayMillis
+	 *            the delay in milliseconds
+	 */
+	private void scheduleIdleClose(long delayMillis) {
+		if (idleCloseScheduled || !writerOpen) {
+			return;
+		}
+		idleCloseScheduled = true;
+		IDLE_SCHEDULER.schedule(new Runnable() {
+			public void run() {
+				try {
+					closeIfIdle();
+				} catch (IndexException e) {
+					LOGGER.log(Level.WARNING, "closing idle writer of " + location, e);
+				}
+			}
+		}, delayMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Closes the IndexWriters, releasing the write lock, if no session is
+	 * open and no write has been made for the writer idle time. Otherwise
+	 * checks again once that time may have passed.
+	 * 
+	 * @throws IndexException
+	 */
+	private synchronized void closeIfIdle() throws IndexException {
+		idleCloseScheduled = false;
+		if (!writerOpen || sessionDepth > 0 || activeWrites > 0 || closing) {
+			return;
+		}
+		long idle = System.currentTimeMillis() - lastWriteTime;
+		if (idle < writerIdleMillis) {
+			scheduleIdleClose(writerIdleMillis - idle);
+			return;
+		}
+		commit();
+		try {
+			closeWriter();
+		} catch (IOException e) {
+			throw new IndexException(String.format("error on close : %s", e.getMessage()), e);
+		}
+	}
+
+	/**
+	 * Opens the IndexWriters of all shards of the underlying Indexer, and
+	 * lets the shared Searcher see their changes
 	 * 
 	 * @throws IOException
 	 */
 	private void openWriter() throws IOException {
+		String[] locations = getShardLocations();
+		IndexWriter[] opened = new IndexWriter[locations.length];
 		try {
-			Directory directory = FSDirectory.open(Paths.get(location));
+			for (int i = 0; i < locations.length; i++) {
+				opened[i] = openWriter(locations[i]);
+			}
+		} catch (IOException e) {
+			for (IndexWriter w : opened) {
+				if (w != null) {
+					w.rollback();
+				}
+			}
+			throw e;
+		}
+		writers = opened;
+		writerOpen = true;
+		if (searcher != null) {
+			searcher.setWriters(writers);
+		}
+	}
+
+	/**
+	 * Opens the IndexWriter of one shard. A new shard is committed empty 
+	 * right away, so searches over all shards can open it.
+	 * 
+	 * @param shardLocation
+	 *            the path of the shard
+	 * @return IndexWriter the IndexWriter
+	 * @throws IOException
+	 */
+	private IndexWriter openWriter(String shardLocation) throws IOException {
+		try {
+			Directory directory = FSDirectory.open(Paths.get(shardLocation));
+			boolean exists = DirectoryReader.indexExists(directory);
 			IndexWriterConfig config = new IndexWriterConfig(analyzer);
 			/*
 			 * IndexWriterConfig.OpenMode.CREATE_OR_APPEND if used IndexWriter
@@ -59,25 +243,132 @@ public class Indexer {
 			 * provided path and otherwise open the existing index.
 			 */
 			config.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
-			writer = new IndexWriter(directory, config);
+			config.setRAMBufferSizeMB(ramBufferSizeMB);
+			TieredMergePolicy mergePolicy = new TieredMergePolicy();
+			mergePolicy.setSegmentsPerTier(segmentsPerTier);
+			mergePolicy.setMaxMergedSegmentMB(maxMergedSegmentMB);
+			config.setMergePolicy(mergePolicy);
+			IndexWriter writer = new IndexWriter(directory, config);
+			if (!exists) {
+				writer.commit();
+			}
+			return writer;
 		} catch (IOException e) {
-			LOGGER.log(Level.SEVERE, String.format(LOCATION_OPEN_ERROR_MESSAGE, e.getMessage()), e);
+			LOGGER.log(Level.SEVERE, String.format(LOCATION_OPEN_ERROR_MESSAGE, shardLocation), e);
+			throw e;
 		}
-		writerOpen = true;
 	}
 
 	/**
-	 * Opens the IndexReader to the underlying Indexer
+	 * Returns the paths of the shards: the location itself if there is one
+	 * shard, otherwise one numbered directory per shard below it
+	 * 
+	 * @return String[] the paths
+	 */
+	private String[] getShardLocations() {
+		if (shards == 1) {
+			return new String[] {location};
+		}
+		String[] locations = new String[shards];
+		for (int i = 0; i < shards; i++) {
+			locations[i] = new File(location, String.valueOf(i)).getPath();
+		}
+		return locations;
+	}
+
+	/**
+	 * Returns the IndexWriter of the shard a WordCollection belongs to,
+	 * chosen by the hash of the first partition field it has
 	 * 
+	 * @param words
+	 *            the WordCollection
+	 * @return int the shard
+	 */
+	private int getShard(WordCollection words) {
+		if (writers.length == 1) {
+			return 0;
+		}
+		for (String field : partitionFields) {
+			Iterator<Word> iter = words.iterator();
+			while (iter.hasNext()) {
+				Word word = iter.next();
+				if (field.equals(word.getName()) && word.getContent() != null) {
+					return (word.getContent().hashCode() & Integer.MAX_VALUE) % writers.length;
+				}
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Returns the shared Searcher, opening it the first time the index
+	 * exists
+	 * 
+	 * @return Searcher the Searcher, or null if nothing has been indexed yet
 	 * @throws IOException
 	 */
-	private void openReader() throws IOException {
-		reader = DirectoryReader.open(FSDirectory.open(Paths.get(location)));
-		readerOpen = true;
+	private Searcher getSearcher() throws IOException {
+		Searcher s = searcher;
+		if (s == null) {
+			synchronized (this) {
+				s = searcher;
+				if (s == null && indexExists()) {
+					s = new Searcher(getShardLocations(), analyzer, getSearchExecutor());
+					s.setRefreshIntervalMillis(refreshIntervalMillis);
+					s.setCursorMaxAgeSeconds(cursorMaxAgeSeconds);
+					if (writerOpen) {
+						s.setWriters(writers);
+						s.refresh();
+					}
+					searcher = s;
+				}
+			}
+		}
+		return s;
 	}
 
 	/**
-	 * Closed the IndexWriter to the underlying Indexer
+	 * Checks if every shard of the index exists
+	 * 
+	 * @return boolean exists or not
+	 * @throws IOException
+	 */
+	private boolean indexExists() throws IOException {
+		for (String shardLocation : getShardLocations()) {
+			if (!DirectoryReader.indexExists(FSDirectory.open(Paths.get(shardLocation)))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the executor searching the shards concurrently, one thread per
+	 * shard up to the number of processors
+	 * 
+	 * @return ExecutorService the executor, null if there is one shard
+	 */
+	private ExecutorService getSearchExecutor() {
+		if (shards == 1) {
+			return null;
+		}
+		if (searchExecutor == null) {
+			int threads = Math.min(shards, Runtime.getRuntime().availableProcessors());
+			searchExecutor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+				private final AtomicInteger count = new AtomicInteger();
+
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "jaris-search-" + count.incrementAndGet());
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+		return searchExecutor;
+	}
+
+	/**
+	 * Closed the IndexWriters to the underlying Indexer
 	 * 
 	 * @throws IOException
 	 */
@@ -85,45 +376,223 @@ public class Indexer {
 		if (!writerOpen)
 			return;
 
-		writer.close();
 		writerOpen = false;
+		if (searcher != null) {
+			// waits for a refresh from the writers in progress
+			searcher.setWriters(null);
+			searcher.refresh();
+		}
+		IOException error = null;
+		for (IndexWriter writer : writers) {
+			try {
+				writer.close();
+			} catch (IOException e) {
+				if (error == null) {
+					error = e;
+				}
+			}
+		}
+		if (error != null) {
+			throw error;
+		}
 	}
 
 	/**
-	 * Closes the IndexReader to the underlying Indexer
+	 * Begins a writer session. Documents stored until the outermost session
+	 * ends are committed by the thresholds only, and seen by searches after
+	 * those commits or their periodic refresh. Sessions may be nested, and
+	 * the IndexWriter stays open while one is.
 	 * 
-	 * @throws IOException
+	 * @throws IndexException
 	 */
-	private void closeReader() throws IOException {
-		if (!readerOpen) {
-			return;
+	public synchronized void begin() throws IndexException {
+		if (sessionDepth++ == 0) {
+			lastCommitTime = System.currentTimeMillis();
 		}
-		reader.close();
-		readerOpen = false;
 	}
 
 	/**
 	 * Stores the WordCollection. Each Word specifies how they should be
-	 * indexed.
+	 * indexed. Outside of a writer session the document is committed and
+	 * visible to searches once stored.
+	 * 
+	 * @param words
+	 *            the WordCollection
+	 * @throws IndexException
+	 */
+	public void store(WordCollection words) throws IndexException {
+		storeAll(Collections.singletonList(words));
+	}
+
+	/**
+	 * Stores a batch of WordCollections. Within a writer session the batch
+	 * is committed once a commit threshold is reached; outside of a session
+	 * it is committed as a whole once stored. Batches from several threads
+	 * are added to the IndexWriter concurrently.
 	 * 
+	 * @param batch
+	 *            the WordCollections
+	 * @throws IndexException
+	 */
+	public void storeAll(Collection<WordCollection> batch) throws IndexException {
+		IndexWriter[] shardWriters = startWrite();
+		try {
+			for (WordCollection words : batch) {
+				shardWriters[getShard(words)].addDocument(words.document());
+			}
+			stored(batch.size());
+		} catch (IOException e) {
+			throw new IndexException(String.format("error on store : %s", e.getMessage()), e);
+		} finally {
+			endWrite();
+		}
+	}
+
+	/**
+	 * Replaces the WordCollection whose field equals the value exactly, or
+	 * stores it if there is none.
+	 * 
+	 * @param key
+	 *            the name of the field identifying the WordCollection
+	 * @param value
+	 *            the exact value of that field
 	 * @param words
 	 *            the WordCollection
 	 * @throws IndexException
 	 */
-	public synchronized void store(WordCollection words) throws IndexException {
+	public void update(String key, String value, WordCollection words) throws IndexException {
+		IndexWriter[] shardWriters = startWrite();
 		try {
-			if (readerOpen) {
-				closeReader();
+			int shard = getShard(words);
+			for (int i = 0; i < shardWriters.length; i++) {
+				if (i == shard) {
+					shardWriters[i].updateDocument(new Term(key, value), words.document());
+				} else {
+					shardWriters[i].deleteDocuments(new Term(key, value));
+				}
 			}
-			if (!writerOpen) {
-				openWriter();
+			stored(1);
+		} catch (IOException e) {
+			throw new IndexException(String.format("error on update : %s", e.getMessage()), e);
+		} finally {
+			endWrite();
+		}
+	}
+
+	/**
+	 * Replaces all WordCollections whose field equals the value exactly
+	 * with a batch, as one unit: a reader sees either the old or the new
+	 * WordCollections of a shard, never a mix or none. The batch should be
+	 * partitioned by the same field, so that all of it is in one shard.
+	 * 
+	 * @param key
+	 *            the name of the field identifying the WordCollections
+	 * @param value
+	 *            the exact value of that field
+	 * @param batch
+	 *            the WordCollections, all with that value
+	 * @throws IndexException
+	 */
+	public void replace(String key, String value, Collection<WordCollection> batch) throws IndexException {
+		IndexWriter[] shardWriters = startWrite();
+		try {
+			List<List<Document>> shards = new ArrayList<List<Document>>(shardWriters.length);
+			for (int i = 0; i < shardWriters.length; i++) {
+				shards.add(new ArrayList<Document>());
 			}
-			writer.addDocument(words.document());
-			closeWriter();
+			for (WordCollection words : batch) {
+				shards.get(getShard(words)).add(words.document());
+			}
+			Term term = new Term(key, value);
+			for (int i = 0; i < shardWriters.length; i++) {
+				if (shards.get(i).isEmpty()) {
+					shardWriters[i].deleteDocuments(term);
+				} else {
+					shardWriters[i].updateDocuments(term, shards.get(i));
+				}
+			}
+			stored(batch.size());
 		} catch (IOException e) {
-			throw new IndexException(String.format("error on store : %s", e.getMessage()), e);
+			throw new IndexException(String.format("error on replace : %s", e.getMessage()), e);
+		} finally {
+			endWrite();
 		}
+	}
 
+	/**
+	 * Counts stored documents and commits outside of a writer session, or
+	 * once a threshold is reached within one
+	 * 
+	 * @param count
+	 *            the number of documents just stored
+	 * @throws IndexException
+	 */
+	private synchronized void stored(int count) throws IndexException {
+		uncommittedDocs += count;
+		if (sessionDepth == 0 || uncommittedDocs >= commitMaxDocs 
+				|| System.currentTimeMillis() - lastCommitTime >= commitIntervalMillis) {
+			commit();
+		}
+	}
+
+	/**
+	 * Commits all pending changes of the open writer session
+	 * 
+	 * @throws IndexException
+	 */
+	public synchronized void commit() throws IndexException {
+		if (!writerOpen) {
+			return;
+		}
+		try {
+			long start = System.nanoTime();
+			for (IndexWriter writer : writers) {
+				writer.commit();
+			}
+			LOGGER.fine(String.format("committed %d documents to %s", uncommittedDocs, location));
+			int docs = uncommittedDocs;
+			uncommittedDocs = 0;
+			lastCommitTime = System.currentTimeMillis();
+			if (searcher != null) {
+				searcher.refresh();
+			}
+			Metrics.getInstance().committed(new File(location).getName(), docs, System.nanoTime() - start);
+		} catch (IOException e) {
+			throw new IndexException(String.format("error on commit : %s", e.getMessage()), e);
+		}
+	}
+
+	/**
+	 * Ends a writer session. When the outermost session ends all pending
+	 * changes are committed, and the IndexWriter is closed once it has been
+	 * idle for the writer idle time.
+	 * 
+	 * @throws IndexException
+	 */
+	public synchronized void end() throws IndexException {
+		if (sessionDepth == 0 || --sessionDepth > 0) {
+			return;
+		}
+		commit();
+		lastWriteTime = System.currentTimeMillis();
+		scheduleIdleClose(writerIdleMillis);
+	}
+
+	/**
+	 * Makes all changes made so far visible to searches, including those
+	 * of a writer session that are not committed yet
+	 * 
+	 * @throws IndexException
+	 */
+	public void refresh() throws IndexException {
+		try {
+			Searcher s = getSearcher();
+			if (s != null) {
+				s.refresh();
+			}
+		} catch (IOException e) {
+			throw new IndexException(String.format("error on refresh : %s", e.getMessage()), e);
+		}
 	}
 
 	/**
@@ -132,21 +601,34 @@ public class Indexer {
 	 * @return int the count
 	 * @throws IndexException
 	 */
-	public synchronized int getCount() throws IndexException {
+	public int getCount() throws IndexException {
 		try {
-			if (!readerOpen) {
-				openReader();
-			} else {
-				return -1;
-			}
-			return reader.numDocs();
+			Searcher s = getSearcher();
+			return s == null ? 0 : s.getCount();
 		} catch (IOException e) {
 			throw new IndexException(String.format("error on getCount : %s", e.getMessage()), e);
 		}
 	}
 
+	/**
+	 * Returns the generation of the index visible to searches. It changes
+	 * whenever searches start to see new changes.
+	 * 
+	 * @return long the generation, -1 if nothing has been indexed yet
+	 * @throws IndexException
+	 */
+	public long getGeneration() throws IndexException {
+		try {
+			Searcher s = getSearcher();
+			return s == null ? -1L : s.getVersion();
+		} catch (IOException e) {
+			throw new IndexException(String.format("error on getGeneration : %s", e.getMessage()), e);
+		}
+	}
+
 	/**
 	 * Delete all WordCollection that match the string expression of one field.
+	 * The count returned covers the WordCollections visible to searches only.
 	 * 
 	 * @param key
 	 *            the name of the field
@@ -155,18 +637,191 @@ public class Indexer {
 	 * @return int the number of WordCollection deleted
 	 * @throws IndexException
 	 */
-	public synchronized void deleteByTerm(String key, String term) throws IndexException {
+	public synchronized int deleteByTerm(String key, String term) throws IndexException {
+		IndexWriter[] shardWriters = startWrite();
 		try {
-			if (readerOpen) {
-				closeReader();
-			}
-			if (!writerOpen) {
-				openWriter();
+			Searcher s = getSearcher();
+			int count = s == null ? 0 : s.countByExactTerm(key, term);
+			for (IndexWriter writer : shardWriters) {
+				writer.deleteDocuments(new Term(key, term));
 			}
-			writer.deleteDocuments(new Term(key, term));
-			closeReader();
+			stored(0);
+			return count;
 		} catch (IOException e) {
 			throw new IndexException(String.format("error on deleteByTerm : %s", e.getMessage()), e);
+		} finally {
+			endWrite();
+		}
+	}
+
+	/**
+	 * Merges the index down to a single segment
+	 * 
+	 * @throws IndexException
+	 */
+	public synchronized void optimize() throws IndexException {
+		IndexWriter[] shardWriters = startWrite();
+		try {
+			for (IndexWriter writer : shardWriters) {
+				writer.forceMerge(1);
+			}
+		} catch (IOException e) {
+			throw new IndexException(String.format("error on optimize : %s", e.getMessage()), e);
+		} finally {
+			endWrite();
+		}
+		commit();
+	}
+
+	/**
+	 * Search for WordCollections that match the criteria specified within a
+	 * sample WordCollection.
+	 * 
+	 * @param words
+	 *            the sample WordCollection
+	 * @return WordCollection[] all matching WordCollections
+	 * @throws IndexException
+	 */
+	public WordCollection[] searchBySample(WordCollection words) throws IndexException {
+		try {
+			Searcher s = getSearcher();
+			if (s == null) {
+				return new WordCollection[0];
+			}
+			return s.searchBySample(words);
+		} catch (IOException | ParseException e) {
+			throw new IndexException(String.format("error on searchBySample : %s", e.getMessage()), e);
+		}
+	}
+
+	/**
+	 * Search for WordCollections that match the string expression of one
+	 * field.
+	 * 
+	 * @param key
+	 *            the name of the field
+	 * @param term
+	 *            the string expression
+	 * @return WordCollection[] all matching WordCollections
+	 * @throws IndexException
+	 */
+	public WordCollection[] searchByTerm(String key, String term) throws IndexException {
+		try {
+			Searcher s = getSearcher();
+			if (s == null) {
+				return new WordCollection[0];
+			}
+			return s.searchByTerm(key, term);
+		} catch (IOException | ParseException e) {
+			throw new IndexException(String.format("error on searchByTerm : %s", e.getMessage()), e);
+		}
+	}
+
+	/**
+	 * Search for WordCollections that match the criteria specified within a
+	 * sample WordCollection, decoding only some fields of each. Fields kept
+	 * as doc values are decoded without loading stored fields.
+	 * 
+	 * @param words
+	 *            the sample WordCollection
+	 * @param fields
+	 *            the names of the fields to decode
+	 * @return WordCollection[] all matching WordCollections in index order
+	 * @throws IndexException
+	 */
+	public WordCollection[] searchBySample(WordCollection words, String[] fields) throws IndexException {
+		try {
+			Searcher s = getSearcher();
+			if (s == null) {
+				return new WordCollection[0];
+			}
+			return s.searchBySample(words, fields);
+		} catch (IOException | ParseException e) {
+			throw new IndexException(String.format("error on searchBySample : %s", e.getMessage()), e);
+		}
+	}
+
+	/**
+	 * Search for WordCollections that match the string expression of one
+	 * field, decoding only some fields of each. Fields kept as doc values 
+	 * are decoded without loading stored fields.
+	 * 
+	 * @param key
+	 *            the name of the field
+	 * @param term
+	 *            the string expression
+	 * @param fields
+	 *            the names of the fields to decode
+	 * @return WordCollection[] all matching WordCollections in index order
+	 * @throws IndexException
+	 */
+	public WordCollection[] searchByTerm(String key, String term, String[] fields) throws IndexException {
+		try {
+			Searcher s = getSearcher();
+			if (s == null) {
+				return new WordCollection[0];
+			}
+			return s.searchByTerm(key, term, fields);
+		} catch (IOException | ParseException e) {
+			throw new IndexException(String.format("error on searchByTerm : %s", e.getMessage()), e);
+		}
+	}
+
+	/**
+	 * Search for one page of WordCollections that match the criteria 
+	 * specified within a sample WordCollection. Only the hits of the page
+	 * are collected and converted.
+	 * 
+	 * @param words
+	 *            the sample WordCollection
+	 * @param limit
+	 *            the maximum number of results of the page
+	 * @param cursor
+	 *            the cursor of the previous page, null for the first page
+	 * @return ResultPage the page of matching WordCollections
+	 * @throws IndexException
+	 * @throws IllegalArgumentException if the cursor is malformed or expired
+	 */
+	public ResultPage<WordCollection> searchBySample(WordCollection words, int limit, String cursor) 
+			throws IndexException {
+		try {
+			Searcher s = getSearcher();
+			if (s == null || limit <= 0) {
+				return ResultPage.empty();
+			}
+			return s.searchBySample(words, limit, cursor);
+		} catch (IOException | ParseException e) {
+			throw new IndexException(String.format("error on searchBySample : %s", e.getMessage()), e);
+		}
+	}
+
+	/**
+	 * Search for one page of WordCollections that match the string 
+	 * expression of one field. Only the hits of the page are collected and
+	 * converted.
+	 * 
+	 * @param key
+	 *            the name of the field
+	 * @param term
+	 *            the string expression
+	 * @param limit
+	 *            the maximum number of results of the page
+	 * @param cursor
+	 *            the cursor of the previous page, null for the first page
+	 * @return ResultPage the page of matching WordCollections
+	 * @throws IndexException
+	 * @throws IllegalArgumentException if the cursor is malformed or expired
+	 */
+	public ResultPage<WordCollection> searchByTerm(String key, String term, int limit, String cursor) 
+			throws IndexException {
+		try {
+			Searcher s = getSearcher();
+			if (s == null || limit <= 0) {
+				return ResultPage.empty();
+			}
+			return s.searchByTerm(key, term, limit, cursor);
+		} catch (IOException | ParseException e) {
+			throw new IndexException(String.format("error on searchByTerm : %s", e.getMessage()), e);
 		}
 	}
 
@@ -188,4 +843,296 @@ public class Indexer {
 	public void setAnalyzer(Analyzer analyzer) {
 		this.analyzer = analyzer;
 	}
+
+	/**
+	 * Search for WordCollections whose field equals the value exactly
+	 * 
+	 * @param key
+	 *            the name of the field
+	 * @param value
+	 *            the exact value
+	 * @return WordCollection[] all matching WordCollections
+	 * @throws IndexException
+	 */
+	public WordCollection[] searchByExactTerm(String key, String value) throws IndexException {
+		try {
+			Searcher s = getSearcher();
+			if (s == null) {
+				return new WordCollection[0];
+			}
+			return s.searchByExactTerm(key, value);
+		} catch (IOException e) {
+			throw new IndexException(String.format("error on searchByExactTerm : %s", e.getMessage()), e);
+		}
+	}
+
+	/**
+	 * Search for all WordCollections that have a value for a field
+	 * 
+	 * @param key
+	 *            the name of the field
+	 * @return WordCollection[] all WordCollections with the field
+	 * @throws IndexException
+	 */
+	public WordCollection[] searchByField(String key) throws IndexException {
+		try {
+			Searcher s = getSearcher();
+			if (s == null) {
+				return new WordCollection[0];
+			}
+			return s.searchByField(key);
+		} catch (IOException e) {
+			throw new IndexException(String.format("error on searchByField : %s", e.getMessage()), e);
+		}
+	}
+
+	/**
+	 * Search for at most limit WordCollections whose field equals the value
+	 * exactly and which the filter accepts, stopping at the limit
+	 * 
+	 * @param key
+	 *            the name of the field
+	 * @param value
+	 *            the exact value
+	 * @param limit
+	 *            the maximum number of results
+	 * @param filter
+	 *            the filter, null to accept all
+	 * @return WordCollection[] the matching WordCollections in index order
+	 * @throws IndexException
+	 */
+	public WordCollection[] searchByExactTerm(String key, String value, int limit, WordFilter filter) 
+			throws IndexException {
+		try {
+			Searcher s = getSearcher();
+			if (s == null || limit <= 0) {
+				return new WordCollection[0];
+			}
+			return s.searchByExactTerm(key, value, limit, filter);
+		} catch (IOException e) {
+			throw new IndexException(String.format("error on searchByExactTerm : %s", e.getMessage()), e);
+		}
+	}
+
+	/**
+	 * Completes a prefix to the heaviest terms of a field, weighted by the
+	 * number of WordCollections containing them. The Suggester of the field
+	 * is created on first use and rebuilt in the background after commits.
+	 * 
+	 * @param key
+	 *            the name of the field
+	 * @param prefix
+	 *            the prefix, matched ignoring case
+	 * @param n
+	 *            the maximum number of completions
+	 * @return String[] the completions, heaviest first
+	 * @throws IndexException
+	 */
+	public String[] suggest(String key, String prefix, int n) throws IndexException {
+		try {
+			Suggester suggester = getSuggester(key);
+			if (suggester == null) {
+				return new String[0];
+			}
+			return suggester.suggest(prefix, n);
+		} catch (IOException e) {
+			throw new IndexException(String.format("error on suggest : %s", e.getMessage()), e);
+		}
+	}
+
+	/**
+	 * Returns the Suggester of a field, creating it the first time the
+	 * index exists
+	 * 
+	 * @param key
+	 *            the name of the field
+	 * @return Suggester the Suggester, or null if nothing has been indexed yet
+	 * @throws IOException
+	 */
+	private Suggester getSuggester(String key) throws IOException {
+		Searcher s = getSearcher();
+		if (s == null) {
+			return null;
+		}
+		synchronized (suggesters) {
+			Suggester suggester = suggesters.get(key);
+			if (suggester == null) {
+				suggester = new Suggester(s, key);
+				suggesters.put(key, suggester);
+			}
+			return suggester;
+		}
+	}
+
+	/**
+	 * Closes the Indexer, committing pending changes and releasing the
+	 * writer and the shared Searcher. Writes in progress are waited for, 
+	 * and new ones wait until it is closed. Writer sessions stay open; 
+	 * their next write opens the writer again.
+	 * 
+	 * @throws IndexException
+	 */
+	public synchronized void close() throws IndexException {
+		closing = true;
+		try {
+			while (activeWrites > 0) {
+				wait();
+			}
+			commit();
+			synchronized (suggesters) {
+				for (Suggester suggester : suggesters.values()) {
+					suggester.close();
+				}
+				suggesters.clear();
+			}
+			if (searcher != null) {
+				searcher.close();
+				searcher = null;
+			}
+			// after the searcher, whose readers are reopened from the writers
+			closeWriter();
+			if (searchExecutor != null) {
+				searchExecutor.shutdown();
+				searchExecutor = null;
+			}
+		} catch (IOException e) {
+			throw new IndexException(String.format("error on close : %s", e.getMessage()), e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IndexException("interrupted while waiting for writes to end", e);
+		} finally {
+			closing = false;
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Returns the location of the underlying Indexer
+	 * 
+	 * @return String the location
+	 */
+	public String getLocation() {
+		return location;
+	}
+
+	/**
+	 * Sets the number of shards. Changing it for an existing index requires
+	 * indexing everything again, since documents are routed by a hash 
+	 * modulo the shard count. Takes effect the next time the writer and 
+	 * the searcher are opened.
+	 * 
+	 * @param shards
+	 *            the number of shards
+	 */
+	public void setShards(int shards) {
+		this.shards = Math.max(1, shards);
+	}
+
+	/**
+	 * Returns the number of shards
+	 * 
+	 * @return int the number of shards
+	 */
+	public int getShards() {
+		return shards;
+	}
+
+	/**
+	 * Sets the fields whose content routes a WordCollection to its shard.
+	 * The first field a WordCollection has is used; one without any goes 
+	 * to the first shard. WordCollections that are deleted or replaced 
+	 * together should share the partition field.
+	 * 
+	 * @param partitionFields
+	 *            the names of the fields
+	 */
+	public void setPartitionFields(String... partitionFields) {
+		this.partitionFields = partitionFields;
+	}
+
+	/**
+	 * Sets the number of documents a writer session may add before it is
+	 * committed
+	 * 
+	 * @param commitMaxDocs
+	 *            the document count threshold
+	 */
+	public void setCommitMaxDocs(int commitMaxDocs) {
+		this.commitMaxDocs = commitMaxDocs;
+	}
+
+	/**
+	 * Sets the in-memory buffer size of the IndexWriter. Buffered documents
+	 * are flushed to a new segment once the buffer is full. Takes effect the
+	 * next time the writer is opened.
+	 * 
+	 * @param ramBufferSizeMB
+	 *            the buffer size in MB
+	 */
+	public void setRamBufferSizeMB(double ramBufferSizeMB) {
+		this.ramBufferSizeMB = ramBufferSizeMB;
+	}
+
+	/**
+	 * Sets how many segments of one size tier the index may have before 
+	 * they are merged. Takes effect the next time the writer is opened.
+	 * 
+	 * @param segmentsPerTier
+	 *            the segments per tier
+	 */
+	public void setSegmentsPerTier(double segmentsPerTier) {
+		this.segmentsPerTier = segmentsPerTier;
+	}
+
+	/**
+	 * Sets the size beyond which segments are no longer merged. Takes 
+	 * effect the next time the writer is opened.
+	 * 
+	 * @param maxMergedSegmentMB
+	 *            the maximum merged segment size in MB
+	 */
+	public void setMaxMergedSegmentMB(double maxMergedSegmentMB) {
+		this.maxMergedSegmentMB = maxMergedSegmentMB;
+	}
+
+	/**
+	 * Sets the maximum time a writer session may hold uncommitted documents
+	 * 
+	 * @param commitIntervalMillis
+	 *            the commit interval in milliseconds
+	 */
+	public void setCommitIntervalMillis(long commitIntervalMillis) {
+		this.commitIntervalMillis = commitIntervalMillis;
+	}
+
+	/**
+	 * Sets how long the IndexWriter stays open without a session or write,
+	 * holding the write lock of the index
+	 * 
+	 * @param writerIdleMillis
+	 *            the idle time in milliseconds
+	 */
+	public void setWriterIdleMillis(long writerIdleMillis) {
+		this.writerIdleMillis = writerIdleMillis;
+	}
+
+	/**
+	 * Sets how long a cursor keeps the reader of its page open
+	 * 
+	 * @param cursorMaxAgeSeconds
+	 *            the age in seconds
+	 */
+	public void setCursorMaxAgeSeconds(double cursorMaxAgeSeconds) {
+		this.cursorMaxAgeSeconds = cursorMaxAgeSeconds;
+	}
+
+	/**
+	 * Sets how often searches check for commits made by other processes
+	 * 
+	 * @param refreshIntervalMillis
+	 *            the refresh interval in milliseconds
+	 */
+	public void setRefreshIntervalMillis(long refreshIntervalMillis) {
+		this.refreshIntervalMillis = refreshIntervalMillis;
+	}
 }
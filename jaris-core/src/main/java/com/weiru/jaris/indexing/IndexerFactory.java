@@ -1,26 +1,39 @@
 package com.weiru.jaris.indexing;
 
-import java.util.HashMap;
+import java.io.File;
+import java.io.IOException;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
 
 import com.weiru.jaris.config.Config;
 
 /**
  * The <code>IndexerFactory</code> provides factory methods to retrieve 
- * specific Indexes by their name 
+ * specific Indexes by their name. Each Indexer has its own directory below
+ * the configured index location, named after the last segment of its name,
+ * so Indexers never share a write lock.
  * 
  * @author Wei Ru
  */
 public class IndexerFactory {
     
 	private static IndexerFactory instance = new IndexerFactory();
-	private HashMap<String, Indexer> indexers = null;
+	private static Logger LOG = Logger.getLogger(IndexerFactory.class.getName());
+	private static volatile boolean sharedChecked = false;
+	private static volatile boolean shutdownHookAdded = false;
+	private ConcurrentHashMap<String, Indexer> indexers = null;
 	
 	/**
 	 * Private constructor
 	 */
     private IndexerFactory() {
-		indexers = new HashMap<String, Indexer>();
+		indexers = new ConcurrentHashMap<String, Indexer>();
     }
     
     /**
@@ -28,9 +41,6 @@ public class IndexerFactory {
      * @return IndexerFactory the IndexerFactory 
      */
     public static IndexerFactory getInstance() {
-    	if (instance==null) {
-    		instance = new IndexerFactory();
-    	}
     	return instance;
     }
     
@@ -44,7 +54,8 @@ public class IndexerFactory {
 	}
 
     /**
-     * Return a specific Indexer by its name
+     * Return a specific Indexer by its name. The Indexer is created the 
+     * first time it is asked for; concurrent callers get the same one.
      * @param name The name or the path to a specific Indexer
      * @return Indexer 
      * @throws IndexException
@@ -53,14 +64,113 @@ public class IndexerFactory {
 		Indexer indexer = null;
     	try {
     		Map<String, Indexer> store = IndexerFactory.getInstance().getIndexes();
-    		indexer = (Indexer) store.get(name);
+    		indexer = store.get(name);
     		if (indexer==null) {
-    			indexer = new Indexer(Config.instance().getIndexLocation());
-            	store.put(name, indexer);
+    			indexer = createIndexer(getIndexName(name));
+    			Indexer existing = ((ConcurrentHashMap<String, Indexer>) store).putIfAbsent(name, indexer);
+    			if (existing != null) {
+    				indexer = existing;
+    			}
     		}
         } catch(Exception e) {
 			throw new IndexException(String.format("error on getWordIndexer : %s", e.getMessage()), e);
         }
         return indexer;
     }
+
+	/**
+	 * Closes all Indexers, committing their pending changes. The Indexers 
+	 * stay registered and reopen their writer and searcher on next use.
+	 * @throws IndexException the first error, after all Indexers are closed
+	 */
+	public static void closeAll() throws IndexException {
+		IndexException error = null;
+		for (Indexer indexer : getInstance().getIndexes().values()) {
+			try {
+				indexer.close();
+			} catch (IndexException e) {
+				LOG.log(Level.SEVERE, "closeAll : " + indexer.getLocation(), e);
+				if (error == null) {
+					error = e;
+				}
+			}
+		}
+		if (error != null) {
+			throw error;
+		}
+	}
+
+	/**
+	 * Returns the name of the directory and settings of an Indexer, the 
+	 * last segment of its name
+	 * @param name the name of the Indexer
+	 * @return String the index name
+	 */
+	private static String getIndexName(String name) {
+		return name.substring(name.lastIndexOf('/') + 1);
+	}
+
+	/**
+	 * Creates an Indexer in its own directory with the writer and merge 
+	 * settings of its index from the configuration
+	 * @param indexName the index name
+	 * @return Indexer
+	 * @throws Exception
+	 */
+	private static Indexer createIndexer(String indexName) throws Exception {
+		Config config = Config.instance();
+		warnIfShared(config.getIndexLocation());
+		Indexer indexer = new Indexer(new File(config.getIndexLocation(), indexName).getPath());
+		indexer.setShards(config.getShards(indexName));
+		indexer.setCommitMaxDocs(config.getCommitMaxDocs(indexName));
+		indexer.setRamBufferSizeMB(config.getCommitRamBufferSizeMB(indexName));
+		indexer.setCommitIntervalMillis(config.getCommitIntervalMillis(indexName));
+		indexer.setSegmentsPerTier(config.getMergeSegmentsPerTier(indexName));
+		indexer.setMaxMergedSegmentMB(config.getMergeMaxSegmentMB(indexName));
+		indexer.setRefreshIntervalMillis(config.getSearchRefreshIntervalMillis());
+		indexer.setCursorMaxAgeSeconds(config.getSearchCursorMaxAgeSeconds());
+		indexer.setWriterIdleMillis(config.getWriterIdleMillis());
+		addShutdownHook();
+		return indexer;
+	}
+
+	/**
+	 * Closes all Indexers when the JVM exits, committing the changes of 
+	 * writer sessions still open and releasing the write locks
+	 */
+	private static synchronized void addShutdownHook() {
+		if (shutdownHookAdded) {
+			return;
+		}
+		shutdownHookAdded = true;
+		Runtime.getRuntime().addShutdownHook(new Thread("jaris-shutdown") {
+			public void run() {
+				try {
+					closeAll();
+				} catch (IndexException e) {
+					// logged by closeAll
+				}
+			}
+		});
+	}
+
+	/**
+	 * Warns about an index written directly into the index location, where
+	 * all Indexers used to share one directory. It is no longer read.
+	 * @param location the index location
+	 */
+	private static void warnIfShared(String location) {
+		if (sharedChecked) {
+			return;
+		}
+		sharedChecked = true;
+		try (Directory directory = FSDirectory.open(new File(location).toPath())) {
+			if (DirectoryReader.indexExists(directory)) {
+				LOG.warning(String.format("%s holds an index shared by all Indexers, which is no longer used; "
+						+ "every Indexer now has its own directory and the jars have to be indexed again", location));
+			}
+		} catch (IOException e) {
+			LOG.log(Level.FINE, "warnIfShared : " + location, e);
+		}
+	}
 }
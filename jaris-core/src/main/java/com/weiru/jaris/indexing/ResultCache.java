@@ -0,0 +1,118 @@
+package com.weiru.jaris.indexing;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * <code>ResultCache</code> keeps the results of recent searches on an
+ * {@link Indexer}, evicting the least recently used ones beyond a maximum
+ * size. Results are cached under the generation of the index they were 
+ * found in, so once a commit becomes visible to searches the results of 
+ * earlier generations are never returned again and are dropped.
+ * 
+ * @param <V> the type of the results
+ */
+public class ResultCache<V> {
+
+	private final Indexer indexer;
+	private final Cache<Key, V> cache;
+	private volatile long generation = -1L;
+
+	/**
+	 * Creates a ResultCache
+	 * 
+	 * @param indexer
+	 *            the Indexer whose generation invalidates the results
+	 * @param maximumSize
+	 *            the maximum number of results kept, 0 to keep none
+	 */
+	public ResultCache(Indexer indexer, long maximumSize) {
+		this.indexer = indexer;
+		this.cache = CacheBuilder.newBuilder().maximumSize(maximumSize).recordStats().build();
+	}
+
+	/**
+	 * Returns the result cached for a key in the current generation, or
+	 * loads and caches it
+	 * 
+	 * @param key
+	 *            the key, compared with equals
+	 * @param loader
+	 *            runs the search on a miss, must not return null
+	 * @return V the result
+	 * @throws IndexException
+	 */
+	public V get(Object key, Callable<V> loader) throws IndexException {
+		long current = indexer.getGeneration();
+		if (current != generation) {
+			generation = current;
+			cache.invalidateAll();
+		}
+		try {
+			return cache.get(new Key(current, key), loader);
+		} catch (ExecutionException | UncheckedExecutionException e) {
+			if (e.getCause() instanceof IndexException) {
+				throw (IndexException) e.getCause();
+			}
+			throw new IndexException(String.format("error on get : %s", e.getCause()), e.getCause());
+		}
+	}
+
+	/**
+	 * Drops all cached results
+	 */
+	public void invalidateAll() {
+		cache.invalidateAll();
+	}
+
+	/**
+	 * Returns the number of cached results
+	 * 
+	 * @return long the size
+	 */
+	public long size() {
+		return cache.size();
+	}
+
+	/**
+	 * Returns the hit, miss and eviction counts since the cache was created
+	 * 
+	 * @return CacheStats the statistics
+	 */
+	public CacheStats stats() {
+		return cache.stats();
+	}
+
+	/**
+	 * A key qualified by the generation its result was found in
+	 */
+	private static final class Key {
+
+		private final long generation;
+		private final Object key;
+
+		Key(long generation, Object key) {
+			this.generation = generation;
+			this.key = key;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) o;
+			return generation == other.generation && key.equals(other.key);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * key.hashCode() + (int) (generation ^ (generation >>> 32));
+		}
+	}
+}
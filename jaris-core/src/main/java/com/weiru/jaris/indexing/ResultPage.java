@@ -0,0 +1,78 @@
+package com.weiru.jaris.indexing;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <code>ResultPage</code> holds one page of search results together with
+ * the cursor that continues the search after them.
+ * 
+ * @param <T> the type of the results
+ */
+public class ResultPage<T> {
+
+	private final List<T> results;
+	private final String cursor;
+	private final int totalHits;
+
+	/**
+	 * Creates a ResultPage
+	 * 
+	 * @param results
+	 *            the results of this page
+	 * @param cursor
+	 *            the cursor of the next page, null if this is the last one
+	 * @param totalHits
+	 *            the number of matches of the whole search
+	 */
+	public ResultPage(List<T> results, String cursor, int totalHits) {
+		this.results = Collections.unmodifiableList(results);
+		this.cursor = cursor;
+		this.totalHits = totalHits;
+	}
+
+	/**
+	 * Returns an empty last page
+	 * 
+	 * @return ResultPage the empty page
+	 */
+	public static <T> ResultPage<T> empty() {
+		return new ResultPage<T>(Collections.<T>emptyList(), null, 0);
+	}
+
+	/**
+	 * Returns the results of this page in rank order
+	 * 
+	 * @return List the results
+	 */
+	public List<T> getResults() {
+		return results;
+	}
+
+	/**
+	 * Returns the opaque cursor to pass back for the next page
+	 * 
+	 * @return String the cursor, null if there are no more results
+	 */
+	public String getCursor() {
+		return cursor;
+	}
+
+	/**
+	 * Returns if there is a page after this one
+	 * 
+	 * @return boolean more results or not
+	 */
+	public boolean hasMore() {
+		return cursor != null;
+	}
+
+	/**
+	 * Returns the number of matches of the whole search, across all pages
+	 * 
+	 * @return int the number of matches
+	 */
+	public int getTotalHits() {
+		return totalHits;
+	}
+}
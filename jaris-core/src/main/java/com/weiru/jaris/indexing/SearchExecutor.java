@@ -0,0 +1,196 @@
+package com.weiru.jaris.indexing;
+
+import java.io.Closeable;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * <code>SearchExecutor</code> runs searches concurrently, at most a given
+ * number at a time. Where the JVM has virtual threads (Java 21) each 
+ * search gets its own virtual thread, and searches beyond the limit wait
+ * parked, costing no platform thread; otherwise they run on a pool of 
+ * that many daemon threads and wait in its queue.
+ * <p>
+ * Searches of one {@link Indexer} share its Searcher, which is safe for
+ * concurrent use, so they run in parallel without locking. As an 
+ * Executor it runs other tasks the same way, such as the requests of a
+ * server.
+ */
+public class SearchExecutor implements Executor, Closeable {
+
+	private static final String THREAD_NAME = "jaris-query-";
+
+	private static Logger LOGGER = Logger.getLogger(SearchExecutor.class.getName());
+	private final ExecutorService executor;
+	private final Semaphore permits;
+	private final int maxConcurrent;
+	private final boolean virtual;
+	private final AtomicInteger active = new AtomicInteger();
+
+	/**
+	 * Creates a SearchExecutor
+	 * 
+	 * @param maxConcurrent
+	 *            the maximum number of searches running at a time
+	 * @param virtualThreads
+	 *            whether to use virtual threads where the JVM has them
+	 */
+	public SearchExecutor(int maxConcurrent, boolean virtualThreads) {
+		this(THREAD_NAME, maxConcurrent, virtualThreads);
+	}
+
+	/**
+	 * Creates a SearchExecutor with its own thread names
+	 * 
+	 * @param threadName
+	 *            the prefix of the thread names
+	 * @param maxConcurrent
+	 *            the maximum number of searches running at a time
+	 * @param virtualThreads
+	 *            whether to use virtual threads where the JVM has them
+	 */
+	public SearchExecutor(final String threadName, int maxConcurrent, boolean virtualThreads) {
+		this.maxConcurrent = Math.max(1, maxConcurrent);
+		ExecutorService virtualExecutor = virtualThreads ? newVirtualThreadExecutor(threadName) : null;
+		this.virtual = virtualExecutor != null;
+		if (virtual) {
+			executor = virtualExecutor;
+			permits = new Semaphore(this.maxConcurrent);
+		} else {
+			executor = Executors.newFixedThreadPool(this.maxConcurrent, new ThreadFactory() {
+				private final AtomicInteger count = new AtomicInteger();
+
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, threadName + count.incrementAndGet());
+					t.setDaemon(true);
+					return t;
+				}
+			});
+			// the pool size is the limit
+			permits = null;
+		}
+		LOGGER.fine(String.format("searches run on %s threads, %d at a time", 
+				virtual ? "virtual" : "pooled", this.maxConcurrent));
+	}
+
+	/**
+	 * Submits a search
+	 * 
+	 * @param search
+	 *            the search
+	 * @return Future the result of the search
+	 */
+	public <T> Future<T> submit(final Callable<T> search) {
+		return executor.submit(new Callable<T>() {
+			public T call() throws Exception {
+				if (permits != null) {
+					permits.acquire();
+				}
+				active.incrementAndGet();
+				try {
+					return search.call();
+				} finally {
+					active.decrementAndGet();
+					if (permits != null) {
+						permits.release();
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Runs a task like a search, counting it against the same limit
+	 * 
+	 * @param task
+	 *            the task
+	 */
+	public void execute(final Runnable task) {
+		executor.execute(new Runnable() {
+			public void run() {
+				if (permits != null) {
+					permits.acquireUninterruptibly();
+				}
+				active.incrementAndGet();
+				try {
+					task.run();
+				} finally {
+					active.decrementAndGet();
+					if (permits != null) {
+						permits.release();
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Returns whether searches run on virtual threads
+	 * 
+	 * @return boolean virtual or not
+	 */
+	public boolean isVirtual() {
+		return virtual;
+	}
+
+	/**
+	 * Returns the maximum number of searches running at a time
+	 * 
+	 * @return int the limit
+	 */
+	public int getMaxConcurrent() {
+		return maxConcurrent;
+	}
+
+	/**
+	 * Returns the number of searches running
+	 * 
+	 * @return int the count
+	 */
+	public int getActiveCount() {
+		return active.get();
+	}
+
+	/**
+	 * Stops accepting searches and waits briefly for those submitted
+	 */
+	public void close() {
+		executor.shutdown();
+		try {
+			executor.awaitTermination(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Creates an executor starting a named virtual thread per task, 
+	 * through reflection since the source level predates them
+	 * 
+	 * @param threadName
+	 *            the prefix of the thread names
+	 * @return ExecutorService the executor, null if the JVM has no virtual
+	 *         threads
+	 */
+	private static ExecutorService newVirtualThreadExecutor(String threadName) {
+		try {
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+			builder = builderType.getMethod("name", String.class, long.class).invoke(builder, threadName, 1L);
+			ThreadFactory factory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+			return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+					.invoke(null, factory);
+		} catch (ReflectiveOperationException e) {
+			LOGGER.fine("no virtual threads : " + e);
+		}
+		return null;
+	}
+}
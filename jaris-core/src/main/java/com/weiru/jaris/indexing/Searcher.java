@@ -1,27 +1,70 @@
 package com.weiru.jaris.indexing;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.nio.file.Paths;
-import java.text.ParseException;
-import java.util.Enumeration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
 import org.apache.lucene.document.Document;
-import org.apache.lucene.document.Field;
 import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.DocValuesType;
+import org.apache.lucene.index.FieldInfo;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.CollectionTerminatedException;
+import org.apache.lucene.search.CollectorManager;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ReferenceManager;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SimpleCollector;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TermRangeQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
-import org.apache.lucene.util.QueryBuilder;
 
-public class Searcher {
+/**
+ * <code>Searcher</code> implements all query related logic. A Searcher is
+ * meant to be long-lived: it keeps one reader over all shards of an index
+ * open through a {@link ShardSearcherManager} that is shared by all 
+ * concurrent searches, reference counted per search, and reopened when the
+ * index changes.
+ */
+public class Searcher implements Closeable {
 
-	private IndexSearcher indexSearcher;
-	private Analyzer analyzer = null;
+	private ShardSearcherManager searcherManager;
+	private Analyzer analyzer = new KeywordAnalyzer();
+	private long refreshIntervalMillis = 1000L;
+	private volatile long lastRefresh = System.currentTimeMillis();
+	private final PinnedSearchers pinnedSearchers = new PinnedSearchers();
+	private double cursorMaxAgeSeconds = 600;
 	private static Logger LOG = Logger.getLogger(Searcher.class.getName());
+	// the characters of the classic query syntax, but for the wildcards
+	private static final String QUERY_SYNTAX = "\\+-!():^[]\"{}~/&|";
 
 	/**
 	 * <code>Searcher</code> implements all query related logic
@@ -34,15 +77,135 @@ public class Searcher {
 	}
 
 	public Searcher(String location, Analyzer analyzer) throws IOException {
+		this(new String[] {location}, analyzer, null);
+	}
+
+	/**
+	 * Creates a Searcher over all shards of an index
+	 * @param locations the paths of the shards
+	 * @param analyzer the Analyzer of the queries
+	 * @param executor the executor searching the segments of all shards 
+	 *            concurrently, null to search them one after another
+	 * @throws IOException
+	 */
+	public Searcher(String[] locations, Analyzer analyzer, ExecutorService executor) throws IOException {
 		super();
 		this.analyzer = analyzer;
-		initializeIndexSearcher(location);
+		initializeIndexSearcher(locations, executor);
 	}
 
 	private void initializeIndexSearcher(String location) throws IOException {
-		IndexReader reader = DirectoryReader.open(FSDirectory.open(Paths.get(location)));
-		indexSearcher = new IndexSearcher(reader);
+		initializeIndexSearcher(new String[] {location}, null);
+	}
+
+	private void initializeIndexSearcher(String[] locations, ExecutorService executor) throws IOException {
+		Directory[] directories = new Directory[locations.length];
+		for (int i = 0; i < locations.length; i++) {
+			directories[i] = FSDirectory.open(Paths.get(locations[i]));
+		}
+		searcherManager = new ShardSearcherManager(directories, executor);
+	}
+
+	/**
+	 * Reopens the shared reader from IndexWriters from now on, so that a 
+	 * refresh sees the changes they have not committed yet
+	 * 
+	 * @param writers the IndexWriters, in the order of the shards
+	 */
+	void setWriters(IndexWriter[] writers) {
+		searcherManager.setWriters(writers);
+	}
+
+	/**
+	 * Reopens the shared reader if the index has changed since it was last
+	 * opened. Searches in flight keep using the reader they acquired.
+	 * 
+	 * @throws IOException
+	 */
+	public void refresh() throws IOException {
+		lastRefresh = System.currentTimeMillis();
+		searcherManager.maybeRefreshBlocking();
+	}
+
+	/**
+	 * Acquires the shared IndexSearcher. Commits from other processes are
+	 * picked up once the refresh interval has elapsed, when the readers 
+	 * pinned for expired cursors are released as well. Every acquired
+	 * IndexSearcher must be handed back through {@link #release(IndexSearcher)}.
+	 * 
+	 * @return IndexSearcher the current IndexSearcher
+	 * @throws IOException
+	 */
+	public IndexSearcher acquire() throws IOException {
+		long now = System.currentTimeMillis();
+		if (now - lastRefresh >= refreshIntervalMillis) {
+			lastRefresh = now;
+			searcherManager.maybeRefresh();
+			pinnedSearchers.prune(cursorMaxAgeSeconds);
+		}
+		return searcherManager.acquire();
+	}
+
+	/**
+	 * Releases an IndexSearcher obtained from {@link #acquire()}
+	 * 
+	 * @param indexSearcher the IndexSearcher
+	 * @throws IOException
+	 */
+	public void release(IndexSearcher indexSearcher) throws IOException {
+		searcherManager.release(indexSearcher);
+	}
+
+	/**
+	 * Returns the count of documents visible to the current reader
+	 * 
+	 * @return int the count
+	 * @throws IOException
+	 */
+	public int getCount() throws IOException {
+		IndexSearcher indexSearcher = acquire();
+		try {
+			return indexSearcher.getIndexReader().numDocs();
+		} finally {
+			release(indexSearcher);
+		}
+	}
+
+	/**
+	 * Returns the version of the current reader, which changes with every
+	 * change it sees
+	 * 
+	 * @return long the version
+	 * @throws IOException
+	 */
+	public long getVersion() throws IOException {
+		IndexSearcher indexSearcher = acquire();
+		try {
+			return ((ShardSearcherManager.ShardReader) indexSearcher.getIndexReader()).getVersion();
+		} finally {
+			release(indexSearcher);
+		}
+	}
+
+	/**
+	 * Registers a listener notified whenever the shared reader is refreshed
+	 * 
+	 * @param listener the listener
+	 */
+	public void addRefreshListener(ReferenceManager.RefreshListener listener) {
+		searcherManager.addListener(listener);
+	}
+
+	/**
+	 * Closes the shared reader once the last search in flight releases it
+	 * 
+	 * @throws IOException
+	 */
+	public void close() throws IOException {
+		pinnedSearchers.close();
+		searcherManager.close();
 	}
+
 	/**
 	 * Search for WordCollections that match the criteria specified within a
 	 * sample WordCollection.
@@ -54,27 +217,92 @@ public class Searcher {
 	 * @throws ParseException
 	 */
 	public WordCollection[] searchBySample(WordCollection words) throws IOException, ParseException {
-		QueryBuilder builder = new QueryBuilder(analyzer);
+		Query query = parseSample(words);
+	    LOG.fine("Searching for: " + query.toString());
+	    return searchByQuery(query);
+	}
+
+	/**
+	 * Search for one page of WordCollections that match the criteria 
+	 * specified within a sample WordCollection.
+	 * 
+	 * @param words
+	 *            The sample WordCollection
+	 * @param limit
+	 *            the maximum number of results of the page
+	 * @param cursor
+	 *            the cursor of the previous page, null for the first page
+	 * @return ResultPage the page of matching WordCollections
+	 * @throws IOException
+	 * @throws ParseException
+	 */
+	public ResultPage<WordCollection> searchBySample(WordCollection words, int limit, String cursor) 
+			throws IOException, ParseException {
+		return searchPage(parseSample(words), limit, cursor);
+	}
+
+	/**
+	 * Search for WordCollections that match the criteria specified within a
+	 * sample WordCollection, decoding only some fields of each hit. Fields 
+	 * kept as doc values are read column-wise without loading the stored 
+	 * document.
+	 * 
+	 * @param words
+	 *            The sample WordCollection
+	 * @param fields
+	 *            the names of the fields to decode
+	 * @return WordCollection[] All matching WordCollection in index order
+	 * @throws IOException
+	 * @throws ParseException
+	 */
+	public WordCollection[] searchBySample(WordCollection words, String[] fields) 
+			throws IOException, ParseException {
+		return searchColumns(parseSample(words), fields);
+	}
+
+	/**
+	 * Parses the criteria of a sample WordCollection into a query matching
+	 * all of them
+	 * 
+	 * @param words the sample WordCollection
+	 * @return Query the query
+	 * @throws ParseException
+	 */
+	private Query parseSample(WordCollection words) throws ParseException {
+		BooleanQuery.Builder builder = new BooleanQuery.Builder();
 		Word word = null;
 		Iterator<Word> iter = words.iterator();
 	    while(iter.hasNext()) {
-			word = (Word) iter.next();
-			boolean searchable = word.isSearchable();
-	    	if (!searchable) {
+			word = iter.next();
+			String content = word.getContent();
+	    	if (content==null || "".equals(content)) {
 	    		continue;
 	    	}
-			Query q = builder.createBooleanQuery(word.getName(), word.getContent());
+			QueryParser parser = new QueryParser(word.getName(), analyzer);
 			parser.setLowercaseExpandedTerms(false);
-			qs[1] = parser.parse(Version.LUCENE_CURRENT, kw.getContent());
-	    	if (qs[0]!=null) {
-	    		qs[0] = qs[0].combine( qs );
-	    	} else {
-	    		qs[0] = qs[1];
-	    	}
-	    	
+	    	builder.add(parser.parse(content), BooleanClause.Occur.MUST);
 	    }
-	    log.debug("Searching for: " + qs[0].toString());
-	    return searchByQuery(qs[0]);
+	    return builder.build();
+	}
+
+	/**
+	 * Escapes a literal value, such as a file name, for the string 
+	 * expressions of the searchByTerm methods. Query syntax characters and
+	 * whitespace lose their meaning; the wildcards * and ? keep it.
+	 * 
+	 * @param value the literal value, may contain wildcards
+	 * @return String the string expression matching it
+	 */
+	public static String escapeLiteral(String value) {
+		StringBuilder sb = new StringBuilder(value.length() + 8);
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (QUERY_SYNTAX.indexOf(c) >= 0 || Character.isWhitespace(c)) {
+				sb.append('\\');
+			}
+			sb.append(c);
+		}
+		return sb.toString();
 	}
 
 	/**
@@ -91,11 +319,116 @@ public class Searcher {
 		QueryParser parser = new QueryParser(key, analyzer);
 		parser.setLowercaseExpandedTerms(false);
 		Query query = parser.parse(term);
-	    log.debug("Searching for: " + query.toString());
+	    LOG.fine("Searching for: " + query.toString());
 
         return searchByQuery(query);
 	}
 
+	/**
+     * Search for WordCollections that match the string expression of one 
+     * field, decoding only some fields of each hit. Fields kept as doc 
+     * values are read column-wise without loading the stored document.
+     * 
+     * @param key the name of the field
+     * @param term the string expression
+     * @param fields the names of the fields to decode
+     * @return WordCollection[] All matching KeywordDocuments in index order
+	 * @throws IOException
+	 * @throws ParseException
+	 */
+	public WordCollection[] searchByTerm(String key, String term, String[] fields) 
+			throws IOException, ParseException {
+		QueryParser parser = new QueryParser(key, analyzer);
+		parser.setLowercaseExpandedTerms(false);
+		return searchColumns(parser.parse(term), fields);
+	}
+
+	/**
+     * Search for one page of WordCollections that match the string 
+     * expression of one field.
+     * 
+     * @param key the name of the field
+     * @param term the string expression
+     * @param limit the maximum number of results of the page
+     * @param cursor the cursor of the previous page, null for the first page
+     * @return ResultPage the page of matching WordCollections
+	 * @throws IOException
+	 * @throws ParseException
+	 */
+	public ResultPage<WordCollection> searchByTerm(String key, String term, int limit, String cursor) 
+			throws IOException, ParseException {
+		QueryParser parser = new QueryParser(key, analyzer);
+		parser.setLowercaseExpandedTerms(false);
+		return searchPage(parser.parse(term), limit, cursor);
+	}
+
+	/**
+     * Search for KeywordDocuments whose field equals the value exactly. 
+     * Unlike {@link #searchByTerm(String, String)} the value is not parsed, 
+     * so it may contain query syntax characters such as a file path does.
+     * 
+     * @param key the name of the field
+     * @param value the exact value
+     * @return WordCollection[] All matching KeywordDocuments
+	 * @throws IOException
+	 */
+	public WordCollection[] searchByExactTerm(String key, String value) throws IOException {
+		return searchByQuery(new TermQuery(new Term(key, value)));
+	}
+
+	/**
+     * Search for at most limit KeywordDocuments whose field equals the 
+     * value exactly and which the filter accepts. Documents are visited in
+     * index order and the search stops as soon as the limit is reached, so
+     * its cost does not grow with the number of matches.
+     * 
+     * @param key the name of the field
+     * @param value the exact value
+     * @param limit the maximum number of results
+     * @param filter the filter, null to accept all
+     * @return WordCollection[] the matching KeywordDocuments
+	 * @throws IOException
+	 */
+	public WordCollection[] searchByExactTerm(String key, String value, int limit, WordFilter filter) 
+			throws IOException {
+		IndexSearcher indexSearcher = acquire();
+		try {
+			LimitCollector collector = new LimitCollector(limit, filter);
+			indexSearcher.search(new TermQuery(new Term(key, value)), collector);
+			return collector.results.toArray(new WordCollection[collector.results.size()]);
+		} finally {
+			release(indexSearcher);
+		}
+	}
+
+	/**
+     * Search for all KeywordDocuments that have a value for a field
+     * 
+     * @param key the name of the field
+     * @return WordCollection[] All KeywordDocuments with the field
+	 * @throws IOException
+	 */
+	public WordCollection[] searchByField(String key) throws IOException {
+		return searchByQuery(TermRangeQuery.newStringRange(key, null, null, true, true));
+	}
+
+	/**
+     * Counts the documents whose field equals the value exactly
+     * 
+     * @param key the name of the field
+     * @param value the exact value
+     * @return int the number of matching documents
+	 * @throws IOException
+	 */
+	public int countByExactTerm(String key, String value) throws IOException {
+		IndexSearcher indexSearcher = acquire();
+		try {
+			return indexSearcher.count(new TermQuery(new Term(key, value)));
+		} finally {
+			release(indexSearcher);
+		}
+	}
+
 	/**
      * Search for KeywordDocuments using lucene Query objec.
      * This private method is invoked by all other search methods.
@@ -105,38 +438,130 @@ public class Searcher {
 	 * @throws IOException
 	 */
 	private WordCollection[] searchByQuery(Query query) throws IOException {
-		Hits hits = idxSearcher.search(query);
-	    log.debug(hits.length() + " total matching documents");
-	    
-	    WordCollection[] results = new WordCollection[hits.length()];
-
-	    for(int i=0; i<hits.length(); i++)
-	    {
-	          Document doc = hits.doc(i);
-	          WordCollection kwc = new WordCollection();
-	          
-	          log.debug("id:" + hits.id(i));
-	          kwc.setInternalId(hits.id(i));
-	          
-	          Word kw = null;
-	          Enumeration en = doc.fields();
-	          while(en.hasMoreElements())
-	          {
-	              Field f = (Field)en.nextElement();
-	              kw = new Word(f.name(), f.stringValue());
-	              
-	              if (f.isIndexed()) {
-	            	  kw.setSearchable(true);
-	              }
-	              if (f.isStored()) {
-	            	  kw.setPersistent(true);
-	              }
-	              kwc.addKeyword(kw);
-	          }
-	          results[i]=kwc;
-	      }      
-	      idxSearcher.close();
-	      return results;
+		IndexSearcher indexSearcher = acquire();
+		try {
+			IndexReader reader = indexSearcher.getIndexReader();
+			TopDocs hits = indexSearcher.search(query, Math.max(1, reader.maxDoc()));
+		    LOG.fine(hits.totalHits + " total matching documents");
+		    
+		    WordCollection[] results = new WordCollection[hits.scoreDocs.length];
+	
+		    for(int i=0; i<hits.scoreDocs.length; i++)
+		    {
+		          int id = hits.scoreDocs[i].doc;
+		          results[i]=toWords(indexSearcher.doc(id), id);
+		    }
+		    return results;
+		} finally {
+			release(indexSearcher);
+		}
+	}
+
+	/**
+	 * Collects all hits of a query in index order, decoding only some 
+	 * fields of each. The segments are collected concurrently when the 
+	 * Searcher has an executor.
+	 * 
+	 * @param query the Query object
+	 * @param fields the names of the fields to decode
+	 * @return WordCollection[] All matching KeywordDocuments
+	 * @throws IOException
+	 */
+	private WordCollection[] searchColumns(Query query, final String[] fields) throws IOException {
+		IndexSearcher indexSearcher = acquire();
+		try {
+			List<WordCollection> results = indexSearcher.search(query, 
+					new CollectorManager<ColumnCollector, List<WordCollection>>() {
+				public ColumnCollector newCollector() {
+					return new ColumnCollector(fields);
+				}
+
+				public List<WordCollection> reduce(Collection<ColumnCollector> collectors) {
+					List<WordCollection> merged = new ArrayList<WordCollection>();
+					for (ColumnCollector collector : collectors) {
+						merged.addAll(collector.results);
+					}
+					return merged;
+				}
+			});
+		    LOG.fine(results.size() + " total matching documents");
+			return results.toArray(new WordCollection[results.size()]);
+		} finally {
+			release(indexSearcher);
+		}
+	}
+
+	/**
+	 * Collects the top hits of a query after a cursor. The cursor pins the
+	 * reader its page was found in, so following pages see the same 
+	 * documents in the same order even when commits happen in between. A
+	 * reader pinned longer than the cursor age is released; a cursor into
+	 * it is rejected, since its position means nothing in another reader.
+	 * 
+	 * @param query the Query object
+	 * @param limit the maximum number of results of the page
+	 * @param cursor the cursor of the previous page, null for the first page
+	 * @return ResultPage the page of matching WordCollections
+	 * @throws IOException
+	 * @throws IllegalArgumentException if the cursor is malformed or expired
+	 */
+	private ResultPage<WordCollection> searchPage(Query query, int limit, String cursor) throws IOException {
+		Cursor after = cursor == null ? null : Cursor.parse(cursor);
+		IndexSearcher indexSearcher = after == null ? null : pinnedSearchers.acquire(after.version);
+		boolean pinned = indexSearcher != null;
+		if (after != null && !pinned) {
+			throw new IllegalArgumentException("expired cursor : " + cursor);
+		}
+		if (!pinned) {
+			indexSearcher = acquire();
+		}
+		try {
+			TopDocs hits = indexSearcher.searchAfter(after == null ? null : after.scoreDoc, query, limit + 1);
+			int count = Math.min(limit, hits.scoreDocs.length);
+			List<WordCollection> results = new ArrayList<WordCollection>(count);
+			for (int i = 0; i < count; i++) {
+				int id = hits.scoreDocs[i].doc;
+				results.add(toWords(indexSearcher.doc(id), id));
+			}
+			String next = null;
+			if (hits.scoreDocs.length > limit) {
+				long version = ((ShardSearcherManager.ShardReader) indexSearcher.getIndexReader()).getVersion();
+				pinnedSearchers.record(version, indexSearcher);
+				pinnedSearchers.prune(cursorMaxAgeSeconds);
+				next = new Cursor(version, hits.scoreDocs[count - 1]).toString();
+			}
+			return new ResultPage<WordCollection>(results, next, hits.totalHits);
+		} finally {
+			if (pinned) {
+				indexSearcher.getIndexReader().decRef();
+			} else {
+				release(indexSearcher);
+			}
+		}
+	}
+
+	/**
+	 * Converts the stored fields of a document to a WordCollection
+	 * 
+	 * @param doc the document
+	 * @param id the document id
+	 * @return WordCollection the WordCollection
+	 */
+	private static WordCollection toWords(Document doc, int id) {
+		WordCollection kwc = new WordCollection();
+		
+		LOG.finest("id:" + id);
+		kwc.setInternalId(id);
+		
+		Word kw = null;
+		for (IndexableField f : doc.getFields())
+		{
+			kw = new Word(f.name(), f.stringValue());
+			kw.setSearchable(true);
+			kw.setPersistent(true);
+			kwc.addKeyword(kw);
+		}
+		return kwc;
 	}
 
     /**
@@ -154,6 +579,256 @@ public class Searcher {
 	public void setAnalyzer(Analyzer analyzer) {
 		this.analyzer = analyzer;
 	}
+
+	/**
+	 * Sets how long the reader of a page stays pinned for its cursor
+	 * @param cursorMaxAgeSeconds the age in seconds
+	 */
+	public void setCursorMaxAgeSeconds(double cursorMaxAgeSeconds) {
+		this.cursorMaxAgeSeconds = cursorMaxAgeSeconds;
+	}
+
+	/**
+	 * Sets how often searches check the index for commits made by other
+	 * processes
+	 * @param refreshIntervalMillis the interval in milliseconds
+	 */
+	public void setRefreshIntervalMillis(long refreshIntervalMillis) {
+		this.refreshIntervalMillis = refreshIntervalMillis;
+	}
 	
 	
+
+	/**
+	 * The IndexSearchers that cursors point into, by the version of their
+	 * reader. Each holds a reference to its reader until no cursor into it
+	 * has been handed out for the cursor age.
+	 */
+	private static final class PinnedSearchers implements Closeable {
+
+		private final ConcurrentHashMap<Long, Pinned> pinned = new ConcurrentHashMap<Long, Pinned>();
+
+		/**
+		 * Pins an IndexSearcher, or renews its pin
+		 */
+		void record(long version, IndexSearcher indexSearcher) {
+			Pinned p = pinned.get(version);
+			if (p == null) {
+				indexSearcher.getIndexReader().incRef();
+				p = new Pinned(indexSearcher);
+				Pinned existing = pinned.putIfAbsent(version, p);
+				if (existing != null) {
+					p.release();
+					p = existing;
+				}
+			}
+			p.recordedNanos = System.nanoTime();
+		}
+
+		/**
+		 * Acquires a pinned IndexSearcher. It is released by decrementing 
+		 * the reference count of its reader.
+		 * @return IndexSearcher the IndexSearcher, null if it is no longer pinned
+		 */
+		IndexSearcher acquire(long version) {
+			Pinned p = pinned.get(version);
+			return p != null && p.searcher.getIndexReader().tryIncRef() ? p.searcher : null;
+		}
+
+		/**
+		 * Releases the IndexSearchers no cursor was handed out for within
+		 * an age
+		 */
+		void prune(double maxAgeSeconds) throws IOException {
+			long now = System.nanoTime();
+			for (Map.Entry<Long, Pinned> entry : pinned.entrySet()) {
+				if ((now - entry.getValue().recordedNanos) / 1e9 > maxAgeSeconds 
+						&& pinned.remove(entry.getKey(), entry.getValue())) {
+					entry.getValue().release();
+				}
+			}
+		}
+
+		/**
+		 * Releases all IndexSearchers
+		 */
+		public void close() throws IOException {
+			prune(-1);
+		}
+
+		private static final class Pinned {
+
+			private final IndexSearcher searcher;
+			private volatile long recordedNanos;
+
+			Pinned(IndexSearcher searcher) {
+				this.searcher = searcher;
+			}
+
+			void release() {
+				try {
+					searcher.getIndexReader().decRef();
+				} catch (IOException e) {
+					LOG.log(Level.WARNING, "releasing pinned searcher", e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * The position of the last hit of a page: the version of the reader it
+	 * was found in, its document id and its score
+	 */
+	private static final class Cursor {
+
+		private final long version;
+		private final ScoreDoc scoreDoc;
+
+		Cursor(long version, ScoreDoc scoreDoc) {
+			this.version = version;
+			this.scoreDoc = scoreDoc;
+		}
+
+		/**
+		 * Parses a cursor returned with a page
+		 * @throws IllegalArgumentException if the cursor is malformed
+		 */
+		static Cursor parse(String cursor) {
+			String[] parts = cursor.split("\\.");
+			if (parts.length != 3) {
+				throw new IllegalArgumentException("invalid cursor : " + cursor);
+			}
+			try {
+				return new Cursor(Long.parseLong(parts[0], Character.MAX_RADIX), 
+						new ScoreDoc(Integer.parseInt(parts[1], Character.MAX_RADIX), 
+								Float.intBitsToFloat((int) Long.parseLong(parts[2], Character.MAX_RADIX))));
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("invalid cursor : " + cursor, e);
+			}
+		}
+
+		@Override
+		public String toString() {
+			return Long.toString(version, Character.MAX_RADIX) + "." 
+					+ Integer.toString(scoreDoc.doc, Character.MAX_RADIX) + "."
+					+ Long.toString(Float.floatToIntBits(scoreDoc.score) & 0xffffffffL, Character.MAX_RADIX);
+		}
+	}
+
+	/**
+	 * Collects documents in index order, reading the requested fields from
+	 * their sorted doc values. Each distinct value is decoded once per 
+	 * segment and shared by all hits carrying it. Segments written without
+	 * doc values for a field fall back to its stored value.
+	 */
+	private static class ColumnCollector extends SimpleCollector {
+
+		private final String[] fields;
+		private final Set<String> fieldSet;
+		private final List<WordCollection> results = new ArrayList<WordCollection>();
+		private LeafReader reader;
+		private int docBase;
+		private SortedDocValues[] values;
+		private List<Map<Integer, String>> decoded;
+
+		ColumnCollector(String[] fields) {
+			this.fields = fields;
+			this.fieldSet = new HashSet<String>(Arrays.asList(fields));
+		}
+
+		@Override
+		protected void doSetNextReader(LeafReaderContext context) throws IOException {
+			reader = context.reader();
+			docBase = context.docBase;
+			values = new SortedDocValues[fields.length];
+			decoded = new ArrayList<Map<Integer, String>>(fields.length);
+			for (int i = 0; i < fields.length; i++) {
+				FieldInfo info = reader.getFieldInfos().fieldInfo(fields[i]);
+				if (info != null && info.getDocValuesType() == DocValuesType.SORTED) {
+					values[i] = reader.getSortedDocValues(fields[i]);
+				}
+				decoded.add(new HashMap<Integer, String>());
+			}
+		}
+
+		@Override
+		public void collect(int doc) throws IOException {
+			WordCollection kwc = new WordCollection();
+			kwc.setInternalId(docBase + doc);
+			Document stored = null;
+			for (int i = 0; i < fields.length; i++) {
+				String content = null;
+				if (values[i] != null) {
+					int ord = values[i].getOrd(doc);
+					if (ord >= 0) {
+						content = decoded.get(i).get(ord);
+						if (content == null) {
+							content = values[i].lookupOrd(ord).utf8ToString();
+							decoded.get(i).put(ord, content);
+						}
+					}
+				} else {
+					if (stored == null) {
+						stored = reader.document(doc, fieldSet);
+					}
+					content = stored.get(fields[i]);
+				}
+				if (content != null) {
+					Word kw = new Word(fields[i], content);
+					kw.setSearchable(true);
+					kw.setPersistent(true);
+					kwc.addKeyword(kw);
+				}
+			}
+			results.add(kwc);
+		}
+
+		@Override
+		public boolean needsScores() {
+			return false;
+		}
+	}
+
+	/**
+	 * Collects the first documents a filter accepts, in index order, and 
+	 * terminates the search once it has enough
+	 */
+	private static class LimitCollector extends SimpleCollector {
+
+		private final int limit;
+		private final WordFilter filter;
+		private final List<WordCollection> results = new ArrayList<WordCollection>();
+		private LeafReader reader;
+		private int docBase;
+
+		LimitCollector(int limit, WordFilter filter) {
+			this.limit = limit;
+			this.filter = filter;
+		}
+
+		@Override
+		protected void doSetNextReader(LeafReaderContext context) throws IOException {
+			if (results.size() >= limit) {
+				throw new CollectionTerminatedException();
+			}
+			reader = context.reader();
+			docBase = context.docBase;
+		}
+
+		@Override
+		public void collect(int doc) throws IOException {
+			WordCollection kwc = toWords(reader.document(doc), docBase + doc);
+			if (filter == null || filter.accept(kwc)) {
+				results.add(kwc);
+			}
+			if (results.size() >= limit) {
+				throw new CollectionTerminatedException();
+			}
+		}
+
+		@Override
+		public boolean needsScores() {
+			return false;
+		}
+	}
 }
@@ -0,0 +1,159 @@
+package com.weiru.jaris.indexing;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.MultiReader;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ReferenceManager;
+import org.apache.lucene.store.Directory;
+
+/**
+ * <code>ShardSearcherManager</code> manages one IndexSearcher over the 
+ * readers of all shards of an index, the way a SearcherManager does for a
+ * single directory. On refresh only the shards that changed are reopened.
+ * With an executor the IndexSearcher searches the segments of all shards
+ * concurrently and merges their hits.
+ * <p>
+ * Once the IndexWriters of the shards are set, readers are reopened from 
+ * them, so a refresh sees their changes before they are committed. Once 
+ * they are unset, the next refresh opens the readers from the directories
+ * again, so the writers can be closed after it.
+ */
+final class ShardSearcherManager extends ReferenceManager<IndexSearcher> {
+
+	private final ExecutorService executor;
+	private volatile IndexWriter[] writers;
+
+	/**
+	 * Opens the readers of all shards
+	 * 
+	 * @param directories the directories of the shards
+	 * @param executor the executor searching segments concurrently, null to
+	 *            search them one after another
+	 * @throws IOException
+	 */
+	ShardSearcherManager(Directory[] directories, ExecutorService executor) throws IOException {
+		this.executor = executor;
+		DirectoryReader[] readers = new DirectoryReader[directories.length];
+		try {
+			for (int i = 0; i < directories.length; i++) {
+				readers[i] = DirectoryReader.open(directories[i]);
+			}
+			current = newSearcher(readers, false);
+		} catch (IOException | RuntimeException e) {
+			decRef(readers);
+			throw e;
+		}
+	}
+
+	/**
+	 * Sets the IndexWriters the readers are reopened from
+	 * 
+	 * @param writers the IndexWriters, in the order of the shards
+	 */
+	void setWriters(IndexWriter[] writers) {
+		this.writers = writers;
+	}
+
+	@Override
+	protected void decRef(IndexSearcher reference) throws IOException {
+		reference.getIndexReader().decRef();
+	}
+
+	@Override
+	protected IndexSearcher refreshIfNeeded(IndexSearcher referenceToRefresh) throws IOException {
+		ShardReader current = (ShardReader) referenceToRefresh.getIndexReader();
+		DirectoryReader[] shards = current.shards;
+		DirectoryReader[] readers = new DirectoryReader[shards.length];
+		IndexWriter[] shardWriters = writers;
+		boolean changed = false;
+		try {
+			for (int i = 0; i < shards.length; i++) {
+				if (shardWriters != null) {
+					readers[i] = DirectoryReader.openIfChanged(shards[i], shardWriters[i]);
+				} else if (current.fromWriters) {
+					// a reader of a writer can only be reopened from it
+					readers[i] = DirectoryReader.open(shards[i].directory());
+				} else {
+					readers[i] = DirectoryReader.openIfChanged(shards[i]);
+				}
+				if (readers[i] == null) {
+					shards[i].incRef();
+					readers[i] = shards[i];
+				} else {
+					changed = true;
+				}
+			}
+			if (!changed) {
+				decRef(readers);
+				return null;
+			}
+			return newSearcher(readers, shardWriters != null);
+		} catch (IOException | RuntimeException e) {
+			decRef(readers);
+			throw e;
+		}
+	}
+
+	@Override
+	protected boolean tryIncRef(IndexSearcher reference) throws IOException {
+		return reference.getIndexReader().tryIncRef();
+	}
+
+	@Override
+	protected int getRefCount(IndexSearcher reference) {
+		return reference.getIndexReader().getRefCount();
+	}
+
+	/**
+	 * Creates an IndexSearcher over the readers of the shards, handing our
+	 * references of them over to it
+	 */
+	private IndexSearcher newSearcher(DirectoryReader[] readers, boolean fromWriters) throws IOException {
+		ShardReader reader = new ShardReader(readers, fromWriters);
+		decRef(readers);
+		return new IndexSearcher(reader, executor);
+	}
+
+	private static void decRef(IndexReader[] readers) throws IOException {
+		for (IndexReader reader : readers) {
+			if (reader != null) {
+				reader.decRef();
+			}
+		}
+	}
+
+	/**
+	 * A reader over the readers of all shards. It holds a reference to each
+	 * of them until it is closed.
+	 */
+	static final class ShardReader extends MultiReader {
+
+		private final DirectoryReader[] shards;
+		private final boolean fromWriters;
+
+		ShardReader(DirectoryReader[] shards, boolean fromWriters) throws IOException {
+			super(shards, false);
+			this.shards = shards;
+			this.fromWriters = fromWriters;
+		}
+
+		/**
+		 * Returns the sum of the versions of the shards, which grows with 
+		 * every change any of them sees
+		 * 
+		 * @return long the version
+		 */
+		long getVersion() {
+			long version = 0;
+			for (DirectoryReader shard : shards) {
+				version += shard.getVersion();
+			}
+			return version;
+		}
+	}
+}
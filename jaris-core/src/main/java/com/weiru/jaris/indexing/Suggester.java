@@ -0,0 +1,257 @@
+package com.weiru.jaris.indexing;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.KeywordTokenizer;
+import org.apache.lucene.analysis.core.LowerCaseFilter;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ReferenceManager;
+import org.apache.lucene.search.suggest.InputIterator;
+import org.apache.lucene.search.suggest.Lookup;
+import org.apache.lucene.search.suggest.analyzing.AnalyzingSuggester;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+
+/**
+ * <code>Suggester</code> completes prefixes of the terms of one field from
+ * an in-memory finite state transducer, without searching the index. Each
+ * term is weighted by the number of documents containing it, and the 
+ * completions of a prefix are returned heaviest first, ignoring case.
+ * <p>
+ * The transducer is immutable. It is built from the shared 
+ * {@link Searcher} the first time it is needed, and rebuilt on a 
+ * background thread after every refresh that brings in new commits, while
+ * completions keep coming from the previous one.
+ */
+public class Suggester implements Closeable, ReferenceManager.RefreshListener {
+
+	private static Logger LOG = Logger.getLogger(Suggester.class.getName());
+
+	private final Searcher searcher;
+	private final String field;
+	private final ExecutorService builder;
+	private final AtomicBoolean rebuildPending = new AtomicBoolean();
+	private volatile Lookup lookup;
+	private volatile boolean closed = false;
+
+	/**
+	 * Creates a Suggester for a field and registers it for refreshes of the
+	 * Searcher
+	 * 
+	 * @param searcher the shared Searcher
+	 * @param field the name of the field whose terms are completed
+	 */
+	public Suggester(Searcher searcher, String field) {
+		this.searcher = searcher;
+		this.field = field;
+		this.builder = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "jaris-suggester-" + Suggester.this.field);
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		searcher.addRefreshListener(this);
+	}
+
+	/**
+	 * Returns the heaviest terms starting with a prefix, building the 
+	 * transducer first if it has never been built
+	 * 
+	 * @param prefix the prefix
+	 * @param n the maximum number of completions
+	 * @return String[] the completions
+	 * @throws IOException
+	 */
+	public String[] suggest(String prefix, int n) throws IOException {
+		Lookup l = lookup;
+		if (l == null) {
+			l = buildIfAbsent();
+		}
+		if (prefix == null || prefix.length() == 0 || n <= 0) {
+			return new String[0];
+		}
+		List<Lookup.LookupResult> results = l.lookup(prefix, (Set<BytesRef>) null, false, n);
+		String[] completions = new String[results.size()];
+		for (int i = 0; i < completions.length; i++) {
+			completions[i] = results.get(i).key.toString();
+		}
+		return completions;
+	}
+
+	/**
+	 * Returns the number of terms in the current transducer
+	 * 
+	 * @return long the count, 0 if it has not been built
+	 * @throws IOException
+	 */
+	public long getCount() throws IOException {
+		Lookup l = lookup;
+		return l == null ? 0 : l.getCount();
+	}
+
+	/**
+	 * Returns the heap used by the current transducer
+	 * 
+	 * @return long the size in bytes
+	 */
+	public long ramBytesUsed() {
+		Lookup l = lookup;
+		return l == null ? 0 : ((AnalyzingSuggester) l).ramBytesUsed();
+	}
+
+	public void beforeRefresh() {
+	}
+
+	/**
+	 * Schedules a rebuild after a refresh that opened a new reader. Several
+	 * refreshes during one build lead to a single rebuild.
+	 */
+	public void afterRefresh(boolean didRefresh) {
+		if (!didRefresh || closed || lookup == null || !rebuildPending.compareAndSet(false, true)) {
+			return;
+		}
+		builder.execute(new Runnable() {
+			public void run() {
+				rebuildPending.set(false);
+				try {
+					build();
+				} catch (IOException e) {
+					LOG.log(Level.WARNING, "rebuilding suggester of " + field, e);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Stops background rebuilds
+	 */
+	public void close() {
+		closed = true;
+		builder.shutdownNow();
+	}
+
+	/**
+	 * Builds the first transducer unless another thread has just built it
+	 */
+	private synchronized Lookup buildIfAbsent() throws IOException {
+		return lookup != null ? lookup : build();
+	}
+
+	/**
+	 * Builds the transducer from the terms of the current reader
+	 * 
+	 * @return Lookup the new transducer
+	 * @throws IOException
+	 */
+	private synchronized Lookup build() throws IOException {
+		long start = System.nanoTime();
+		IndexSearcher indexSearcher = searcher.acquire();
+		try (Directory tempDir = FSDirectory.open(Paths.get(System.getProperty("java.io.tmpdir")))) {
+			AnalyzingSuggester suggester = new AnalyzingSuggester(tempDir, "jaris-suggest", 
+					new LowerCaseKeywordAnalyzer());
+			suggester.build(new TermWeightIterator(indexSearcher.getIndexReader(), field));
+			lookup = suggester;
+			LOG.fine("built suggester of " + field + " : " + suggester.getCount() + " terms, " 
+					+ suggester.ramBytesUsed() + " bytes in " + (System.nanoTime() - start) / 1000000 + " ms");
+			return suggester;
+		} finally {
+			searcher.release(indexSearcher);
+		}
+	}
+
+	/**
+	 * Iterates the terms of a field weighted by the number of live documents
+	 * containing them
+	 */
+	private static class TermWeightIterator implements InputIterator {
+
+		private final TermsEnum termsEnum;
+		private final Bits liveDocs;
+		private PostingsEnum postings;
+		private long weight;
+
+		TermWeightIterator(IndexReader reader, String field) throws IOException {
+			Terms terms = MultiFields.getTerms(reader, field);
+			this.termsEnum = terms == null ? null : terms.iterator();
+			this.liveDocs = MultiFields.getLiveDocs(reader);
+		}
+
+		public BytesRef next() throws IOException {
+			if (termsEnum == null) {
+				return null;
+			}
+			BytesRef term;
+			while ((term = termsEnum.next()) != null) {
+				weight = liveDocs == null ? termsEnum.docFreq() : countLive();
+				if (weight > 0) {
+					return term;
+				}
+			}
+			return null;
+		}
+
+		private long countLive() throws IOException {
+			postings = termsEnum.postings(postings, PostingsEnum.NONE);
+			long count = 0;
+			for (int doc = postings.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = postings.nextDoc()) {
+				if (liveDocs.get(doc)) {
+					count++;
+				}
+			}
+			return count;
+		}
+
+		public long weight() {
+			return weight;
+		}
+
+		public BytesRef payload() {
+			return null;
+		}
+
+		public boolean hasPayloads() {
+			return false;
+		}
+
+		public Set<BytesRef> contexts() {
+			return null;
+		}
+
+		public boolean hasContexts() {
+			return false;
+		}
+	}
+
+	/**
+	 * Matches completions ignoring case
+	 */
+	private static class LowerCaseKeywordAnalyzer extends Analyzer {
+
+		@Override
+		protected TokenStreamComponents createComponents(String fieldName) {
+			Tokenizer source = new KeywordTokenizer();
+			return new TokenStreamComponents(source, new LowerCaseFilter(source));
+		}
+	}
+}
@@ -17,6 +17,7 @@ public class Word implements Serializable {
 	private boolean tokenizable;
 	private boolean defaultField;
 	private boolean searchable;
+	private boolean docValues;
 	private String name;
 	private String content;
 
@@ -164,5 +165,26 @@ public class Word implements Serializable {
 	public void setSearchable(boolean searchable) {
 		this.searchable = searchable;
 	}
+
+	/**
+	 * Return if this Word is also kept as a sorted doc value, which lets
+	 * results be decoded column-wise without loading stored fields
+	 * 
+	 * @return boolean If it is kept as a doc value
+	 */
+	public boolean isDocValues() {
+		return docValues;
+	}
+
+	/**
+	 * Set if this Word is also kept as a sorted doc value. A document may 
+	 * have only one such Word per name.
+	 * 
+	 * @param docValues
+	 *            If it needs to be kept as a doc value
+	 */
+	public void setDocValues(boolean docValues) {
+		this.docValues = docValues;
+	}
 	
 }
@@ -6,8 +6,10 @@ import java.util.List;
 
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.SortedDocValuesField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
+import org.apache.lucene.util.BytesRef;
 
 /**
  * The <code>WordCollection</code> is an entity that contains a list of
@@ -90,7 +92,7 @@ public class WordCollection {
 		Word w = null;
 		Iterator<Word> iter = wordList.iterator();
 		while (iter.hasNext()) {
-			w = (Word) iter.next();
+			w = iter.next();
 			String field = w.getName();
 			String value = w.getContent();
 			boolean persist = w.isPersistent();
@@ -100,6 +102,9 @@ public class WordCollection {
 			} else {
 				doc.add(new StringField(field, value, (persist ? Field.Store.YES : Field.Store.NO)));
 			}
+			if (w.isDocValues()) {
+				doc.add(new SortedDocValuesField(field, new BytesRef(value)));
+			}
 
 		}
 		return doc;
@@ -0,0 +1,16 @@
+package com.weiru.jaris.indexing;
+
+/**
+ * <code>WordFilter</code> decides if a WordCollection found by a search is
+ * returned. It lets a caller check what an index term can only 
+ * approximate, e.g. a pattern longer than the indexed prefixes.
+ */
+public interface WordFilter {
+
+	/**
+	 * Checks a WordCollection found by a search
+	 * @param words the stored Words of the document
+	 * @return boolean whether the WordCollection is returned
+	 */
+	public boolean accept(WordCollection words);
+}
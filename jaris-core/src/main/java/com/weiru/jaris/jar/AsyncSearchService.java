@@ -0,0 +1,173 @@
+/*
+ * Jaris - Jar Indexed Search
+ * Copyright (C) 2006 Wei Ru (wei.ru@logicinspiration.com)
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation (See 
+ * license.txt for details).
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.weiru.jaris.jar;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+import com.weiru.jaris.config.Config;
+import com.weiru.jaris.indexing.ResultPage;
+import com.weiru.jaris.indexing.SearchExecutor;
+
+/**
+ * <code>AsyncSearchService</code> is a front end for many concurrent 
+ * callers of the class and jar indexes. Every search is run by a 
+ * {@link SearchExecutor}, on a virtual thread where the JVM has them, and
+ * returns a Future at once. No more than the configured number of 
+ * searches run at a time.
+ */
+public class AsyncSearchService {
+
+	private static AsyncSearchService service;
+	private final ClassInfoIndex classIndex;
+	private final JarInfoIndex jarIndex;
+	private final SearchExecutor executor;
+
+	/**
+	 * Private constructor
+	 */
+	private AsyncSearchService() {
+		Config config = Config.instance();
+		classIndex = ClassInfoIndexService.getService();
+		jarIndex = JarInfoIndexService.getService();
+		executor = new SearchExecutor(config.getSearchMaxConcurrent(), config.getSearchVirtualThreads());
+	}
+
+	/**
+	 * Get the singleton AsyncSearchService
+	 * @return AsyncSearchService the singleton AsyncSearchService
+	 */
+	public static synchronized AsyncSearchService getService() {
+		if (service==null) {
+			service = new AsyncSearchService();
+		}
+		return service;
+	}
+
+	/**
+	 * Search for ClassInfo with a field matching the specified expression
+	 * @param field the field
+	 * @param term the specified expression
+	 * @return Future All matching ClassInfo
+	 * @see ClassInfoIndex#searchByTerm(ClassInfo.Field, String)
+	 */
+	public Future<ClassInfo[]> searchByTerm(final ClassInfo.Field field, final String term) {
+		return executor.submit(new Callable<ClassInfo[]>() {
+			public ClassInfo[] call() throws Exception {
+				return classIndex.searchByTerm(field, term);
+			}
+		});
+	}
+
+	/**
+	 * Search for one page of ClassInfo with a field matching the specified
+	 * expression
+	 * @param field the field
+	 * @param term the specified expression
+	 * @param limit the maximum number of ClassInfo of the page
+	 * @param cursor the cursor of the previous page, null for the first page
+	 * @return Future the page of matching ClassInfo
+	 * @see ClassInfoIndex#searchByTerm(ClassInfo.Field, String, int, String)
+	 */
+	public Future<ResultPage<ClassInfo>> searchByTerm(final ClassInfo.Field field, final String term, 
+			final int limit, final String cursor) {
+		return executor.submit(new Callable<ResultPage<ClassInfo>>() {
+			public ResultPage<ClassInfo> call() throws Exception {
+				return classIndex.searchByTerm(field, term, limit, cursor);
+			}
+		});
+	}
+
+	/**
+	 * Search for matching ClassInfo with the criteria specified within a sample ClassInfo
+	 * @param classInfo the sample ClassInfo
+	 * @return Future All matching ClassInfo
+	 * @see ClassInfoIndex#searchBySample(ClassInfo)
+	 */
+	public Future<ClassInfo[]> searchBySample(final ClassInfo classInfo) {
+		return executor.submit(new Callable<ClassInfo[]>() {
+			public ClassInfo[] call() throws Exception {
+				return classIndex.searchBySample(classInfo);
+			}
+		});
+	}
+
+	/**
+	 * Search for ClassInfo whose class short name starts with a prefix
+	 * @param prefix the prefix
+	 * @param limit the maximum number of results
+	 * @return Future the first matching ClassInfo
+	 * @see ClassInfoIndex#searchByPrefix(String, int)
+	 */
+	public Future<ClassInfo[]> searchByPrefix(final String prefix, final int limit) {
+		return executor.submit(new Callable<ClassInfo[]>() {
+			public ClassInfo[] call() throws Exception {
+				return classIndex.searchByPrefix(prefix, limit);
+			}
+		});
+	}
+
+	/**
+	 * Search for ClassInfo whose class short name matches a camel-case pattern
+	 * @param pattern the camel-case pattern
+	 * @param limit the maximum number of results
+	 * @return Future the first matching ClassInfo
+	 * @see ClassInfoIndex#searchByCamelCase(String, int)
+	 */
+	public Future<ClassInfo[]> searchByCamelCase(final String pattern, final int limit) {
+		return executor.submit(new Callable<ClassInfo[]>() {
+			public ClassInfo[] call() throws Exception {
+				return classIndex.searchByCamelCase(pattern, limit);
+			}
+		});
+	}
+
+	/**
+	 * Completes a prefix of a class short name
+	 * @param prefix the prefix
+	 * @param n the maximum number of names
+	 * @return Future the distinct class short names
+	 * @see ClassInfoIndex#suggest(String, int)
+	 */
+	public Future<String[]> suggest(final String prefix, final int n) {
+		return executor.submit(new Callable<String[]>() {
+			public String[] call() throws Exception {
+				return classIndex.suggest(prefix, n);
+			}
+		});
+	}
+
+	/**
+	 * Search for the jar name with an expression
+	 * @param term the string expression
+	 * @return Future All matching jar names
+	 * @see JarInfoIndex#search(String)
+	 */
+	public Future<String[]> searchJars(final String term) {
+		return executor.submit(new Callable<String[]>() {
+			public String[] call() throws Exception {
+				return jarIndex.search(term);
+			}
+		});
+	}
+
+	/**
+	 * Returns the SearchExecutor the searches run on
+	 * @return SearchExecutor the executor
+	 */
+	public SearchExecutor getExecutor() {
+		return executor;
+	}
+}
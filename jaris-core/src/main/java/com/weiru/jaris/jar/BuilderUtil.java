@@ -15,8 +15,14 @@
 package com.weiru.jaris.jar;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.logging.Logger;
 
 import org.apache.commons.configuration.Configuration;
 
@@ -29,6 +35,8 @@ import com.weiru.jaris.config.Config;
  */
 public class BuilderUtil {
 
+	private static Logger LOG = Logger.getLogger(BuilderUtil.class.getName());
+
 	/**
 	 * Builds Indexes recursivly for all the jars under a directory
 	 * @param directory the directory contains jar files
@@ -42,16 +50,67 @@ public class BuilderUtil {
 	 * @param directory the directory contains jar files
 	 */
 	public static void buildIndexUnderDir(File directory) {
+		buildIndexUnderDir(directory, Config.instance().getCrawlerThreads());
+	}
+	
+	/**
+	 * Builds Indexes recursivly for all the jars under a directory. With a
+	 * parallelism above one, directories are listed on a work-stealing pool
+	 * and the jars found are fed into an {@link IndexPipeline} with as many
+	 * parser workers, all writing into the same writer session.
+	 * @param directory the directory contains jar files
+	 * @param parallelism the number of crawler threads
+	 */
+	public static void buildIndexUnderDir(File directory, int parallelism) {
+		IndexBuilder builder = IndexBuilder.getInstance();
+		MavenLayout layout = MavenLayout.fromConfig();
+		builder.beginBatch();
+		try {
+			if (parallelism > 1) {
+				Config config = Config.instance();
+				IndexPipeline pipeline = new IndexPipeline(builder, parallelism, 
+						config.getPipelineWriters(), config.getPipelineQueueCapacity());
+				ForkJoinPool pool = new ForkJoinPool(parallelism);
+				try {
+					pool.invoke(new CrawlTask(pipeline, layout, directory));
+				} finally {
+					pool.shutdown();
+					try {
+						pipeline.close();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					LOG.info("buildIndexUnderDir " + directory + " : " + pipeline);
+				}
+			} else {
+				crawl(directory, layout);
+			}
+		} finally {
+			builder.endBatch();
+		}
+	}
+	
+	/**
+	 * Walks the directory recursivly, building Indexes for every jar found
+	 * @param directory the directory contains jar files
+	 * @param layout the repository layout, null if there is none
+	 */
+	private static void crawl(File directory, MavenLayout layout) {
 		
 		if (directory.isDirectory()) {
             String[] children = directory.list();
+            if (children == null) {
+            	return;
+            }
+            List<String> excluded = excludedVersions(directory, children, layout);
             for (int i=0; i<children.length; i++) {
-            	buildIndexUnderDir(new File(directory, children[i]));
+            	if (!excluded.contains(children[i])) {
+            		crawl(new File(directory, children[i]), layout);
+            	}
             }
         } else {
         	File file = directory;
-        	String name = file.getName();
-        	if (file.isFile() && rightFileTypeToProcess(name)) {
+        	if (file.isFile() && shouldIndex(file, layout)) {
         			IndexBuilder builder = IndexBuilder.getInstance();
             		builder.buildIndex(file);
         	}
@@ -60,23 +119,99 @@ public class BuilderUtil {
 	}
 	
 	/**
-	 * Check to see if the file type should be processed. 
-	 * This is configured in an external configuration file.
+	 * Check to see if a file should be processed: its type is one of those
+	 * configured, and it is not an artifact the repository layout skips
+	 * @param file the file
+	 * @param layout the repository layout, null if there is none
+	 * @return boolean whether it should be processed
+	 */
+	static boolean shouldIndex(File file, MavenLayout layout) {
+		return rightFileTypeToProcess(file.getName()) && (layout == null || layout.accept(file));
+	}
+	
+	/**
+	 * Returns the versions of an artifact directory the repository layout
+	 * does not index, removing the jars indexed for them before
+	 * @param directory the directory
+	 * @param children the names of its children
+	 * @param layout the repository layout, null if there is none
+	 * @return List the names of the children not to crawl
+	 */
+	private static List<String> excludedVersions(File directory, String[] children, MavenLayout layout) {
+		if (layout == null) {
+			return Collections.emptyList();
+		}
+		List<String> excluded = layout.getExcludedVersions(directory, children);
+		for (String version : excluded) {
+			IndexBuilder.getInstance().removeIndexUnder(new File(directory, version));
+		}
+		return excluded;
+	}
+	
+	/**
+	 * Check to see if the file type should be processed, that is if the
+	 * file name ends with one of the extensions configured in an external
+	 * configuration file.
 	 * @param filename the name of the file
 	 * @return boolean whether it should be processed
 	 */
-	private static boolean rightFileTypeToProcess(String filename) {
-		Configuration config = Config.getConfiguration();
-		List fileTypes = config.getList("file-type");
-		Iterator iter = fileTypes.iterator();
+	static boolean rightFileTypeToProcess(String filename) {
+		if (filename == null) {
+			return false;
+		}
+		Configuration config = Config.instance().getConfiguration();
+		List<?> fileTypes = config.getList("indexing.file-type");
+		Iterator<?> iter = fileTypes.iterator();
+		String name = filename.toLowerCase(Locale.ROOT);
 		String type = null;
 		while (iter.hasNext()) {
-			type = (String) iter.next();
-			if (filename!=null&&filename.indexOf(type)>1) {
+			type = ((String) iter.next()).trim().toLowerCase(Locale.ROOT);
+			if (!type.isEmpty() && name.endsWith("." + type)) {
 				return true;
 			}
 		}
 		return false;
 	}
 	
+	/**
+	 * Submits a single file to the pipeline or forks one task per child of 
+	 * a directory
+	 */
+	private static class CrawlTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 3385469130742717329L;
+		private final IndexPipeline pipeline;
+		private final MavenLayout layout;
+		private final File file;
+
+		CrawlTask(IndexPipeline pipeline, MavenLayout layout, File file) {
+			this.pipeline = pipeline;
+			this.layout = layout;
+			this.file = file;
+		}
+
+		@Override
+		protected void compute() {
+			if (file.isDirectory()) {
+				String[] children = file.list();
+				if (children == null) {
+					return;
+				}
+				List<String> excluded = excludedVersions(file, children, layout);
+				List<CrawlTask> tasks = new ArrayList<CrawlTask>(children.length);
+				for (String child : children) {
+					if (!excluded.contains(child)) {
+						tasks.add(new CrawlTask(pipeline, layout, new File(file, child)));
+					}
+				}
+				invokeAll(tasks);
+			} else if (file.isFile() && shouldIndex(file, layout)) {
+				try {
+					pipeline.submit(file);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+	}
 }
@@ -0,0 +1,414 @@
+/*
+ * Jaris - Jar Indexed Search
+ * Copyright (C) 2006 Wei Ru (wei.ru@logicinspiration.com)
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation (See 
+ * license.txt for details).
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.weiru.jaris.jar;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * The <code>CentralDirectoryReader</code> reads the entry names of a jar or
+ * zip file straight from its memory-mapped central directory. Unlike
+ * <code>java.util.zip.ZipFile</code> it creates no <code>ZipEntry</code>,
+ * and it only decodes the names that end with one of the requested suffixes.
+ * Zip64 archives are supported.
+ * <p>
+ * A reader covers a region of a file channel, so an archive stored 
+ * uncompressed inside another one is read in place with 
+ * {@link #openNested(Entry)}; a compressed one is streamed with 
+ * {@link #openStream(Entry)}.
+ */
+final class CentralDirectoryReader implements Closeable {
+
+	/** The compression method of an entry stored uncompressed */
+	static final int STORED = 0;
+	/** The compression method of a deflated entry */
+	static final int DEFLATED = 8;
+
+	private static final int EOCD_SIG = 0x06054b50;
+	private static final int EOCD_SIZE = 22;
+	private static final int ZIP64_LOCATOR_SIG = 0x07064b50;
+	private static final int ZIP64_LOCATOR_SIZE = 20;
+	private static final int ZIP64_EOCD_SIG = 0x06064b50;
+	private static final int ZIP64_EOCD_SIZE = 56;
+	private static final int ZIP64_EXTRA_ID = 0x0001;
+	private static final int CEN_SIG = 0x02014b50;
+	private static final int CEN_SIZE = 46;
+	private static final int LOC_SIG = 0x04034b50;
+	private static final int LOC_SIZE = 30;
+	private static final int MAX_COMMENT = 0xFFFF;
+	private static final long MAX_MAPPED = Integer.MAX_VALUE;
+
+	private final FileChannel channel;
+	private final long base;
+	private final long length;
+	private long cenOffset;
+	private long cenSize;
+	private long shift;
+	private MappedByteBuffer mapped;
+	private Inflater idleInflater;
+
+	/**
+	 * Creates a reader over a region of a file channel holding an archive
+	 * @param channel the file channel
+	 * @param base the offset of the archive in the channel
+	 * @param length the length of the archive
+	 * @throws IOException if the region is not a zip archive
+	 */
+	CentralDirectoryReader(FileChannel channel, long base, long length) throws IOException {
+		this.channel = channel;
+		this.base = base;
+		this.length = length;
+		locateCentralDirectory();
+	}
+
+	/**
+	 * Walks the central directory once, collecting the names ending with
+	 * one of the name suffixes and the entries ending with one of the 
+	 * entry suffixes
+	 * @param nameSuffixes the suffixes of the names to decode, none if empty
+	 * @param names receives the matching names
+	 * @param entrySuffixes the suffixes of the entries to collect, none if empty
+	 * @param entries receives the matching entries
+	 * @throws IOException if the central directory is malformed
+	 */
+	void read(String[] nameSuffixes, List<String> names, 
+			String[] entrySuffixes, List<Entry> entries) throws IOException {
+		if (cenSize > MAX_MAPPED) {
+			throw new ZipException("central directory too large");
+		}
+		byte[][] nameBytes = toBytes(nameSuffixes);
+		byte[][] entryBytes = toBytes(entrySuffixes);
+		ByteBuffer buf = map(cenOffset + shift, cenSize);
+		byte[] name = new byte[256];
+		int pos = 0;
+		int limit = buf.limit();
+		while (pos + CEN_SIZE <= limit) {
+			if (buf.getInt(pos) != CEN_SIG) {
+				throw new ZipException("invalid central directory header at " + pos);
+			}
+			int nameLen = buf.getShort(pos + 28) & 0xFFFF;
+			int extraLen = buf.getShort(pos + 30) & 0xFFFF;
+			int commentLen = buf.getShort(pos + 32) & 0xFFFF;
+			int nameStart = pos + CEN_SIZE;
+			if (nameStart + nameLen + extraLen > limit) {
+				throw new ZipException("truncated central directory header at " + pos);
+			}
+			boolean isName = endsWithAny(buf, nameStart, nameLen, nameBytes);
+			boolean isEntry = endsWithAny(buf, nameStart, nameLen, entryBytes);
+			if (isName || isEntry) {
+				if (name.length < nameLen) {
+					name = new byte[nameLen];
+				}
+				buf.position(nameStart);
+				buf.get(name, 0, nameLen);
+				String decoded = new String(name, 0, nameLen, StandardCharsets.UTF_8);
+				if (isName) {
+					names.add(decoded);
+				}
+				if (isEntry) {
+					entries.add(toEntry(buf, pos, decoded, nameStart + nameLen, extraLen));
+				}
+			}
+			pos = nameStart + nameLen + extraLen + commentLen;
+		}
+	}
+
+	/**
+	 * Opens an archive stored uncompressed in this one, in place
+	 * @param entry the entry holding the archive
+	 * @return CentralDirectoryReader the reader of the nested archive
+	 * @throws IOException if the entry is compressed or not a zip archive
+	 */
+	CentralDirectoryReader openNested(Entry entry) throws IOException {
+		if (entry.method != STORED) {
+			throw new ZipException("not stored: " + entry.name);
+		}
+		return new CentralDirectoryReader(channel, base + dataOffset(entry), entry.compressedSize);
+	}
+
+	/**
+	 * Opens the uncompressed content of an entry as a stream over the
+	 * mapped file
+	 * @param entry the entry
+	 * @return InputStream the content
+	 * @throws IOException if the compression method is not supported
+	 */
+	InputStream openStream(Entry entry) throws IOException {
+		if (entry.compressedSize > MAX_MAPPED) {
+			throw new ZipException("entry too large: " + entry.name);
+		}
+		InputStream in = new ByteBufferInputStream(map(dataOffset(entry), entry.compressedSize));
+		if (entry.method == STORED) {
+			return in;
+		} else if (entry.method == DEFLATED) {
+			// a raw inflater may need one byte past the data, as ZipFile supplies
+			in = new SequenceInputStream(in, new ByteArrayInputStream(new byte[1]));
+			final Inflater inflater = takeInflater();
+			return new InflaterInputStream(in, inflater, 1024) {
+				public void close() throws IOException {
+					super.close();
+					releaseInflater(inflater);
+				}
+			};
+		}
+		throw new ZipException("unsupported compression method " + entry.method + ": " + entry.name);
+	}
+
+	/**
+	 * Finds the central directory from the end of central directory record,
+	 * following the Zip64 locator when there is one
+	 */
+	private void locateCentralDirectory() throws IOException {
+		if (length < EOCD_SIZE) {
+			throw new ZipException("not a zip file");
+		}
+		long tailStart = Math.max(0, length - EOCD_SIZE - MAX_COMMENT - ZIP64_LOCATOR_SIZE);
+		ByteBuffer tail = map(tailStart, length - tailStart);
+
+		int eocd = -1;
+		for (int pos = tail.limit() - EOCD_SIZE; pos >= 0; pos--) {
+			if (tail.getInt(pos) == EOCD_SIG
+					&& pos + EOCD_SIZE + (tail.getShort(pos + 20) & 0xFFFF) == tail.limit()) {
+				eocd = pos;
+				break;
+			}
+		}
+		if (eocd < 0) {
+			throw new ZipException("end of central directory not found");
+		}
+		cenSize = tail.getInt(eocd + 12) & 0xFFFFFFFFL;
+		cenOffset = tail.getInt(eocd + 16) & 0xFFFFFFFFL;
+		long cenEnd = tailStart + eocd;
+
+		int locator = eocd - ZIP64_LOCATOR_SIZE;
+		if (locator >= 0 && tail.getInt(locator) == ZIP64_LOCATOR_SIG) {
+			long zip64Eocd = tail.getLong(locator + 8);
+			ByteBuffer rec = mapZip64Record(zip64Eocd);
+			if (rec == null) {
+				// the record usually sits right before the locator
+				zip64Eocd = tailStart + locator - ZIP64_EOCD_SIZE;
+				rec = mapZip64Record(zip64Eocd);
+			}
+			if (rec == null) {
+				throw new ZipException("zip64 end of central directory not found");
+			}
+			cenSize = rec.getLong(40);
+			cenOffset = rec.getLong(48);
+			cenEnd = zip64Eocd;
+		}
+		// data prepended to the archive shifts every recorded offset
+		if (cenOffset + cenSize != cenEnd && cenEnd - cenSize >= 0) {
+			shift = cenEnd - cenSize - cenOffset;
+		}
+	}
+
+	private ByteBuffer mapZip64Record(long offset) throws IOException {
+		if (offset < 0 || offset + ZIP64_EOCD_SIZE > length) {
+			return null;
+		}
+		ByteBuffer rec = map(offset, ZIP64_EOCD_SIZE);
+		return rec.getInt(0) == ZIP64_EOCD_SIG ? rec : null;
+	}
+
+	/**
+	 * Reads an entry from its central directory header, taking sizes and
+	 * offsets from the Zip64 extra field when they overflow
+	 */
+	private Entry toEntry(ByteBuffer buf, int header, String name, int extraStart, int extraLen) {
+		int method = buf.getShort(header + 10) & 0xFFFF;
+		long compressedSize = buf.getInt(header + 20) & 0xFFFFFFFFL;
+		long size = buf.getInt(header + 24) & 0xFFFFFFFFL;
+		long localOffset = buf.getInt(header + 42) & 0xFFFFFFFFL;
+		int pos = extraStart;
+		int extraEnd = extraStart + extraLen;
+		while (pos + 4 <= extraEnd) {
+			int id = buf.getShort(pos) & 0xFFFF;
+			int len = buf.getShort(pos + 2) & 0xFFFF;
+			if (id == ZIP64_EXTRA_ID) {
+				int p = pos + 4;
+				if (size == 0xFFFFFFFFL && p + 8 <= extraEnd) {
+					p += 8;
+				}
+				if (compressedSize == 0xFFFFFFFFL && p + 8 <= extraEnd) {
+					compressedSize = buf.getLong(p);
+					p += 8;
+				}
+				if (localOffset == 0xFFFFFFFFL && p + 8 <= extraEnd) {
+					localOffset = buf.getLong(p);
+				}
+				break;
+			}
+			pos += 4 + len;
+		}
+		return new Entry(name, method, compressedSize, localOffset);
+	}
+
+	/**
+	 * Returns the offset of the entry data, past its local header
+	 */
+	private long dataOffset(Entry entry) throws IOException {
+		long local = entry.localHeaderOffset + shift;
+		ByteBuffer loc = map(local, LOC_SIZE);
+		if (loc.getInt(0) != LOC_SIG) {
+			throw new ZipException("invalid local header: " + entry.name);
+		}
+		long data = local + LOC_SIZE + (loc.getShort(26) & 0xFFFF) + (loc.getShort(28) & 0xFFFF);
+		if (data + entry.compressedSize > length) {
+			throw new ZipException("truncated entry: " + entry.name);
+		}
+		return data;
+	}
+
+	/**
+	 * Releases the inflater kept for reuse
+	 */
+	public void close() {
+		if (idleInflater != null) {
+			idleInflater.end();
+			idleInflater = null;
+		}
+	}
+
+	private Inflater takeInflater() {
+		Inflater inflater = idleInflater;
+		idleInflater = null;
+		return inflater != null ? inflater : new Inflater(true);
+	}
+
+	private void releaseInflater(Inflater inflater) {
+		if (idleInflater == null) {
+			inflater.reset();
+			idleInflater = inflater;
+		} else {
+			inflater.end();
+		}
+	}
+
+	/**
+	 * Returns a region of the archive. An archive that fits one mapping is
+	 * mapped once and sliced, so reading entries costs no further mappings.
+	 */
+	private ByteBuffer map(long offset, long size) throws IOException {
+		if (offset < 0 || offset + size > length) {
+			throw new ZipException("region outside of the archive");
+		}
+		ByteBuffer buf;
+		if (length <= MAX_MAPPED) {
+			if (mapped == null) {
+				mapped = channel.map(FileChannel.MapMode.READ_ONLY, base, length);
+			}
+			buf = mapped.duplicate();
+			buf.limit((int) (offset + size));
+			buf.position((int) offset);
+			buf = buf.slice();
+		} else {
+			buf = channel.map(FileChannel.MapMode.READ_ONLY, base + offset, size);
+		}
+		buf.order(ByteOrder.LITTLE_ENDIAN);
+		return buf;
+	}
+
+	private static byte[][] toBytes(String[] suffixes) {
+		byte[][] bytes = new byte[suffixes.length][];
+		for (int i = 0; i < suffixes.length; i++) {
+			bytes[i] = suffixes[i].getBytes(StandardCharsets.UTF_8);
+		}
+		return bytes;
+	}
+
+	private static boolean endsWithAny(ByteBuffer buf, int start, int len, byte[][] suffixes) {
+		for (byte[] suffix : suffixes) {
+			if (endsWith(buf, start, len, suffix)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean endsWith(ByteBuffer buf, int start, int len, byte[] suffix) {
+		if (len < suffix.length) {
+			return false;
+		}
+		int from = start + len - suffix.length;
+		for (int i = 0; i < suffix.length; i++) {
+			if (buf.get(from + i) != suffix[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * An entry of the central directory, with what is needed to find its data
+	 */
+	static final class Entry {
+
+		final String name;
+		final int method;
+		final long compressedSize;
+		final long localHeaderOffset;
+
+		Entry(String name, int method, long compressedSize, long localHeaderOffset) {
+			this.name = name;
+			this.method = method;
+			this.compressedSize = compressedSize;
+			this.localHeaderOffset = localHeaderOffset;
+		}
+	}
+
+	/**
+	 * Streams the remaining bytes of a buffer
+	 */
+	private static final class ByteBufferInputStream extends InputStream {
+
+		private final ByteBuffer buf;
+
+		ByteBufferInputStream(ByteBuffer buf) {
+			this.buf = buf;
+		}
+
+		public int read() {
+			return buf.hasRemaining() ? buf.get() & 0xFF : -1;
+		}
+
+		public int read(byte[] b, int off, int len) {
+			if (len == 0) {
+				return 0;
+			}
+			if (!buf.hasRemaining()) {
+				return -1;
+			}
+			int n = Math.min(len, buf.remaining());
+			buf.get(b, off, n);
+			return n;
+		}
+
+		public int available() {
+			return buf.remaining();
+		}
+	}
+}
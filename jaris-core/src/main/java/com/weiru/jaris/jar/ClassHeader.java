@@ -0,0 +1,221 @@
+/*
+ * Jaris - Jar Indexed Search
+ * Copyright (C) 2006 Wei Ru (wei.ru@logicinspiration.com)
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation (See 
+ * license.txt for details).
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.weiru.jaris.jar;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The <code>ClassHeader</code> holds the access flags, super class and 
+ * interfaces of a class file. {@link #parse(InputStream)} walks the 
+ * constant pool without decoding it, and stops right after the interfaces
+ * table, so fields, methods and attributes are never read.
+ */
+public final class ClassHeader {
+
+	public static final int ACC_PUBLIC = 0x0001;
+	public static final int ACC_FINAL = 0x0010;
+	public static final int ACC_INTERFACE = 0x0200;
+	public static final int ACC_ABSTRACT = 0x0400;
+	public static final int ACC_ANNOTATION = 0x2000;
+	public static final int ACC_ENUM = 0x4000;
+
+	private static final int MAGIC = 0xCAFEBABE;
+	private static final int CONSTANT_UTF8 = 1;
+	private static final int CONSTANT_INTEGER = 3;
+	private static final int CONSTANT_FLOAT = 4;
+	private static final int CONSTANT_LONG = 5;
+	private static final int CONSTANT_DOUBLE = 6;
+	private static final int CONSTANT_CLASS = 7;
+	private static final int CONSTANT_STRING = 8;
+	private static final int CONSTANT_FIELDREF = 9;
+	private static final int CONSTANT_METHODREF = 10;
+	private static final int CONSTANT_INTERFACE_METHODREF = 11;
+	private static final int CONSTANT_NAME_AND_TYPE = 12;
+	private static final int CONSTANT_METHOD_HANDLE = 15;
+	private static final int CONSTANT_METHOD_TYPE = 16;
+	private static final int CONSTANT_DYNAMIC = 17;
+	private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+	private static final int CONSTANT_MODULE = 19;
+	private static final int CONSTANT_PACKAGE = 20;
+
+	private final int accessFlags;
+	private final String className;
+	private final String superClassName;
+	private final String[] interfaceNames;
+
+	private ClassHeader(int accessFlags, String className, String superClassName, String[] interfaceNames) {
+		this.accessFlags = accessFlags;
+		this.className = className;
+		this.superClassName = superClassName;
+		this.interfaceNames = interfaceNames;
+	}
+
+	/**
+	 * Reads the header of a class file. The stream is left positioned after
+	 * the interfaces table and is not closed.
+	 * @param in the class file content
+	 * @return ClassHeader the header
+	 * @throws IOException if the content is not a class file
+	 */
+	public static ClassHeader parse(InputStream in) throws IOException {
+		DataInputStream data = new DataInputStream(new BufferedInputStream(in, 512));
+		if (data.readInt() != MAGIC) {
+			throw new IOException("not a class file");
+		}
+		data.readUnsignedShort(); // minor version
+		data.readUnsignedShort(); // major version
+
+		int count = data.readUnsignedShort();
+		byte[][] utf8 = new byte[count][];
+		int[] classNames = new int[count];
+		for (int i = 1; i < count; i++) {
+			int tag = data.readUnsignedByte();
+			switch (tag) {
+			case CONSTANT_UTF8:
+				utf8[i] = new byte[data.readUnsignedShort()];
+				data.readFully(utf8[i]);
+				break;
+			case CONSTANT_CLASS:
+				classNames[i] = data.readUnsignedShort();
+				break;
+			case CONSTANT_STRING:
+			case CONSTANT_METHOD_TYPE:
+			case CONSTANT_MODULE:
+			case CONSTANT_PACKAGE:
+				skip(data, 2);
+				break;
+			case CONSTANT_METHOD_HANDLE:
+				skip(data, 3);
+				break;
+			case CONSTANT_INTEGER:
+			case CONSTANT_FLOAT:
+			case CONSTANT_FIELDREF:
+			case CONSTANT_METHODREF:
+			case CONSTANT_INTERFACE_METHODREF:
+			case CONSTANT_NAME_AND_TYPE:
+			case CONSTANT_DYNAMIC:
+			case CONSTANT_INVOKE_DYNAMIC:
+				skip(data, 4);
+				break;
+			case CONSTANT_LONG:
+			case CONSTANT_DOUBLE:
+				skip(data, 8);
+				i++; // takes two entries
+				break;
+			default:
+				throw new IOException("unknown constant pool tag " + tag + " at " + i);
+			}
+		}
+
+		int accessFlags = data.readUnsignedShort();
+		String className = className(data.readUnsignedShort(), classNames, utf8);
+		String superClassName = className(data.readUnsignedShort(), classNames, utf8);
+		String[] interfaceNames = new String[data.readUnsignedShort()];
+		for (int i = 0; i < interfaceNames.length; i++) {
+			interfaceNames[i] = className(data.readUnsignedShort(), classNames, utf8);
+		}
+		return new ClassHeader(accessFlags, className, superClassName, interfaceNames);
+	}
+
+	/**
+	 * Resolves a class constant to a binary class name, null for index 0
+	 */
+	private static String className(int index, int[] classNames, byte[][] utf8) throws IOException {
+		if (index == 0) {
+			return null;
+		}
+		if (index >= classNames.length || classNames[index] == 0 
+				|| classNames[index] >= utf8.length || utf8[classNames[index]] == null) {
+			throw new IOException("invalid class constant " + index);
+		}
+		return decode(utf8[classNames[index]]).replace('/', '.');
+	}
+
+	/**
+	 * Decodes the modified UTF-8 of a constant, directly when it is ASCII
+	 */
+	private static String decode(byte[] bytes) throws IOException {
+		for (byte b : bytes) {
+			if (b <= 0) {
+				byte[] prefixed = new byte[bytes.length + 2];
+				prefixed[0] = (byte) (bytes.length >>> 8);
+				prefixed[1] = (byte) bytes.length;
+				System.arraycopy(bytes, 0, prefixed, 2, bytes.length);
+				return new DataInputStream(new ByteArrayInputStream(prefixed)).readUTF();
+			}
+		}
+		return new String(bytes, StandardCharsets.US_ASCII);
+	}
+
+	private static void skip(DataInputStream data, int n) throws IOException {
+		if (data.skipBytes(n) != n) {
+			throw new IOException("truncated class file");
+		}
+	}
+
+	/**
+	 * Gets the access flags
+	 * @return int the access flags
+	 */
+	public int getAccessFlags() {
+		return accessFlags;
+	}
+
+	/**
+	 * Gets the binary name of the class
+	 * @return String the class name
+	 */
+	public String getClassName() {
+		return className;
+	}
+
+	/**
+	 * Gets the binary name of the super class
+	 * @return String the super class name, null for java.lang.Object and modules
+	 */
+	public String getSuperClassName() {
+		return superClassName;
+	}
+
+	/**
+	 * Gets the binary names of the directly implemented interfaces
+	 * @return String[] the interface names
+	 */
+	public String[] getInterfaceNames() {
+		return interfaceNames;
+	}
+
+	/**
+	 * Returns the String representation of this object
+	 */
+	public String toString() {
+		StringBuffer sb = new StringBuffer();
+		sb.append(Integer.toHexString(accessFlags));
+		sb.append("  ");
+		sb.append(className);
+		sb.append(" extends ");
+		sb.append(superClassName);
+		sb.append(" implements ");
+		for (int i = 0; i < interfaceNames.length; i++) {
+			sb.append(i == 0 ? "" : ", ").append(interfaceNames[i]);
+		}
+		return sb.toString();
+	}
+}
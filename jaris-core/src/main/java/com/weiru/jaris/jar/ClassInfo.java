@@ -24,10 +24,26 @@ import java.io.Serializable;
 public class ClassInfo implements Serializable {
 
 	private static final long serialVersionUID = 5667694012142253654L;
+	/**
+	 * The jar name of a ClassInfo whose containing jar is not known
+	 */
+	public static final String UNKNOWN_JAR = "unknown";
+	/**
+	 * The access flags of a ClassInfo whose class header was not read
+	 */
+	public static final int UNKNOWN_ACCESS_FLAGS = -1;
 	private String classFullName;
-	private String jarName = "unknown";
+	private String jarName = UNKNOWN_JAR;
+	private String jarPath;
+	private String fingerprint;
+	private String groupId;
+	private String artifactId;
+	private String version;
 	private String packageName;
 	private String classShortName;
+	private int accessFlags = UNKNOWN_ACCESS_FLAGS;
+	private String superClassName;
+	private String[] interfaceNames = new String[0];
 	private int internalId;
 	
 	/**
@@ -37,6 +53,14 @@ public class ClassInfo implements Serializable {
 	 * <code>Field.JAR_NAME</code>  
 	 * <code>Field.PACKAGE_NAME</code>  
 	 * <code>Field.CLASS_NAME</code>  
+	 * <code>Field.JAR_PATH</code>  
+	 * <code>Field.FINGERPRINT</code>  
+	 * <code>Field.GROUP_ID</code>  
+	 * <code>Field.ARTIFACT_ID</code>  
+	 * <code>Field.VERSION</code>  
+	 * <code>Field.ACCESS_FLAGS</code>  
+	 * <code>Field.SUPER_CLASS</code>  
+	 * <code>Field.INTERFACES</code>  
 	 */
 	public static final class Field implements Serializable {
 
@@ -62,6 +86,22 @@ public class ClassInfo implements Serializable {
 
 	    public static final Field CLASS_NAME = new Field("cn");
 
+	    public static final Field JAR_PATH = new Field("jp");
+
+	    public static final Field FINGERPRINT = new Field("jh");
+
+	    public static final Field GROUP_ID = new Field("gg");
+
+	    public static final Field ARTIFACT_ID = new Field("ga");
+
+	    public static final Field VERSION = new Field("gv");
+
+	    public static final Field ACCESS_FLAGS = new Field("af");
+
+	    public static final Field SUPER_CLASS = new Field("sc");
+
+	    public static final Field INTERFACES = new Field("ic");
+
 	}
 
 	/**
@@ -76,7 +116,7 @@ public class ClassInfo implements Serializable {
 	 * @param classFullName the fully qualified class name
 	 */
 	public ClassInfo(String classFullName) {
-		this(classFullName, "unknown");
+		this(classFullName, UNKNOWN_JAR);
 	}
 	
 	/**
@@ -92,6 +132,27 @@ public class ClassInfo implements Serializable {
 		validate();
 	}
 
+	/**
+	 * Creates a copy of a ClassInfo
+	 * @param other the ClassInfo copied
+	 */
+	public ClassInfo(ClassInfo other) {
+		super();
+		this.classFullName = other.classFullName;
+		this.jarName = other.jarName;
+		this.jarPath = other.jarPath;
+		this.fingerprint = other.fingerprint;
+		this.groupId = other.groupId;
+		this.artifactId = other.artifactId;
+		this.version = other.version;
+		this.packageName = other.packageName;
+		this.classShortName = other.classShortName;
+		this.accessFlags = other.accessFlags;
+		this.superClassName = other.superClassName;
+		this.interfaceNames = other.interfaceNames == null ? null : other.interfaceNames.clone();
+		this.internalId = other.internalId;
+	}
+
 	/**
 	 * Gets the jar file name
 	 * @return String the jar file name 
@@ -108,6 +169,87 @@ public class ClassInfo implements Serializable {
 		this.jarName = jarName;
 	}
 
+	/**
+	 * Gets the path of the containing jar file
+	 * @return String the jar file path, null if not known
+	 */
+	public String getJarPath() {
+		return jarPath;
+	}
+
+	/**
+	 * Sets the path of the containing jar file
+	 * @param jarPath the jar file path
+	 */
+	public void setJarPath(String jarPath) {
+		this.jarPath = jarPath;
+	}
+
+	/**
+	 * Gets the content fingerprint of the containing jar file. Every copy
+	 * of the jar registered with it can be looked up in the JarInfoIndex.
+	 * @return String the fingerprint, null if not known
+	 */
+	public String getFingerprint() {
+		return fingerprint;
+	}
+
+	/**
+	 * Sets the content fingerprint of the containing jar file
+	 * @param fingerprint the fingerprint
+	 */
+	public void setFingerprint(String fingerprint) {
+		this.fingerprint = fingerprint;
+	}
+
+	/**
+	 * Gets the Maven groupId of the containing jar file
+	 * @return String the groupId, null if the jar is not in a Maven repository
+	 */
+	public String getGroupId() {
+		return groupId;
+	}
+
+	/**
+	 * Sets the Maven groupId of the containing jar file
+	 * @param groupId the groupId
+	 */
+	public void setGroupId(String groupId) {
+		this.groupId = groupId;
+	}
+
+	/**
+	 * Gets the Maven artifactId of the containing jar file
+	 * @return String the artifactId, null if the jar is not in a Maven repository
+	 */
+	public String getArtifactId() {
+		return artifactId;
+	}
+
+	/**
+	 * Sets the Maven artifactId of the containing jar file
+	 * @param artifactId the artifactId
+	 */
+	public void setArtifactId(String artifactId) {
+		this.artifactId = artifactId;
+	}
+
+	/**
+	 * Gets the Maven version of the containing jar file
+	 * @return String the version, null if the jar is not in a Maven repository
+	 */
+	public String getVersion() {
+		return version;
+	}
+
+	/**
+	 * Sets the Maven version of the containing jar file
+	 * @param version the version
+	 */
+	public void setVersion(String version) {
+		this.version = version;
+	}
+
 	/**
 	 * Returns the fully qualified class name
 	 * @return String the fully qualified class name
@@ -156,6 +298,54 @@ public class ClassInfo implements Serializable {
 		return packageName;
 	}
 
+	/**
+	 * Gets the access flags of the class file
+	 * @return int the access flags, UNKNOWN_ACCESS_FLAGS if not known
+	 */
+	public int getAccessFlags() {
+		return accessFlags;
+	}
+
+	/**
+	 * Sets the access flags of the class file
+	 * @param accessFlags the access flags
+	 */
+	public void setAccessFlags(int accessFlags) {
+		this.accessFlags = accessFlags;
+	}
+
+	/**
+	 * Gets the fully qualified name of the super class
+	 * @return String the super class name, null if not known or none
+	 */
+	public String getSuperClassName() {
+		return superClassName;
+	}
+
+	/**
+	 * Sets the fully qualified name of the super class
+	 * @param superClassName the super class name
+	 */
+	public void setSuperClassName(String superClassName) {
+		this.superClassName = superClassName;
+	}
+
+	/**
+	 * Gets the fully qualified names of the directly implemented interfaces
+	 * @return String[] the interface names
+	 */
+	public String[] getInterfaceNames() {
+		return interfaceNames;
+	}
+
+	/**
+	 * Sets the fully qualified names of the directly implemented interfaces
+	 * @param interfaceNames the interface names, null for none
+	 */
+	public void setInterfaceNames(String[] interfaceNames) {
+		this.interfaceNames = interfaceNames == null ? new String[0] : interfaceNames;
+	}
+
 	/**
 	 * Gets the internal id
 	 * @return int the internal id
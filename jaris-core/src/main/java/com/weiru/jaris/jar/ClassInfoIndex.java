@@ -14,7 +14,12 @@
  */
 package com.weiru.jaris.jar;
 
+import java.util.Collection;
+
+import com.google.common.cache.CacheStats;
+
 import com.weiru.jaris.indexing.IndexException;
+import com.weiru.jaris.indexing.ResultPage;
 
 /**
  * <code>ClassInfoIndex</code> interface defines API methods for ClassInfoIndex service.
@@ -28,6 +33,42 @@ public interface ClassInfoIndex {
 	 */
     public void add(ClassInfo info) throws IndexException;
 
+	/**
+	 * Add a batch of ClassInfo objects to the Indexer
+	 * @param infos the ClassInfo objects
+	 * @throws IndexException
+	 */
+    public void addAll(Collection<ClassInfo> infos) throws IndexException;
+
+    /**
+     * Replaces all ClassInfo whose field equals the value exactly with
+     * others, as one unit that searches never see half done
+     * @param field the field identifying the ClassInfo, e.g. the fingerprint of their jar
+     * @param value the exact value of that field
+     * @param infos the ClassInfo, all with that value
+     * @throws IndexException
+     */
+    public void replace(ClassInfo.Field field, String value, Collection<ClassInfo> infos) throws IndexException;
+
+    /**
+     * Begins a batch. The underlying writer stays open until the batch
+     * ends and is committed by the configured thresholds.
+     * @throws IndexException
+     */
+    public void beginBatch() throws IndexException;
+
+    /**
+     * Commits the ClassInfo added so far in the current batch
+     * @throws IndexException
+     */
+    public void commit() throws IndexException;
+
+    /**
+     * Ends a batch, committing all pending ClassInfo
+     * @throws IndexException
+     */
+    public void endBatch() throws IndexException;
+
     /**
      * Get the count of total ClassInfo indexed
      * @return int the count
@@ -37,16 +78,124 @@ public interface ClassInfoIndex {
     
     /**
      * Search for matching ClassInfo with the criteria specified within a sample ClassInfo.
+     * The criteria are its jar name, package name and class short name; its
+     * other fields are ignored, so a ClassInfo found by a search may be 
+     * passed back as a sample. The jar name is matched literally but for
+     * the wildcards * and ?.
      * @param classInfo the sample ClassInfo
      * @return ClassInfo[] All matching ClassInfo[] 
      * @throws IndexException
      */
     public ClassInfo[] searchBySample(ClassInfo classInfo) throws IndexException;
 
+    /**
+     * Search for matching ClassInfo with the criteria specified within a 
+     * sample ClassInfo. Only the jar name, package name and class short 
+     * name are set, which are decoded without loading the stored documents.
+     * @param classInfo the sample ClassInfo
+     * @return ClassInfo[] All matching ClassInfo in index order
+     * @throws IndexException
+     */
+    public ClassInfo[] searchNamesBySample(ClassInfo classInfo) throws IndexException;
+
+    /**
+     * Search for one page of matching ClassInfo with the criteria specified
+     * within a sample ClassInfo. Only the ClassInfo of the page are 
+     * materialized.
+     * @param classInfo the sample ClassInfo
+     * @param limit the maximum number of ClassInfo of the page
+     * @param cursor the cursor of the previous page, null for the first page
+     * @return ResultPage the page of matching ClassInfo
+     * @throws IndexException
+     * @throws IllegalArgumentException if the cursor is malformed, or has 
+     * expired after the cursor age
+     */
+    public ResultPage<ClassInfo> searchBySample(ClassInfo classInfo, int limit, String cursor) 
+    		throws IndexException;
+
+    /**
+     * Search for ClassInfo whose class short name starts with a prefix, 
+     * ignoring case, e.g. <code>Conc</code> finds 
+     * <code>ConcurrentHashMap</code>
+     * @param prefix the prefix
+     * @param limit the maximum number of results
+     * @return ClassInfo[] the first matching ClassInfo in index order
+     * @throws IndexException
+     */
+    public ClassInfo[] searchByPrefix(String prefix, int limit) throws IndexException;
+
+    /**
+     * Search for ClassInfo whose class short name matches a camel-case 
+     * pattern: each hump of the pattern starts the corresponding hump of
+     * the name, ignoring case, e.g. <code>HaMa</code> or <code>HM</code>
+     * finds <code>HashMap</code>
+     * @param pattern the camel-case pattern
+     * @param limit the maximum number of results
+     * @return ClassInfo[] the first matching ClassInfo in index order
+     * @throws IndexException
+     */
+    public ClassInfo[] searchByCamelCase(String pattern, int limit) throws IndexException;
+
+    /**
+     * Returns the hit, miss and eviction counts of the cached results of 
+     * term and sample searches
+     * @return CacheStats the statistics
+     */
+    public CacheStats getCacheStats();
+
+    /**
+     * Completes a prefix of a class short name, ignoring case. Names found
+     * in more jars come first.
+     * @param prefix the prefix
+     * @param n the maximum number of names
+     * @return String[] the distinct class short names
+     * @throws IndexException
+     */
+    public String[] suggest(String prefix, int n) throws IndexException;
+
+    /**
+     * Search for ClassInfo with a field matching the specified expression.
+     * Only the jar name, package name and class short name are set, which
+     * are decoded without loading the stored documents.
+     * @param field the field
+     * @param term the specified expression; jar names and paths are 
+     * matched literally but for the wildcards * and ?
+     * @return ClassInfo[] All matching ClassInfo in index order
+     * @throws IndexException
+     */
+    public ClassInfo[] searchNamesByTerm(ClassInfo.Field field, String term) throws IndexException;
+
+    /**
+     * Search for one page of ClassInfo with a field matching the specified
+     * expression. Only the ClassInfo of the page are materialized.
+     * @param field the field
+     * @param term the specified expression; jar names and paths are 
+     * matched literally but for the wildcards * and ?
+     * @param limit the maximum number of ClassInfo of the page
+     * @param cursor the cursor of the previous page, null for the first page
+     * @return ResultPage the page of matching ClassInfo
+     * @throws IndexException
+     * @throws IllegalArgumentException if the cursor is malformed, or has 
+     * expired after the cursor age
+     */
+    public ResultPage<ClassInfo> searchByTerm(ClassInfo.Field field, String term, int limit, String cursor) 
+    		throws IndexException;
+
+    /**
+     * Search for all ClassInfo whose field equals a value exactly, without
+     * caching the results
+     * @param field the field
+     * @param value the exact value
+     * @return ClassInfo[] All matching ClassInfo in index order
+     * @throws IndexException
+     */
+    public ClassInfo[] searchByExactTerm(ClassInfo.Field field, String value) throws IndexException;
+
     /**
      * Search for ClassInfo with a field matching the specified expression
      * @param field the field
-     * @param term the specified expression
+     * @param term the specified expression; jar names and paths are 
+     * matched literally but for the wildcards * and ?
      * @return ClassInfo[] All matching ClassInfo[] 
      * @throws IndexException
      */
@@ -15,16 +15,35 @@
 package com.weiru.jaris.jar;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
-import org.apache.log4j.Logger;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.miscellaneous.PerFieldAnalyzerWrapper;
 
+import com.google.common.cache.CacheStats;
+
+import com.weiru.jaris.config.Config;
 import com.weiru.jaris.indexing.IndexException;
 import com.weiru.jaris.indexing.IndexerFactory;
+import com.weiru.jaris.indexing.ResultCache;
+import com.weiru.jaris.indexing.ResultPage;
+import com.weiru.jaris.indexing.Searcher;
 import com.weiru.jaris.indexing.Word;
 import com.weiru.jaris.indexing.WordCollection;
+import com.weiru.jaris.metrics.Metrics;
+import com.weiru.jaris.indexing.WordFilter;
 import com.weiru.jaris.indexing.Indexer;
 
 /**
@@ -34,27 +53,67 @@ import com.weiru.jaris.indexing.Indexer;
  */
 public class ClassInfoIndexService implements ClassInfoIndex {
 
+	private static final String CLASS_NAME_PREFIXES = "cnp";
+	private static final String CLASS_NAME_INITIALS = "cnh";
+	private static final int SUGGEST_FALLBACK_FACTOR = 8;
+	private static final String NAMES_ONLY = "names";
+	private static final String[] NAME_FIELDS = {
+		ClassInfo.Field.JAR_NAME.getFieldName(), 
+		ClassInfo.Field.PACKAGE_NAME.getFieldName(), 
+		ClassInfo.Field.CLASS_NAME.getFieldName()};
+	// fields holding file names, whose terms are matched literally
+	private static final Set<String> LITERAL_FIELDS = new HashSet<String>(Arrays.asList(
+		ClassInfo.Field.JAR_NAME.getFieldName(), ClassInfo.Field.JAR_PATH.getFieldName()));
 	private static ClassInfoIndexService service;
 	private Indexer indexer;
-	private Logger log = Logger.getLogger(ClassInfoIndexService.class);
-	private HashMap persistConfig = new HashMap();
-	private HashMap indexConfig = new HashMap();
+	private ResultCache<ClassInfo[]> resultCache;
+	private Logger log = Logger.getLogger(ClassInfoIndexService.class.getName());
+	// whether each field is stored, and whether it is tokenized or indexed as one term
+	private final Map<ClassInfo.Field, Boolean> storedConfig = new HashMap<ClassInfo.Field, Boolean>();
+	private final Map<ClassInfo.Field, Boolean> tokenizedConfig = new HashMap<ClassInfo.Field, Boolean>();
 	
 	/**
 	 * Private constructor
 	 */
 	private ClassInfoIndexService() {
 		try {
-			indexer = IndexerFactory.getKeywordIndex(IndexServices.SERVICE_NAME_CLASS_INFO);
+			indexer = IndexerFactory.getWordIndexer(IndexServices.SERVICE_NAME_CLASS_INFO);
 		} catch (IndexException e) {
-			log.error("constructor ", e);
+			log.log(Level.SEVERE, "constructor ", e);
+		}
+		if (indexer != null) {
+			Map<String, Analyzer> analyzers = new HashMap<String, Analyzer>();
+			analyzers.put(CLASS_NAME_PREFIXES, new ClassNameAnalyzer(false));
+			analyzers.put(CLASS_NAME_INITIALS, new ClassNameAnalyzer(true));
+			indexer.setAnalyzer(new PerFieldAnalyzerWrapper(indexer.getAnalyzer(), analyzers));
+			// all classes of a jar content are replaced together, so they share a shard
+			indexer.setPartitionFields(ClassInfo.Field.FINGERPRINT.getFieldName(), 
+					ClassInfo.Field.JAR_PATH.getFieldName(), 
+					ClassInfo.Field.JAR_NAME.getFieldName());
 		}
-		indexConfig.put(ClassInfo.Field.CLASS_NAME, new Boolean(true));
-		indexConfig.put(ClassInfo.Field.JAR_NAME, new Boolean(true));
-		indexConfig.put(ClassInfo.Field.PACKAGE_NAME, new Boolean(true));
-		persistConfig.put(ClassInfo.Field.CLASS_NAME, new Boolean(true));
-		persistConfig.put(ClassInfo.Field.JAR_NAME, new Boolean(true));
-		persistConfig.put(ClassInfo.Field.PACKAGE_NAME, new Boolean(true));
+		resultCache = new ResultCache<ClassInfo[]>(indexer, Config.instance().getResultCacheSize());
+		storedConfig.put(ClassInfo.Field.CLASS_NAME, Boolean.TRUE);
+		tokenizedConfig.put(ClassInfo.Field.CLASS_NAME, Boolean.TRUE);
+		storedConfig.put(ClassInfo.Field.JAR_NAME, Boolean.TRUE);
+		tokenizedConfig.put(ClassInfo.Field.JAR_NAME, Boolean.TRUE);
+		storedConfig.put(ClassInfo.Field.PACKAGE_NAME, Boolean.TRUE);
+		tokenizedConfig.put(ClassInfo.Field.PACKAGE_NAME, Boolean.TRUE);
+		storedConfig.put(ClassInfo.Field.JAR_PATH, Boolean.TRUE);
+		tokenizedConfig.put(ClassInfo.Field.JAR_PATH, Boolean.FALSE);
+		storedConfig.put(ClassInfo.Field.FINGERPRINT, Boolean.TRUE);
+		tokenizedConfig.put(ClassInfo.Field.FINGERPRINT, Boolean.TRUE);
+		storedConfig.put(ClassInfo.Field.GROUP_ID, Boolean.TRUE);
+		tokenizedConfig.put(ClassInfo.Field.GROUP_ID, Boolean.TRUE);
+		storedConfig.put(ClassInfo.Field.ARTIFACT_ID, Boolean.TRUE);
+		tokenizedConfig.put(ClassInfo.Field.ARTIFACT_ID, Boolean.TRUE);
+		storedConfig.put(ClassInfo.Field.VERSION, Boolean.TRUE);
+		tokenizedConfig.put(ClassInfo.Field.VERSION, Boolean.TRUE);
+		storedConfig.put(ClassInfo.Field.ACCESS_FLAGS, Boolean.TRUE);
+		tokenizedConfig.put(ClassInfo.Field.ACCESS_FLAGS, Boolean.FALSE);
+		storedConfig.put(ClassInfo.Field.SUPER_CLASS, Boolean.TRUE);
+		tokenizedConfig.put(ClassInfo.Field.SUPER_CLASS, Boolean.FALSE);
+		storedConfig.put(ClassInfo.Field.INTERFACES, Boolean.TRUE);
+		tokenizedConfig.put(ClassInfo.Field.INTERFACES, Boolean.FALSE);
 	}
 	
 	/**
@@ -74,10 +133,64 @@ public class ClassInfoIndexService implements ClassInfoIndex {
 	 * @throws IndexException
 	 */
 	public void add(ClassInfo info) throws IndexException {
-		WordCollection kwc = convertToKeywordContent(info);
+		WordCollection kwc = convertToIndexContent(info);
 		indexer.store(kwc);
 	}
 
+	/**
+	 * Add a batch of ClassInfo objects to the Indexer
+	 * @param infos the ClassInfo objects
+	 * @throws IndexException
+	 */
+	public void addAll(Collection<ClassInfo> infos) throws IndexException {
+		List<WordCollection> batch = new ArrayList<WordCollection>(infos.size());
+		for (ClassInfo info : infos) {
+			batch.add(convertToIndexContent(info));
+		}
+		indexer.storeAll(batch);
+	}
+
+    /**
+     * Replaces all ClassInfo whose field equals the value exactly with
+     * others, as one unit that searches never see half done
+     * @param field the field identifying the ClassInfo, e.g. the fingerprint of their jar
+     * @param value the exact value of that field
+     * @param infos the ClassInfo, all with that value
+     * @throws IndexException
+     */
+	public void replace(ClassInfo.Field field, String value, Collection<ClassInfo> infos) throws IndexException {
+		List<WordCollection> batch = new ArrayList<WordCollection>(infos.size());
+		for (ClassInfo info : infos) {
+			batch.add(convertToIndexContent(info));
+		}
+		indexer.replace(field.getFieldName(), value, batch);
+	}
+
+    /**
+     * Begins a batch. The underlying writer stays open until the batch
+     * ends and is committed by the configured thresholds.
+     * @throws IndexException
+     */
+	public void beginBatch() throws IndexException {
+		indexer.begin();
+	}
+
+    /**
+     * Commits the ClassInfo added so far in the current batch
+     * @throws IndexException
+     */
+	public void commit() throws IndexException {
+		indexer.commit();
+	}
+
+    /**
+     * Ends a batch, committing all pending ClassInfo
+     * @throws IndexException
+     */
+	public void endBatch() throws IndexException {
+		indexer.end();
+	}
+
     /**
      * Get the count of total ClassInfo indexed
      * @return int the count
@@ -95,13 +208,115 @@ public class ClassInfoIndexService implements ClassInfoIndex {
      */
 	public ClassInfo[] searchBySample(ClassInfo classInfo)
 			throws IndexException {
-		WordCollection sample = convertToKeywordContent(classInfo);
-		WordCollection[] kwcs = indexer.searchBySample(sample);
-		List kwList = new ArrayList();
-		for (int i=0; i<kwcs.length; i++) {
-			kwList.add(convertToClassInfo(kwcs[i]));
+		final WordCollection query = convertToSample(classInfo);
+		long start = System.nanoTime();
+		return searched("sample", copyOf(resultCache.get(toCacheKey(query), new Callable<ClassInfo[]>() {
+			public ClassInfo[] call() throws IndexException {
+				return toClassInfos(indexer.searchBySample(query));
+			}
+		})), start);
+	}
+
+    /**
+     * Search for ClassInfo whose class short name starts with a prefix, 
+     * ignoring case
+     * @param prefix the prefix
+     * @param limit the maximum number of results
+     * @return ClassInfo[] the first matching ClassInfo in index order
+     * @throws IndexException
+     */
+	public ClassInfo[] searchByPrefix(String prefix, int limit) throws IndexException {
+		long start = System.nanoTime();
+		return searched("prefix", findByPrefix(prefix, limit), start);
+	}
+
+	private ClassInfo[] findByPrefix(String prefix, int limit) throws IndexException {
+		if (prefix == null || prefix.length() == 0) {
+			return new ClassInfo[0];
+		}
+		final String lower = prefix.toLowerCase(Locale.ROOT);
+		WordFilter filter = null;
+		String term = lower;
+		if (lower.length() > ClassNameAnalyzer.MAX_PREFIX) {
+			term = lower.substring(0, ClassNameAnalyzer.MAX_PREFIX);
+			filter = new WordFilter() {
+				public boolean accept(WordCollection words) {
+					return getClassShortName(words).toLowerCase(Locale.ROOT).startsWith(lower);
+				}
+			};
 		}
-		return (ClassInfo[]) kwList.toArray( new ClassInfo[kwList.size()]);
+		return toClassInfos(indexer.searchByExactTerm(CLASS_NAME_PREFIXES, term, limit, filter));
+	}
+
+    /**
+     * Search for ClassInfo whose class short name matches a camel-case 
+     * pattern. A pattern of one hump is a prefix search.
+     * @param pattern the camel-case pattern
+     * @param limit the maximum number of results
+     * @return ClassInfo[] the first matching ClassInfo in index order
+     * @throws IndexException
+     */
+	public ClassInfo[] searchByCamelCase(String pattern, int limit) throws IndexException {
+		long start = System.nanoTime();
+		return searched("camelCase", findByCamelCase(pattern, limit), start);
+	}
+
+	private ClassInfo[] findByCamelCase(String pattern, int limit) throws IndexException {
+		List<String> humps = ClassNameAnalyzer.humps(pattern == null ? "" : pattern);
+		if (humps.size() <= 1) {
+			return findByPrefix(humps.isEmpty() ? null : humps.get(0), limit);
+		}
+		final List<String> lowerHumps = new ArrayList<String>(humps.size());
+		boolean initialsOnly = true;
+		for (String hump : humps) {
+			lowerHumps.add(hump.toLowerCase(Locale.ROOT));
+			initialsOnly &= hump.length() == 1;
+		}
+		String term = ClassNameAnalyzer.initials(humps);
+		WordFilter filter = null;
+		if (!initialsOnly || term.length() > ClassNameAnalyzer.MAX_PREFIX) {
+			term = term.substring(0, Math.min(term.length(), ClassNameAnalyzer.MAX_PREFIX));
+			filter = new WordFilter() {
+				public boolean accept(WordCollection words) {
+					return ClassNameAnalyzer.matchesHumps(lowerHumps, getClassShortName(words));
+				}
+			};
+		}
+		return toClassInfos(indexer.searchByExactTerm(CLASS_NAME_INITIALS, term, limit, filter));
+	}
+
+    /**
+     * Completes a prefix of a class short name, ignoring case. Names found
+     * in more jars come first. Unless the suggester is disabled the names
+     * come from an in-memory FST built from the index; otherwise they are
+     * collected from a prefix search, in index order.
+     * @param prefix the prefix
+     * @param n the maximum number of names
+     * @return String[] the distinct class short names
+     * @throws IndexException
+     */
+	public String[] suggest(String prefix, int n) throws IndexException {
+		long start = System.nanoTime();
+		String[] names = complete(prefix, n);
+		Metrics.getInstance().searched("suggest", names.length, System.nanoTime() - start);
+		return names;
+	}
+
+	private String[] complete(String prefix, int n) throws IndexException {
+		if (prefix == null || prefix.length() == 0 || n <= 0) {
+			return new String[0];
+		}
+		if (Config.instance().getSuggesterEnabled()) {
+			return indexer.suggest(ClassInfo.Field.CLASS_NAME.getFieldName(), prefix, n);
+		}
+		Set<String> names = new LinkedHashSet<String>();
+		for (ClassInfo info : findByPrefix(prefix, n * SUGGEST_FALLBACK_FACTOR)) {
+			if (names.size() == n) {
+				break;
+			}
+			names.add(info.getClassShortName());
+		}
+		return names.toArray(new String[names.size()]);
 	}
 
     /**
@@ -111,14 +326,159 @@ public class ClassInfoIndexService implements ClassInfoIndex {
      * @return ClassInfo[] All matching ClassInfo[] 
      * @throws IndexException
      */
-	public ClassInfo[] searchByTerm(ClassInfo.Field field, String term)
+	public ClassInfo[] searchByTerm(ClassInfo.Field field, final String term)
 			throws IndexException {
-		WordCollection[] kwcs = indexer.searchByTerm(field.getFieldName(), term);
-		List kwList = new ArrayList();
-		for (int i=0; i<kwcs.length; i++) {
-			kwList.add(convertToClassInfo(kwcs[i]));
+		final String fieldName = field.getFieldName();
+		long start = System.nanoTime();
+		return searched("term", copyOf(resultCache.get(Arrays.asList(fieldName, term), new Callable<ClassInfo[]>() {
+			public ClassInfo[] call() throws IndexException {
+				return toClassInfos(indexer.searchByTerm(fieldName, toExpression(fieldName, term)));
+			}
+		})), start);
+	}
+
+    /**
+     * Search for ClassInfo with a field matching the specified expression,
+     * decoding only the jar, package and class names from doc values
+     * @param field the field
+     * @param term the specified expression
+     * @return ClassInfo[] All matching ClassInfo in index order
+     * @throws IndexException
+     */
+	public ClassInfo[] searchNamesByTerm(ClassInfo.Field field, final String term) 
+			throws IndexException {
+		final String fieldName = field.getFieldName();
+		long start = System.nanoTime();
+		return searched("namesByTerm", copyOf(resultCache.get(Arrays.asList(NAMES_ONLY, fieldName, term), new Callable<ClassInfo[]>() {
+			public ClassInfo[] call() throws IndexException {
+				return toClassInfos(indexer.searchByTerm(fieldName, toExpression(fieldName, term), NAME_FIELDS));
+			}
+		})), start);
+	}
+
+    /**
+     * Search for matching ClassInfo with the criteria specified within a
+     * sample ClassInfo, decoding only the jar, package and class names from 
+     * doc values
+     * @param classInfo the sample ClassInfo
+     * @return ClassInfo[] All matching ClassInfo in index order
+     * @throws IndexException
+     */
+	public ClassInfo[] searchNamesBySample(ClassInfo classInfo) throws IndexException {
+		final WordCollection query = convertToSample(classInfo);
+		List<String> key = toCacheKey(query);
+		key.add(0, NAMES_ONLY);
+		long start = System.nanoTime();
+		return searched("namesBySample", copyOf(resultCache.get(key, new Callable<ClassInfo[]>() {
+			public ClassInfo[] call() throws IndexException {
+				return toClassInfos(indexer.searchBySample(query, NAME_FIELDS));
+			}
+		})), start);
+	}
+
+    /**
+     * Search for one page of ClassInfo with a field matching the specified
+     * expression. Pages are not cached.
+     * @param field the field
+     * @param term the specified expression
+     * @param limit the maximum number of ClassInfo of the page
+     * @param cursor the cursor of the previous page, null for the first page
+     * @return ResultPage the page of matching ClassInfo
+     * @throws IndexException
+     */
+	public ResultPage<ClassInfo> searchByTerm(ClassInfo.Field field, String term, int limit, String cursor) 
+			throws IndexException {
+		long start = System.nanoTime();
+		String fieldName = field.getFieldName();
+		return searched("termPage", toClassInfos(indexer.searchByTerm(fieldName, toExpression(fieldName, term), limit, cursor)), start);
+	}
+
+    /**
+     * Search for one page of matching ClassInfo with the criteria specified
+     * within a sample ClassInfo. Pages are not cached.
+     * @param classInfo the sample ClassInfo
+     * @param limit the maximum number of ClassInfo of the page
+     * @param cursor the cursor of the previous page, null for the first page
+     * @return ResultPage the page of matching ClassInfo
+     * @throws IndexException
+     */
+	public ResultPage<ClassInfo> searchBySample(ClassInfo classInfo, int limit, String cursor) 
+			throws IndexException {
+		WordCollection sample = convertToSample(classInfo);
+		long start = System.nanoTime();
+		return searched("samplePage", toClassInfos(indexer.searchBySample(sample, limit, cursor)), start);
+	}
+
+	/**
+	 * Returns the string expression a term of a field is searched by. The
+	 * query syntax characters of jar names and paths, such as the ! and / 
+	 * of a nested jar name, are escaped, so they match literally.
+	 * @param fieldName the field name
+	 * @param term the term
+	 * @return String the string expression
+	 */
+	private static String toExpression(String fieldName, String term) {
+		return term != null && LITERAL_FIELDS.contains(fieldName) ? Searcher.escapeLiteral(term) : term;
+	}
+
+	/**
+	 * Copies cached results, so that callers may change the ClassInfo 
+	 * they are given without changing the cached ones
+	 * @param cached the cached ClassInfo
+	 * @return ClassInfo[] copies of them
+	 */
+	private static ClassInfo[] copyOf(ClassInfo[] cached) {
+		ClassInfo[] infos = new ClassInfo[cached.length];
+		for (int i=0; i<cached.length; i++) {
+			infos[i] = new ClassInfo(cached[i]);
 		}
-		return (ClassInfo[]) kwList.toArray( new ClassInfo[kwList.size()]);
+		return infos;
+	}
+
+	/**
+	 * Reports a search to the Metrics
+	 * @param type the search type
+	 * @param infos the results
+	 * @param start the start time in nanoseconds
+	 * @return ClassInfo[] the results
+	 */
+	private static ClassInfo[] searched(String type, ClassInfo[] infos, long start) {
+		Metrics.getInstance().searched(type, infos.length, System.nanoTime() - start);
+		return infos;
+	}
+
+	/**
+	 * Reports a search of one page to the Metrics
+	 * @param type the search type
+	 * @param page the page of results
+	 * @param start the start time in nanoseconds
+	 * @return ResultPage the page of results
+	 */
+	private static ResultPage<ClassInfo> searched(String type, ResultPage<ClassInfo> page, long start) {
+		Metrics.getInstance().searched(type, page.getResults().size(), System.nanoTime() - start);
+		return page;
+	}
+
+	/**
+	 * Returns the hit, miss and eviction counts of the cached results of 
+	 * {@link #searchByTerm(ClassInfo.Field, String)} and 
+	 * {@link #searchBySample(ClassInfo)}
+	 * @return CacheStats the statistics
+	 */
+	public CacheStats getCacheStats() {
+		return resultCache.stats();
+	}
+
+    /**
+     * Search for all ClassInfo whose field equals a value exactly, without
+     * caching the results
+     * @param field the field
+     * @param value the exact value
+     * @return ClassInfo[] All matching ClassInfo in index order
+     * @throws IndexException
+     */
+	public ClassInfo[] searchByExactTerm(ClassInfo.Field field, String value) throws IndexException {
+		return toClassInfos(indexer.searchByExactTerm(field.getFieldName(), value));
 	}
 
     /**
@@ -141,34 +501,197 @@ public class ClassInfoIndexService implements ClassInfoIndex {
 	}
 
 	/**
-	 * Provides convertion from ClassInfo to WordCollection
+	 * Provides convertion from ClassInfo to the WordCollection it is indexed
+	 * as, which adds the typeahead fields of the class short name
 	 * @param info the ClassInfo object
 	 * @return WordCollection the WordCollection object
 	 */
-	private WordCollection convertToKeywordContent(ClassInfo info) {
+	private WordCollection convertToIndexContent(ClassInfo info) {
+		WordCollection kwc = convertToKeywordContent(info);
+		String shortName = info.getClassShortName();
+		if (shortName != null) {
+			kwc.addKeyword(new Word(CLASS_NAME_PREFIXES, shortName, false, true));
+			kwc.addKeyword(new Word(CLASS_NAME_INITIALS, shortName, false, true));
+		}
+		return kwc;
+	}
+
+	/**
+	 * Provides convertion from a sample ClassInfo to the WordCollection it
+	 * is searched by: its jar, package and class names, each a query 
+	 * expression, with the jar name matched literally. The other fields of
+	 * the sample are ignored, and so is an unknown jar name.
+	 * @param info the sample ClassInfo object
+	 * @return WordCollection the WordCollection object
+	 */
+	private WordCollection convertToSample(ClassInfo info) {
+		String jarName = info.getJarName();
+		return convertToNameContent(info, ClassInfo.UNKNOWN_JAR.equals(jarName) ? null 
+				: toExpression(ClassInfo.Field.JAR_NAME.getFieldName(), jarName));
+	}
+
+	/**
+	 * Provides convertion from ClassInfo to the WordCollection of its names
+	 * @param info the ClassInfo object
+	 * @param jarName the jar name to convert, null to leave it out
+	 * @return WordCollection the WordCollection object
+	 */
+	private WordCollection convertToNameContent(ClassInfo info, String jarName) {
 		WordCollection kwc = new WordCollection();
-		Word jarName = new Word(ClassInfo.Field.JAR_NAME.getFieldName(), 
-				info.getJarName(),
-				((Boolean)indexConfig.get(ClassInfo.Field.JAR_NAME)).booleanValue(), 
-				((Boolean)persistConfig.get(ClassInfo.Field.JAR_NAME)).booleanValue(), 
+		Word jarNameWord = new Word(ClassInfo.Field.JAR_NAME.getFieldName(), 
+				jarName,
+				storedConfig.get(ClassInfo.Field.JAR_NAME).booleanValue(), 
+				tokenizedConfig.get(ClassInfo.Field.JAR_NAME).booleanValue(), 
 				false);
 		Word packageName = new Word(ClassInfo.Field.PACKAGE_NAME.getFieldName(), 
 				info.getPackageName(),
-				((Boolean)indexConfig.get(ClassInfo.Field.PACKAGE_NAME)).booleanValue(), 
-				((Boolean)persistConfig.get(ClassInfo.Field.PACKAGE_NAME)).booleanValue(), 
+				storedConfig.get(ClassInfo.Field.PACKAGE_NAME).booleanValue(), 
+				tokenizedConfig.get(ClassInfo.Field.PACKAGE_NAME).booleanValue(), 
 				false);
 		Word className = new Word(ClassInfo.Field.CLASS_NAME.getFieldName(), 
 				info.getClassShortName(),
-				((Boolean)indexConfig.get(ClassInfo.Field.CLASS_NAME)).booleanValue(), 
-				((Boolean)persistConfig.get(ClassInfo.Field.CLASS_NAME)).booleanValue(), 
+				storedConfig.get(ClassInfo.Field.CLASS_NAME).booleanValue(), 
+				tokenizedConfig.get(ClassInfo.Field.CLASS_NAME).booleanValue(), 
 				true);
-		kwc.addKeyword(jarName);
+		jarNameWord.setDocValues(true);
+		packageName.setDocValues(true);
+		className.setDocValues(true);
+		if (jarName != null) {
+			kwc.addKeyword(jarNameWord);
+		}
 		kwc.addKeyword(packageName);
 		kwc.addKeyword(className);
+		return kwc;
+	}
+
+	/**
+	 * Provides convertion from ClassInfo to WordCollection
+	 * @param info the ClassInfo object
+	 * @return WordCollection the WordCollection object
+	 */
+	private WordCollection convertToKeywordContent(ClassInfo info) {
+		WordCollection kwc = convertToNameContent(info, info.getJarName());
+		if (info.getJarPath() != null) {
+			kwc.addKeyword(new Word(ClassInfo.Field.JAR_PATH.getFieldName(), 
+					info.getJarPath(),
+					storedConfig.get(ClassInfo.Field.JAR_PATH).booleanValue(), 
+					tokenizedConfig.get(ClassInfo.Field.JAR_PATH).booleanValue(), 
+					false));
+		}
+		if (info.getFingerprint() != null) {
+			kwc.addKeyword(new Word(ClassInfo.Field.FINGERPRINT.getFieldName(), 
+					info.getFingerprint(),
+					storedConfig.get(ClassInfo.Field.FINGERPRINT).booleanValue(), 
+					tokenizedConfig.get(ClassInfo.Field.FINGERPRINT).booleanValue(), 
+					false));
+		}
+		if (info.getGroupId() != null) {
+			kwc.addKeyword(new Word(ClassInfo.Field.GROUP_ID.getFieldName(), 
+					info.getGroupId(),
+					storedConfig.get(ClassInfo.Field.GROUP_ID).booleanValue(), 
+					tokenizedConfig.get(ClassInfo.Field.GROUP_ID).booleanValue(), 
+					false));
+		}
+		if (info.getArtifactId() != null) {
+			kwc.addKeyword(new Word(ClassInfo.Field.ARTIFACT_ID.getFieldName(), 
+					info.getArtifactId(),
+					storedConfig.get(ClassInfo.Field.ARTIFACT_ID).booleanValue(), 
+					tokenizedConfig.get(ClassInfo.Field.ARTIFACT_ID).booleanValue(), 
+					false));
+		}
+		if (info.getVersion() != null) {
+			kwc.addKeyword(new Word(ClassInfo.Field.VERSION.getFieldName(), 
+					info.getVersion(),
+					storedConfig.get(ClassInfo.Field.VERSION).booleanValue(), 
+					tokenizedConfig.get(ClassInfo.Field.VERSION).booleanValue(), 
+					false));
+		}
+		if (info.getAccessFlags() != ClassInfo.UNKNOWN_ACCESS_FLAGS) {
+			kwc.addKeyword(new Word(ClassInfo.Field.ACCESS_FLAGS.getFieldName(), 
+					String.valueOf(info.getAccessFlags()),
+					storedConfig.get(ClassInfo.Field.ACCESS_FLAGS).booleanValue(), 
+					tokenizedConfig.get(ClassInfo.Field.ACCESS_FLAGS).booleanValue(), 
+					false));
+		}
+		if (info.getSuperClassName() != null) {
+			kwc.addKeyword(new Word(ClassInfo.Field.SUPER_CLASS.getFieldName(), 
+					info.getSuperClassName(),
+					storedConfig.get(ClassInfo.Field.SUPER_CLASS).booleanValue(), 
+					tokenizedConfig.get(ClassInfo.Field.SUPER_CLASS).booleanValue(), 
+					false));
+		}
+		String[] interfaceNames = info.getInterfaceNames();
+		for (int i=0; i<interfaceNames.length; i++) {
+			kwc.addKeyword(new Word(ClassInfo.Field.INTERFACES.getFieldName(), 
+					interfaceNames[i],
+					storedConfig.get(ClassInfo.Field.INTERFACES).booleanValue(), 
+					tokenizedConfig.get(ClassInfo.Field.INTERFACES).booleanValue(), 
+					false));
+		}
 		
 		return kwc;
 	}
 	
+	/**
+	 * Builds the cache key of a sample from the words it is searched by
+	 * @param sample the sample WordCollection
+	 * @return List the names and contents of the searched words
+	 */
+	private static List<String> toCacheKey(WordCollection sample) {
+		List<String> key = new ArrayList<String>();
+		Iterator<Word> iter = sample.iterator();
+		while (iter.hasNext()) {
+			Word kw = iter.next();
+			if (kw.getContent() != null && kw.getContent().length() > 0) {
+				key.add(kw.getName());
+				key.add(kw.getContent());
+			}
+		}
+		return key;
+	}
+
+	/**
+	 * Converts WordCollections to ClassInfo
+	 * @param kwcs the WordCollection objects
+	 * @return ClassInfo[] the ClassInfo objects
+	 */
+	private ClassInfo[] toClassInfos(WordCollection[] kwcs) {
+		ClassInfo[] infos = new ClassInfo[kwcs.length];
+		for (int i=0; i<kwcs.length; i++) {
+			infos[i] = convertToClassInfo(kwcs[i]);
+		}
+		return infos;
+	}
+
+	/**
+	 * Converts a page of WordCollections to a page of ClassInfo
+	 * @param page the page of WordCollection objects
+	 * @return ResultPage the page of ClassInfo objects
+	 */
+	private ResultPage<ClassInfo> toClassInfos(ResultPage<WordCollection> page) {
+		List<ClassInfo> infos = new ArrayList<ClassInfo>(page.getResults().size());
+		for (WordCollection kwc : page.getResults()) {
+			infos.add(convertToClassInfo(kwc));
+		}
+		return new ResultPage<ClassInfo>(infos, page.getCursor(), page.getTotalHits());
+	}
+
+	/**
+	 * Returns the class short name stored in a WordCollection
+	 * @param kwc the WordCollection object
+	 * @return String the class short name, empty if there is none
+	 */
+	private static String getClassShortName(WordCollection kwc) {
+		Iterator<Word> iter = kwc.iterator();
+		while (iter.hasNext()) {
+			Word kw = iter.next();
+			if (ClassInfo.Field.CLASS_NAME.getFieldName().equals(kw.getName())) {
+				return kw.getContent();
+			}
+		}
+		return "";
+	}
+
 	/**
 	 * Provides convertion from WordCollection to ClassInfo
 	 * @param kwc the WordCollection object
@@ -176,20 +699,40 @@ public class ClassInfoIndexService implements ClassInfoIndex {
 	 */
 	private ClassInfo convertToClassInfo(WordCollection kwc) {
 		ClassInfo info = new ClassInfo();
-		Iterator iter = kwc.iterateKeywords();
+		List<String> interfaceNames = new ArrayList<String>();
+		Iterator<Word> iter = kwc.iterator();
 		Word kw = null;
 		while (iter.hasNext()) {
-			kw = (Word) iter.next();
+			kw = iter.next();
 			if (ClassInfo.Field.JAR_NAME.getFieldName().equals(kw.getName())) {
 				info.setJarName(kw.getContent());
 			} else if (ClassInfo.Field.PACKAGE_NAME.getFieldName().equals(kw.getName())) {
 				info.setPackageName(kw.getContent());
 			} else if (ClassInfo.Field.CLASS_NAME.getFieldName().equals(kw.getName())) {
 				info.setClassShortName(kw.getContent());
+			} else if (ClassInfo.Field.JAR_PATH.getFieldName().equals(kw.getName())) {
+				info.setJarPath(kw.getContent());
+			} else if (ClassInfo.Field.FINGERPRINT.getFieldName().equals(kw.getName())) {
+				info.setFingerprint(kw.getContent());
+			} else if (ClassInfo.Field.GROUP_ID.getFieldName().equals(kw.getName())) {
+				info.setGroupId(kw.getContent());
+			} else if (ClassInfo.Field.ARTIFACT_ID.getFieldName().equals(kw.getName())) {
+				info.setArtifactId(kw.getContent());
+			} else if (ClassInfo.Field.VERSION.getFieldName().equals(kw.getName())) {
+				info.setVersion(kw.getContent());
+			} else if (ClassInfo.Field.ACCESS_FLAGS.getFieldName().equals(kw.getName())) {
+				info.setAccessFlags(Integer.parseInt(kw.getContent()));
+			} else if (ClassInfo.Field.SUPER_CLASS.getFieldName().equals(kw.getName())) {
+				info.setSuperClassName(kw.getContent());
+			} else if (ClassInfo.Field.INTERFACES.getFieldName().equals(kw.getName())) {
+				interfaceNames.add(kw.getContent());
 			}
 		}
+		info.setInterfaceNames(interfaceNames.toArray(new String[interfaceNames.size()]));
 		info.validate();
-		log.debug("converted to ClassInfo: " + info);
+		if (log.isLoggable(Level.FINE)) {
+			log.fine("converted to ClassInfo: " + info);
+		}
 		return info;
 	}	
 }
@@ -0,0 +1,147 @@
+/*
+ * Jaris - Jar Indexed Search
+ * Copyright (C) 2006 Wei Ru (wei.ru@logicinspiration.com)
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation (See 
+ * license.txt for details).
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.weiru.jaris.jar;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.KeywordTokenizer;
+import org.apache.lucene.analysis.core.LowerCaseFilter;
+import org.apache.lucene.analysis.ngram.EdgeNGramTokenFilter;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+
+/**
+ * The <code>ClassNameAnalyzer</code> indexes a class short name for 
+ * typeahead: as the lowercased prefixes of the whole name, or as the 
+ * lowercased prefixes of its hump initials, e.g. <code>h, hm</code> for
+ * <code>HashMap</code>. Either way a prefix query is a single term lookup.
+ * <p>
+ * A hump starts at the first character, at every upper case letter and 
+ * after every <code>_</code> or <code>$</code>, which are dropped.
+ */
+final class ClassNameAnalyzer extends Analyzer {
+
+	/** Prefixes longer than this are not indexed and must be verified */
+	static final int MAX_PREFIX = 24;
+
+	private final boolean initials;
+
+	/**
+	 * Creates a ClassNameAnalyzer
+	 * @param initials true to index the prefixes of the hump initials, 
+	 * false to index the prefixes of the name
+	 */
+	ClassNameAnalyzer(boolean initials) {
+		this.initials = initials;
+	}
+
+	@Override
+	protected TokenStreamComponents createComponents(String fieldName) {
+		Tokenizer source = new KeywordTokenizer();
+		TokenStream result = initials ? new InitialsFilter(source) : source;
+		result = new LowerCaseFilter(result);
+		result = new EdgeNGramTokenFilter(result, 1, MAX_PREFIX);
+		return new TokenStreamComponents(source, result);
+	}
+
+	/**
+	 * Splits a class short name into humps
+	 * @param name the class short name or a camel-case pattern
+	 * @return List the humps
+	 */
+	static List<String> humps(String name) {
+		List<String> humps = new ArrayList<String>();
+		int start = -1;
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			if (c == '_' || c == '$') {
+				if (start >= 0) {
+					humps.add(name.substring(start, i));
+				}
+				start = -1;
+			} else if (start < 0) {
+				start = i;
+			} else if (Character.isUpperCase(c)) {
+				humps.add(name.substring(start, i));
+				start = i;
+			}
+		}
+		if (start >= 0) {
+			humps.add(name.substring(start));
+		}
+		return humps;
+	}
+
+	/**
+	 * Returns the lowercased initials of the humps
+	 * @param humps the humps
+	 * @return String the initials
+	 */
+	static String initials(List<String> humps) {
+		StringBuilder sb = new StringBuilder(humps.size());
+		for (String hump : humps) {
+			sb.append(Character.toLowerCase(hump.charAt(0)));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Checks if the humps of a pattern are prefixes of the leading humps of
+	 * a class short name, ignoring case
+	 * @param patternHumps the humps of the pattern, lowercased
+	 * @param name the class short name
+	 * @return boolean if the name matches
+	 */
+	static boolean matchesHumps(List<String> patternHumps, String name) {
+		List<String> nameHumps = humps(name);
+		if (nameHumps.size() < patternHumps.size()) {
+			return false;
+		}
+		for (int i = 0; i < patternHumps.size(); i++) {
+			if (!nameHumps.get(i).toLowerCase(Locale.ROOT).startsWith(patternHumps.get(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Replaces the name with its hump initials
+	 */
+	private static final class InitialsFilter extends TokenFilter {
+
+		private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
+
+		InitialsFilter(TokenStream input) {
+			super(input);
+		}
+
+		@Override
+		public boolean incrementToken() throws IOException {
+			if (!input.incrementToken()) {
+				return false;
+			}
+			String initials = initials(humps(termAtt.toString()));
+			termAtt.setEmpty().append(initials);
+			return true;
+		}
+	}
+}
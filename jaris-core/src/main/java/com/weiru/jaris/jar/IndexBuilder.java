@@ -15,16 +15,34 @@
 package com.weiru.jaris.jar;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import org.apache.commons.configuration.Configuration;
-import org.apache.log4j.Logger;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
 
 import com.weiru.jaris.config.Config;
 import com.weiru.jaris.indexing.IndexException;
+import com.weiru.jaris.metrics.Metrics;
 
 /**
  * The <code>IndexBuilder</code> can be used to build indexes for a specified jar.
+ * <p>
+ * A jar is identified by its content fingerprint. The classes of each
+ * distinct content are indexed once, and every path a copy of it is found
+ * at is registered in the jar index. They are deleted when no registered
+ * path has that content anymore, and moved to another path that has it
+ * when the path they name is removed.
  * 
  * @author Wei Ru
  */
@@ -32,9 +50,12 @@ public class IndexBuilder {
 	
 	public boolean debugOn=false;
 	private static IndexBuilder instance;
-	private Logger log = Logger.getLogger(IndexBuilder.class);
+	private Logger log = Logger.getLogger(IndexBuilder.class.getName());
 	private ClassInfoIndexService classIndex;
 	private JarInfoIndexService jarIndex;
+	// claims on the fingerprints of the jars between checkJarIndex and 
+	// writeIndex or abandonJarIndex
+	private final Map<String, Claim> pendingContent = new HashMap<String, Claim>();
 	
 	private IndexBuilder() {
 		classIndex = ClassInfoIndexService.getService();
@@ -57,19 +78,32 @@ public class IndexBuilder {
 	 * @param jarFilePath the jar file path
 	 */
 	public void buildIndex(String jarFilePath) {
-		JarResource jarRes = new JarResource(jarFilePath);
-		jarRes.parseClasses();
-		buildIndex(jarRes);
+		buildIndex(new File(jarFilePath));
 	}
 	
 	/**
-	 * Builds the Indexer for a jar file
+	 * Builds the Indexer for a jar file. A jar already registered with the
+	 * same size and modification time is skipped without being opened, and
+	 * one whose content has not changed, or is indexed for another copy,
+	 * only has its registration updated.
 	 * @param jarFile the jar file
 	 */
 	public void buildIndex(File jarFile) {
-		JarResource jarRes = new JarResource(jarFile);
-		jarRes.parseClasses();
-		buildIndex(jarRes);
+		JarInfo jar = checkJarIndex(jarFile);
+		if (jar==null) {	return; 	}
+		List<ClassInfo> infos = null;
+		try {
+			long start = System.nanoTime();
+			JarResource jarRes = new JarResource(jarFile);
+			jarRes.parseClasses();
+			infos = collectClassInfo(jarRes, jar);
+			Metrics.getInstance().jarParsed(jar.getJarPath(), infos.size(), System.nanoTime() - start);
+		} finally {
+			if (infos == null) {
+				abandonJarIndex(jar);
+			}
+		}
+		writeIndex(jar, infos);
 	}
 	
 	/**
@@ -78,73 +112,439 @@ public class IndexBuilder {
 	 * @param jarFile the jar file
 	 */
 	public void buildIndex(String jarFileDirectory, String jarFile) {
-		JarResource jarRes = new JarResource(jarFileDirectory, jarFile);
-		jarRes.parseClasses();
-		buildIndex(jarRes);
+		buildIndex(new File(jarFileDirectory, jarFile));
 	}
 	
 	/**
-	 * Builds the Indexer for a JarResource object
-	 * @param jarRes the JarResource object
+	 * Begins a batch on the class and jar indexes. All jars built until 
+	 * {@link #endBatch()} share one open writer session.
 	 */
-	private void buildIndex(JarResource jarRes) {
-		String jarName = jarRes.getJarFileName();
-		
-		Configuration config = Config.getConfiguration();
-		boolean skipIfProcessed = config.getBoolean("skip-if-processed");
-		boolean exists = this.existsJarIndex(jarName);
-		
-		if (skipIfProcessed&&exists) {	return; 	}
+	public void beginBatch() {
+		try {
+			classIndex.beginBatch();
+			jarIndex.beginBatch();
+		} catch (IndexException e) {
+			log.log(Level.SEVERE, "beginBatch : " + e, e);
+		}
+	}
+
+	/**
+	 * Ends a batch, committing everything built since {@link #beginBatch()}
+	 */
+	public void endBatch() {
+		try {
+			jarIndex.endBatch();
+			classIndex.endBatch();
+		} catch (IndexException e) {
+			log.log(Level.SEVERE, "endBatch : " + e, e);
+		}
+	}
+	
+	/**
+	 * Checks the jar file against its registration in the jar index. When
+	 * skip-if-processed is configured, a jar is skipped if its size and
+	 * modification time are unchanged, or if only they changed but its
+	 * content fingerprint did not; the registration is updated then.
+	 * <p>
+	 * A jar whose content is already indexed for another path is registered
+	 * as a copy and skipped as well. One whose content is being indexed for
+	 * another path is skipped, and registered as a copy only once that 
+	 * content is written. Otherwise its content is claimed until 
+	 * {@link #writeIndex(JarInfo, List)} or {@link #abandonJarIndex(JarInfo)}.
+	 * @param jarFile the jar file
+	 * @return JarInfo the JarInfo to index the jar under, null if it is skipped
+	 */
+	JarInfo checkJarIndex(File jarFile) {
+		Configuration config = Config.instance().getConfiguration();
+		boolean skipIfProcessed = config.getBoolean("indexing.skip-if-processed");
 		
-		Enumeration en = jarRes.getClassNames();
+		JarInfo jar = new JarInfo(jarFile);
+		Metrics metrics = Metrics.getInstance();
+		metrics.jarScanned(jar.getJarPath());
+		JarInfo indexed = skipIfProcessed ? lookupJarIndex(jar.getJarPath()) : null;
+		if (jar.hasSameStat(indexed)) {
+			metrics.jarSkipped(jar.getJarPath());
+			return null;
+		}
+		jar.setFingerprint(fingerprint(jarFile));
+		if (jar.hasSameContent(indexed)) {
+			registerJarIndex(jar);
+			metrics.jarSkipped(jar.getJarPath());
+			return null;
+		}
+		String fingerprint = jar.getFingerprint();
+		if (fingerprint != null) {
+			boolean indexedCopy = skipIfProcessed && !lookupCopies(fingerprint).isEmpty();
+			if (indexedCopy || !claimContent(jar)) {
+				if (debugOn) {
+					log.fine("copy of indexed content : " + jar.getJarPath());
+				}
+				if (indexedCopy) {
+					registerJarIndex(jar);
+					releaseContent(indexed, fingerprint);
+				}
+				metrics.jarSkipped(jar.getJarPath());
+				return null;
+			}
+		}
+		MavenLayout layout = MavenLayout.fromConfig();
+		if (layout != null) {
+			jar.setCoordinates(layout.parse(jarFile));
+		}
+		return jar;
+	}
+
+	/**
+	 * Claims the content of a jar, or adds the jar to the copies waiting
+	 * for it if another path has claimed it
+	 * @param jar the JarInfo
+	 * @return boolean whether the content was claimed
+	 */
+	private boolean claimContent(JarInfo jar) {
+		synchronized (pendingContent) {
+			Claim claim = pendingContent.get(jar.getFingerprint());
+			if (claim != null) {
+				claim.copies.add(jar);
+				return false;
+			}
+			pendingContent.put(jar.getFingerprint(), new Claim(jar));
+			return true;
+		}
+	}
+
+	/**
+	 * Gives up the claim on the content of a jar. A claim held by another
+	 * JarInfo with the same content is left alone.
+	 * @param jar the JarInfo
+	 * @return List the copies waiting for the content, empty if the jar 
+	 * did not claim it
+	 */
+	private List<JarInfo> releaseClaim(JarInfo jar) {
+		if (jar.getFingerprint() == null) {
+			return Collections.emptyList();
+		}
+		synchronized (pendingContent) {
+			Claim claim = pendingContent.get(jar.getFingerprint());
+			if (claim == null || claim.owner != jar) {
+				return Collections.emptyList();
+			}
+			pendingContent.remove(jar.getFingerprint());
+			return claim.copies;
+		}
+	}
+
+	/**
+	 * Gives up the claim on the content of a jar returned by 
+	 * {@link #checkJarIndex(File)} that is not going to be written. The 
+	 * copies waiting for it are left unregistered, so the next crawl checks
+	 * them again.
+	 * @param jar the JarInfo
+	 */
+	void abandonJarIndex(JarInfo jar) {
+		releaseClaim(jar);
+	}
+	
+	/**
+	 * Collects the ClassInfo of all classes in a parsed JarResource, 
+	 * including those of its nested archives
+	 * @param jarRes the parsed JarResource object
+	 * @param jar the JarInfo the classes are attributed to
+	 * @return List the ClassInfo objects
+	 */
+	List<ClassInfo> collectClassInfo(JarResource jarRes, JarInfo jar) {
+		List<ClassInfo> infos = new ArrayList<ClassInfo>();
+		collectClassInfo(jarRes, jar, infos);
+		return infos;
+	}
+	
+	/**
+	 * Collects the ClassInfo of a JarResource and its nested archives. 
+	 * Classes are named after the archive they are in, and all belong to
+	 * the path and content of the jar file.
+	 */
+	private void collectClassInfo(JarResource jarRes, JarInfo jar, List<ClassInfo> infos) {
+		Enumeration<String> en = jarRes.getClassNames();
 		String fqn = null;
 		String key = null;
 		ClassInfo ci = null;
 		while (en.hasMoreElements()) {
-			key = (String)en.nextElement();
+			key = en.nextElement();
 			fqn = jarRes.getClassFQN(key);
-			ci = new ClassInfo(fqn);
+			ci = new ClassInfo(fqn, jarRes.getJarFileName());
+			ci.setJarPath(jar.getJarPath());
+			ci.setFingerprint(jar.getFingerprint());
+			MavenCoordinates coordinates = jar.getCoordinates();
+			if (coordinates != null) {
+				ci.setGroupId(coordinates.getGroupId());
+				ci.setArtifactId(coordinates.getArtifactId());
+				ci.setVersion(coordinates.getVersion());
+			}
+			ClassHeader header = jarRes.getClassHeader(fqn);
+			if (header != null) {
+				ci.setAccessFlags(header.getAccessFlags());
+				ci.setSuperClassName(header.getSuperClassName());
+				ci.setInterfaceNames(header.getInterfaceNames());
+			}
 			ci.validate();
-			try {
-				if (debugOn) {
-			       log.debug("indexing : " + ci);
-			    }
-				classIndex.add(ci);
-			} catch (IndexException e) {
-				log.error("buildIndex(JarResource jarRes)  : " + e, e);
+			if (debugOn) {
+		       log.fine("indexing : " + ci);
+		    }
+			infos.add(ci);
+		}
+		for (JarResource nested : jarRes.getNestedJars()) {
+			collectClassInfo(nested, jar, infos);
+		}
+	}
+	
+	/**
+	 * Indexes the ClassInfo of a jar and registers the jar. ClassInfo 
+	 * indexed earlier for the same content are replaced as one unit, and 
+	 * those of the content previously registered at the jar path are 
+	 * deleted if no other path has it, or if it was registered without a
+	 * fingerprint.
+	 * <p>
+	 * The copies of the content found while it was being indexed are
+	 * registered with it. If the ClassInfo cannot be written, neither is,
+	 * and the earlier registration of the path is kept, so the jar is 
+	 * indexed again by the next crawl.
+	 * @param jar the JarInfo
+	 * @param infos the ClassInfo objects
+	 */
+	void writeIndex(JarInfo jar, List<ClassInfo> infos) {
+		boolean written = false;
+		List<JarInfo> copies;
+		try {
+			written = storeIndex(jar, infos);
+		} finally {
+			copies = releaseClaim(jar);
+		}
+		if (!written) {
+			return;
+		}
+		for (JarInfo copy : copies) {
+			JarInfo copyIndexed = lookupJarIndex(copy.getJarPath());
+			registerJarIndex(copy);
+			releaseContent(copyIndexed, copy.getFingerprint());
+		}
+	}
+
+	/**
+	 * Indexes the ClassInfo of a jar and registers the jar, while its 
+	 * content is still claimed
+	 * @param jar the JarInfo
+	 * @param infos the ClassInfo objects
+	 * @return boolean whether the ClassInfo were written
+	 */
+	private boolean storeIndex(JarInfo jar, List<ClassInfo> infos) {
+		long start = System.nanoTime();
+		JarInfo indexed = lookupJarIndex(jar.getJarPath());
+		try {
+			if (jar.getFingerprint() == null) {
+				classIndex.replace(ClassInfo.Field.JAR_PATH, jar.getJarPath(), infos);
+			} else if (indexed != null && indexed.getFingerprint() == null) {
+				replaceUnhashed(jar, infos);
+			} else {
+				classIndex.replace(ClassInfo.Field.FINGERPRINT, jar.getFingerprint(), infos);
 			}
+			Metrics.getInstance().jarIndexed(jar.getJarPath(), infos.size(), System.nanoTime() - start);
+		} catch (IndexException e) {
+			log.log(Level.SEVERE, "writeIndex(JarInfo jar, List<ClassInfo> infos)  : " + e, e);
+			return false;
+		}
+		registerJarIndex(jar);
+		releaseContent(indexed, jar.getFingerprint());
+		return true;
+	}
+
+	/**
+	 * Replaces the ClassInfo of a jar that was registered without a 
+	 * fingerprint, whose classes are only known by the jar path. They are
+	 * deleted in the same batch the new content is written in.
+	 * @param jar the JarInfo
+	 * @param infos the ClassInfo objects
+	 * @throws IndexException
+	 */
+	private void replaceUnhashed(JarInfo jar, List<ClassInfo> infos) throws IndexException {
+		classIndex.beginBatch();
+		try {
+			classIndex.deleteByTerm(ClassInfo.Field.JAR_PATH, jar.getJarPath());
+			classIndex.replace(ClassInfo.Field.FINGERPRINT, jar.getFingerprint(), infos);
+		} finally {
+			classIndex.endBatch();
+		}
+	}
+
+	/**
+	 * Removes a jar that no longer exists from the indexes. Its path is
+	 * unregistered, and its classes are deleted unless another path has
+	 * the same content.
+	 * @param jarPath the absolute jar file path
+	 * @return boolean whether the path was registered
+	 */
+	public boolean removeIndex(String jarPath) {
+		JarInfo indexed = null;
+		try {
+			indexed = jarIndex.remove(jarPath);
+			if (indexed != null && indexed.getFingerprint() == null) {
+				classIndex.deleteByTerm(ClassInfo.Field.JAR_PATH, jarPath);
+			}
+		} catch (IndexException e) {
+			log.log(Level.SEVERE, "removeIndex : " + e, e);
+		}
+		if (indexed == null) {
+			return false;
+		}
+		if (debugOn) {
+			log.fine("removed : " + jarPath);
+		}
+		releaseContent(indexed, null);
+		return true;
+	}
+
+	/**
+	 * Removes every registered jar below a directory that no longer exists
+	 * @param directory the directory
+	 * @return int the number of jars removed
+	 */
+	public int removeDeletedUnder(File directory) {
+		return removeUnder(directory, true);
+	}
+
+	/**
+	 * Removes every registered jar below a directory
+	 * @param directory the directory
+	 * @return int the number of jars removed
+	 */
+	public int removeIndexUnder(File directory) {
+		return removeUnder(directory, false);
+	}
+
+	private int removeUnder(File directory, boolean deletedOnly) {
+		List<JarInfo> jars = Collections.emptyList();
+		try {
+			jars = jarIndex.lookupUnder(directory.getAbsolutePath());
+		} catch (IndexException e) {
+			log.log(Level.SEVERE, "removeUnder : " + e, e);
+		}
+		int removed = 0;
+		for (JarInfo jar : jars) {
+			if ((!deletedOnly || !new File(jar.getJarPath()).isFile()) && removeIndex(jar.getJarPath())) {
+				removed++;
+			}
+		}
+		return removed;
+	}
+
+	/**
+	 * Releases the content a path was registered with before, once it has
+	 * a different content. The ClassInfo of the old content are deleted if
+	 * no other path has it, or else moved to another path if they name
+	 * this one.
+	 * @param indexed the earlier registration, may be null
+	 * @param fingerprint the content fingerprint now registered at the path,
+	 * null if it is no longer registered
+	 */
+	private void releaseContent(JarInfo indexed, String fingerprint) {
+		if (indexed == null || indexed.getFingerprint() == null 
+				|| indexed.getFingerprint().equals(fingerprint)) {
+			return;
+		}
+		try {
+			List<JarInfo> copies = lookupCopies(indexed.getFingerprint());
+			if (copies.isEmpty()) {
+				classIndex.deleteByTerm(ClassInfo.Field.FINGERPRINT, indexed.getFingerprint());
+			} else {
+				moveContent(indexed, copies.get(0));
+			}
+		} catch (IndexException e) {
+			log.log(Level.SEVERE, "releaseContent : " + e, e);
+		}
+	}
+
+	/**
+	 * Moves the ClassInfo of a content from the path they name to another
+	 * path with the same content. Classes of nested archives keep their
+	 * jar name.
+	 * @param from the registration the ClassInfo may name
+	 * @param to the registration to name instead
+	 * @throws IndexException
+	 */
+	private void moveContent(JarInfo from, JarInfo to) throws IndexException {
+		ClassInfo[] infos = classIndex.searchByExactTerm(ClassInfo.Field.FINGERPRINT, from.getFingerprint());
+		if (infos.length == 0 || !from.getJarPath().equals(infos[0].getJarPath())) {
+			return;
+		}
+		MavenLayout layout = MavenLayout.fromConfig();
+		MavenCoordinates coordinates = layout == null ? null : layout.parse(new File(to.getJarPath()));
+		for (ClassInfo info : infos) {
+			info.setJarPath(to.getJarPath());
+			if (from.getJarName().equals(info.getJarName())) {
+				info.setJarName(to.getJarName());
+			}
+			info.setGroupId(coordinates == null ? null : coordinates.getGroupId());
+			info.setArtifactId(coordinates == null ? null : coordinates.getArtifactId());
+			info.setVersion(coordinates == null ? null : coordinates.getVersion());
+		}
+		classIndex.replace(ClassInfo.Field.FINGERPRINT, from.getFingerprint(), Arrays.asList(infos));
+		if (debugOn) {
+			log.fine("moved " + infos.length + " classes to : " + to.getJarPath());
 		}
-		
-		registerJarIndex(jarName);
 	}
 	
 	/**
-	 * Checks to see if the jar has been indexed already
-	 * @param jarName the jar name
-	 * @return boolean if it has been built
+	 * Looks up the registration of a jar
+	 * @param jarPath the absolute jar file path
+	 * @return JarInfo the registered JarInfo, null if it has not been indexed
 	 */
-	private boolean existsJarIndex(String jarName) {
-		String[] results = null;
+	private JarInfo lookupJarIndex(String jarPath) {
 		try {
-			results = jarIndex.search(jarName);
+			return jarIndex.lookup(jarPath);
 		} catch (IndexException e) {
-			log.error("existsJarIndex : " + e, e);
+			log.log(Level.SEVERE, "lookupJarIndex : " + e, e);
 		} 
-		return (results!=null&&results.length==1);
+		return null;
 	}
 	
 	/**
-	 * Registers the jar name as been indexed
-	 * @param jarName the jar name
+	 * Looks up the registered copies of a content
+	 * @param fingerprint the content fingerprint
+	 * @return List the registered JarInfo, empty if no path has the content
 	 */
-	private void registerJarIndex(String jarName) {
+	private List<JarInfo> lookupCopies(String fingerprint) {
 		try {
-			jarIndex.add(jarName);
+			return jarIndex.lookupByFingerprint(fingerprint);
 		} catch (IndexException e) {
-			log.error("registerJarIndex : " + e, e);
+			log.log(Level.SEVERE, "lookupCopies : " + e, e);
+		}
+		return Collections.emptyList();
+	}
+	
+	/**
+	 * Registers the jar as been indexed
+	 * @param jar the JarInfo
+	 */
+	private void registerJarIndex(JarInfo jar) {
+		try {
+			jarIndex.add(jar);
+		} catch (IndexException e) {
+			log.log(Level.SEVERE, "registerJarIndex : " + e, e);
 		} 
 	}
 	
+	/**
+	 * Computes the content fingerprint of a jar file
+	 * @param jarFile the jar file
+	 * @return String the SHA-1 of the content, null if it cannot be read
+	 */
+	private String fingerprint(File jarFile) {
+		try {
+			return Files.hash(jarFile, Hashing.sha1()).toString();
+		} catch (IOException e) {
+			log.log(Level.SEVERE, "fingerprint : " + e, e);
+		}
+		return null;
+	}
+	
    /**
     * If the debug flag is set
     * @return boolean set or not
@@ -161,4 +561,19 @@ public class IndexBuilder {
 		this.debugOn = debugOn;
 	}
 
+
+	/**
+	 * The claim of a jar on its content, with the copies of the content 
+	 * found while it is being indexed, which are registered once it is 
+	 * written
+	 */
+	private static class Claim {
+
+		final JarInfo owner;
+		final List<JarInfo> copies = new ArrayList<JarInfo>();
+
+		Claim(JarInfo owner) {
+			this.owner = owner;
+		}
+	}
 }
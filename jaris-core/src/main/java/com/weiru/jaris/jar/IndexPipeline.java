@@ -0,0 +1,319 @@
+/*
+ * Jaris - Jar Indexed Search
+ * Copyright (C) 2006 Wei Ru (wei.ru@logicinspiration.com)
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation (See 
+ * license.txt for details).
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.weiru.jaris.jar;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.weiru.jaris.metrics.Metrics;
+
+/**
+ * The <code>IndexPipeline</code> builds Indexes for many jars in two stages.
+ * Parser workers take submitted jar files from a bounded queue, parse those
+ * that changed since they were last indexed and put the ClassInfo of each jar as one batch on a second bounded queue,
+ * which writer workers drain into the Indexer. Parsing and writing overlap,
+ * and a full queue blocks the stage feeding it.
+ * <p>
+ * {@link #close()} lets both stages finish all submitted work before
+ * returning. A jar that fails to be parsed or written is logged and 
+ * skipped; the workers go on with the next one.
+ */
+public class IndexPipeline {
+
+	private static final File END_OF_JARS = new File("");
+	private static final JarBatch END_OF_BATCHES = new JarBatch(null, null);
+
+	private Logger log = Logger.getLogger(IndexPipeline.class.getName());
+	private final IndexBuilder builder;
+	private final BlockingQueue<File> jarQueue;
+	private final BlockingQueue<JarBatch> batchQueue;
+	private final int parserCount;
+	private final int writerCount;
+	private final ExecutorService parsers;
+	private final ExecutorService writers;
+	private volatile boolean closed = false;
+
+	private final AtomicLong jarsSubmitted = new AtomicLong();
+	private final AtomicLong jarsSkipped = new AtomicLong();
+	private final AtomicLong jarsParsed = new AtomicLong();
+	private final AtomicLong classesParsed = new AtomicLong();
+	private final AtomicLong parseNanos = new AtomicLong();
+	private final AtomicLong parserBlockedNanos = new AtomicLong();
+	private final AtomicLong jarsWritten = new AtomicLong();
+	private final AtomicLong classesWritten = new AtomicLong();
+	private final AtomicLong writeNanos = new AtomicLong();
+
+	/**
+	 * Creates and starts an IndexPipeline
+	 * @param builder the IndexBuilder the stages delegate to
+	 * @param parserCount the number of parser workers
+	 * @param writerCount the number of writer workers
+	 * @param queueCapacity the capacity of each queue
+	 */
+	public IndexPipeline(IndexBuilder builder, int parserCount, int writerCount, int queueCapacity) {
+		this.builder = builder;
+		this.parserCount = Math.max(1, parserCount);
+		this.writerCount = Math.max(1, writerCount);
+		this.jarQueue = new ArrayBlockingQueue<File>(Math.max(1, queueCapacity));
+		this.batchQueue = new ArrayBlockingQueue<JarBatch>(Math.max(1, queueCapacity));
+		this.parsers = newPool("jaris-parser", this.parserCount);
+		this.writers = newPool("jaris-writer", this.writerCount);
+		for (int i = 0; i < this.parserCount; i++) {
+			parsers.execute(new Parser());
+		}
+		for (int i = 0; i < this.writerCount; i++) {
+			writers.execute(new Writer());
+		}
+	}
+
+	/**
+	 * Submits a jar file to be indexed. Blocks while the parser queue is full.
+	 * @param jarFile the jar file
+	 * @throws InterruptedException
+	 */
+	public void submit(File jarFile) throws InterruptedException {
+		if (closed) {
+			throw new IllegalStateException("IndexPipeline is closed");
+		}
+		jarsSubmitted.incrementAndGet();
+		jarQueue.put(jarFile);
+	}
+
+	/**
+	 * Closes the pipeline, waiting until every submitted jar has been
+	 * parsed and written
+	 * @throws InterruptedException
+	 */
+	public void close() throws InterruptedException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		for (int i = 0; i < parserCount; i++) {
+			jarQueue.put(END_OF_JARS);
+		}
+		parsers.shutdown();
+		parsers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		for (int i = 0; i < writerCount; i++) {
+			batchQueue.put(END_OF_BATCHES);
+		}
+		writers.shutdown();
+		writers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Returns the number of jars submitted
+	 * @return long the count
+	 */
+	public long getJarsSubmitted() {
+		return jarsSubmitted.get();
+	}
+
+	/**
+	 * Returns the number of jars skipped because they are unchanged since
+	 * they were indexed
+	 * @return long the count
+	 */
+	public long getJarsSkipped() {
+		return jarsSkipped.get();
+	}
+
+	/**
+	 * Returns the number of jars parsed
+	 * @return long the count
+	 */
+	public long getJarsParsed() {
+		return jarsParsed.get();
+	}
+
+	/**
+	 * Returns the number of classes parsed
+	 * @return long the count
+	 */
+	public long getClassesParsed() {
+		return classesParsed.get();
+	}
+
+	/**
+	 * Returns the time parser workers spent parsing, in nanoseconds. The 
+	 * check of a jar against its registration, which hashes it, is not 
+	 * included.
+	 * @return long the time
+	 */
+	public long getParseNanos() {
+		return parseNanos.get();
+	}
+
+	/**
+	 * Returns the time parser workers were blocked by a full batch queue,
+	 * in nanoseconds
+	 * @return long the time
+	 */
+	public long getParserBlockedNanos() {
+		return parserBlockedNanos.get();
+	}
+
+	/**
+	 * Returns the number of jars written
+	 * @return long the count
+	 */
+	public long getJarsWritten() {
+		return jarsWritten.get();
+	}
+
+	/**
+	 * Returns the number of classes written
+	 * @return long the count
+	 */
+	public long getClassesWritten() {
+		return classesWritten.get();
+	}
+
+	/**
+	 * Returns the time writer workers spent writing, in nanoseconds
+	 * @return long the time
+	 */
+	public long getWriteNanos() {
+		return writeNanos.get();
+	}
+
+	/**
+	 * Returns the String representation of the stage counters
+	 */
+	public String toString() {
+		StringBuffer sb = new StringBuffer();
+		sb.append("submitted=").append(jarsSubmitted.get());
+		sb.append(" skipped=").append(jarsSkipped.get());
+		sb.append(" parsed=").append(jarsParsed.get());
+		sb.append("/").append(classesParsed.get());
+		sb.append(" parse-ms=").append(TimeUnit.NANOSECONDS.toMillis(parseNanos.get()));
+		sb.append(" blocked-ms=").append(TimeUnit.NANOSECONDS.toMillis(parserBlockedNanos.get()));
+		sb.append(" written=").append(jarsWritten.get());
+		sb.append("/").append(classesWritten.get());
+		sb.append(" write-ms=").append(TimeUnit.NANOSECONDS.toMillis(writeNanos.get()));
+		return sb.toString();
+	}
+
+	private static ExecutorService newPool(final String name, int size) {
+		return Executors.newFixedThreadPool(size, new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, name + "-" + count.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	/**
+	 * Parses submitted jars into batches of ClassInfo
+	 */
+	private class Parser implements Runnable {
+
+		public void run() {
+			try {
+				File jarFile;
+				while ((jarFile = jarQueue.take()) != END_OF_JARS) {
+					JarBatch batch = parse(jarFile);
+					if (batch != null) {
+						long start = System.nanoTime();
+						batchQueue.put(batch);
+						parserBlockedNanos.addAndGet(System.nanoTime() - start);
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		private JarBatch parse(File jarFile) {
+			JarInfo jar = null;
+			try {
+				jar = builder.checkJarIndex(jarFile);
+				if (jar == null) {
+					jarsSkipped.incrementAndGet();
+					return null;
+				}
+				long parseStart = System.nanoTime();
+				JarResource jarRes = new JarResource(jarFile);
+				jarRes.parseClasses();
+				List<ClassInfo> infos = builder.collectClassInfo(jarRes, jar);
+				long end = System.nanoTime();
+				parseNanos.addAndGet(end - parseStart);
+				Metrics.getInstance().jarParsed(jar.getJarPath(), infos.size(), end - parseStart);
+				jarsParsed.incrementAndGet();
+				classesParsed.addAndGet(infos.size());
+				return new JarBatch(jar, infos);
+			} catch (Throwable e) {
+				// one failed jar must not stop the worker, or the queues fill up
+				log.log(Level.SEVERE, "parse : " + jarFile, e);
+				if (jar != null) {
+					builder.abandonJarIndex(jar);
+				}
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * Writes batches of ClassInfo into the Indexer
+	 */
+	private class Writer implements Runnable {
+
+		public void run() {
+			try {
+				JarBatch batch;
+				while ((batch = batchQueue.take()) != END_OF_BATCHES) {
+					try {
+						long start = System.nanoTime();
+						builder.writeIndex(batch.jar, batch.infos);
+						writeNanos.addAndGet(System.nanoTime() - start);
+						jarsWritten.incrementAndGet();
+						classesWritten.addAndGet(batch.infos.size());
+					} catch (Throwable e) {
+						log.log(Level.SEVERE, "write : " + batch.jar.getJarPath(), e);
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * The ClassInfo of one jar
+	 */
+	private static class JarBatch {
+
+		final JarInfo jar;
+		final List<ClassInfo> infos;
+
+		JarBatch(JarInfo jar, List<ClassInfo> infos) {
+			this.jar = jar;
+			this.infos = infos;
+		}
+	}
+}
@@ -0,0 +1,222 @@
+/*
+ * Jaris - Jar Indexed Search
+ * Copyright (C) 2006 Wei Ru (wei.ru@logicinspiration.com)
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation (See 
+ * license.txt for details).
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.weiru.jaris.jar;
+
+import java.io.File;
+import java.io.Serializable;
+
+/**
+ * The <code>JarInfo</code> represents a jar file registered in the jar
+ * index: where it is, and the size, modification time and content
+ * fingerprint it had when it was indexed.
+ */
+public class JarInfo implements Serializable {
+
+	private static final long serialVersionUID = -3518024365094177392L;
+	private String jarName;
+	private String jarPath;
+	private long size;
+	private long lastModified;
+	private String fingerprint;
+	private MavenCoordinates coordinates;
+
+	/**
+	 * Defines the fields that represents a jar file
+	 *
+	 * e.g.
+	 * <code>Field.JAR_NAME</code>
+	 * <code>Field.JAR_PATH</code>
+	 * <code>Field.SIZE</code>
+	 * <code>Field.LAST_MODIFIED</code>
+	 * <code>Field.FINGERPRINT</code>
+	 */
+	public static final class Field implements Serializable {
+
+		private static final long serialVersionUID = 6154329744102394411L;
+
+		String fieldName;
+
+	    private Field(String name) {
+	      fieldName = name;
+	    }
+
+	    public String getFieldName() {
+			return fieldName;
+		}
+
+	    public static final Field JAR_NAME = new Field(ClassInfo.Field.JAR_NAME.getFieldName());
+
+	    public static final Field JAR_PATH = new Field("jf");
+
+	    public static final Field SIZE = new Field("jz");
+
+	    public static final Field LAST_MODIFIED = new Field("jt");
+
+	    public static final Field FINGERPRINT = new Field("jh");
+
+	}
+
+	/**
+	 * Creates an empty JarInfo
+	 */
+	public JarInfo() {
+		super();
+	}
+
+	/**
+	 * Creates a JarInfo with the current name, path, size and modification
+	 * time of a jar file
+	 * @param jarFile the jar file
+	 */
+	public JarInfo(File jarFile) {
+		super();
+		this.jarName = jarFile.getName();
+		this.jarPath = jarFile.getAbsolutePath();
+		this.size = jarFile.length();
+		this.lastModified = jarFile.lastModified();
+	}
+
+	/**
+	 * Checks if the jar has the same size and modification time as another
+	 * @param other the other JarInfo
+	 * @return boolean if size and modification time are equal
+	 */
+	public boolean hasSameStat(JarInfo other) {
+		return other!=null && size==other.size && lastModified==other.lastModified;
+	}
+
+	/**
+	 * Checks if the jar has the same content fingerprint as another
+	 * @param other the other JarInfo
+	 * @return boolean if both fingerprints are known and equal
+	 */
+	public boolean hasSameContent(JarInfo other) {
+		return other!=null && fingerprint!=null && fingerprint.equals(other.fingerprint);
+	}
+
+	/**
+	 * Gets the jar file name
+	 * @return String the jar file name
+	 */
+	public String getJarName() {
+		return jarName;
+	}
+
+	/**
+	 * Sets the jar file name
+	 * @param jarName the jar file name
+	 */
+	public void setJarName(String jarName) {
+		this.jarName = jarName;
+	}
+
+	/**
+	 * Gets the absolute jar file path
+	 * @return String the jar file path
+	 */
+	public String getJarPath() {
+		return jarPath;
+	}
+
+	/**
+	 * Sets the absolute jar file path
+	 * @param jarPath the jar file path
+	 */
+	public void setJarPath(String jarPath) {
+		this.jarPath = jarPath;
+	}
+
+	/**
+	 * Gets the jar file size in bytes
+	 * @return long the size
+	 */
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 * Sets the jar file size in bytes
+	 * @param size the size
+	 */
+	public void setSize(long size) {
+		this.size = size;
+	}
+
+	/**
+	 * Gets the jar file modification time
+	 * @return long the modification time in milliseconds
+	 */
+	public long getLastModified() {
+		return lastModified;
+	}
+
+	/**
+	 * Sets the jar file modification time
+	 * @param lastModified the modification time in milliseconds
+	 */
+	public void setLastModified(long lastModified) {
+		this.lastModified = lastModified;
+	}
+
+	/**
+	 * Gets the content fingerprint
+	 * @return String the content fingerprint, null if not computed
+	 */
+	public String getFingerprint() {
+		return fingerprint;
+	}
+
+	/**
+	 * Sets the content fingerprint
+	 * @param fingerprint the content fingerprint
+	 */
+	public void setFingerprint(String fingerprint) {
+		this.fingerprint = fingerprint;
+	}
+
+	/**
+	 * Gets the Maven coordinates read from the path when the jar is 
+	 * indexed; they are not registered
+	 * @return MavenCoordinates the coordinates, null if the jar is not in a
+	 * Maven repository
+	 */
+	public MavenCoordinates getCoordinates() {
+		return coordinates;
+	}
+
+	/**
+	 * Sets the Maven coordinates
+	 * @param coordinates the coordinates
+	 */
+	public void setCoordinates(MavenCoordinates coordinates) {
+		this.coordinates = coordinates;
+	}
+
+	/**
+	 * Returns the String representation of this object
+	 */
+	public String toString() {
+		StringBuffer sb = new StringBuffer();
+		sb.append(jarPath);
+		sb.append("  ");
+		sb.append(size);
+		sb.append("  ");
+		sb.append(lastModified);
+		sb.append("  ");
+		sb.append(fingerprint);
+		return sb.toString();
+	}
+
+}
@@ -14,6 +14,10 @@
  */
 package com.weiru.jaris.jar;
 
+import java.util.List;
+
+import com.google.common.cache.CacheStats;
+
 import com.weiru.jaris.indexing.IndexException;
 
 public interface JarInfoIndex {
@@ -24,6 +28,65 @@ public interface JarInfoIndex {
 	 * @throws IndexException
 	 */
     public void add(String jarName) throws IndexException;
+
+	/**
+	 * Registers a jar with its path, size, modification time and
+	 * fingerprint, replacing an earlier registration of the same path
+	 * @param jar the JarInfo
+	 * @throws IndexException
+	 */
+    public void add(JarInfo jar) throws IndexException;
+
+	/**
+	 * Looks up the registration of a jar by its path
+	 * @param jarPath the absolute jar file path
+	 * @return JarInfo the registered JarInfo, null if the path is not registered
+	 * @throws IndexException
+	 */
+    public JarInfo lookup(String jarPath) throws IndexException;
+
+	/**
+	 * Looks up the registrations of all copies of a content
+	 * @param fingerprint the content fingerprint
+	 * @return List the JarInfo of every path registered with the fingerprint
+	 * @throws IndexException
+	 */
+    public List<JarInfo> lookupByFingerprint(String fingerprint) throws IndexException;
+
+    /**
+     * Returns the number of distinct contents registered
+     * @return int the count
+     * @throws IndexException
+     */
+    public int getContentCount() throws IndexException;
+
+    /**
+     * Unregisters the jar at a path
+     * @param jarPath the absolute jar file path
+     * @return JarInfo the removed JarInfo, null if the path was not registered
+     * @throws IndexException
+     */
+    public JarInfo remove(String jarPath) throws IndexException;
+
+    /**
+     * Looks up the registrations of all jars below a directory
+     * @param directoryPath the absolute directory path
+     * @return List the JarInfo of every path registered under the directory
+     * @throws IndexException
+     */
+    public List<JarInfo> lookupUnder(String directoryPath) throws IndexException;
+
+    /**
+     * Begins a batch. The underlying writer stays open until the batch ends.
+     * @throws IndexException
+     */
+    public void beginBatch() throws IndexException;
+
+    /**
+     * Ends a batch, committing all pending jar names
+     * @throws IndexException
+     */
+    public void endBatch() throws IndexException;
     
     /**
      * Get the count of total jar names indexed
@@ -39,6 +102,13 @@ public interface JarInfoIndex {
      * @throws IndexException
      */
     public String[] search(String term) throws IndexException;
+
+    /**
+     * Returns the hit, miss and eviction counts of the cached results of 
+     * jar name searches
+     * @return CacheStats the statistics
+     */
+    public CacheStats getCacheStats();
     
     /**
      * Delete all jar names matching the string expression.
@@ -17,35 +17,54 @@ package com.weiru.jaris.jar;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
-import org.apache.log4j.Logger;
+import com.google.common.cache.CacheStats;
 
+import com.weiru.jaris.config.Config;
 import com.weiru.jaris.indexing.IndexException;
 import com.weiru.jaris.indexing.IndexerFactory;
+import com.weiru.jaris.indexing.ResultCache;
 import com.weiru.jaris.indexing.Word;
 import com.weiru.jaris.indexing.WordCollection;
 import com.weiru.jaris.indexing.Indexer;
+import com.weiru.jaris.metrics.Metrics;
 
 /**
  * <code>JarInfoIndexService</code> implements API methods 
  * defined in JarInfoIndex. It provides all neccessary functions
  * to indexer and search jar information. 
+ * <p>
+ * The registrations of jars by path are also kept in memory. They are
+ * loaded from the index on first use and kept in sync by this service, 
+ * so looking up a jar while crawling costs no search. Every copy of the
+ * same content is registered under its own path and can be found by the
+ * content fingerprint. A change of a registration updates the index and 
+ * the memory together, one change at a time.
  */
 public class JarInfoIndexService implements JarInfoIndex {
 
 	private static JarInfoIndexService service;
 	private Indexer indexer;
-	private Logger log = Logger.getLogger(JarInfoIndexService.class);
+	private ResultCache<String[]> resultCache;
+	private volatile JarRegistry registry;
+	private Logger log = Logger.getLogger(JarInfoIndexService.class.getName());
 	
 	/**
 	 * Private constructor
 	 */
 	private JarInfoIndexService() {
 		try {
-			indexer = IndexerFactory.getKeywordIndex(IndexServices.SERVICE_NAME_JAR_INFO);
+			indexer = IndexerFactory.getWordIndexer(IndexServices.SERVICE_NAME_JAR_INFO);
 		} catch (IndexException e) {
-			log.error("constructor ", e);
+			log.log(Level.SEVERE, "constructor ", e);
 		}
+		if (indexer != null) {
+			indexer.setPartitionFields(JarInfo.Field.JAR_PATH.getFieldName());
+		}
+		resultCache = new ResultCache<String[]>(indexer, Config.instance().getResultCacheSize());
 	}
 	
 	/**
@@ -69,6 +88,123 @@ public class JarInfoIndexService implements JarInfoIndex {
 		indexer.store(kwc);
 	}
 
+	/**
+	 * Registers a jar with its path, size, modification time and
+	 * fingerprint, replacing an earlier registration of the same path
+	 * @param jar the JarInfo
+	 * @throws IndexException
+	 */
+	public void add(JarInfo jar) throws IndexException {
+		WordCollection kwc = convertToKeywordContent(jar);
+		synchronized (this) {
+			JarRegistry jars = getRegistry();
+			indexer.update(JarInfo.Field.JAR_PATH.getFieldName(), jar.getJarPath(), kwc);
+			jars.put(jar);
+		}
+	}
+
+	/**
+	 * Looks up the registration of a jar by its path in memory
+	 * @param jarPath the absolute jar file path
+	 * @return JarInfo the registered JarInfo, null if the path is not registered
+	 * @throws IndexException
+	 */
+	public JarInfo lookup(String jarPath) throws IndexException {
+		return getRegistry().get(jarPath);
+	}
+
+	/**
+	 * Looks up the registrations of all copies of a content in memory
+	 * @param fingerprint the content fingerprint
+	 * @return List the JarInfo of every path registered with the fingerprint
+	 * @throws IndexException
+	 */
+	public List<JarInfo> lookupByFingerprint(String fingerprint) throws IndexException {
+		return getRegistry().getByFingerprint(fingerprint);
+	}
+
+	/**
+	 * Unregisters the jar at a path
+	 * @param jarPath the absolute jar file path
+	 * @return JarInfo the removed JarInfo, null if the path was not registered
+	 * @throws IndexException
+	 */
+	public synchronized JarInfo remove(String jarPath) throws IndexException {
+		JarRegistry jars = getRegistry();
+		indexer.deleteByTerm(JarInfo.Field.JAR_PATH.getFieldName(), jarPath);
+		return jars.remove(jarPath);
+	}
+
+	/**
+	 * Looks up the registrations of all jars below a directory in memory
+	 * @param directoryPath the absolute directory path
+	 * @return List the JarInfo of every path registered under the directory
+	 * @throws IndexException
+	 */
+	public List<JarInfo> lookupUnder(String directoryPath) throws IndexException {
+		return getRegistry().getUnder(directoryPath);
+	}
+
+	/**
+	 * Returns the number of distinct contents registered
+	 * @return int the count
+	 * @throws IndexException
+	 */
+	public int getContentCount() throws IndexException {
+		return getRegistry().getContentCount();
+	}
+
+	/**
+	 * Returns the in-memory registry, loading it from the index the first
+	 * time
+	 * @return JarRegistry the registered jars
+	 * @throws IndexException
+	 */
+	private JarRegistry getRegistry() throws IndexException {
+		JarRegistry jars = registry;
+		if (jars == null) {
+			synchronized (this) {
+				jars = registry;
+				if (jars == null) {
+					jars = loadRegistry();
+					registry = jars;
+				}
+			}
+		}
+		return jars;
+	}
+
+	/**
+	 * Loads the registrations of all jars from the index
+	 * @return JarRegistry the registered jars
+	 * @throws IndexException
+	 */
+	private JarRegistry loadRegistry() throws IndexException {
+		WordCollection[] kwcs = indexer.searchByField(JarInfo.Field.JAR_PATH.getFieldName());
+		JarRegistry jars = new JarRegistry(kwcs.length);
+		for (int i=0; i<kwcs.length; i++) {
+			jars.put(convertToJarInfo(kwcs[i]));
+		}
+		log.fine("loaded " + jars.size() + " registered jars of " + jars.getContentCount() + " contents");
+		return jars;
+	}
+
+    /**
+     * Begins a batch. The underlying writer stays open until the batch ends.
+     * @throws IndexException
+     */
+	public void beginBatch() throws IndexException {
+		indexer.begin();
+	}
+
+    /**
+     * Ends a batch, committing all pending jar names
+     * @throws IndexException
+     */
+	public void endBatch() throws IndexException {
+		indexer.end();
+	}
+
     /**
      * Get the count of total jar names indexed
      * @return int the count
@@ -84,15 +220,31 @@ public class JarInfoIndexService implements JarInfoIndex {
      * @return String[] All matching jar names 
      * @throws IndexException
      */
-	public String[] search(String term)
+	public String[] search(final String term)
 			throws IndexException {
-		String field = ClassInfo.Field.JAR_NAME.getFieldName();
-		WordCollection[] kwcs = indexer.searchByTerm(field, term);
-		List kwList = new ArrayList();
-		for (int i=0; i<kwcs.length; i++) {
-			kwList.add(convertToJarName(kwcs[i]));
-		}
-		return (String[]) kwList.toArray( new String[kwList.size()]);
+		final String field = ClassInfo.Field.JAR_NAME.getFieldName();
+		long start = System.nanoTime();
+		String[] jarNames = resultCache.get(term, new Callable<String[]>() {
+			public String[] call() throws IndexException {
+				WordCollection[] kwcs = indexer.searchByTerm(field, term);
+				List<String> kwList = new ArrayList<String>();
+				for (int i=0; i<kwcs.length; i++) {
+					kwList.add(convertToJarName(kwcs[i]));
+				}
+				return kwList.toArray(new String[kwList.size()]);
+			}
+		}).clone();
+		Metrics.getInstance().searched("jar", jarNames.length, System.nanoTime() - start);
+		return jarNames;
+	}
+
+	/**
+	 * Returns the hit, miss and eviction counts of the cached results of 
+	 * {@link #search(String)}
+	 * @return CacheStats the statistics
+	 */
+	public CacheStats getCacheStats() {
+		return resultCache.stats();
 	}
 
 	/**
@@ -101,9 +253,14 @@ public class JarInfoIndexService implements JarInfoIndex {
      * @return int the number of jar names deleted
      * @throws IndexException
      */
-	public int delete(String term) throws IndexException {
+	public synchronized int delete(String term) throws IndexException {
 		String field = ClassInfo.Field.JAR_NAME.getFieldName();
-		return indexer.deleteByTerm(field, term);
+		int count = indexer.deleteByTerm(field, term);
+		// the registry reloads what is left, a batch in progress included,
+		// without committing it
+		indexer.refresh();
+		registry = null;
+		return count;
 	}
 
     /**
@@ -130,20 +287,63 @@ public class JarInfoIndexService implements JarInfoIndex {
 		return kwc;
 	}
 
+	/**
+	 * Converts JarInfo to WordCollection
+	 * @param jar the JarInfo
+	 * @return WordCollection the WordCollection object
+	 */
+	private WordCollection convertToKeywordContent(JarInfo jar) {
+		WordCollection kwc = convertToKeywordContent(jar.getJarName());
+		kwc.addKeyword(new Word(JarInfo.Field.JAR_PATH.getFieldName(), jar.getJarPath(), true, false));
+		kwc.addKeyword(new Word(JarInfo.Field.SIZE.getFieldName(), String.valueOf(jar.getSize()), true, false));
+		kwc.addKeyword(new Word(JarInfo.Field.LAST_MODIFIED.getFieldName(), String.valueOf(jar.getLastModified()), true, false));
+		if (jar.getFingerprint() != null) {
+			kwc.addKeyword(new Word(JarInfo.Field.FINGERPRINT.getFieldName(), jar.getFingerprint(), true, false));
+		}
+		return kwc;
+	}
+
 	/**
 	 * Converts WordCollection to jar name 
 	 * @param kwc the WordCollection
 	 * @return String the jar name
 	 */
 	private String convertToJarName(WordCollection kwc) {
-		Iterator iter = kwc.iterateKeywords();
+		Iterator<Word> iter = kwc.iterator();
 		Word kw = null;
+		String jarName = null;
 		while (iter.hasNext()) {
-			kw = (Word) iter.next();
+			kw = iter.next();
 			if (ClassInfo.Field.JAR_NAME.getFieldName().equals(kw.getName())) {
-				return kw.getContent(); 
+				jarName = kw.getContent(); 
 			}
 		}
-		return null;
+		return jarName;
 	}	
+
+	/**
+	 * Converts WordCollection to JarInfo
+	 * @param kwc the WordCollection
+	 * @return JarInfo the JarInfo object
+	 */
+	private JarInfo convertToJarInfo(WordCollection kwc) {
+		JarInfo jar = new JarInfo();
+		Iterator<Word> iter = kwc.iterator();
+		Word kw = null;
+		while (iter.hasNext()) {
+			kw = iter.next();
+			if (JarInfo.Field.JAR_NAME.getFieldName().equals(kw.getName())) {
+				jar.setJarName(kw.getContent());
+			} else if (JarInfo.Field.JAR_PATH.getFieldName().equals(kw.getName())) {
+				jar.setJarPath(kw.getContent());
+			} else if (JarInfo.Field.SIZE.getFieldName().equals(kw.getName())) {
+				jar.setSize(Long.parseLong(kw.getContent()));
+			} else if (JarInfo.Field.LAST_MODIFIED.getFieldName().equals(kw.getName())) {
+				jar.setLastModified(Long.parseLong(kw.getContent()));
+			} else if (JarInfo.Field.FINGERPRINT.getFieldName().equals(kw.getName())) {
+				jar.setFingerprint(kw.getContent());
+			}
+		}
+		return jar;
+	}
 }
@@ -0,0 +1,146 @@
+/*
+ * Jaris - Jar Indexed Search
+ * Copyright (C) 2006 Wei Ru (wei.ru@logicinspiration.com)
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation (See 
+ * license.txt for details).
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.weiru.jaris.jar;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * The <code>JarRegistry</code> keeps the registered jars in memory by path,
+ * and the paths of every registered copy by content fingerprint. Lookups 
+ * take no lock; registrations are serialized so both views stay in step.
+ * The paths are sorted, so the jars below a directory are one range.
+ */
+final class JarRegistry {
+
+	private final ConcurrentSkipListMap<String, JarInfo> byPath;
+	private final ConcurrentHashMap<String, Set<String>> byFingerprint;
+
+	/**
+	 * Creates an empty JarRegistry
+	 * @param expectedSize the expected number of jars
+	 */
+	JarRegistry(int expectedSize) {
+		byPath = new ConcurrentSkipListMap<String, JarInfo>();
+		byFingerprint = new ConcurrentHashMap<String, Set<String>>(Math.max(16, expectedSize * 2));
+	}
+
+	/**
+	 * Returns the registered jar at a path
+	 * @param jarPath the absolute jar file path
+	 * @return JarInfo the JarInfo, null if the path is not registered
+	 */
+	JarInfo get(String jarPath) {
+		return byPath.get(jarPath);
+	}
+
+	/**
+	 * Returns the registered copies of a content
+	 * @param fingerprint the content fingerprint
+	 * @return List the JarInfo of every path registered with the fingerprint
+	 */
+	List<JarInfo> getByFingerprint(String fingerprint) {
+		Set<String> paths = fingerprint == null ? null : byFingerprint.get(fingerprint);
+		if (paths == null) {
+			return Collections.emptyList();
+		}
+		List<JarInfo> jars = new ArrayList<JarInfo>(paths.size());
+		for (String path : paths) {
+			JarInfo jar = byPath.get(path);
+			if (jar != null && fingerprint.equals(jar.getFingerprint())) {
+				jars.add(jar);
+			}
+		}
+		return jars;
+	}
+
+	/**
+	 * Registers a jar, replacing an earlier registration of the same path
+	 * @param jar the JarInfo
+	 * @return JarInfo the replaced JarInfo, null if the path was not registered
+	 */
+	synchronized JarInfo put(JarInfo jar) {
+		JarInfo previous = byPath.put(jar.getJarPath(), jar);
+		if (previous != null && previous.getFingerprint() != null 
+				&& !previous.getFingerprint().equals(jar.getFingerprint())) {
+			Set<String> paths = byFingerprint.get(previous.getFingerprint());
+			if (paths != null) {
+				paths.remove(previous.getJarPath());
+				if (paths.isEmpty()) {
+					byFingerprint.remove(previous.getFingerprint());
+				}
+			}
+		}
+		if (jar.getFingerprint() != null) {
+			Set<String> paths = byFingerprint.get(jar.getFingerprint());
+			if (paths == null) {
+				paths = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>(4));
+				byFingerprint.put(jar.getFingerprint(), paths);
+			}
+			paths.add(jar.getJarPath());
+		}
+		return previous;
+	}
+
+	/**
+	 * Unregisters the jar at a path
+	 * @param jarPath the absolute jar file path
+	 * @return JarInfo the removed JarInfo, null if the path was not registered
+	 */
+	synchronized JarInfo remove(String jarPath) {
+		JarInfo previous = byPath.remove(jarPath);
+		if (previous != null && previous.getFingerprint() != null) {
+			Set<String> paths = byFingerprint.get(previous.getFingerprint());
+			if (paths != null) {
+				paths.remove(jarPath);
+				if (paths.isEmpty()) {
+					byFingerprint.remove(previous.getFingerprint());
+				}
+			}
+		}
+		return previous;
+	}
+
+	/**
+	 * Returns the registered jars below a directory
+	 * @param directoryPath the absolute directory path
+	 * @return List the JarInfo of every path under the directory
+	 */
+	List<JarInfo> getUnder(String directoryPath) {
+		String prefix = directoryPath.endsWith(File.separator) ? directoryPath : directoryPath + File.separator;
+		return new ArrayList<JarInfo>(byPath.subMap(prefix, prefix + '\uffff').values());
+	}
+
+	/**
+	 * Returns the number of registered paths
+	 * @return int the count
+	 */
+	int size() {
+		return byPath.size();
+	}
+
+	/**
+	 * Returns the number of distinct registered contents
+	 * @return int the count
+	 */
+	int getContentCount() {
+		return byFingerprint.size();
+	}
+}
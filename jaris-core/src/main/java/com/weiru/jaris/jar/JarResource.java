@@ -17,26 +17,58 @@ package com.weiru.jaris.jar;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.Hashtable;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
 import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
 
-import org.apache.log4j.Logger;
+import com.weiru.jaris.config.Config;
 
 /**
  * The <code>JarResource</code> represents a specific jar or zip file.
  * All class and package related information are parsed and stored in 
  * <code>JarResource</code>.
+ * <p>
+ * Archives nested in the jar, such as the libraries of a fat jar, WAR or
+ * EAR, are parsed into nested <code>JarResource</code>s named 
+ * <code>outer!/inner.jar</code>, without extracting them. A nested archive
+ * stored uncompressed is read in place; a compressed one is streamed.
  * 
  * @author Wei Ru
  */
 public final class JarResource {
 
+   /** Reads entry names from the memory-mapped central directory */
+   public static final String READER_MAPPED = "mapped";
+   /** Reads entry names through <code>java.util.zip.ZipFile</code> */
+   public static final String READER_ZIPFILE = "zipfile";
+
+   private static final String[] CLASS_SUFFIXES = { ".class" };
+   private static final String[] ARCHIVE_SUFFIXES = { ".jar", ".war", ".ear" };
+   private static final String[] NO_SUFFIXES = {};
+   private static final String[] CLASS_AND_ARCHIVE_SUFFIXES = { ".class", ".jar", ".war", ".ear" };
+   private static final String[] CLASS_ROOTS = { "BOOT-INF/classes/", "WEB-INF/classes/" };
+   private static final int MAX_NESTING = 3;
+
    public boolean debugOn=false;
-   private Hashtable packageNames=new Hashtable();  
+   private String reader = Config.instance().getJarReader();
+   private boolean readClassHeaders = Config.instance().getReadClassHeaders();
+   private Hashtable<String, String> packageNames=new Hashtable<String, String>();  
+   private Hashtable<String, ClassHeader> classHeaders=new Hashtable<String, ClassHeader>();
+   private List<JarResource> nestedJars = new ArrayList<JarResource>();
+   private JarResource parent;
+   private String entryName;
    private String jarFilePath;
-   private Logger log = Logger.getLogger(JarResource.class);
+   private Logger log = Logger.getLogger(JarResource.class.getName());
    
    /**
     * Create a JarResource with a file type representing a jar file
@@ -65,51 +97,250 @@ public final class JarResource {
    }
 
    /**
-    * Parses all class information
+    * Create a JarResource for an archive nested in another one
+    * @param parent the JarResource holding the archive
+    * @param entryName the entry name of the archive in the parent
+    */
+   private JarResource(JarResource parent, String entryName) {
+      this.parent = parent;
+      this.entryName = entryName;
+      this.jarFilePath = parent.getJarFilePath() + "!/" + entryName;
+      this.debugOn = parent.debugOn;
+      this.readClassHeaders = parent.readClassHeaders;
+   }
+
+   /**
+    * Parses all class information, with the configured reader
     *
     */
    public void parseClasses() {
       try {
-          ZipFile zf=new ZipFile(jarFilePath);
-          Enumeration e=zf.entries();
-          while (e.hasMoreElements()) {
-              ZipEntry ze=(ZipEntry)e.nextElement();
-              if (debugOn) {
-                 log.debug(dumpZipEntry(ze));
+          if (READER_MAPPED.equals(reader)) {
+              try {
+                  parseMapped();
+              } catch (ZipException e) {
+                  log.log(Level.FINE, "falling back to ZipFile : " + jarFilePath, e);
+                  packageNames.clear();
+                  classHeaders.clear();
+                  nestedJars.clear();
+                  parseZipFile();
               }
-              String resourceName = ze.getName(); 
-              if (isClassFile(resourceName)) {
-	              String shortName = getClassShortName(resourceName);
-	              String packageName = getPackageName(resourceName);
-	              packageNames.put(shortName, packageName);
-	          }
+          } else {
+              parseZipFile();
           }
-          zf.close();
           if (debugOn) {
-        	  log.debug("class-package-map:"+packageNames);
+        	  log.fine("class-package-map:"+packageNames);
            }
        } catch (NullPointerException e) {
-          log.debug("done.", e);
+          log.log(Level.FINE, "done.", e);
        } catch (FileNotFoundException e) {
-    	  log.error("Exception: ", e); 
-          e.printStackTrace();
+    	  log.log(Level.SEVERE, "Exception: ", e); 
        } catch (IOException e) {
-    	  log.error("Exception: ", e);
-          e.printStackTrace();
+    	  log.log(Level.SEVERE, "Exception: ", e);
        } catch (Exception e) {
-    	  log.error("Exception: ", e);
-    	  e.printStackTrace();
+    	  log.log(Level.SEVERE, "Exception: ", e);
        }
    }
 
    /**
-    * Returns the jar file name
+    * Parses the class names from the memory-mapped central directory
+    * @throws IOException
+    */
+   private void parseMapped() throws IOException {
+      try (RandomAccessFile raf = new RandomAccessFile(jarFilePath, "r");
+            FileChannel channel = raf.getChannel()) {
+          try (CentralDirectoryReader cdr = new CentralDirectoryReader(channel, 0, channel.size())) {
+              parseMapped(cdr, 0);
+          }
+      }
+   }
+
+   /**
+    * Parses the class names of a mapped archive and of the archives nested
+    * in it. When class headers are read, the class entries are collected 
+    * along with the archives instead of by name only.
+    * @param cdr the reader of the archive
+    * @param depth the nesting depth of the archive
+    * @throws IOException
+    */
+   private void parseMapped(CentralDirectoryReader cdr, int depth) throws IOException {
+      List<String> names = new ArrayList<String>();
+      List<CentralDirectoryReader.Entry> entries = new ArrayList<CentralDirectoryReader.Entry>();
+      boolean nesting = depth < MAX_NESTING;
+      if (readClassHeaders) {
+          cdr.read(NO_SUFFIXES, names, nesting ? CLASS_AND_ARCHIVE_SUFFIXES : CLASS_SUFFIXES, entries);
+      } else {
+          cdr.read(CLASS_SUFFIXES, names, nesting ? ARCHIVE_SUFFIXES : NO_SUFFIXES, entries);
+      }
+      for (String resourceName : names) {
+          addResource(resourceName, null);
+      }
+      for (CentralDirectoryReader.Entry entry : entries) {
+          if (!isArchive(entry.name)) {
+              try (InputStream content = cdr.openStream(entry)) {
+                  addResource(entry.name, content);
+              } catch (IOException e) {
+                  log.log(Level.FINE, "no class header : " + entry.name, e);
+                  addResource(entry.name, null);
+              }
+              continue;
+          }
+          JarResource nested = new JarResource(this, entry.name);
+          try {
+              if (entry.method == CentralDirectoryReader.STORED) {
+                  try (CentralDirectoryReader nestedCdr = cdr.openNested(entry)) {
+                      nested.parseMapped(nestedCdr, depth + 1);
+                  }
+              } else {
+                  try (ZipInputStream zin = new ZipInputStream(cdr.openStream(entry))) {
+                      nested.parseStream(zin, depth + 1);
+                  }
+              }
+              nestedJars.add(nested);
+          } catch (IOException e) {
+              log.log(Level.WARNING, "skipping nested archive : " + nested.getJarFilePath(), e);
+          }
+      }
+   }
+
+   /**
+    * Parses the class names through ZipFile
+    * @throws IOException
+    */
+   private void parseZipFile() throws IOException {
+      ZipFile zf=new ZipFile(jarFilePath);
+      try {
+          Enumeration<? extends ZipEntry> e=zf.entries();
+          while (e.hasMoreElements()) {
+              ZipEntry ze=e.nextElement();
+              if (debugOn) {
+                 log.fine(dumpZipEntry(ze));
+              }
+              if (readClassHeaders && isClassFile(ze.getName())) {
+                  try (InputStream content = zf.getInputStream(ze)) {
+                      addResource(ze.getName(), content);
+                  } catch (IOException ex) {
+                      log.log(Level.FINE, "no class header : " + ze.getName(), ex);
+                      addResource(ze.getName(), null);
+                  }
+              } else {
+                  addResource(ze.getName(), null);
+              }
+              if (isArchive(ze.getName())) {
+                  JarResource nested = new JarResource(this, ze.getName());
+                  try (ZipInputStream zin = new ZipInputStream(zf.getInputStream(ze))) {
+                      nested.parseStream(zin, 1);
+                      nestedJars.add(nested);
+                  } catch (IOException ex) {
+                      log.log(Level.WARNING, "skipping nested archive : " + nested.getJarFilePath(), ex);
+                  }
+              }
+          }
+      } finally {
+          zf.close();
+      }
+   }
+
+   /**
+    * Parses the class names of a streamed archive and of the archives 
+    * nested in it
+    * @param zin the stream positioned at the start of the archive
+    * @param depth the nesting depth of the archive
+    * @throws IOException
+    */
+   private void parseStream(ZipInputStream zin, int depth) throws IOException {
+      ZipEntry ze;
+      while ((ze = zin.getNextEntry()) != null) {
+          String resourceName = ze.getName();
+          addResource(resourceName, readClassHeaders ? zin : null);
+          if (depth < MAX_NESTING && isArchive(resourceName)) {
+              JarResource nested = new JarResource(this, resourceName);
+              // not closed, that would close the enclosing stream
+              nested.parseStream(new ZipInputStream(zin), depth + 1);
+              nestedJars.add(nested);
+          }
+      }
+   }
+
+   /**
+    * Records the class of a resource, if it is a class file, along with
+    * its header when the content is given
+    * @param resourceName the resource name
+    * @param content the content of the resource, may be null
+    */
+   private void addResource(String resourceName, InputStream content) {
+      for (String root : CLASS_ROOTS) {
+          if (resourceName.startsWith(root)) {
+              resourceName = resourceName.substring(root.length());
+              break;
+          }
+      }
+      if (isClassFile(resourceName)) {
+          String shortName = getClassShortName(resourceName);
+          String packageName = getPackageName(resourceName);
+          packageNames.put(shortName, packageName);
+          if (content != null) {
+              try {
+                  classHeaders.put(toFQN(packageName, shortName), ClassHeader.parse(content));
+              } catch (IOException e) {
+                  log.log(Level.FINE, "no class header : " + resourceName, e);
+              }
+          }
+      }
+   }
+
+   /**
+    * Returns if class file headers are read along with the class names
+    * @return boolean read or not
+    */
+   public boolean isReadClassHeaders() {
+	   return readClassHeaders;
+   }
+
+   /**
+    * Sets if class file headers are read along with the class names
+    * @param readClassHeaders read or not
+    */
+   public void setReadClassHeaders(boolean readClassHeaders) {
+	   this.readClassHeaders = readClassHeaders;
+   }
+
+   /**
+    * Returns the reader used to parse the jar
+    * @return String {@link #READER_MAPPED} or {@link #READER_ZIPFILE}
+    */
+   public String getReader() {
+	   return reader;
+   }
+
+   /**
+    * Sets the reader used to parse the jar
+    * @param reader {@link #READER_MAPPED} or {@link #READER_ZIPFILE}
+    */
+   public void setReader(String reader) {
+	   this.reader = reader;
+   }
+
+   /**
+    * Returns the jar file name, <code>outer!/inner.jar</code> for a nested
+    * archive
     * @return String the jar file name
     */
    public String getJarFileName() {
+	   if (parent!=null) {
+		   return parent.getJarFileName() + "!/" + entryName;
+	   }
 	   return new File(this.jarFilePath).getName();
    }
 
+   /**
+    * Returns the archives nested in the jar, parsed along with it
+    * @return List the nested JarResources
+    */
+   public List<JarResource> getNestedJars() {
+	   return nestedJars;
+   }
+
    /**
     * Returns the jar file path
     * @return String the jar file path
@@ -130,7 +361,7 @@ public final class JarResource {
     * Get an Enumeration of the class names
     * @return Enumeration the Enumeration
     */
-   public Enumeration getClassNames() {
+   public Enumeration<String> getClassNames() {
 	   return packageNames.keys();
    }
    
@@ -140,7 +371,7 @@ public final class JarResource {
     * @return String the package name
     */
    public String getClassPackage(String className) {
-	   return (String)packageNames.get(className);
+	   return packageNames.get(className);
    }
    
    /**
@@ -149,10 +380,28 @@ public final class JarResource {
     * @return String the fully qualified class name 
     */
    public String getClassFQN(String className) {
-	   String packagename = (String)packageNames.get(className);
+	   return toFQN(packageNames.get(className), className);
+   }
+
+   /**
+    * Get the header of a class, if class headers were read
+    * @param classFQN the fully qualified class name
+    * @return ClassHeader the class header, null if it was not read
+    */
+   public ClassHeader getClassHeader(String classFQN) {
+	   return classHeaders.get(classFQN);
+   }
+
+   /**
+    * Joins a package name and a class name
+    * @param packagename the package name
+    * @param className the class name
+    * @return String the fully qualified class name 
+    */
+   private String toFQN(String packagename, String className) {
 	   String fqn = className;
 	   if (packagename!=null&&!"".equals(packagename)) {
-		   fqn = packagename += "." + className;
+		   fqn = packagename + "." + className;
 	   }
 	   return fqn;
    }
@@ -188,8 +437,8 @@ public final class JarResource {
 	   String fullname = getClassFullName(resourceName);
 	   String shortname = getClassShortName(resourceName);
        if (debugOn) {
-    	   log.debug("f : " + fullname);
-    	   log.debug("s : " + shortname);
+    	   log.fine("f : " + fullname);
+    	   log.fine("s : " + shortname);
        }
        String packagename = fullname.substring(0, fullname.indexOf(shortname));
        if (packagename.endsWith(".")) {
@@ -198,6 +447,20 @@ public final class JarResource {
 	   return packagename;
    }
    
+   /**
+    * Check to see if this is a nested archive
+    * @param resourceName the resource name
+    * @return boolean if this file is a jar, war or ear
+    */
+   private boolean isArchive(String resourceName) {
+	   for (String suffix : ARCHIVE_SUFFIXES) {
+		   if (resourceName.endsWith(suffix)) {
+			   return true;
+		   }
+	   }
+	   return false;
+   }
+
    /**
     * Check to see if this is a class file
     * @param resourceName the resource name
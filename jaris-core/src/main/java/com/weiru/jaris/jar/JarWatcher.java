@@ -0,0 +1,316 @@
+/*
+ * Jaris - Jar Indexed Search
+ * Copyright (C) 2006 Wei Ru (wei.ru@logicinspiration.com)
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation (See 
+ * license.txt for details).
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.weiru.jaris.jar;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.weiru.jaris.config.Config;
+
+/**
+ * The <code>JarWatcher</code> keeps the indexes of directories up to date 
+ * as jars are created, changed and deleted under them, instead of crawling
+ * the directories again on a schedule. The directory trees are registered
+ * with a WatchService, and a path with events is indexed once it has been
+ * quiet for the debounce period, so a jar still being copied is read once,
+ * complete. A deleted jar, or every jar of a deleted directory, is removed
+ * from the indexes. A directory moved out of the trees is handled as
+ * deleted, and it and its subdirectories are no longer watched.
+ * <p>
+ * A new directory, a directory whose events were lost to an overflow and,
+ * on start, each watched directory is crawled again, and the registered
+ * jars under it that no longer exist are removed. Jars whose size and 
+ * modification time are unchanged are not opened again.
+ */
+public class JarWatcher {
+
+	private static final String THREAD_NAME = "jaris-watch";
+	private Logger log = Logger.getLogger(JarWatcher.class.getName());
+	private final List<Path> roots;
+	private final long debounceNanos;
+	private final WatchService watchService;
+	private final MavenLayout layout = MavenLayout.fromConfig();
+	// the state below is used by the watch thread only
+	private final Map<WatchKey, Path> directories = new HashMap<WatchKey, Path>();
+	// the same keys by their path with a trailing separator, so that those
+	// of the subdirectories of a directory are contiguous
+	private final NavigableMap<String, WatchKey> keys = new TreeMap<String, WatchKey>();
+	// paths with events, by the time they have been quiet long enough
+	private final Map<Path, Long> pending = new LinkedHashMap<Path, Long>();
+	private Thread thread;
+
+	/**
+	 * Creates a JarWatcher of directories
+	 * @param roots the directories
+	 * @param debounceMillis how long a path must be quiet before it is indexed
+	 * @throws IOException if no WatchService is available
+	 */
+	public JarWatcher(List<File> roots, long debounceMillis) throws IOException {
+		this.roots = new ArrayList<Path>(roots.size());
+		for (File root : roots) {
+			this.roots.add(root.getAbsoluteFile().toPath());
+		}
+		this.debounceNanos = TimeUnit.MILLISECONDS.toNanos(debounceMillis);
+		this.watchService = FileSystems.getDefault().newWatchService();
+	}
+
+	/**
+	 * Creates a JarWatcher of the directories configured by 
+	 * <code>indexing.watch.directory</code>
+	 * @throws IOException if no WatchService is available
+	 */
+	public JarWatcher() throws IOException {
+		this(toFiles(Config.instance().getWatchDirectories()), Config.instance().getWatchDebounceMillis());
+	}
+
+	/**
+	 * Starts watching on a daemon thread
+	 */
+	public synchronized void start() {
+		if (thread != null) {
+			return;
+		}
+		thread = new Thread(THREAD_NAME) {
+			public void run() {
+				watch();
+			}
+		};
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stops watching, waiting for the paths being indexed to be committed
+	 */
+	public void stop() {
+		try {
+			// wakes the watch thread, which is not interrupted so as not to
+			// close the index files it may be writing
+			watchService.close();
+		} catch (IOException e) {
+			log.log(Level.WARNING, "stop : " + e, e);
+		}
+		Thread t;
+		synchronized (this) {
+			t = thread;
+		}
+		if (t != null) {
+			try {
+				t.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private void watch() {
+		for (Path root : roots) {
+			pending.put(root, System.nanoTime());
+		}
+		try {
+			while (true) {
+				WatchKey key;
+				if (pending.isEmpty()) {
+					key = watchService.take();
+				} else {
+					long wait = pending.values().iterator().next() - System.nanoTime();
+					key = watchService.poll(Math.max(0, wait), TimeUnit.NANOSECONDS);
+				}
+				while (key != null) {
+					collect(key);
+					key = watchService.poll();
+				}
+				index();
+			}
+		} catch (ClosedWatchServiceException e) {
+			log.fine("stopped watching " + roots);
+		} catch (InterruptedException e) {
+			log.fine("stopped watching " + roots);
+		}
+	}
+
+	/**
+	 * Schedules the paths of the events of a key
+	 */
+	private void collect(WatchKey key) {
+		Path directory = directories.get(key);
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == OVERFLOW) {
+				log.warning("events lost, crawling again : " + (directory == null ? roots : directory));
+				if (directory == null) {
+					for (Path root : roots) {
+						schedule(root);
+					}
+				} else {
+					schedule(directory);
+				}
+				continue;
+			}
+			if (directory == null) {
+				continue;
+			}
+			Path path = directory.resolve((Path) event.context());
+			if (event.kind() == ENTRY_DELETE) {
+				// whatever it was: the key of a directory renamed away stays
+				// valid, so it is not reported otherwise
+				forget(path);
+				schedule(path);
+			} else if (BuilderUtil.shouldIndex(path.toFile(), layout)
+					|| (event.kind() == ENTRY_CREATE && Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS))) {
+				schedule(path);
+			}
+		}
+		if (!key.reset()) {
+			// the directory is gone; its jars are removed
+			directories.remove(key);
+			if (directory != null) {
+				forget(directory);
+				schedule(directory);
+			}
+		}
+	}
+
+	/**
+	 * Cancels the keys of a directory and its subdirectories, which are 
+	 * watched again if it is created anew
+	 */
+	private void forget(Path directory) {
+		String prefix = directory.toString() + File.separator;
+		SortedMap<String, WatchKey> under = keys.subMap(prefix, prefix + '\uffff');
+		for (WatchKey key : under.values()) {
+			key.cancel();
+			directories.remove(key);
+		}
+		under.clear();
+	}
+
+	/**
+	 * Schedules a path to be indexed once it has been quiet for the 
+	 * debounce period, postponing it if it is scheduled already
+	 */
+	private void schedule(Path path) {
+		pending.remove(path);
+		pending.put(path, System.nanoTime() + debounceNanos);
+	}
+
+	/**
+	 * Indexes the paths that have been quiet long enough, in one batch
+	 */
+	private void index() {
+		List<Path> ready = new ArrayList<Path>();
+		long now = System.nanoTime();
+		// pending is in order of the deadlines
+		for (Iterator<Map.Entry<Path, Long>> it = pending.entrySet().iterator(); it.hasNext(); ) {
+			Map.Entry<Path, Long> entry = it.next();
+			if (entry.getValue() - now > 0) {
+				break;
+			}
+			ready.add(entry.getKey());
+			it.remove();
+		}
+		if (ready.isEmpty()) {
+			return;
+		}
+		IndexBuilder builder = IndexBuilder.getInstance();
+		builder.beginBatch();
+		try {
+			for (Path path : ready) {
+				try {
+					index(builder, path);
+				} catch (RuntimeException e) {
+					log.log(Level.WARNING, "index " + path + " : " + e, e);
+				}
+			}
+		} finally {
+			builder.endBatch();
+		}
+		log.fine("indexed " + ready.size() + " changed paths");
+	}
+
+	private void index(IndexBuilder builder, Path path) {
+		File file = path.toFile();
+		if (file.isDirectory()) {
+			// registered before it is crawled, so no change is missed
+			register(path);
+			BuilderUtil.buildIndexUnderDir(file);
+			builder.removeDeletedUnder(file);
+		} else if (file.isFile()) {
+			builder.buildIndex(file);
+		} else if (!builder.removeIndex(file.getAbsolutePath())) {
+			builder.removeDeletedUnder(file);
+		}
+	}
+
+	/**
+	 * Registers a directory and its subdirectories with the WatchService
+	 */
+	private void register(Path directory) {
+		try {
+			Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+				@Override
+				public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+					WatchKey key = dir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+					directories.put(key, dir);
+					keys.put(dir.toString() + File.separator, key);
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult visitFileFailed(Path file, IOException e) {
+					log.fine("cannot watch " + file + " : " + e);
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		} catch (IOException e) {
+			log.log(Level.WARNING, "register " + directory + " : " + e, e);
+		}
+	}
+
+	private static List<File> toFiles(List<String> paths) {
+		List<File> files = new ArrayList<File>(paths.size());
+		for (String path : paths) {
+			files.add(new File(path));
+		}
+		return files;
+	}
+}
@@ -0,0 +1,80 @@
+/*
+ * Jaris - Jar Indexed Search
+ * Copyright (C) 2006 Wei Ru (wei.ru@logicinspiration.com)
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation (See 
+ * license.txt for details).
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.weiru.jaris.jar;
+
+import java.io.Serializable;
+
+/**
+ * The <code>MavenCoordinates</code> identify an artifact of a Maven 
+ * repository by groupId, artifactId and version, and the file by its
+ * classifier and extension.
+ */
+public final class MavenCoordinates implements Serializable {
+
+	private static final long serialVersionUID = 2811830275461129203L;
+	private final String groupId;
+	private final String artifactId;
+	private final String version;
+	private final String classifier;
+	private final String extension;
+
+	/**
+	 * Creates MavenCoordinates
+	 * @param groupId the groupId
+	 * @param artifactId the artifactId
+	 * @param version the version
+	 * @param classifier the classifier, null for the main artifact
+	 * @param extension the file extension
+	 */
+	public MavenCoordinates(String groupId, String artifactId, String version, 
+			String classifier, String extension) {
+		this.groupId = groupId;
+		this.artifactId = artifactId;
+		this.version = version;
+		this.classifier = classifier;
+		this.extension = extension;
+	}
+
+	public String getGroupId() {
+		return groupId;
+	}
+
+	public String getArtifactId() {
+		return artifactId;
+	}
+
+	public String getVersion() {
+		return version;
+	}
+
+	/**
+	 * Gets the classifier
+	 * @return String the classifier, null for the main artifact
+	 */
+	public String getClassifier() {
+		return classifier;
+	}
+
+	public String getExtension() {
+		return extension;
+	}
+
+	/**
+	 * Returns the coordinates as <code>groupId:artifactId:version[:classifier]</code>
+	 */
+	public String toString() {
+		return groupId + ":" + artifactId + ":" + version + (classifier == null ? "" : ":" + classifier);
+	}
+}
@@ -0,0 +1,343 @@
+/*
+ * Jaris - Jar Indexed Search
+ * Copyright (C) 2006 Wei Ru (wei.ru@logicinspiration.com)
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation (See 
+ * license.txt for details).
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.weiru.jaris.jar;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.weiru.jaris.config.Config;
+
+/**
+ * The <code>MavenLayout</code> reads the Maven coordinates of the jars in
+ * Maven repositories from their paths, laid out as
+ * <code>group/path/artifactId/version/artifactId-version[-classifier].ext</code>
+ * below a repository root, and decides which of them are indexed: 
+ * artifacts with a skipped classifier, such as sources and javadoc, are 
+ * not opened, and with a version limit only the newest versions of each
+ * artifact are crawled. Files elsewhere are indexed as usual.
+ */
+public class MavenLayout {
+
+	/**
+	 * Orders versions the way Maven does for common schemes: numbers 
+	 * numerically, and qualifiers alpha &lt; beta &lt; milestone &lt; rc 
+	 * &lt; snapshot &lt; release &lt; sp
+	 */
+	static final Comparator<String> VERSION_ORDER = new VersionOrder();
+
+	private static final String SNAPSHOT = "SNAPSHOT";
+	// the version of a deployed snapshot file, e.g. 1.0-20240101.123456-1
+	private static final Pattern SNAPSHOT_TIMESTAMP = Pattern.compile("\\d{8}\\.\\d{6}-\\d+");
+	private final List<String> roots;
+	private final Set<String> skippedClassifiers;
+	private final int maxVersions;
+
+	/**
+	 * Creates a MavenLayout
+	 * @param roots the repository root directories
+	 * @param skippedClassifiers the classifiers of artifacts not indexed
+	 * @param maxVersions the number of newest versions indexed per artifact, 0 for all
+	 */
+	public MavenLayout(List<File> roots, Collection<String> skippedClassifiers, int maxVersions) {
+		this.roots = new ArrayList<String>(roots.size());
+		for (File root : roots) {
+			String path = root.getAbsolutePath();
+			this.roots.add(path.endsWith(File.separator) ? path : path + File.separator);
+		}
+		this.skippedClassifiers = new HashSet<String>(skippedClassifiers);
+		this.maxVersions = maxVersions;
+	}
+
+	/**
+	 * Returns the MavenLayout configured by <code>indexing.repository</code>
+	 * @return MavenLayout the layout, null unless the layout is maven and 
+	 * roots are configured
+	 */
+	public static MavenLayout fromConfig() {
+		Config config = Config.instance();
+		if (!"maven".equalsIgnoreCase(config.getRepositoryLayout().trim())) {
+			return null;
+		}
+		List<File> roots = new ArrayList<File>();
+		for (String root : config.getRepositoryRoots()) {
+			roots.add(new File(root));
+		}
+		if (roots.isEmpty()) {
+			return null;
+		}
+		return new MavenLayout(roots, config.getRepositorySkippedClassifiers(), 
+				config.getRepositoryMaxVersions());
+	}
+
+	/**
+	 * Reads the coordinates of a file from its path
+	 * @param file the file
+	 * @return MavenCoordinates the coordinates, null if the file is not laid
+	 * out as an artifact below a root
+	 */
+	public MavenCoordinates parse(File file) {
+		String relative = relativize(file.getAbsolutePath());
+		if (relative == null) {
+			return null;
+		}
+		String[] segments = relative.split(Pattern.quote(File.separator));
+		int n = segments.length;
+		// at least one group segment, the artifactId, version and file name
+		if (n < 4) {
+			return null;
+		}
+		String fileName = segments[n - 1];
+		String version = segments[n - 2];
+		String artifactId = segments[n - 3];
+		String prefix = artifactId + "-";
+		if (!fileName.startsWith(prefix)) {
+			return null;
+		}
+		String rest = fileName.substring(prefix.length());
+		String fileVersion = version;
+		if (!rest.startsWith(version)) {
+			if (!version.endsWith(SNAPSHOT)) {
+				return null;
+			}
+			String base = version.substring(0, version.length() - SNAPSHOT.length());
+			Matcher m = SNAPSHOT_TIMESTAMP.matcher(rest);
+			if (!rest.startsWith(base) || !m.region(base.length(), rest.length()).lookingAt()) {
+				return null;
+			}
+			fileVersion = rest.substring(0, m.end());
+		}
+		rest = rest.substring(fileVersion.length());
+		int dot = rest.lastIndexOf('.');
+		if (dot < 0 || (dot > 0 && rest.charAt(0) != '-')) {
+			return null;
+		}
+		String classifier = dot > 1 ? rest.substring(1, dot) : null;
+		StringBuilder groupId = new StringBuilder(segments[0]);
+		for (int i = 1; i < n - 3; i++) {
+			groupId.append('.').append(segments[i]);
+		}
+		return new MavenCoordinates(groupId.toString(), artifactId, version, classifier, rest.substring(dot + 1));
+	}
+
+	/**
+	 * Checks if a file is to be indexed, which is unless it is an artifact
+	 * with a skipped classifier
+	 * @param file the file
+	 * @return boolean whether it is indexed
+	 */
+	public boolean accept(File file) {
+		MavenCoordinates coordinates = parse(file);
+		return coordinates == null || coordinates.getClassifier() == null 
+				|| !skippedClassifiers.contains(coordinates.getClassifier());
+	}
+
+	/**
+	 * Returns the version directories of an artifact directory beyond the
+	 * newest versions that are indexed. A child directory is taken for a 
+	 * version directory if it has a file named after the artifactId and 
+	 * itself. Children are only looked into if the directory is deep enough
+	 * below a root to be an artifact directory, and has more of them than
+	 * the versions indexed.
+	 * @param directory the directory below a root
+	 * @param children the names of the children of the directory
+	 * @return List the names of the versions not indexed, empty if all are
+	 */
+	public List<String> getExcludedVersions(File directory, String[] children) {
+		if (maxVersions <= 0 || children.length <= maxVersions) {
+			return Collections.emptyList();
+		}
+		// at least one group segment and the artifactId
+		String relative = relativize(directory.getAbsolutePath() + File.separator);
+		if (relative == null || relative.indexOf(File.separatorChar) == relative.length() - 1) {
+			return Collections.emptyList();
+		}
+		List<String> versions = new ArrayList<String>();
+		for (String child : children) {
+			if (isVersionDirectory(directory.getName(), new File(directory, child))) {
+				versions.add(child);
+			}
+		}
+		if (versions.size() <= maxVersions) {
+			return Collections.emptyList();
+		}
+		Collections.sort(versions, VERSION_ORDER);
+		return versions.subList(0, versions.size() - maxVersions);
+	}
+
+	private static boolean isVersionDirectory(String artifactId, File directory) {
+		String[] names = directory.list();
+		if (names == null) {
+			return false;
+		}
+		String version = directory.getName();
+		if (version.endsWith(SNAPSHOT)) {
+			version = version.substring(0, version.length() - SNAPSHOT.length());
+		}
+		String prefix = artifactId + "-" + version;
+		for (String name : names) {
+			if (name.startsWith(prefix)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns a path relative to the root it is below
+	 * @param path the absolute path
+	 * @return String the relative path, null if it is below no root
+	 */
+	private String relativize(String path) {
+		for (String root : roots) {
+			if (path.startsWith(root) && path.length() > root.length()) {
+				return path.substring(root.length());
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Compares versions token by token. Tokens are separated by dots and
+	 * dashes and at changes between digits and letters; a missing token
+	 * counts as a release, less than any number.
+	 */
+	private static final class VersionOrder implements Comparator<String>, Serializable {
+
+		private static final long serialVersionUID = -4893457237010934762L;
+		private static final int UNKNOWN = 8;
+		private static final Map<String, Integer> QUALIFIERS = new HashMap<String, Integer>();
+		static {
+			QUALIFIERS.put("alpha", 1);
+			QUALIFIERS.put("a", 1);
+			QUALIFIERS.put("beta", 2);
+			QUALIFIERS.put("b", 2);
+			QUALIFIERS.put("milestone", 3);
+			QUALIFIERS.put("m", 3);
+			QUALIFIERS.put("rc", 4);
+			QUALIFIERS.put("cr", 4);
+			QUALIFIERS.put("snapshot", 5);
+			QUALIFIERS.put("", 6);
+			QUALIFIERS.put("ga", 6);
+			QUALIFIERS.put("final", 6);
+			QUALIFIERS.put("release", 6);
+			QUALIFIERS.put("sp", 7);
+		}
+
+		public int compare(String a, String b) {
+			List<String> ta = tokens(a);
+			List<String> tb = tokens(b);
+			for (int i = 0; i < Math.max(ta.size(), tb.size()); i++) {
+				int c = compareTokens(i < ta.size() ? ta.get(i) : null, i < tb.size() ? tb.get(i) : null);
+				if (c != 0) {
+					return c;
+				}
+			}
+			return 0;
+		}
+
+		private static int compareTokens(String x, String y) {
+			boolean xNumber = x != null && Character.isDigit(x.charAt(0));
+			boolean yNumber = y != null && Character.isDigit(y.charAt(0));
+			if (xNumber && yNumber) {
+				return compareNumbers(x, y);
+			}
+			if (xNumber) {
+				return y == null ? compareNumbers(x, "0") : 1;
+			}
+			if (yNumber) {
+				return x == null ? compareNumbers("0", y) : -1;
+			}
+			String qx = x == null ? "" : x;
+			String qy = y == null ? "" : y;
+			int c = rank(qx) - rank(qy);
+			return c != 0 ? c : qx.compareTo(qy);
+		}
+
+		private static int compareNumbers(String x, String y) {
+			x = stripZeros(x);
+			y = stripZeros(y);
+			return x.length() != y.length() ? x.length() - y.length() : x.compareTo(y);
+		}
+
+		private static String stripZeros(String number) {
+			int i = 0;
+			while (i < number.length() - 1 && number.charAt(i) == '0') {
+				i++;
+			}
+			return number.substring(i);
+		}
+
+		private static int rank(String qualifier) {
+			Integer rank = QUALIFIERS.get(qualifier);
+			return rank == null ? UNKNOWN : rank.intValue();
+		}
+
+		private static List<String> tokens(String version) {
+			List<String> tokens = new ArrayList<String>();
+			String v = version.toLowerCase(Locale.ROOT);
+			int start = 0;
+			for (int i = 0; i <= v.length(); i++) {
+				boolean end = i == v.length();
+				char c = end ? '.' : v.charAt(i);
+				if (c == '.' || c == '-' || c == '_' || c == '+') {
+					if (i > start) {
+						tokens.add(v.substring(start, i));
+					}
+					start = i + 1;
+				} else if (i > start && Character.isDigit(c) != Character.isDigit(v.charAt(i - 1))) {
+					tokens.add(v.substring(start, i));
+					start = i;
+				}
+			}
+			return normalize(tokens);
+		}
+
+		/**
+		 * Drops the zeros before a qualifier or the end, and a release 
+		 * qualifier at the end, so 1.0.0, 1.0 and 1.0.Final are equal and
+		 * 1.0-rc1 equals 1-rc1
+		 */
+		private static List<String> normalize(List<String> tokens) {
+			List<String> normalized = new ArrayList<String>(tokens.size());
+			boolean beforeQualifier = true;
+			for (int i = tokens.size() - 1; i >= 0; i--) {
+				String token = tokens.get(i);
+				boolean number = Character.isDigit(token.charAt(0));
+				if (number && beforeQualifier && stripZeros(token).equals("0")) {
+					continue;
+				}
+				if (!number && normalized.isEmpty() && rank(token) == rank("")) {
+					continue;
+				}
+				normalized.add(token);
+				beforeQualifier = !number;
+			}
+			Collections.reverse(normalized);
+			return normalized;
+		}
+	}
+}
@@ -0,0 +1,57 @@
+/*
+ * Jaris - Jar Indexed Search
+ * Copyright (C) 2006 Wei Ru (wei.ru@logicinspiration.com)
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation (See 
+ * license.txt for details).
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.weiru.jaris.metrics;
+
+/**
+ * The MBean interface of the indexing counters of {@link JmxMetrics}
+ */
+public interface IndexingStatsMBean {
+
+	/**
+	 * Returns the number of jar files checked against their registration
+	 * @return long the count
+	 */
+	public long getJarsScanned();
+
+	/**
+	 * Returns the number of jar files not parsed because they or a copy
+	 * of their content are indexed already
+	 * @return long the count
+	 */
+	public long getJarsSkipped();
+
+	/**
+	 * Returns the number of jar files parsed
+	 * @return long the count
+	 */
+	public long getJarsParsed();
+
+	/**
+	 * Returns the number of jar files whose classes were written
+	 * @return long the count
+	 */
+	public long getJarsIndexed();
+
+	/**
+	 * Returns the number of classes written to the class index
+	 * @return long the count
+	 */
+	public long getClassesIndexed();
+
+	/**
+	 * Clears all counters and latencies
+	 */
+	public void reset();
+}
@@ -0,0 +1,206 @@
+/*
+ * Jaris - Jar Indexed Search
+ * Copyright (C) 2006 Wei Ru (wei.ru@logicinspiration.com)
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation (See 
+ * license.txt for details).
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.weiru.jaris.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.NotCompliantMBeanException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * The <code>JmxMetrics</code> keeps counters and latencies of indexing and 
+ * searches, and registers them with the platform MBeanServer under the
+ * <code>com.weiru.jaris</code> domain:
+ * <ul>
+ * <li><code>type=Indexing</code> the jar and class counters</li>
+ * <li><code>type=Latency,name=parse</code> the parse time per jar</li>
+ * <li><code>type=Latency,name=index</code> the write time per jar</li>
+ * <li><code>type=Commit,name=&lt;index&gt;</code> the commit time per index</li>
+ * <li><code>type=Search,name=&lt;search type&gt;</code> the search time and 
+ * hits per kind of search</li>
+ * </ul>
+ */
+public class JmxMetrics implements MetricsListener, IndexingStatsMBean {
+
+	/**
+	 * The domain of the ObjectNames
+	 */
+	public static final String DOMAIN = "com.weiru.jaris";
+
+	private static JmxMetrics instance;
+	private Logger log = Logger.getLogger(JmxMetrics.class.getName());
+	private final AtomicLong jarsScanned = new AtomicLong();
+	private final AtomicLong jarsSkipped = new AtomicLong();
+	private final AtomicLong jarsIndexed = new AtomicLong();
+	private final LatencyStats parse;
+	private final LatencyStats index;
+	private final ConcurrentMap<String, LatencyStats> commits = new ConcurrentHashMap<String, LatencyStats>();
+	private final ConcurrentMap<String, LatencyStats> searches = new ConcurrentHashMap<String, LatencyStats>();
+
+	private JmxMetrics() {
+		try {
+			register(new StandardMBean(this, IndexingStatsMBean.class), "type=Indexing");
+		} catch (NotCompliantMBeanException e) {
+			log.log(Level.WARNING, "register MBean : type=Indexing", e);
+		}
+		parse = newStats("Latency", "parse");
+		index = newStats("Latency", "index");
+	}
+
+	/**
+	 * Returns the singleton JmxMetrics, registering its MBeans the first time
+	 * @return JmxMetrics
+	 */
+	public static synchronized JmxMetrics getInstance() {
+		if (instance == null) {
+			instance = new JmxMetrics();
+		}
+		return instance;
+	}
+
+	public void jarScanned(String jarPath) {
+		jarsScanned.incrementAndGet();
+	}
+
+	public void jarSkipped(String jarPath) {
+		jarsSkipped.incrementAndGet();
+	}
+
+	public void jarParsed(String jarPath, int classes, long nanos) {
+		parse.record(nanos, classes);
+	}
+
+	public void jarIndexed(String jarPath, int classes, long nanos) {
+		jarsIndexed.incrementAndGet();
+		index.record(nanos, classes);
+	}
+
+	public void committed(String indexName, int docs, long nanos) {
+		getStats(commits, "Commit", indexName).record(nanos, docs);
+	}
+
+	public void searched(String type, int hits, long nanos) {
+		getStats(searches, "Search", type).record(nanos, hits);
+	}
+
+	public long getJarsScanned() {
+		return jarsScanned.get();
+	}
+
+	public long getJarsSkipped() {
+		return jarsSkipped.get();
+	}
+
+	public long getJarsParsed() {
+		return parse.getCount();
+	}
+
+	public long getJarsIndexed() {
+		return jarsIndexed.get();
+	}
+
+	public long getClassesIndexed() {
+		return index.getItems();
+	}
+
+	/**
+	 * Returns the commit latencies of an index
+	 * @param indexName the index name
+	 * @return LatencyStats the latencies, null if the index has not committed
+	 */
+	public LatencyStats getCommitStats(String indexName) {
+		return commits.get(indexName);
+	}
+
+	/**
+	 * Returns the latencies and hits of a kind of search
+	 * @param type the search type
+	 * @return LatencyStats the latencies, null if there was no such search
+	 */
+	public LatencyStats getSearchStats(String type) {
+		return searches.get(type);
+	}
+
+	/**
+	 * Returns the latencies and hits of all kinds of search so far
+	 * @return Map the LatencyStats by search type
+	 */
+	public Map<String, LatencyStats> getSearchStats() {
+		return Collections.unmodifiableMap(searches);
+	}
+
+	public void reset() {
+		jarsScanned.set(0);
+		jarsSkipped.set(0);
+		jarsIndexed.set(0);
+		parse.reset();
+		index.reset();
+		for (LatencyStats stats : commits.values()) {
+			stats.reset();
+		}
+		for (LatencyStats stats : searches.values()) {
+			stats.reset();
+		}
+	}
+
+	private LatencyStats getStats(ConcurrentMap<String, LatencyStats> all, String type, String name) {
+		LatencyStats stats = all.get(name);
+		if (stats == null) {
+			synchronized (all) {
+				stats = all.get(name);
+				if (stats == null) {
+					stats = newStats(type, name);
+					all.put(name, stats);
+				}
+			}
+		}
+		return stats;
+	}
+
+	private LatencyStats newStats(String type, String name) {
+		LatencyStats stats = new LatencyStats();
+		register(stats, "type=" + type + ",name=" + name);
+		return stats;
+	}
+
+	/**
+	 * Registers an MBean. Failures are logged, since the metrics are still 
+	 * kept and other listeners still called.
+	 */
+	private void register(Object mbean, String properties) {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(DOMAIN + ":" + properties);
+			if (server.isRegistered(name)) {
+				// e.g. Jaris loaded twice in one JVM by different class loaders
+				log.warning("MBean already registered : " + name);
+				return;
+			}
+			server.registerMBean(mbean, name);
+		} catch (JMException e) {
+			log.log(Level.WARNING, "register MBean : " + properties, e);
+		}
+	}
+}
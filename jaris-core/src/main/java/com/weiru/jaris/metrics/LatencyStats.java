@@ -0,0 +1,138 @@
+/*
+ * Jaris - Jar Indexed Search
+ * Copyright (C) 2006 Wei Ru (wei.ru@logicinspiration.com)
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation (See 
+ * license.txt for details).
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.weiru.jaris.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The <code>LatencyStats</code> counts events in a histogram of their 
+ * latencies. Each power of two of nanoseconds is split into four buckets,
+ * so percentiles are accurate to within 25%. Recording takes no lock.
+ */
+public class LatencyStats implements LatencyStatsMBean {
+
+	private static final int SUB_BUCKET_BITS = 2;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(64 * SUB_BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong items = new AtomicLong();
+	private final AtomicLong totalNanos = new AtomicLong();
+	private final AtomicLong maxNanos = new AtomicLong();
+
+	/**
+	 * Records an event
+	 * @param nanos the latency
+	 * @param handled the number of items the event handled
+	 */
+	public void record(long nanos, long handled) {
+		nanos = Math.max(0, nanos);
+		buckets.incrementAndGet(bucket(nanos));
+		count.incrementAndGet();
+		items.addAndGet(handled);
+		totalNanos.addAndGet(nanos);
+		long max;
+		while ((max = maxNanos.get()) < nanos && !maxNanos.compareAndSet(max, nanos)) {
+			// retry
+		}
+	}
+
+	public long getCount() {
+		return count.get();
+	}
+
+	public long getItems() {
+		return items.get();
+	}
+
+	public double getMeanMillis() {
+		long n = count.get();
+		return n == 0 ? 0 : toMillis(totalNanos.get() / n);
+	}
+
+	public double getP50Millis() {
+		return getPercentileMillis(50);
+	}
+
+	public double getP90Millis() {
+		return getPercentileMillis(90);
+	}
+
+	public double getP99Millis() {
+		return getPercentileMillis(99);
+	}
+
+	public double getMaxMillis() {
+		return toMillis(maxNanos.get());
+	}
+
+	public void reset() {
+		for (int i = 0; i < buckets.length(); i++) {
+			buckets.set(i, 0);
+		}
+		count.set(0);
+		items.set(0);
+		totalNanos.set(0);
+		maxNanos.set(0);
+	}
+
+	/**
+	 * Returns a percentile of the recorded latencies, as the upper bound of 
+	 * the bucket it falls into
+	 * @param percent the percentile
+	 * @return double the latency in milliseconds
+	 */
+	public double getPercentileMillis(double percent) {
+		long total = 0;
+		for (int i = 0; i < buckets.length(); i++) {
+			total += buckets.get(i);
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(percent / 100 * total);
+		for (int i = 0; i < buckets.length(); i++) {
+			rank -= buckets.get(i);
+			if (rank <= 0) {
+				return toMillis(Math.min(upperBound(i), maxNanos.get()));
+			}
+		}
+		return getMaxMillis();
+	}
+
+	private static int bucket(long nanos) {
+		if (nanos < SUB_BUCKETS) {
+			return (int) nanos;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+		int sub = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return exponent * SUB_BUCKETS + sub;
+	}
+
+	private static long upperBound(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int exponent = bucket / SUB_BUCKETS;
+		long sub = bucket % SUB_BUCKETS;
+		return ((SUB_BUCKETS + sub + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+	}
+
+	private static double toMillis(long nanos) {
+		return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+	}
+}
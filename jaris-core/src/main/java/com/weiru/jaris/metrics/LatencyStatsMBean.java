@@ -0,0 +1,69 @@
+/*
+ * Jaris - Jar Indexed Search
+ * Copyright (C) 2006 Wei Ru (wei.ru@logicinspiration.com)
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation (See 
+ * license.txt for details).
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.weiru.jaris.metrics;
+
+/**
+ * The MBean interface of {@link LatencyStats}
+ */
+public interface LatencyStatsMBean {
+
+	/**
+	 * Returns the number of timed events
+	 * @return long the count
+	 */
+	public long getCount();
+
+	/**
+	 * Returns the number of items the events handled, e.g. search hits, 
+	 * parsed classes or committed documents
+	 * @return long the count
+	 */
+	public long getItems();
+
+	/**
+	 * Returns the mean latency
+	 * @return double the latency in milliseconds
+	 */
+	public double getMeanMillis();
+
+	/**
+	 * Returns the median latency
+	 * @return double the latency in milliseconds
+	 */
+	public double getP50Millis();
+
+	/**
+	 * Returns the 90th percentile latency
+	 * @return double the latency in milliseconds
+	 */
+	public double getP90Millis();
+
+	/**
+	 * Returns the 99th percentile latency
+	 * @return double the latency in milliseconds
+	 */
+	public double getP99Millis();
+
+	/**
+	 * Returns the highest latency
+	 * @return double the latency in milliseconds
+	 */
+	public double getMaxMillis();
+
+	/**
+	 * Clears all counts
+	 */
+	public void reset();
+}
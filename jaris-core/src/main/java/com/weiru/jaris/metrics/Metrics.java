@@ -0,0 +1,98 @@
+/*
+ * Jaris - Jar Indexed Search
+ * Copyright (C) 2006 Wei Ru (wei.ru@logicinspiration.com)
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation (See 
+ * license.txt for details).
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.weiru.jaris.metrics;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.weiru.jaris.config.Config;
+
+/**
+ * The <code>Metrics</code> passes indexing and search events on to the 
+ * registered MetricsListeners. Unless disabled by configuration the 
+ * {@link JmxMetrics} listener is registered, publishing counters and 
+ * latencies as MBeans.
+ */
+public class Metrics implements MetricsListener {
+
+	private static final Metrics instance = new Metrics();
+	private final List<MetricsListener> listeners = new CopyOnWriteArrayList<MetricsListener>();
+
+	private Metrics() {
+		if (Config.instance().getMetricsJmxEnabled()) {
+			addListener(JmxMetrics.getInstance());
+		}
+	}
+
+	/**
+	 * Returns the singleton Metrics
+	 * @return Metrics
+	 */
+	public static Metrics getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Adds a listener
+	 * @param listener the MetricsListener
+	 */
+	public void addListener(MetricsListener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Removes a listener
+	 * @param listener the MetricsListener
+	 */
+	public void removeListener(MetricsListener listener) {
+		listeners.remove(listener);
+	}
+
+	public void jarScanned(String jarPath) {
+		for (MetricsListener listener : listeners) {
+			listener.jarScanned(jarPath);
+		}
+	}
+
+	public void jarSkipped(String jarPath) {
+		for (MetricsListener listener : listeners) {
+			listener.jarSkipped(jarPath);
+		}
+	}
+
+	public void jarParsed(String jarPath, int classes, long nanos) {
+		for (MetricsListener listener : listeners) {
+			listener.jarParsed(jarPath, classes, nanos);
+		}
+	}
+
+	public void jarIndexed(String jarPath, int classes, long nanos) {
+		for (MetricsListener listener : listeners) {
+			listener.jarIndexed(jarPath, classes, nanos);
+		}
+	}
+
+	public void committed(String index, int docs, long nanos) {
+		for (MetricsListener listener : listeners) {
+			listener.committed(index, docs, nanos);
+		}
+	}
+
+	public void searched(String type, int hits, long nanos) {
+		for (MetricsListener listener : listeners) {
+			listener.searched(type, hits, nanos);
+		}
+	}
+}
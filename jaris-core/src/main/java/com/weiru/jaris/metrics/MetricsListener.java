@@ -0,0 +1,68 @@
+/*
+ * Jaris - Jar Indexed Search
+ * Copyright (C) 2006 Wei Ru (wei.ru@logicinspiration.com)
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation (See 
+ * license.txt for details).
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.weiru.jaris.metrics;
+
+/**
+ * A <code>MetricsListener</code> is told about indexing and search events.
+ * Listeners are added to {@link Metrics} and called on the thread the 
+ * event happened on, so they should return quickly.
+ */
+public interface MetricsListener {
+
+	/**
+	 * A jar file was checked against its registration
+	 * @param jarPath the jar file path
+	 */
+	public void jarScanned(String jarPath);
+
+	/**
+	 * A jar file was not parsed, because it or a copy of its content is
+	 * indexed already
+	 * @param jarPath the jar file path
+	 */
+	public void jarSkipped(String jarPath);
+
+	/**
+	 * A jar file was parsed
+	 * @param jarPath the jar file path
+	 * @param classes the number of classes found
+	 * @param nanos the time taken
+	 */
+	public void jarParsed(String jarPath, int classes, long nanos);
+
+	/**
+	 * The classes of a jar file were written to the class index
+	 * @param jarPath the jar file path
+	 * @param classes the number of classes written
+	 * @param nanos the time taken
+	 */
+	public void jarIndexed(String jarPath, int classes, long nanos);
+
+	/**
+	 * An index committed its pending changes
+	 * @param index the index name
+	 * @param docs the number of documents committed
+	 * @param nanos the time taken, including the searcher refresh
+	 */
+	public void committed(String index, int docs, long nanos);
+
+	/**
+	 * A search was answered
+	 * @param type the kind of search, e.g. <code>term</code> or <code>suggest</code>
+	 * @param hits the number of results returned
+	 * @param nanos the time taken
+	 */
+	public void searched(String type, int hits, long nanos);
+}
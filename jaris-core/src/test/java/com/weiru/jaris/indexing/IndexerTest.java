@@ -0,0 +1,112 @@
+package com.weiru.jaris.indexing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.LockObtainFailedException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class IndexerTest {
+
+	private File location;
+	private Indexer indexer;
+
+	@Before
+	public void createIndexer() throws Exception {
+		location = Files.createTempDirectory("jaris-indexer").toFile();
+		indexer = new Indexer(location.getPath());
+		indexer.setRefreshIntervalMillis(0);
+		indexer.setWriterIdleMillis(100);
+	}
+
+	@After
+	public void deleteIndex() throws IndexException {
+		indexer.close();
+		delete(location);
+	}
+
+	@Test
+	public void testWriteIsCommittedOnReturn() throws Exception {
+		indexer.store(words("name", "a"));
+		assertEquals(1, committedCount(location));
+		assertEquals(1, indexer.getCount());
+	}
+
+	@Test
+	public void testSessionIsCommittedWhenItEnds() throws Exception {
+		indexer.begin();
+		indexer.store(words("name", "a"));
+		indexer.store(words("name", "b"));
+		assertEquals(0, committedCount(location));
+		indexer.end();
+		assertEquals(2, committedCount(location));
+	}
+
+	@Test
+	public void testIdleWriterReleasesTheWriteLock() throws Exception {
+		indexer.begin();
+		indexer.store(words("name", "a"));
+		Thread.sleep(300);
+		// a session keeps the writer open however long it is idle
+		try (Directory directory = FSDirectory.open(Paths.get(location.getPath()))) {
+			try {
+				new IndexWriter(directory, new IndexWriterConfig(new KeywordAnalyzer())).close();
+				fail("the session holds the write lock");
+			} catch (LockObtainFailedException e) {
+				// expected
+			}
+		}
+		indexer.end();
+		Thread.sleep(300);
+
+		// another process can write now, and the Indexer sees its commits
+		try (Directory directory = FSDirectory.open(Paths.get(location.getPath()));
+				IndexWriter other = new IndexWriter(directory, new IndexWriterConfig(new KeywordAnalyzer()))) {
+			other.addDocument(words("name", "b").document());
+			other.commit();
+		}
+		assertEquals(2, indexer.getCount());
+		assertEquals(1, indexer.searchByExactTerm("name", "b").length);
+
+		// and writes again itself
+		indexer.store(words("name", "c"));
+		assertEquals(3, committedCount(location));
+		assertEquals(3, indexer.getCount());
+	}
+
+	static WordCollection words(String name, String content) {
+		WordCollection words = new WordCollection();
+		words.addKeyword(new Word(name, content, true, false));
+		return words;
+	}
+
+	static int committedCount(File location) throws IOException {
+		try (Directory directory = FSDirectory.open(Paths.get(location.getPath()));
+				DirectoryReader reader = DirectoryReader.open(directory)) {
+			return reader.numDocs();
+		}
+	}
+
+	static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+}
@@ -0,0 +1,55 @@
+package com.weiru.jaris.indexing;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.Callable;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ResultCacheTest {
+
+	private File location;
+	private Indexer indexer;
+	private ResultCache<Integer> cache;
+
+	@Before
+	public void createIndexer() throws Exception {
+		location = Files.createTempDirectory("jaris-cache").toFile();
+		indexer = new Indexer(location.getPath());
+		indexer.setRefreshIntervalMillis(0);
+		cache = new ResultCache<Integer>(indexer, 10);
+	}
+
+	@After
+	public void deleteIndex() throws IndexException {
+		indexer.close();
+		IndexerTest.delete(location);
+	}
+
+	@Test
+	public void testWriteInvalidatesCachedResults() throws Exception {
+		indexer.store(IndexerTest.words("name", "a"));
+		assertEquals(1, count("a"));
+		assertEquals(1, count("a"));
+		assertEquals(1, cache.stats().hitCount());
+		assertEquals(1, cache.stats().missCount());
+
+		indexer.store(IndexerTest.words("name", "a"));
+		assertEquals(2, count("a"));
+		assertEquals(1, cache.stats().hitCount());
+		assertEquals(2, cache.stats().missCount());
+		assertEquals(1, cache.size());
+	}
+
+	private int count(final String content) throws IndexException {
+		return cache.get(content, new Callable<Integer>() {
+			public Integer call() throws IndexException {
+				return indexer.searchByExactTerm("name", content).length;
+			}
+		});
+	}
+}
@@ -0,0 +1,107 @@
+package com.weiru.jaris.indexing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class SearchExecutorTest {
+
+	@Test(timeout = 10000)
+	public void testLimitsPooledSearches() throws Exception {
+		assertLimits(new SearchExecutor(2, false));
+	}
+
+	@Test(timeout = 10000)
+	public void testLimitsVirtualSearches() throws Exception {
+		// falls back to a pool where the JVM has no virtual threads
+		assertLimits(new SearchExecutor(2, true));
+	}
+
+	@Test
+	public void testSearchFailureIsReturned() throws Exception {
+		SearchExecutor executor = new SearchExecutor(1, false);
+		try {
+			executor.submit(new Callable<Object>() {
+				public Object call() throws IndexException {
+					throw new IndexException("failed", null);
+				}
+			}).get();
+			assertTrue("the failure is returned", false);
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof IndexException);
+		} finally {
+			executor.close();
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void testExecuteCountsAgainstTheLimit() throws Exception {
+		SearchExecutor executor = new SearchExecutor("test-", 1, true);
+		final CountDownLatch release = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(2);
+		final List<String> names = new ArrayList<String>();
+		try {
+			for (int i = 0; i < 2; i++) {
+				executor.execute(new Runnable() {
+					public void run() {
+						synchronized (names) {
+							names.add(Thread.currentThread().getName());
+						}
+						try {
+							release.await();
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+						done.countDown();
+					}
+				});
+			}
+			Thread.sleep(100);
+			assertEquals(1, executor.getActiveCount());
+			release.countDown();
+			assertTrue(done.await(5, TimeUnit.SECONDS));
+			assertTrue(names.get(0), names.get(0).startsWith("test-"));
+		} finally {
+			executor.close();
+		}
+	}
+
+	private static void assertLimits(SearchExecutor executor) throws Exception {
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxRunning = new AtomicInteger();
+		List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+		try {
+			for (int i = 0; i < 8; i++) {
+				final int n = i;
+				results.add(executor.submit(new Callable<Integer>() {
+					public Integer call() throws InterruptedException {
+						int now = running.incrementAndGet();
+						synchronized (maxRunning) {
+							maxRunning.set(Math.max(maxRunning.get(), now));
+						}
+						Thread.sleep(20);
+						running.decrementAndGet();
+						return n;
+					}
+				}));
+			}
+			for (int i = 0; i < results.size(); i++) {
+				assertEquals(i, results.get(i).get().intValue());
+			}
+			assertEquals(2, maxRunning.get());
+			assertEquals(0, executor.getActiveCount());
+		} finally {
+			executor.close();
+		}
+	}
+}
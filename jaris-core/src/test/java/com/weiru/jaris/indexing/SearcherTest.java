@@ -0,0 +1,142 @@
+package com.weiru.jaris.indexing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.store.FSDirectory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SearcherTest {
+
+	private File location;
+	private IndexWriter writer;
+	private Searcher searcher;
+
+	@Before
+	public void createIndex() throws IOException {
+		location = Files.createTempDirectory("jaris-searcher").toFile();
+		writer = new IndexWriter(FSDirectory.open(Paths.get(location.getPath())), 
+				new IndexWriterConfig(new KeywordAnalyzer()));
+		add(0, 25);
+		searcher = new Searcher(location.getPath());
+	}
+
+	@After
+	public void deleteIndex() throws IOException {
+		searcher.close();
+		writer.close();
+		for (File file : location.listFiles()) {
+			file.delete();
+		}
+		location.delete();
+	}
+
+	@Test
+	public void testPagesThroughAllHits() throws IOException, ParseException {
+		Set<String> seen = new HashSet<String>();
+		ResultPage<WordCollection> page = searcher.searchByTerm("name", "item*", 10, null);
+		int pages = 1;
+		collect(page, seen);
+		while (page.hasMore()) {
+			assertEquals(25, page.getTotalHits());
+			page = searcher.searchByTerm("name", "item*", 10, page.getCursor());
+			collect(page, seen);
+			pages++;
+		}
+		assertEquals(3, pages);
+		assertEquals(5, page.getResults().size());
+		assertNull(page.getCursor());
+		assertEquals(25, seen.size());
+	}
+
+	@Test
+	public void testLastFullPageHasNoCursor() throws IOException, ParseException {
+		ResultPage<WordCollection> page = searcher.searchByTerm("name", "item*", 25, null);
+		assertEquals(25, page.getResults().size());
+		assertFalse(page.hasMore());
+	}
+
+	@Test
+	public void testCursorKeepsItsReader() throws IOException, ParseException {
+		searcher.setRefreshIntervalMillis(0);
+		ResultPage<WordCollection> first = searcher.searchByTerm("name", "item*", 10, null);
+		add(25, 10);
+		searcher.refresh();
+		assertEquals(35, searcher.getCount());
+
+		// the following pages see the 25 documents the first page was found in
+		Set<String> seen = new HashSet<String>();
+		collect(first, seen);
+		ResultPage<WordCollection> page = first;
+		while (page.hasMore()) {
+			page = searcher.searchByTerm("name", "item*", 10, page.getCursor());
+			assertEquals(25, page.getTotalHits());
+			collect(page, seen);
+		}
+		assertEquals(25, seen.size());
+		assertEquals(35, searcher.searchByTerm("name", "item*", 10, null).getTotalHits());
+	}
+
+	@Test
+	public void testRejectsExpiredCursor() throws Exception {
+		searcher.setRefreshIntervalMillis(0);
+		searcher.setCursorMaxAgeSeconds(0.05);
+		ResultPage<WordCollection> page = searcher.searchByTerm("name", "item*", 10, null);
+		assertNotNull(page.getCursor());
+		add(25, 1);
+		Thread.sleep(100);
+		// searching the new reader releases the old one, pinned for too long
+		searcher.searchByTerm("name", "item*", 100, null);
+		try {
+			searcher.searchByTerm("name", "item*", 10, page.getCursor());
+			fail("the reader of the cursor is released");
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage(), e.getMessage().startsWith("expired cursor"));
+		}
+	}
+
+	@Test
+	public void testRejectsMalformedCursor() throws IOException, ParseException {
+		for (String cursor : new String[] { "", "abc", "1.2", "1.2.x!" }) {
+			try {
+				searcher.searchByTerm("name", "item*", 10, cursor);
+				fail("accepted " + cursor);
+			} catch (IllegalArgumentException e) {
+				assertTrue(e.getMessage(), e.getMessage().startsWith("invalid cursor"));
+			}
+		}
+	}
+
+	private void add(int from, int count) throws IOException {
+		for (int i = from; i < from + count; i++) {
+			WordCollection words = new WordCollection();
+			words.addKeyword(new Word("name", "item" + i, true, false));
+			writer.addDocument(words.document());
+		}
+		writer.commit();
+	}
+
+	private static void collect(ResultPage<WordCollection> page, Set<String> seen) {
+		for (WordCollection words : page.getResults()) {
+			String name = words.iterator().next().getContent();
+			assertTrue("seen twice: " + name, seen.add(name));
+		}
+	}
+}
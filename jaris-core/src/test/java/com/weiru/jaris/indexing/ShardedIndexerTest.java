@@ -0,0 +1,120 @@
+package com.weiru.jaris.indexing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ShardedIndexerTest {
+
+	private static final int SHARDS = 3;
+
+	private File location;
+	private Indexer indexer;
+
+	@Before
+	public void createIndexer() throws Exception {
+		location = Files.createTempDirectory("jaris-shards").toFile();
+		indexer = new Indexer(location.getPath());
+		indexer.setShards(SHARDS);
+		indexer.setPartitionFields("group");
+		indexer.setRefreshIntervalMillis(0);
+	}
+
+	@After
+	public void deleteIndex() throws IndexException {
+		indexer.close();
+		IndexerTest.delete(location);
+	}
+
+	@Test
+	public void testRoutesByPartitionField() throws Exception {
+		int[] expected = new int[SHARDS];
+		for (int i = 0; i < 30; i++) {
+			indexer.store(words("id" + i, "g" + i));
+			expected[shardOf("g" + i)]++;
+		}
+		// without a partition field it goes to the first shard
+		indexer.store(IndexerTest.words("id", "none"));
+		expected[0]++;
+
+		for (int i = 0; i < SHARDS; i++) {
+			assertEquals(expected[i], IndexerTest.committedCount(new File(location, String.valueOf(i))));
+		}
+		assertEquals(31, indexer.getCount());
+	}
+
+	@Test
+	public void testUpdateDeletesFromOtherShards() throws Exception {
+		String first = "g0";
+		String second = "g1";
+		for (int i = 2; shardOf(second) == shardOf(first); i++) {
+			second = "g" + i;
+		}
+		indexer.update("id", "moving", words("moving", first));
+		indexer.update("id", "moving", words("moving", second));
+
+		WordCollection[] found = indexer.searchByExactTerm("id", "moving");
+		assertEquals(1, found.length);
+		assertEquals(second, content(found[0], "group"));
+		assertEquals(0, IndexerTest.committedCount(new File(location, String.valueOf(shardOf(first)))));
+	}
+
+	@Test
+	public void testCursorPagesAcrossShards() throws Exception {
+		Set<Integer> shards = new HashSet<Integer>();
+		for (int i = 0; i < 25; i++) {
+			WordCollection words = words("id" + i, "g" + i);
+			words.addKeyword(new Word("kind", "all", true, false));
+			indexer.store(words);
+			shards.add(shardOf("g" + i));
+		}
+		assertEquals(SHARDS, shards.size());
+
+		Set<String> ids = new HashSet<String>();
+		String cursor = null;
+		int pages = 0;
+		do {
+			ResultPage<WordCollection> page = indexer.searchByTerm("kind", "all", 7, cursor);
+			assertEquals(25, page.getTotalHits());
+			assertTrue(page.getResults().size() <= 7);
+			for (WordCollection words : page.getResults()) {
+				assertTrue(ids.add(content(words, "id")));
+			}
+			cursor = page.hasMore() ? page.getCursor() : null;
+			pages++;
+		} while (cursor != null);
+		assertEquals(25, ids.size());
+		assertEquals(4, pages);
+	}
+
+	private static int shardOf(String group) {
+		return (group.hashCode() & Integer.MAX_VALUE) % SHARDS;
+	}
+
+	private static WordCollection words(String id, String group) {
+		WordCollection words = new WordCollection();
+		words.addKeyword(new Word("id", id, true, false));
+		words.addKeyword(new Word("group", group, true, false));
+		return words;
+	}
+
+	private static String content(WordCollection words, String name) {
+		Iterator<Word> iter = words.iterator();
+		while (iter.hasNext()) {
+			Word word = iter.next();
+			if (name.equals(word.getName())) {
+				return word.getContent();
+			}
+		}
+		return null;
+	}
+}
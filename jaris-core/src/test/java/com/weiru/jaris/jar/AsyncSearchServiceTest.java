@@ -0,0 +1,58 @@
+/*
+ * Jaris - Jar Indexed Search
+ * Copyright (C) 2006 Wei Ru (wei.ru@logicinspiration.com)
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation (See 
+ * license.txt for details).
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.weiru.jaris.jar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.weiru.jaris.indexing.IndexException;
+
+public class AsyncSearchServiceTest {
+
+	private static AsyncSearchService service;
+
+	@BeforeClass
+	public static void useTestIndex() throws IOException, IndexException {
+		TestIndex.use();
+		ClassInfoIndexService.getService().add(new ClassInfo("org.sample.async.Sprocket", "sprockets.jar"));
+		service = AsyncSearchService.getService();
+	}
+
+	@Test
+	public void testSearchesComplete() throws Exception {
+		assertEquals(1, service.searchByTerm(ClassInfo.Field.CLASS_NAME, "Sprocket").get().length);
+		assertEquals(1, service.searchByTerm(ClassInfo.Field.CLASS_NAME, "Sprocket", 10, null).get().getResults().size());
+		assertEquals(1, service.searchBySample(new ClassInfo("org.sample.async.Sprocket", "sprockets.jar")).get().length);
+		assertEquals(1, service.searchByPrefix("Sprock", 10).get().length);
+		assertEquals("Sprocket", service.suggest("Sprock", 5).get()[0]);
+		assertEquals(0, service.getExecutor().getActiveCount());
+	}
+
+	@Test
+	public void testFailedSearchThrowsItsIndexException() throws Exception {
+		try {
+			service.searchByTerm(ClassInfo.Field.CLASS_NAME, "(Sprocket").get();
+			assertTrue("the search fails", false);
+		} catch (ExecutionException e) {
+			assertTrue(String.valueOf(e.getCause()), e.getCause() instanceof IndexException);
+		}
+	}
+}
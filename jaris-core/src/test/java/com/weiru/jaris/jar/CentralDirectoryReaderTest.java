@@ -0,0 +1,240 @@
+/*
+ * Jaris - Jar Indexed Search
+ * Copyright (C) 2006 Wei Ru (wei.ru@logicinspiration.com)
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation (See 
+ * license.txt for details).
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.weiru.jaris.jar;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CentralDirectoryReaderTest {
+
+	private static final String[] NONE = {};
+	private static final String[] CLASSES = { ".class" };
+	private static final String[] ARCHIVES = { ".jar" };
+
+	private File file;
+
+	@Before
+	public void createFile() throws IOException {
+		file = File.createTempFile("jaris-cdr", ".jar");
+	}
+
+	@After
+	public void deleteFile() {
+		file.delete();
+	}
+
+	@Test
+	public void testReadsMatchingNamesAndEntries() throws IOException {
+		write(file, new byte[0], zip("a/A.class", "a/B.class", "META-INF/MANIFEST.MF", "lib/inner.jar"));
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			FileChannel channel = raf.getChannel();
+			CentralDirectoryReader cdr = new CentralDirectoryReader(channel, 0, channel.size());
+			List<String> names = new ArrayList<String>();
+			List<CentralDirectoryReader.Entry> entries = new ArrayList<CentralDirectoryReader.Entry>();
+			cdr.read(CLASSES, names, ARCHIVES, entries);
+			assertEquals(Arrays.asList("a/A.class", "a/B.class"), names);
+			assertEquals(1, entries.size());
+			assertEquals("lib/inner.jar", entries.get(0).name);
+		}
+	}
+
+	@Test
+	public void testStreamsDeflatedEntry() throws IOException {
+		write(file, new byte[0], zip("a/A.class", "a/B.class"));
+		assertContent(file, "a/B.class");
+	}
+
+	@Test
+	public void testReadsStoredNestedArchiveInPlace() throws IOException {
+		byte[] inner = zip("b/C.class", "b/D.class");
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ZipOutputStream out = new ZipOutputStream(bytes)) {
+			out.putNextEntry(new ZipEntry("a/A.class"));
+			out.write(content("a/A.class"));
+			ZipEntry stored = new ZipEntry("lib/inner.jar");
+			stored.setMethod(ZipEntry.STORED);
+			stored.setSize(inner.length);
+			stored.setCompressedSize(inner.length);
+			CRC32 crc = new CRC32();
+			crc.update(inner);
+			stored.setCrc(crc.getValue());
+			out.putNextEntry(stored);
+			out.write(inner);
+		}
+		write(file, new byte[0], bytes.toByteArray());
+
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			FileChannel channel = raf.getChannel();
+			CentralDirectoryReader cdr = new CentralDirectoryReader(channel, 0, channel.size());
+			List<CentralDirectoryReader.Entry> entries = new ArrayList<CentralDirectoryReader.Entry>();
+			cdr.read(NONE, new ArrayList<String>(), ARCHIVES, entries);
+			assertEquals(CentralDirectoryReader.STORED, entries.get(0).method);
+
+			try (CentralDirectoryReader nested = cdr.openNested(entries.get(0))) {
+				List<String> names = new ArrayList<String>();
+				List<CentralDirectoryReader.Entry> classes = new ArrayList<CentralDirectoryReader.Entry>();
+				nested.read(CLASSES, names, CLASSES, classes);
+				assertEquals(Arrays.asList("b/C.class", "b/D.class"), names);
+				try (InputStream in = nested.openStream(classes.get(1))) {
+					assertArrayEquals(content("b/D.class"), readAll(in));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testRejectsCompressedNestedArchive() throws IOException {
+		write(file, new byte[0], zip("lib/inner.jar"));
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			FileChannel channel = raf.getChannel();
+			CentralDirectoryReader cdr = new CentralDirectoryReader(channel, 0, channel.size());
+			List<CentralDirectoryReader.Entry> entries = new ArrayList<CentralDirectoryReader.Entry>();
+			cdr.read(NONE, new ArrayList<String>(), ARCHIVES, entries);
+			try {
+				cdr.openNested(entries.get(0));
+				fail("a deflated archive cannot be read in place");
+			} catch (ZipException e) {
+				// expected
+			}
+		}
+	}
+
+	@Test
+	public void testShiftsOffsetsPastPrependedData() throws IOException {
+		// a launcher script before the archive, as in a self-executing jar
+		byte[] script = "#!/bin/sh\nexec java -jar \"$0\" \"$@\"\n".getBytes(StandardCharsets.US_ASCII);
+		write(file, script, zip("a/A.class", "a/B.class"));
+		assertContent(file, "a/B.class");
+	}
+
+	@Test
+	public void testReadsZip64Archive() throws IOException {
+		// more entries than the end of central directory record can count
+		String[] names = new String[0x10000 + 10];
+		for (int i = 0; i < names.length; i++) {
+			names[i] = "c/C" + i + ".class";
+		}
+		byte[] zip = zip(names);
+
+		write(file, new byte[0], zip);
+		assertEquals(names.length, readNames(file).size());
+		assertContent(file, names[names.length - 1]);
+
+		write(file, new byte[100], zip);
+		assertEquals(names.length, readNames(file).size());
+		assertContent(file, names[names.length - 1]);
+	}
+
+	@Test
+	public void testReadsArchiveAtOffset() throws IOException {
+		byte[] zip = zip("a/A.class");
+		write(file, new byte[64], zip);
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			FileChannel channel = raf.getChannel();
+			List<String> names = new ArrayList<String>();
+			new CentralDirectoryReader(channel, 64, zip.length).read(CLASSES, names, NONE, null);
+			assertEquals(Collections.singletonList("a/A.class"), names);
+		}
+	}
+
+	@Test(expected = ZipException.class)
+	public void testRejectsNonZipFile() throws IOException {
+		write(file, new byte[0], new byte[100]);
+		readNames(file);
+	}
+
+	private static List<String> readNames(File file) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			FileChannel channel = raf.getChannel();
+			List<String> names = new ArrayList<String>();
+			new CentralDirectoryReader(channel, 0, channel.size()).read(CLASSES, names, NONE, null);
+			return names;
+		}
+	}
+
+	private static void assertContent(File file, String name) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+				CentralDirectoryReader cdr = new CentralDirectoryReader(raf.getChannel(), 0, raf.length())) {
+			List<CentralDirectoryReader.Entry> entries = new ArrayList<CentralDirectoryReader.Entry>();
+			cdr.read(NONE, new ArrayList<String>(), new String[] { name }, entries);
+			assertEquals(1, entries.size());
+			assertEquals(CentralDirectoryReader.DEFLATED, entries.get(0).method);
+			try (InputStream in = cdr.openStream(entries.get(0))) {
+				assertArrayEquals(content(name), readAll(in));
+			}
+		}
+	}
+
+	/**
+	 * Zips deflated entries, each holding its name repeated
+	 */
+	private static byte[] zip(String... names) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ZipOutputStream out = new ZipOutputStream(bytes)) {
+			for (String name : names) {
+				out.putNextEntry(new ZipEntry(name));
+				out.write(content(name));
+			}
+		}
+		return bytes.toByteArray();
+	}
+
+	private static byte[] content(String name) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 20; i++) {
+			sb.append(name).append(i);
+		}
+		return sb.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static void write(File file, byte[] prefix, byte[] zip) throws IOException {
+		try (OutputStream out = new FileOutputStream(file)) {
+			out.write(prefix);
+			out.write(zip);
+		}
+	}
+
+	private static byte[] readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1024];
+		for (int n; (n = in.read(buffer)) > 0; ) {
+			out.write(buffer, 0, n);
+		}
+		return out.toByteArray();
+	}
+}
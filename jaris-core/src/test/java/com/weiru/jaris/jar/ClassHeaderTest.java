@@ -0,0 +1,134 @@
+/*
+ * Jaris - Jar Indexed Search
+ * Copyright (C) 2006 Wei Ru (wei.ru@logicinspiration.com)
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation (See 
+ * license.txt for details).
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.weiru.jaris.jar;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.util.AbstractList;
+
+import org.junit.Test;
+
+public class ClassHeaderTest {
+
+	/** Long and double constants take two constant pool entries */
+	abstract static class Fixture extends AbstractList<String> implements Runnable, Serializable {
+		private static final long serialVersionUID = 1L;
+		static final long BIG = System.currentTimeMillis() > 0 ? 0x123456789L : 0;
+		static final double RATIO = BIG * 1.5d;
+		final String label = "fixture" + BIG + RATIO;
+	}
+
+	enum Kind {
+		ONE, TWO
+	}
+
+	@Test
+	public void testParsesClass() throws IOException {
+		ClassHeader header = parse(Fixture.class);
+		assertEquals(Fixture.class.getName(), header.getClassName());
+		assertEquals(AbstractList.class.getName(), header.getSuperClassName());
+		assertArrayEquals(new String[] { Runnable.class.getName(), Serializable.class.getName() }, 
+				header.getInterfaceNames());
+		assertTrue((header.getAccessFlags() & ClassHeader.ACC_ABSTRACT) != 0);
+		assertEquals(0, header.getAccessFlags() & ClassHeader.ACC_INTERFACE);
+	}
+
+	@Test
+	public void testParsesInterfaceAndEnum() throws IOException {
+		ClassHeader header = parse(ClassInfoIndex.class);
+		assertEquals(ClassInfoIndex.class.getName(), header.getClassName());
+		assertTrue((header.getAccessFlags() & ClassHeader.ACC_INTERFACE) != 0);
+		assertTrue((header.getAccessFlags() & ClassHeader.ACC_PUBLIC) != 0);
+
+		header = parse(Kind.class);
+		assertEquals("com.weiru.jaris.jar.ClassHeaderTest$Kind", header.getClassName());
+		assertEquals(Enum.class.getName(), header.getSuperClassName());
+		assertTrue((header.getAccessFlags() & ClassHeader.ACC_ENUM) != 0);
+		assertTrue((header.getAccessFlags() & ClassHeader.ACC_FINAL) != 0);
+	}
+
+	@Test
+	public void testParsesObjectWithoutSuperClass() throws IOException {
+		ClassHeader header = parse(Object.class);
+		assertEquals(Object.class.getName(), header.getClassName());
+		assertNull(header.getSuperClassName());
+		assertEquals(0, header.getInterfaceNames().length);
+	}
+
+	@Test
+	public void testDecodesNonAsciiName() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(0xCAFEBABE);
+		out.writeShort(0);
+		out.writeShort(52);
+		out.writeShort(9); // constant pool count, one more than the entries
+		out.writeByte(1);
+		out.writeUTF("p/Caf\u00e9");
+		out.writeByte(7);
+		out.writeShort(1);
+		out.writeByte(5); // a long takes entries 3 and 4
+		out.writeLong(42);
+		out.writeByte(1);
+		out.writeUTF("java/lang/Object");
+		out.writeByte(7);
+		out.writeShort(5);
+		out.writeByte(6); // a double takes entries 7 and 8
+		out.writeDouble(4.2);
+		out.writeShort(ClassHeader.ACC_PUBLIC);
+		out.writeShort(2);
+		out.writeShort(6);
+		out.writeShort(0);
+		ClassHeader header = ClassHeader.parse(new ByteArrayInputStream(bytes.toByteArray()));
+		assertEquals("p.Caf\u00e9", header.getClassName());
+		assertEquals(Object.class.getName(), header.getSuperClassName());
+	}
+
+	@Test(expected = IOException.class)
+	public void testRejectsNonClassFile() throws IOException {
+		ClassHeader.parse(new ByteArrayInputStream("PK\3\4 not a class".getBytes("US-ASCII")));
+	}
+
+	@Test(expected = IOException.class)
+	public void testRejectsTruncatedClassFile() throws IOException {
+		byte[] bytes = read(Fixture.class);
+		ClassHeader.parse(new ByteArrayInputStream(bytes, 0, bytes.length / 4));
+	}
+
+	private static ClassHeader parse(Class<?> type) throws IOException {
+		return ClassHeader.parse(new ByteArrayInputStream(read(type)));
+	}
+
+	private static byte[] read(Class<?> type) throws IOException {
+		String name = type.getName();
+		try (InputStream in = type.getResourceAsStream(name.substring(name.lastIndexOf('.') + 1) + ".class")) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			for (int n; (n = in.read(buffer)) > 0; ) {
+				out.write(buffer, 0, n);
+			}
+			return out.toByteArray();
+		}
+	}
+}
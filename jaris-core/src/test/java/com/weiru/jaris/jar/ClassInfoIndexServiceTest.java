@@ -0,0 +1,68 @@
+/*
+ * Jaris - Jar Indexed Search
+ * Copyright (C) 2006 Wei Ru (wei.ru@logicinspiration.com)
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation (See 
+ * license.txt for details).
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.weiru.jaris.jar;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.weiru.jaris.indexing.IndexException;
+
+public class ClassInfoIndexServiceTest {
+
+	private static ClassInfoIndexService service;
+
+	@BeforeClass
+	public static void useTestIndex() throws IOException {
+		TestIndex.use();
+		service = ClassInfoIndexService.getService();
+	}
+
+	@Test
+	public void testFoundClassIsASample() throws IndexException {
+		ClassInfo info = new ClassInfo("org.sample.gadgets.Gadget", "gadgets-1.0.jar");
+		info.setJarPath("/repo/org/sample/gadgets/1.0/gadgets-1.0.jar");
+		info.setFingerprint("0a1b2c");
+		info.setGroupId("org.sample");
+		info.setArtifactId("gadgets");
+		info.setVersion("1.0");
+		info.setAccessFlags(0x21);
+		info.setSuperClassName("java.lang.Object");
+		info.setInterfaceNames(new String[] {"java.io.Serializable", "java.lang.Cloneable"});
+		service.add(info);
+
+		ClassInfo[] found = service.searchBySample(new ClassInfo("org.sample.gadgets.Gadget", "gadgets-1.0.jar"));
+		assertEquals(1, found.length);
+		assertEquals(info.getJarPath(), found[0].getJarPath());
+
+		assertEquals(1, service.searchBySample(found[0]).length);
+		assertEquals(1, service.searchNamesBySample(found[0]).length);
+		assertEquals(1, service.searchBySample(found[0], 10, null).getResults().size());
+	}
+
+	@Test
+	public void testIndexesClassWithoutInterfaces() throws IndexException {
+		ClassInfo info = new ClassInfo("org.sample.gadgets.Plain", "plain-1.0.jar");
+		info.setInterfaceNames(null);
+		service.add(info);
+
+		ClassInfo[] found = service.searchBySample(info);
+		assertEquals(1, found.length);
+		assertEquals(0, found[0].getInterfaceNames().length);
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ * Jaris - Jar Indexed Search
+ * Copyright (C) 2006 Wei Ru (wei.ru@logicinspiration.com)
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation (See 
+ * license.txt for details).
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.weiru.jaris.jar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.junit.Test;
+
+public class ClassNameAnalyzerTest {
+
+	@Test
+	public void testHumps() {
+		assertEquals(Arrays.asList("Hash", "Map"), ClassNameAnalyzer.humps("HashMap"));
+		assertEquals(Arrays.asList("U", "R", "L", "Connection"), ClassNameAnalyzer.humps("URLConnection"));
+		assertEquals(Arrays.asList("Map", "Entry"), ClassNameAnalyzer.humps("Map$Entry"));
+		assertEquals(Arrays.asList("Max", "Value"), ClassNameAnalyzer.humps("Max_Value"));
+		assertEquals(Arrays.asList("lower", "Case"), ClassNameAnalyzer.humps("lowerCase"));
+		assertEquals(Arrays.asList("Inner1"), ClassNameAnalyzer.humps("$$Inner1__"));
+		assertEquals(Collections.emptyList(), ClassNameAnalyzer.humps(""));
+		assertEquals(Collections.emptyList(), ClassNameAnalyzer.humps("_$"));
+	}
+
+	@Test
+	public void testInitials() {
+		assertEquals("hm", ClassNameAnalyzer.initials(ClassNameAnalyzer.humps("HashMap")));
+		assertEquals("me", ClassNameAnalyzer.initials(ClassNameAnalyzer.humps("Map$Entry")));
+		assertEquals("", ClassNameAnalyzer.initials(ClassNameAnalyzer.humps("")));
+	}
+
+	@Test
+	public void testMatchesHumps() {
+		assertTrue(ClassNameAnalyzer.matchesHumps(Arrays.asList("h", "m"), "HashMap"));
+		assertTrue(ClassNameAnalyzer.matchesHumps(Arrays.asList("ha", "ma"), "HashMap"));
+		assertTrue(ClassNameAnalyzer.matchesHumps(Arrays.asList("c", "h", "m"), "ConcurrentHashMap"));
+		// the pattern humps only need to be prefixes of the leading humps
+		assertTrue(ClassNameAnalyzer.matchesHumps(Arrays.asList("c", "h"), "ConcurrentHashMap"));
+		assertTrue(ClassNameAnalyzer.matchesHumps(Collections.<String>emptyList(), "HashMap"));
+
+		assertFalse(ClassNameAnalyzer.matchesHumps(Arrays.asList("h", "s"), "HashMap"));
+		assertFalse(ClassNameAnalyzer.matchesHumps(Arrays.asList("h", "m"), "ConcurrentHashMap"));
+		assertFalse(ClassNameAnalyzer.matchesHumps(Arrays.asList("h", "m", "e"), "HashMap"));
+		// each upper case letter of an acronym is a hump of its own
+		assertFalse(ClassNameAnalyzer.matchesHumps(Arrays.asList("url"), "URLConnection"));
+		assertTrue(ClassNameAnalyzer.matchesHumps(Arrays.asList("u", "r", "l", "c"), "URLConnection"));
+	}
+
+	@Test
+	public void testIndexesNamePrefixes() throws IOException {
+		assertEquals(Arrays.asList("h", "ha", "has", "hash", "hashm", "hashma", "hashmap"), 
+				tokens(new ClassNameAnalyzer(false), "HashMap"));
+	}
+
+	@Test
+	public void testIndexesInitialsPrefixes() throws IOException {
+		assertEquals(Arrays.asList("c", "ch", "chm"), tokens(new ClassNameAnalyzer(true), "ConcurrentHashMap"));
+	}
+
+	@Test
+	public void testLimitsPrefixLength() throws IOException {
+		StringBuilder name = new StringBuilder();
+		for (int i = 0; i < 10; i++) {
+			name.append("Long");
+		}
+		List<String> tokens = tokens(new ClassNameAnalyzer(false), name.toString());
+		assertEquals(ClassNameAnalyzer.MAX_PREFIX, tokens.size());
+		assertEquals(ClassNameAnalyzer.MAX_PREFIX, tokens.get(tokens.size() - 1).length());
+	}
+
+	private static List<String> tokens(ClassNameAnalyzer analyzer, String name) throws IOException {
+		List<String> tokens = new ArrayList<String>();
+		try (TokenStream stream = analyzer.tokenStream("name", name)) {
+			CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+			stream.reset();
+			while (stream.incrementToken()) {
+				tokens.add(term.toString());
+			}
+			stream.end();
+		} finally {
+			analyzer.close();
+		}
+		return tokens;
+	}
+}
@@ -0,0 +1,216 @@
+/*
+ * Jaris - Jar Indexed Search
+ * Copyright (C) 2006 Wei Ru (wei.ru@logicinspiration.com)
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation (See 
+ * license.txt for details).
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.weiru.jaris.jar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.weiru.jaris.indexing.IndexException;
+
+public class IndexBuilderTest {
+
+	private static ClassInfoIndexService classIndex;
+	private static JarInfoIndexService jarIndex;
+	private static IndexBuilder builder;
+
+	private File dir;
+
+	@BeforeClass
+	public static void useTestIndex() throws IOException {
+		TestIndex.use();
+		classIndex = ClassInfoIndexService.getService();
+		jarIndex = JarInfoIndexService.getService();
+		builder = IndexBuilder.getInstance();
+	}
+
+	@Before
+	public void createDirectory() throws IOException {
+		dir = Files.createTempDirectory("jaris-jars").toFile();
+	}
+
+	@After
+	public void deleteDirectory() {
+		TestIndex.delete(dir);
+	}
+
+	@Test
+	public void testClassesIndexedWithoutFingerprintAreReplaced() throws IOException, IndexException {
+		File file = jar(new File(dir, "unhashed.jar"), ClassInfo.class, JarInfo.class);
+		JarInfo unhashed = new JarInfo(file);
+		unhashed.setLastModified(file.lastModified() - 60000L);
+		jarIndex.add(unhashed);
+		ClassInfo info = new ClassInfo(ClassInfo.class.getName(), file.getName());
+		info.setJarPath(file.getAbsolutePath());
+		classIndex.add(info);
+
+		builder.buildIndex(file);
+		assertEquals(2, classIndex.searchByExactTerm(ClassInfo.Field.JAR_PATH, file.getAbsolutePath()).length);
+		assertEquals(2, classIndex.searchByExactTerm(ClassInfo.Field.FINGERPRINT, 
+				jarIndex.lookup(file.getAbsolutePath()).getFingerprint()).length);
+	}
+
+	@Test
+	public void testSearchesNestedJarByName() throws IOException, IndexException {
+		File lib = jar(new File(dir, "boot-lib (1).jar"), JarInfo.class);
+		File app = new File(dir, "boot-app.jar");
+		try (JarOutputStream out = new JarOutputStream(new FileOutputStream(app))) {
+			out.putNextEntry(new JarEntry("BOOT-INF/lib/" + lib.getName()));
+			copy(new FileInputStream(lib), out);
+			out.closeEntry();
+		}
+		lib.delete();
+
+		builder.buildIndex(app);
+		String nested = "boot-app.jar!/BOOT-INF/lib/boot-lib (1).jar";
+		ClassInfo[] found = classIndex.searchByTerm(ClassInfo.Field.JAR_NAME, nested);
+		assertEquals(1, found.length);
+		assertEquals(nested, found[0].getJarName());
+		assertEquals(1, classIndex.searchNamesByTerm(ClassInfo.Field.JAR_NAME, nested).length);
+		assertEquals(1, classIndex.searchByTerm(ClassInfo.Field.JAR_NAME, nested, 10, null).getResults().size());
+		assertEquals(1, classIndex.searchByTerm(ClassInfo.Field.JAR_NAME, "boot-app.jar!/BOOT-INF/lib/*").length);
+		assertEquals(1, classIndex.searchByTerm(ClassInfo.Field.JAR_PATH, app.getAbsolutePath()).length);
+		assertEquals(1, classIndex.searchBySample(new ClassInfo(JarInfo.class.getName(), nested)).length);
+		assertEquals(1, classIndex.searchBySample(found[0]).length);
+	}
+
+	@Test
+	public void testCopyIsRegistered() throws IOException, IndexException {
+		File first = jar(new File(dir, "first.jar"), ClassInfo.class, JarInfo.class);
+		File second = copy(first, new File(dir, "second.jar"));
+
+		builder.buildIndex(first);
+		builder.buildIndex(second);
+		String fingerprint = jarIndex.lookup(first.getAbsolutePath()).getFingerprint();
+		assertEquals(fingerprint, jarIndex.lookup(second.getAbsolutePath()).getFingerprint());
+		ClassInfo[] infos = classIndex.searchByExactTerm(ClassInfo.Field.FINGERPRINT, fingerprint);
+		assertEquals(2, infos.length);
+		assertEquals(first.getAbsolutePath(), infos[0].getJarPath());
+	}
+
+	@Test
+	public void testCopyFoundWhileIndexingIsRegisteredWithIt() throws IOException, IndexException {
+		File first = jar(new File(dir, "claimed.jar"), ClassInfo.class);
+		File second = copy(first, new File(dir, "waiting.jar"));
+
+		JarInfo claimed = builder.checkJarIndex(first);
+		assertNotNull(claimed);
+		assertNull(builder.checkJarIndex(second));
+		// only the JarInfo that claimed the content releases the claim
+		JarInfo other = new JarInfo(first);
+		other.setFingerprint(claimed.getFingerprint());
+		builder.abandonJarIndex(other);
+
+		JarResource jarRes = new JarResource(first);
+		jarRes.parseClasses();
+		builder.writeIndex(claimed, builder.collectClassInfo(jarRes, claimed));
+		assertEquals(claimed.getFingerprint(), jarIndex.lookup(second.getAbsolutePath()).getFingerprint());
+		assertEquals(1, classIndex.searchByExactTerm(ClassInfo.Field.FINGERPRINT, claimed.getFingerprint()).length);
+	}
+
+	@Test
+	public void testContentChangeReplacesClasses() throws IOException, IndexException {
+		File file = jar(new File(dir, "changing.jar"), ClassInfo.class);
+		builder.buildIndex(file);
+		String before = jarIndex.lookup(file.getAbsolutePath()).getFingerprint();
+
+		jar(file, ClassInfo.class, JarInfo.class);
+		file.setLastModified(file.lastModified() + 2000L);
+		builder.buildIndex(file);
+		String after = jarIndex.lookup(file.getAbsolutePath()).getFingerprint();
+		assertFalse(before.equals(after));
+		assertEquals(0, classIndex.searchByExactTerm(ClassInfo.Field.FINGERPRINT, before).length);
+		assertEquals(2, classIndex.searchByExactTerm(ClassInfo.Field.FINGERPRINT, after).length);
+		assertEquals(2, classIndex.searchByExactTerm(ClassInfo.Field.JAR_PATH, file.getAbsolutePath()).length);
+	}
+
+	@Test
+	public void testRemovingFirstCopyMovesClasses() throws IOException, IndexException {
+		File first = jar(new File(dir, "one.jar"), ClassInfo.class, JarInfo.class);
+		File second = copy(first, new File(dir, "two.jar"));
+		File third = copy(first, new File(dir, "three.jar"));
+		builder.buildIndex(first);
+		builder.buildIndex(second);
+		builder.buildIndex(third);
+		String fingerprint = jarIndex.lookup(first.getAbsolutePath()).getFingerprint();
+
+		assertTrue(builder.removeIndex(first.getAbsolutePath()));
+		ClassInfo[] infos = classIndex.searchByExactTerm(ClassInfo.Field.FINGERPRINT, fingerprint);
+		assertEquals(2, infos.length);
+		String moved = infos[0].getJarPath();
+		assertTrue(moved, moved.equals(second.getAbsolutePath()) || moved.equals(third.getAbsolutePath()));
+		assertEquals(new File(moved).getName(), infos[0].getJarName());
+
+		assertTrue(builder.removeIndex(moved));
+		infos = classIndex.searchByExactTerm(ClassInfo.Field.FINGERPRINT, fingerprint);
+		assertEquals(2, infos.length);
+		String last = moved.equals(second.getAbsolutePath()) ? third.getAbsolutePath() : second.getAbsolutePath();
+		assertEquals(last, infos[0].getJarPath());
+
+		assertTrue(builder.removeIndex(last));
+		assertEquals(0, classIndex.searchByExactTerm(ClassInfo.Field.FINGERPRINT, fingerprint).length);
+	}
+
+	/**
+	 * Writes a jar with the class files of some classes, and an entry 
+	 * naming the jar so that the content of each jar written is distinct
+	 */
+	static File jar(File file, Class<?>... classes) throws IOException {
+		try (JarOutputStream out = new JarOutputStream(new FileOutputStream(file))) {
+			out.putNextEntry(new JarEntry("META-INF/jaris-test.txt"));
+			out.write((file.getAbsolutePath() + " " + System.nanoTime()).getBytes("UTF-8"));
+			out.closeEntry();
+			for (Class<?> type : classes) {
+				String name = type.getName().replace('.', '/') + ".class";
+				out.putNextEntry(new JarEntry(name));
+				copy(type.getClassLoader().getResourceAsStream(name), out);
+				out.closeEntry();
+			}
+		}
+		return file;
+	}
+
+	private static File copy(File from, File to) throws IOException {
+		Files.copy(from.toPath(), to.toPath());
+		return to;
+	}
+
+	private static void copy(InputStream in, OutputStream out) throws IOException {
+		try (InputStream source = in) {
+			byte[] buffer = new byte[8192];
+			int n;
+			while ((n = source.read(buffer)) > 0) {
+				out.write(buffer, 0, n);
+			}
+		}
+	}
+}
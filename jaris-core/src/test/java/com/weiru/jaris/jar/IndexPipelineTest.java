@@ -0,0 +1,153 @@
+/*
+ * Jaris - Jar Indexed Search
+ * Copyright (C) 2006 Wei Ru (wei.ru@logicinspiration.com)
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation (See 
+ * license.txt for details).
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.weiru.jaris.jar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.weiru.jaris.indexing.IndexException;
+import com.weiru.jaris.indexing.Indexer;
+import com.weiru.jaris.indexing.IndexerFactory;
+
+public class IndexPipelineTest {
+
+	private static IndexBuilder builder;
+
+	private File dir;
+
+	@BeforeClass
+	public static void useTestIndex() throws IOException {
+		TestIndex.use();
+		builder = IndexBuilder.getInstance();
+	}
+
+	@Before
+	public void createDirectory() throws IOException {
+		dir = Files.createTempDirectory("jaris-pipeline").toFile();
+	}
+
+	@After
+	public void deleteDirectory() {
+		TestIndex.delete(dir);
+	}
+
+	@Test(timeout = 30000)
+	public void testFullQueuesBlockSubmit() throws Exception {
+		final List<File> jars = jars(6);
+		final IndexPipeline pipeline = new IndexPipeline(builder, 1, 1, 1);
+		Thread submitter = new Thread("submitter") {
+			public void run() {
+				try {
+					for (File jar : jars) {
+						pipeline.submit(jar);
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		};
+		// holding the class Indexer stops the writer at its first jar
+		Indexer classIndexer = IndexerFactory.getWordIndexer(IndexServices.SERVICE_NAME_CLASS_INFO);
+		synchronized (classIndexer) {
+			submitter.start();
+			// one jar in the writer, one batch queued, one parsed jar waiting 
+			// to be queued, one jar queued and one blocked in submit
+			while (pipeline.getJarsParsed() < 3 || pipeline.getJarsSubmitted() < 5) {
+				Thread.sleep(10);
+			}
+			Thread.sleep(200);
+			assertTrue(submitter.isAlive());
+			assertEquals(5, pipeline.getJarsSubmitted());
+			assertEquals(3, pipeline.getJarsParsed());
+			assertEquals(0, pipeline.getJarsWritten());
+		}
+		submitter.join();
+		pipeline.close();
+		assertEquals(6, pipeline.getJarsWritten());
+	}
+
+	@Test(timeout = 30000)
+	public void testCloseFinishesAfterFailedJars() throws Exception {
+		List<File> jars = jars(4);
+		File broken = new File(dir, "broken.jar");
+		Files.write(broken.toPath(), "not a jar".getBytes("UTF-8"));
+		jars.add(1, broken);
+
+		// an Error thrown while the first jar is parsed
+		final AtomicBoolean thrown = new AtomicBoolean();
+		Handler failing = new Handler() {
+			public void publish(LogRecord record) {
+				if (record.getMessage().startsWith("indexing : ") && thrown.compareAndSet(false, true)) {
+					throw new AssertionError("parser failure");
+				}
+			}
+			public void flush() {
+			}
+			public void close() {
+			}
+		};
+		Logger logger = Logger.getLogger(IndexBuilder.class.getName());
+		Level level = logger.getLevel();
+		logger.setLevel(Level.FINE);
+		logger.addHandler(failing);
+		builder.setDebugOn(true);
+		IndexPipeline pipeline = new IndexPipeline(builder, 1, 1, 1);
+		try {
+			for (File jar : jars) {
+				pipeline.submit(jar);
+			}
+			pipeline.close();
+		} finally {
+			builder.setDebugOn(false);
+			logger.removeHandler(failing);
+			logger.setLevel(level);
+		}
+		assertTrue(thrown.get());
+		assertEquals(5, pipeline.getJarsSubmitted());
+		// the jar that is not a zip is registered without classes
+		assertEquals(4, pipeline.getJarsWritten());
+		assertEquals(3, pipeline.getClassesWritten());
+		try {
+			pipeline.submit(jars.get(0));
+			assertTrue("submit after close", false);
+		} catch (IllegalStateException e) {
+			// expected
+		}
+	}
+
+	private List<File> jars(int count) throws IOException {
+		List<File> jars = new ArrayList<File>();
+		for (int i = 0; i < count; i++) {
+			jars.add(IndexBuilderTest.jar(new File(dir, "pipeline-" + i + ".jar"), ClassInfo.class));
+		}
+		return jars;
+	}
+}
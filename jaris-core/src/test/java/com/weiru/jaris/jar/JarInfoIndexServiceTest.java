@@ -0,0 +1,119 @@
+/*
+ * Jaris - Jar Indexed Search
+ * Copyright (C) 2006 Wei Ru (wei.ru@logicinspiration.com)
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation (See 
+ * license.txt for details).
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.weiru.jaris.jar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.weiru.jaris.indexing.IndexException;
+import com.weiru.jaris.indexing.IndexerFactory;
+
+public class JarInfoIndexServiceTest {
+
+	private static JarInfoIndexService service;
+
+	@BeforeClass
+	public static void useTestIndex() throws IOException {
+		TestIndex.use();
+		service = JarInfoIndexService.getService();
+	}
+
+	@Test
+	public void testDeleteLeavesBatchUncommitted() throws IOException, IndexException {
+		service.add(jar("/registry/batch/seed.jar", "1"));
+		int committed = committedCount();
+		service.beginBatch();
+		try {
+			service.add(jar("/registry/batch/dropped.jar", "2"));
+			service.add(jar("/registry/batch/kept.jar", "3"));
+			service.delete("dropped.jar");
+			assertEquals(committed, committedCount());
+			assertNull(service.lookup("/registry/batch/dropped.jar"));
+			assertNotNull(service.lookup("/registry/batch/kept.jar"));
+		} finally {
+			service.endBatch();
+		}
+		assertEquals(committed + 1, committedCount());
+	}
+
+	@Test
+	public void testConcurrentChangesKeepMemoryAndIndexInSync() throws Exception {
+		final String path = "/registry/race/racing.jar";
+		List<Thread> threads = new ArrayList<Thread>();
+		final List<Throwable> errors = new ArrayList<Throwable>();
+		for (int t = 0; t < 4; t++) {
+			final boolean adding = t % 2 == 0;
+			final String fingerprint = String.valueOf(t);
+			threads.add(new Thread() {
+				public void run() {
+					try {
+						for (int i = 0; i < 50; i++) {
+							if (adding) {
+								service.add(jar(path, fingerprint));
+							} else {
+								service.remove(path);
+							}
+						}
+					} catch (Throwable e) {
+						synchronized (errors) {
+							errors.add(e);
+						}
+					}
+				}
+			});
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(new ArrayList<Throwable>(), errors);
+
+		JarInfo inMemory = service.lookup(path);
+		// deleting reloads the registrations from the index
+		service.delete("no-such.jar");
+		JarInfo indexed = service.lookup(path);
+		assertEquals(inMemory == null ? null : inMemory.getFingerprint(), 
+				indexed == null ? null : indexed.getFingerprint());
+	}
+
+	private static JarInfo jar(String path, String fingerprint) {
+		JarInfo jar = new JarInfo(new File(path));
+		jar.setFingerprint(fingerprint);
+		return jar;
+	}
+
+	private static int committedCount() throws IOException, IndexException {
+		String location = IndexerFactory.getWordIndexer(IndexServices.SERVICE_NAME_JAR_INFO).getLocation();
+		try (Directory directory = FSDirectory.open(Paths.get(location));
+				DirectoryReader reader = DirectoryReader.open(directory)) {
+			return reader.numDocs();
+		}
+	}
+}
@@ -0,0 +1,146 @@
+/*
+ * Jaris - Jar Indexed Search
+ * Copyright (C) 2006 Wei Ru (wei.ru@logicinspiration.com)
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation (See 
+ * license.txt for details).
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.weiru.jaris.jar;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.weiru.jaris.indexing.IndexException;
+
+public class JarWatcherTest {
+
+	private static final long DEBOUNCE_MILLIS = 300L;
+
+	private static JarInfoIndexService jarIndex;
+	private static ClassInfoIndexService classIndex;
+
+	private File root;
+	private File outside;
+	private JarWatcher watcher;
+
+	@BeforeClass
+	public static void useTestIndex() throws IOException {
+		TestIndex.use();
+		jarIndex = JarInfoIndexService.getService();
+		classIndex = ClassInfoIndexService.getService();
+	}
+
+	@Before
+	public void startWatcher() throws Exception {
+		root = Files.createTempDirectory("jaris-watched").toFile();
+		outside = Files.createTempDirectory("jaris-outside").toFile();
+		watcher = new JarWatcher(Collections.singletonList(root), DEBOUNCE_MILLIS);
+		watcher.start();
+		// the first crawl registers the directory
+		Thread.sleep(DEBOUNCE_MILLIS);
+	}
+
+	@After
+	public void stopWatcher() {
+		watcher.stop();
+		TestIndex.delete(root);
+		TestIndex.delete(outside);
+	}
+
+	@Test(timeout = 20000)
+	public void testJarIsIndexedOnceQuiet() throws Exception {
+		byte[] content = Files.readAllBytes(IndexBuilderTest.jar(new File(outside, "written.jar"), ClassInfo.class).toPath());
+		File jar = new File(root, "written.jar");
+		// written slowly, each write postponing the indexing
+		try (FileOutputStream out = new FileOutputStream(jar)) {
+			int chunk = content.length / 8 + 1;
+			for (int offset = 0; offset < content.length; offset += chunk) {
+				out.write(content, offset, Math.min(chunk, content.length - offset));
+				out.flush();
+				Thread.sleep(DEBOUNCE_MILLIS / 4);
+				assertNull(jarIndex.lookup(jar.getAbsolutePath()));
+			}
+		}
+		awaitRegistered(jar);
+		awaitClasses(jar, 1);
+	}
+
+	@Test(timeout = 20000)
+	public void testDeletedJarIsRemoved() throws Exception {
+		File jar = IndexBuilderTest.jar(new File(root, "deleted.jar"), ClassInfo.class, JarInfo.class);
+		awaitRegistered(jar);
+		awaitClasses(jar, 2);
+
+		assertTrue(jar.delete());
+		awaitUnregistered(jar);
+		awaitClasses(jar, 0);
+	}
+
+	@Test(timeout = 20000)
+	public void testMovedDirectoriesAreFollowed() throws Exception {
+		File sub = new File(root, "sub");
+		File nested = new File(sub, "nested");
+		assertTrue(nested.mkdirs());
+		File jar = IndexBuilderTest.jar(new File(nested, "moved.jar"), ClassInfo.class);
+		awaitRegistered(jar);
+
+		// moved out of the tree: handled as deleted and no longer watched
+		File away = new File(outside, "sub");
+		Files.move(sub.toPath(), away.toPath());
+		awaitUnregistered(jar);
+		File ignored = IndexBuilderTest.jar(new File(away, "nested/ignored.jar"), JarInfo.class);
+		Thread.sleep(DEBOUNCE_MILLIS * 3);
+		assertNull(jarIndex.lookup(ignored.getAbsolutePath()));
+		assertNull(jarIndex.lookup(new File(nested, "ignored.jar").getAbsolutePath()));
+
+		// moved back in under another name: crawled and watched again
+		File back = new File(root, "back");
+		Files.move(away.toPath(), back.toPath());
+		awaitRegistered(new File(back, "nested/moved.jar"));
+		awaitRegistered(new File(back, "nested/ignored.jar"));
+		File added = IndexBuilderTest.jar(new File(back, "nested/added.jar"), JarInfo.class);
+		awaitRegistered(added);
+	}
+
+	private static void awaitRegistered(File jar) throws InterruptedException, IndexException {
+		while (jarIndex.lookup(jar.getAbsolutePath()) == null) {
+			Thread.sleep(50);
+		}
+		assertNotNull(jarIndex.lookup(jar.getAbsolutePath()).getFingerprint());
+	}
+
+	/**
+	 * Waits until the classes of a jar are searchable, once the batch of 
+	 * the watcher is committed and the searcher refreshed
+	 */
+	private static void awaitClasses(File jar, int count) throws InterruptedException, IndexException {
+		while (classIndex.searchByExactTerm(ClassInfo.Field.JAR_PATH, jar.getAbsolutePath()).length != count) {
+			Thread.sleep(50);
+		}
+	}
+
+	private static void awaitUnregistered(File jar) throws InterruptedException, IndexException {
+		while (jarIndex.lookup(jar.getAbsolutePath()) != null) {
+			Thread.sleep(50);
+		}
+	}
+}
@@ -0,0 +1,143 @@
+/*
+ * Jaris - Jar Indexed Search
+ * Copyright (C) 2006 Wei Ru (wei.ru@logicinspiration.com)
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation (See 
+ * license.txt for details).
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.weiru.jaris.jar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MavenLayoutTest {
+
+	private File root;
+	private MavenLayout layout;
+
+	@Before
+	public void createRoot() throws IOException {
+		root = Files.createTempDirectory("jaris-maven").toFile();
+		layout = new MavenLayout(Collections.singletonList(root), Arrays.asList("sources", "javadoc"), 2);
+	}
+
+	@After
+	public void deleteRoot() {
+		delete(root);
+	}
+
+	@Test
+	public void testParsesArtifact() {
+		MavenCoordinates c = layout.parse(file("com/google/guava/guava/12.0/guava-12.0.jar"));
+		assertEquals("com.google.guava", c.getGroupId());
+		assertEquals("guava", c.getArtifactId());
+		assertEquals("12.0", c.getVersion());
+		assertNull(c.getClassifier());
+		assertEquals("jar", c.getExtension());
+	}
+
+	@Test
+	public void testParsesClassifier() {
+		MavenCoordinates c = layout.parse(file("org/apache/lucene/lucene-core/6.0.0/lucene-core-6.0.0-sources.jar"));
+		assertEquals("org.apache.lucene", c.getGroupId());
+		assertEquals("lucene-core", c.getArtifactId());
+		assertEquals("sources", c.getClassifier());
+		assertFalse(layout.accept(file("org/apache/lucene/lucene-core/6.0.0/lucene-core-6.0.0-sources.jar")));
+		assertTrue(layout.accept(file("org/apache/lucene/lucene-core/6.0.0/lucene-core-6.0.0-tests.jar")));
+		assertTrue(layout.accept(file("org/apache/lucene/lucene-core/6.0.0/lucene-core-6.0.0.jar")));
+	}
+
+	@Test
+	public void testParsesTimestampedSnapshot() {
+		MavenCoordinates c = layout.parse(file("org/sample/app/1.1-SNAPSHOT/app-1.1-20240101.123456-3-tests.jar"));
+		assertEquals("1.1-SNAPSHOT", c.getVersion());
+		assertEquals("tests", c.getClassifier());
+		assertEquals("1.1-SNAPSHOT", layout.parse(file("org/sample/app/1.1-SNAPSHOT/app-1.1-SNAPSHOT.jar")).getVersion());
+	}
+
+	@Test
+	public void testIgnoresFilesOutsideTheLayout() {
+		// too shallow, not named after the artifact and version, or elsewhere
+		assertNull(layout.parse(file("app/1.0/app-1.0.jar")));
+		assertNull(layout.parse(file("org/sample/app/1.0/other-1.0.jar")));
+		assertNull(layout.parse(file("org/sample/app/1.0/app-2.0.jar")));
+		assertNull(layout.parse(file("org/sample/app/1.0/app-1.0")));
+		assertNull(layout.parse(file("org/sample/app/1.0/app-1.0x.jar")));
+		assertNull(layout.parse(new File(root.getParentFile(), "org/sample/app/1.0/app-1.0.jar")));
+		assertTrue(layout.accept(new File(root.getParentFile(), "elsewhere-sources.jar")));
+	}
+
+	@Test
+	public void testOrdersVersions() {
+		List<String> versions = new ArrayList<String>(Arrays.asList("1.10", "1.2-SNAPSHOT", "1.2", "1.2-rc1", 
+				"1.2-beta2", "1.2-beta10", "1.2-alpha1", "1.2.1", "1.2-sp1", "1.9"));
+		Collections.shuffle(versions);
+		Collections.sort(versions, MavenLayout.VERSION_ORDER);
+		assertEquals(Arrays.asList("1.2-alpha1", "1.2-beta2", "1.2-beta10", "1.2-rc1", "1.2-SNAPSHOT", "1.2", 
+				"1.2-sp1", "1.2.1", "1.9", "1.10"), versions);
+	}
+
+	@Test
+	public void testTreatsReleaseSpellingsAsEqual() {
+		assertEquals(0, MavenLayout.VERSION_ORDER.compare("1.0", "1.0.0"));
+		assertEquals(0, MavenLayout.VERSION_ORDER.compare("1", "1.0.Final"));
+		assertEquals(0, MavenLayout.VERSION_ORDER.compare("1.0-rc1", "1-RC1"));
+		assertEquals(0, MavenLayout.VERSION_ORDER.compare("1.01", "1.1"));
+		assertTrue(MavenLayout.VERSION_ORDER.compare("1.0", "1.0.1") < 0);
+		assertTrue(MavenLayout.VERSION_ORDER.compare("2.0-foo", "2.0") > 0);
+	}
+
+	@Test
+	public void testExcludesOldestVersions() throws IOException {
+		File artifact = new File(root, "org/sample/app");
+		String[] versions = { "1.0", "1.10", "1.9", "2.0-rc1", "notes" };
+		for (String version : versions) {
+			File dir = new File(artifact, version);
+			dir.mkdirs();
+			if (!version.equals("notes")) {
+				new File(dir, "app-" + version + ".jar").createNewFile();
+			}
+		}
+		assertEquals(Arrays.asList("1.0", "1.9"), layout.getExcludedVersions(artifact, versions));
+		// a group directory directly below the root is no artifact directory
+		assertEquals(Collections.emptyList(), layout.getExcludedVersions(new File(root, "org"), versions));
+		assertEquals(Collections.emptyList(), 
+				new MavenLayout(Collections.singletonList(root), Collections.<String>emptyList(), 0)
+						.getExcludedVersions(artifact, versions));
+	}
+
+	private File file(String relative) {
+		return new File(root, relative.replace('/', File.separatorChar));
+	}
+
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+}
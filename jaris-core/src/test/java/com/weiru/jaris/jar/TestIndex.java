@@ -0,0 +1,71 @@
+/*
+ * Jaris - Jar Indexed Search
+ * Copyright (C) 2006 Wei Ru (wei.ru@logicinspiration.com)
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation (See 
+ * license.txt for details).
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.weiru.jaris.jar;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import com.weiru.jaris.config.Config;
+import com.weiru.jaris.indexing.IndexException;
+import com.weiru.jaris.indexing.IndexerFactory;
+
+/**
+ * Points the index location at a temporary directory. The index services 
+ * are singletons and keep the location they were created with, so all 
+ * tests of the JVM share one location; tests keep their data apart by 
+ * their jar names and paths. The directory is deleted when the JVM exits.
+ */
+final class TestIndex {
+
+	private static File location;
+
+	private TestIndex() {
+	}
+
+	/**
+	 * Returns the index location, creating it on first use
+	 * @return File the index location
+	 * @throws IOException
+	 */
+	static synchronized File use() throws IOException {
+		if (location == null) {
+			location = Files.createTempDirectory("jaris-test").toFile();
+			Config.instance().getConfiguration().setProperty("index-location", location.getPath());
+			Runtime.getRuntime().addShutdownHook(new Thread("jaris-test-cleanup") {
+				@Override
+				public void run() {
+					try {
+						IndexerFactory.closeAll();
+					} catch (IndexException e) {
+						// the directory is deleted anyway
+					}
+					delete(location);
+				}
+			});
+		}
+		return location;
+	}
+
+	static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+}
@@ -0,0 +1,104 @@
+/*
+ * Jaris - Jar Indexed Search
+ * Copyright (C) 2006 Wei Ru (wei.ru@logicinspiration.com)
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation (See 
+ * license.txt for details).
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.weiru.jaris.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class LatencyStatsTest {
+
+	private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+	@Test
+	public void testEmpty() {
+		LatencyStats stats = new LatencyStats();
+		assertEquals(0, stats.getCount());
+		assertEquals(0, stats.getMeanMillis(), 0);
+		assertEquals(0, stats.getP99Millis(), 0);
+		assertEquals(0, stats.getMaxMillis(), 0);
+	}
+
+	@Test
+	public void testCountsAndMean() {
+		LatencyStats stats = new LatencyStats();
+		for (int i = 0; i < 99; i++) {
+			stats.record(1000000, 2);
+		}
+		stats.record(100000000, 10);
+		assertEquals(100, stats.getCount());
+		assertEquals(99 * 2 + 10, stats.getItems());
+		assertEquals(1.99, stats.getMeanMillis(), 1e-9);
+		assertEquals(100, stats.getMaxMillis(), 0);
+		// the upper bound of the bucket of 1ms, 2^19 + 3 * 2^17 up to 2^20 - 1
+		assertEquals(1048575 / NANOS_PER_MILLI, stats.getP50Millis(), 0);
+		assertEquals(1048575 / NANOS_PER_MILLI, stats.getP99Millis(), 0);
+		assertEquals(100, stats.getPercentileMillis(100), 0);
+	}
+
+	@Test
+	public void testPercentileNeverExceedsMax() {
+		LatencyStats stats = new LatencyStats();
+		stats.record(1000, 1);
+		assertEquals(1000 / NANOS_PER_MILLI, stats.getP50Millis(), 0);
+	}
+
+	@Test
+	public void testBucketsAreWithinAQuarter() {
+		for (long nanos = 1; nanos > 0 && nanos < Long.MAX_VALUE / 4; nanos = nanos * 3 / 2 + 1) {
+			for (long v : new long[] { nanos, nanos + 1, nanos * 2 - 1 }) {
+				LatencyStats stats = new LatencyStats();
+				stats.record(v, 1);
+				stats.record(Long.MAX_VALUE, 1);
+				double bound = stats.getP50Millis() * NANOS_PER_MILLI;
+				assertTrue(v + " has bound " + bound, bound >= v * (1 - 1e-12));
+				assertTrue(v + " has bound " + bound, bound <= v * 1.25 * (1 + 1e-12));
+			}
+		}
+	}
+
+	@Test
+	public void testSmallLatenciesAreExact() {
+		for (long nanos = 0; nanos < 8; nanos++) {
+			LatencyStats stats = new LatencyStats();
+			stats.record(nanos, 1);
+			stats.record(1000, 1);
+			assertEquals(nanos / NANOS_PER_MILLI, stats.getP50Millis(), 0);
+		}
+	}
+
+	@Test
+	public void testNegativeLatencyCountsAsZero() {
+		LatencyStats stats = new LatencyStats();
+		stats.record(-5, 1);
+		assertEquals(1, stats.getCount());
+		assertEquals(0, stats.getMaxMillis(), 0);
+		assertEquals(0, stats.getP50Millis(), 0);
+	}
+
+	@Test
+	public void testReset() {
+		LatencyStats stats = new LatencyStats();
+		stats.record(5000, 3);
+		stats.reset();
+		assertEquals(0, stats.getCount());
+		assertEquals(0, stats.getItems());
+		assertEquals(0, stats.getP50Millis(), 0);
+		assertEquals(0, stats.getMaxMillis(), 0);
+	}
+}
@@ -0,0 +1,137 @@
+/*
+ * Jaris - Jar Indexed Search
+ * Copyright (C) 2006 Wei Ru (wei.ru@logicinspiration.com)
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation (See 
+ * license.txt for details).
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.weiru.jaris.server;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.sun.net.httpserver.HttpServer;
+import com.weiru.jaris.config.Config;
+import com.weiru.jaris.indexing.IndexException;
+import com.weiru.jaris.indexing.IndexerFactory;
+import com.weiru.jaris.indexing.SearchExecutor;
+import com.weiru.jaris.jar.ClassInfoIndex;
+import com.weiru.jaris.jar.ClassInfoIndexService;
+import com.weiru.jaris.jar.JarInfoIndex;
+import com.weiru.jaris.jar.JarInfoIndexService;
+import com.weiru.jaris.jar.JarWatcher;
+
+/**
+ * <code>JarisServer</code> serves the class and jar indexes over HTTP with
+ * the JDK's built-in server. It listens on the loopback interface only:
+ * <ul>
+ * <li><code>/search?term=&amp;field=&amp;limit=&amp;cursor=</code> or 
+ * <code>/search?class=&amp;jar=</code> all matching classes, streamed</li>
+ * <li><code>/prefix?q=&amp;limit=</code> classes by name prefix</li>
+ * <li><code>/camelcase?q=&amp;limit=</code> classes by camel case initials</li>
+ * <li><code>/suggest?q=&amp;n=</code> class name suggestions</li>
+ * <li><code>/jars?term=</code> jar names</li>
+ * <li><code>/stats</code> index sizes, cache and search statistics</li>
+ * </ul>
+ * The port and number of threads are set by <code>server.port</code> and
+ * <code>server.threads</code> of the preferences. Requests are handled by
+ * a {@link SearchExecutor}, so where the JVM has virtual threads and
+ * <code>search.executor.virtual-threads</code> is on, each request gets 
+ * one, and those beyond the number of threads wait parked.
+ */
+public class JarisServer {
+	private static final Logger LOGGER = Logger.getLogger(JarisServer.class.getName());
+
+	private static final String THREAD_NAME = "jaris-http-";
+
+	private final HttpServer server;
+
+	private final SearchExecutor executor;
+
+	/**
+	 * Creates a server on a loopback port over the indexes
+	 * @param port the port, 0 for any free port
+	 * @param threads the number of requests handled at a time
+	 * @param classIndex the class index
+	 * @param jarIndex the jar index
+	 * @throws IOException if the port cannot be bound
+	 */
+	public JarisServer(int port, int threads, ClassInfoIndex classIndex, JarInfoIndex jarIndex) 
+			throws IOException {
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		server.createContext("/search", new SearchHandler(classIndex));
+		server.createContext("/prefix", new LookupHandler(LookupHandler.Kind.PREFIX, classIndex, jarIndex));
+		server.createContext("/camelcase", new LookupHandler(LookupHandler.Kind.CAMEL_CASE, classIndex, jarIndex));
+		server.createContext("/suggest", new LookupHandler(LookupHandler.Kind.SUGGEST, classIndex, jarIndex));
+		server.createContext("/jars", new LookupHandler(LookupHandler.Kind.JARS, classIndex, jarIndex));
+		server.createContext("/stats", new StatsHandler(classIndex, jarIndex));
+		executor = new SearchExecutor(THREAD_NAME, threads, Config.instance().getSearchVirtualThreads());
+		server.setExecutor(executor);
+	}
+
+	/**
+	 * Creates a server over the index services as configured
+	 * @throws IOException if the port cannot be bound
+	 */
+	public JarisServer() throws IOException {
+		this(Config.instance().getServerPort(), Config.instance().getServerThreads(), 
+				ClassInfoIndexService.getService(), JarInfoIndexService.getService());
+	}
+
+	public void start() {
+		server.start();
+		LOGGER.info("listening on http://" + getAddress().getHostString() + ":" + getAddress().getPort() + "/");
+	}
+
+	/**
+	 * Stops the server, letting requests in progress finish for up to a second
+	 */
+	public void stop() {
+		server.stop(1);
+		executor.close();
+	}
+
+	public InetSocketAddress getAddress() {
+		return server.getAddress();
+	}
+
+	/**
+	 * Runs a server until the JVM exits, keeping the directories of
+	 * <code>indexing.watch.directory</code> indexed while it runs
+	 * @param args an optional port overriding <code>server.port</code>
+	 * @throws IOException if the port cannot be bound
+	 */
+	public static void main(String[] args) throws IOException {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : Config.instance().getServerPort();
+		final JarisServer server = new JarisServer(port, Config.instance().getServerThreads(), 
+				ClassInfoIndexService.getService(), JarInfoIndexService.getService());
+		final JarWatcher watcher = Config.instance().getWatchDirectories().isEmpty() ? null : new JarWatcher();
+		Runtime.getRuntime().addShutdownHook(new Thread("jaris-http-shutdown") {
+			public void run() {
+				server.stop();
+				if (watcher != null) {
+					watcher.stop();
+				}
+				try {
+					IndexerFactory.closeAll();
+				} catch (IndexException e) {
+					LOGGER.log(Level.WARNING, "close indexes", e);
+				}
+			}
+		});
+		server.start();
+		if (watcher != null) {
+			watcher.start();
+		}
+	}
+}
@@ -0,0 +1,216 @@
+/*
+ * Jaris - Jar Indexed Search
+ * Copyright (C) 2006 Wei Ru (wei.ru@logicinspiration.com)
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation (See 
+ * license.txt for details).
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.weiru.jaris.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.weiru.jaris.indexing.IndexException;
+import com.weiru.jaris.jar.ClassInfo;
+
+/**
+ * <code>JsonHandler</code> answers GET requests with JSON. A bad request
+ * is answered with 400, and a failed search or any other failure with 500,
+ * each with an error object. Responses are sent with their length, or 
+ * chunked when streamed, so the connection is kept alive for the next 
+ * request either way. A failure once a response has started cuts the
+ * connection instead.
+ */
+abstract class JsonHandler implements HttpHandler {
+	private static final Logger LOGGER = Logger.getLogger(JsonHandler.class.getName());
+
+	static final String CONTENT_TYPE = "application/json; charset=utf-8";
+
+	public void handle(HttpExchange exchange) throws IOException {
+		try {
+			if (!"GET".equals(exchange.getRequestMethod())) {
+				exchange.getResponseHeaders().set("Allow", "GET");
+				sendError(exchange, 405, "method not allowed");
+				return;
+			}
+			handle(exchange, parseQuery(exchange.getRequestURI().getRawQuery()));
+		} catch (IllegalArgumentException e) {
+			sendError(exchange, 400, e.getMessage());
+		} catch (IndexException e) {
+			LOGGER.log(Level.WARNING, "search failed: " + exchange.getRequestURI(), e);
+			sendError(exchange, 500, e.getMessage());
+		} catch (RuntimeException e) {
+			LOGGER.log(Level.SEVERE, "request failed: " + exchange.getRequestURI(), e);
+			sendError(exchange, 500, e.toString());
+		} finally {
+			exchange.close();
+		}
+	}
+
+	/**
+	 * Answers a GET request. Nothing must have been sent when an 
+	 * IllegalArgumentException or IndexException is thrown.
+	 * @param exchange the exchange
+	 * @param params the decoded query parameters
+	 * @throws IOException
+	 * @throws IndexException
+	 */
+	abstract void handle(HttpExchange exchange, Map<String, String> params) throws IOException, IndexException;
+
+	/**
+	 * Sends a JSON body whose length is known
+	 * @param exchange the exchange
+	 * @param status the status code
+	 * @param body the body
+	 * @throws IOException
+	 */
+	static void send(HttpExchange exchange, int status, ByteArrayOutputStream body) throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+		exchange.sendResponseHeaders(status, body.size() == 0 ? -1 : body.size());
+		body.writeTo(exchange.getResponseBody());
+	}
+
+	/**
+	 * Starts a chunked JSON body
+	 * @param exchange the exchange
+	 * @return JsonWriter the writer of the body
+	 * @throws IOException
+	 */
+	static JsonWriter stream(HttpExchange exchange) throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+		exchange.sendResponseHeaders(200, 0);
+		return new JsonWriter(writer(exchange.getResponseBody()));
+	}
+
+	static Writer writer(OutputStream out) {
+		return new OutputStreamWriter(out, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Sends an error object, or fails if the response has started
+	 * @throws IOException if the status has been sent already, which makes
+	 * the server close the connection
+	 */
+	private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+		if (exchange.getResponseCode() != -1) {
+			throw new IOException("response already started, cannot send " + status + " : " + message);
+		}
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		JsonWriter json = new JsonWriter(writer(body));
+		json.beginObject().name("error").value(message).endObject().flush();
+		send(exchange, status, body);
+	}
+
+	/**
+	 * Writes a ClassInfo as an object, leaving out the fields it does not have
+	 * @param json the writer
+	 * @param info the ClassInfo
+	 * @throws IOException
+	 */
+	static void writeClassInfo(JsonWriter json, ClassInfo info) throws IOException {
+		json.beginObject()
+			.member("class", info.getClassFullName())
+			.member("name", info.getClassShortName())
+			.member("package", info.getPackageName())
+			.member("jar", info.getJarName())
+			.member("path", info.getJarPath())
+			.member("fingerprint", info.getFingerprint())
+			.member("groupId", info.getGroupId())
+			.member("artifactId", info.getArtifactId())
+			.member("version", info.getVersion())
+			.member("superClass", info.getSuperClassName());
+		if (info.getInterfaceNames() != null) {
+			json.name("interfaces").beginArray();
+			for (String name : info.getInterfaceNames()) {
+				json.value(name);
+			}
+			json.endArray();
+		}
+		if (info.getAccessFlags() != ClassInfo.UNKNOWN_ACCESS_FLAGS) {
+			json.name("accessFlags").value(info.getAccessFlags());
+		}
+		json.endObject();
+	}
+
+	/**
+	 * Returns a required parameter
+	 * @param params the parameters
+	 * @param name the parameter name
+	 * @return String the value
+	 * @throws IllegalArgumentException if it is missing
+	 */
+	static String required(Map<String, String> params, String name) {
+		String value = params.get(name);
+		if (value == null || value.isEmpty()) {
+			throw new IllegalArgumentException("missing parameter: " + name);
+		}
+		return value;
+	}
+
+	/**
+	 * Returns a positive int parameter
+	 * @param params the parameters
+	 * @param name the parameter name
+	 * @param defaultValue the value if it is missing
+	 * @return int the value
+	 * @throws IllegalArgumentException if it is not a positive int
+	 */
+	static int positive(Map<String, String> params, String name, int defaultValue) {
+		String value = params.get(name);
+		if (value == null || value.isEmpty()) {
+			return defaultValue;
+		}
+		try {
+			int n = Integer.parseInt(value);
+			if (n > 0) {
+				return n;
+			}
+		} catch (NumberFormatException e) {
+			// reported below
+		}
+		throw new IllegalArgumentException("not a positive number: " + name + "=" + value);
+	}
+
+	static Map<String, String> parseQuery(String query) {
+		Map<String, String> params = new HashMap<>();
+		if (query == null) {
+			return params;
+		}
+		for (String pair : query.split("&")) {
+			int eq = pair.indexOf('=');
+			String name = eq < 0 ? pair : pair.substring(0, eq);
+			String value = eq < 0 ? "" : pair.substring(eq + 1);
+			if (!name.isEmpty()) {
+				params.put(decode(name), decode(value));
+			}
+		}
+		return params;
+	}
+
+	private static String decode(String s) {
+		try {
+			return URLDecoder.decode(s, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
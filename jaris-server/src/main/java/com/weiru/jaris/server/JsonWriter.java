@@ -0,0 +1,175 @@
+/*
+ * Jaris - Jar Indexed Search
+ * Copyright (C) 2006 Wei Ru (wei.ru@logicinspiration.com)
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation (See 
+ * license.txt for details).
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.weiru.jaris.server;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * <code>JsonWriter</code> writes JSON to a stream as it goes, so that a
+ * large result need not be held in memory before it is sent. It keeps 
+ * only the nesting needed to place the separators.
+ */
+class JsonWriter {
+	private final Writer out;
+
+	// whether the object or array at each depth has had a member yet
+	private boolean[] started = new boolean[8];
+
+	private int depth;
+
+	// a name was just written, so the next value takes no separator
+	private boolean named;
+
+	/**
+	 * Creates a JsonWriter over a Writer
+	 * @param out the Writer
+	 */
+	JsonWriter(Writer out) {
+		this.out = out;
+	}
+
+	JsonWriter beginObject() throws IOException {
+		return begin('{');
+	}
+
+	JsonWriter endObject() throws IOException {
+		return end('}');
+	}
+
+	JsonWriter beginArray() throws IOException {
+		return begin('[');
+	}
+
+	JsonWriter endArray() throws IOException {
+		return end(']');
+	}
+
+	/**
+	 * Writes the name of the next member of an object
+	 * @param name the member name
+	 * @return JsonWriter this writer
+	 * @throws IOException
+	 */
+	JsonWriter name(String name) throws IOException {
+		separate();
+		string(name);
+		out.write(':');
+		named = true;
+		return this;
+	}
+
+	JsonWriter value(String value) throws IOException {
+		separate();
+		if (value == null) {
+			out.write("null");
+		} else {
+			string(value);
+		}
+		return this;
+	}
+
+	JsonWriter value(long value) throws IOException {
+		separate();
+		out.write(Long.toString(value));
+		return this;
+	}
+
+	JsonWriter value(double value) throws IOException {
+		separate();
+		out.write(Double.isNaN(value) || Double.isInfinite(value) ? "null" : Double.toString(value));
+		return this;
+	}
+
+	JsonWriter value(boolean value) throws IOException {
+		separate();
+		out.write(value ? "true" : "false");
+		return this;
+	}
+
+	/**
+	 * Writes a name and a string value, unless the value is null
+	 * @param name the member name
+	 * @param value the value
+	 * @return JsonWriter this writer
+	 * @throws IOException
+	 */
+	JsonWriter member(String name, String value) throws IOException {
+		return value == null ? this : name(name).value(value);
+	}
+
+	void flush() throws IOException {
+		out.flush();
+	}
+
+	private JsonWriter begin(char c) throws IOException {
+		separate();
+		out.write(c);
+		if (++depth == started.length) {
+			started = Arrays.copyOf(started, depth * 2);
+		}
+		started[depth] = false;
+		return this;
+	}
+
+	private JsonWriter end(char c) throws IOException {
+		out.write(c);
+		depth--;
+		return this;
+	}
+
+	private void separate() throws IOException {
+		if (named) {
+			named = false;
+			return;
+		}
+		if (started[depth]) {
+			out.write(',');
+		}
+		started[depth] = true;
+	}
+
+	private void string(String s) throws IOException {
+		out.write('"');
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			switch (c) {
+			case '"':
+				out.write("\\\"");
+				break;
+			case '\\':
+				out.write("\\\\");
+				break;
+			case '\n':
+				out.write("\\n");
+				break;
+			case '\r':
+				out.write("\\r");
+				break;
+			case '\t':
+				out.write("\\t");
+				break;
+			default:
+				if (c < 0x20) {
+					out.write(String.format("\\u%04x", (int) c));
+				} else {
+					out.write(c);
+				}
+			}
+		}
+		out.write('"');
+	}
+}
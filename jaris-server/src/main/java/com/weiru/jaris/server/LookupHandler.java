@@ -0,0 +1,93 @@
+/*
+ * Jaris - Jar Indexed Search
+ * Copyright (C) 2006 Wei Ru (wei.ru@logicinspiration.com)
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation (See 
+ * license.txt for details).
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.weiru.jaris.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.weiru.jaris.indexing.IndexException;
+import com.weiru.jaris.jar.ClassInfo;
+import com.weiru.jaris.jar.ClassInfoIndex;
+import com.weiru.jaris.jar.JarInfoIndex;
+
+/**
+ * <code>LookupHandler</code> answers the short, bounded lookups: class 
+ * name prefix and camel case completion, suggestions and jar search. The
+ * response is built in full and sent with its length.
+ */
+class LookupHandler extends JsonHandler {
+
+	enum Kind {
+		/** <code>/prefix?q=&amp;limit=</code> */
+		PREFIX, 
+		/** <code>/camelcase?q=&amp;limit=</code> */
+		CAMEL_CASE, 
+		/** <code>/suggest?q=&amp;n=</code> */
+		SUGGEST, 
+		/** <code>/jars?term=</code> */
+		JARS
+	}
+
+	static final int DEFAULT_LIMIT = 20;
+
+	static final int DEFAULT_SUGGESTIONS = 10;
+
+	private final Kind kind;
+
+	private final ClassInfoIndex classIndex;
+
+	private final JarInfoIndex jarIndex;
+
+	LookupHandler(Kind kind, ClassInfoIndex classIndex, JarInfoIndex jarIndex) {
+		this.kind = kind;
+		this.classIndex = classIndex;
+		this.jarIndex = jarIndex;
+	}
+
+	void handle(HttpExchange exchange, Map<String, String> params) throws IOException, IndexException {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		JsonWriter json = new JsonWriter(writer(body));
+		json.beginObject().name("results").beginArray();
+		switch (kind) {
+		case PREFIX:
+			for (ClassInfo info : classIndex.searchByPrefix(required(params, "q"), 
+					positive(params, "limit", DEFAULT_LIMIT))) {
+				writeClassInfo(json, info);
+			}
+			break;
+		case CAMEL_CASE:
+			for (ClassInfo info : classIndex.searchByCamelCase(required(params, "q"), 
+					positive(params, "limit", DEFAULT_LIMIT))) {
+				writeClassInfo(json, info);
+			}
+			break;
+		case SUGGEST:
+			for (String name : classIndex.suggest(required(params, "q"), 
+					positive(params, "n", DEFAULT_SUGGESTIONS))) {
+				json.value(name);
+			}
+			break;
+		case JARS:
+			for (String jarName : jarIndex.search(required(params, "term"))) {
+				json.value(jarName);
+			}
+			break;
+		}
+		json.endArray().endObject().flush();
+		send(exchange, 200, body);
+	}
+}
@@ -0,0 +1,137 @@
+/*
+ * Jaris - Jar Indexed Search
+ * Copyright (C) 2006 Wei Ru (wei.ru@logicinspiration.com)
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation (See 
+ * license.txt for details).
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.weiru.jaris.server;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.weiru.jaris.indexing.IndexException;
+import com.weiru.jaris.indexing.ResultPage;
+import com.weiru.jaris.jar.ClassInfo;
+import com.weiru.jaris.jar.ClassInfoIndex;
+
+/**
+ * <code>SearchHandler</code> answers <code>/search</code>. With a 
+ * <code>term</code> it searches one field (<code>field</code>, class by
+ * default); otherwise it searches by a sample made of the 
+ * <code>class</code> and <code>jar</code> parameters.
+ * <p>
+ * The hits are fetched a page at a time and each page is written and 
+ * flushed before the next is fetched, so a large hit set is streamed in
+ * chunks rather than built up in memory. With a <code>limit</code> at 
+ * most that many hits are sent, followed by the cursor to pass back as
+ * <code>cursor</code> for the rest.
+ */
+class SearchHandler extends JsonHandler {
+	private static final Logger LOGGER = Logger.getLogger(SearchHandler.class.getName());
+
+	static final int PAGE_SIZE = 500;
+
+	private static final Map<String, ClassInfo.Field> FIELDS = new HashMap<>();
+	static {
+		FIELDS.put("class", ClassInfo.Field.CLASS_NAME);
+		FIELDS.put("package", ClassInfo.Field.PACKAGE_NAME);
+		FIELDS.put("jar", ClassInfo.Field.JAR_NAME);
+		FIELDS.put("path", ClassInfo.Field.JAR_PATH);
+		FIELDS.put("fingerprint", ClassInfo.Field.FINGERPRINT);
+		FIELDS.put("group", ClassInfo.Field.GROUP_ID);
+		FIELDS.put("artifact", ClassInfo.Field.ARTIFACT_ID);
+		FIELDS.put("version", ClassInfo.Field.VERSION);
+		FIELDS.put("super", ClassInfo.Field.SUPER_CLASS);
+		FIELDS.put("interface", ClassInfo.Field.INTERFACES);
+	}
+
+	private final ClassInfoIndex classIndex;
+
+	SearchHandler(ClassInfoIndex classIndex) {
+		this.classIndex = classIndex;
+	}
+
+	void handle(HttpExchange exchange, Map<String, String> params) throws IOException, IndexException {
+		Query query = new Query(params);
+		int limit = positive(params, "limit", Integer.MAX_VALUE);
+		String cursor = params.get("cursor");
+		if (cursor != null && cursor.isEmpty()) {
+			cursor = null;
+		}
+
+		// the first page is fetched before anything is sent, so that a 
+		// failed search is still answered with an error status
+		ResultPage<ClassInfo> page = query.page(Math.min(PAGE_SIZE, limit), cursor);
+		JsonWriter json = stream(exchange);
+		json.beginObject().name("totalHits").value(page.getTotalHits()).name("results").beginArray();
+		int sent = 0;
+		try {
+			while (true) {
+				for (ClassInfo info : page.getResults()) {
+					writeClassInfo(json, info);
+				}
+				sent += page.getResults().size();
+				json.flush();
+				if (!page.hasMore() || sent >= limit) {
+					break;
+				}
+				page = query.page(Math.min(PAGE_SIZE, limit - sent), page.getCursor());
+			}
+		} catch (IndexException e) {
+			// the status is sent already; cut the response short instead
+			LOGGER.log(Level.WARNING, "search failed after " + sent + " hits: " + exchange.getRequestURI(), e);
+			throw new IOException(e);
+		}
+		json.endArray();
+		if (page.hasMore()) {
+			json.name("cursor").value(page.getCursor());
+		}
+		json.endObject().flush();
+	}
+
+	/**
+	 * A term or sample search of the request
+	 */
+	private class Query {
+		private final ClassInfo.Field field;
+
+		private final String term;
+
+		private final ClassInfo sample;
+
+		Query(Map<String, String> params) {
+			term = params.get("term");
+			if (term != null && !term.isEmpty()) {
+				String name = params.containsKey("field") ? params.get("field") : "class";
+				field = FIELDS.get(name);
+				if (field == null) {
+					throw new IllegalArgumentException("unknown field: " + name + ", expected one of " + FIELDS.keySet());
+				}
+				sample = null;
+			} else {
+				String className = required(params, "class");
+				String jarName = params.get("jar");
+				field = null;
+				sample = new ClassInfo(className, jarName == null || jarName.isEmpty() ? ClassInfo.UNKNOWN_JAR : jarName);
+			}
+		}
+
+		ResultPage<ClassInfo> page(int limit, String cursor) throws IndexException {
+			return sample == null 
+				? classIndex.searchByTerm(field, term, limit, cursor)
+				: classIndex.searchBySample(sample, limit, cursor);
+		}
+	}
+}
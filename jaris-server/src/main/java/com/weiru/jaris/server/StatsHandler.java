@@ -0,0 +1,88 @@
+/*
+ * Jaris - Jar Indexed Search
+ * Copyright (C) 2006 Wei Ru (wei.ru@logicinspiration.com)
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation (See 
+ * license.txt for details).
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.weiru.jaris.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.google.common.cache.CacheStats;
+import com.sun.net.httpserver.HttpExchange;
+import com.weiru.jaris.config.Config;
+import com.weiru.jaris.indexing.IndexException;
+import com.weiru.jaris.jar.ClassInfoIndex;
+import com.weiru.jaris.jar.JarInfoIndex;
+import com.weiru.jaris.metrics.JmxMetrics;
+import com.weiru.jaris.metrics.LatencyStats;
+
+/**
+ * <code>StatsHandler</code> answers <code>/stats</code> with the size of
+ * the indexes, their result cache statistics and the search latencies 
+ * by search type, while metrics are published over JMX.
+ */
+class StatsHandler extends JsonHandler {
+	private final ClassInfoIndex classIndex;
+
+	private final JarInfoIndex jarIndex;
+
+	StatsHandler(ClassInfoIndex classIndex, JarInfoIndex jarIndex) {
+		this.classIndex = classIndex;
+		this.jarIndex = jarIndex;
+	}
+
+	void handle(HttpExchange exchange, Map<String, String> params) throws IOException, IndexException {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		JsonWriter json = new JsonWriter(writer(body));
+		json.beginObject()
+			.name("classes").value(classIndex.getCount())
+			.name("jars").value(jarIndex.getCount())
+			.name("jarContents").value(jarIndex.getContentCount());
+		json.name("cache").beginObject();
+		writeCacheStats(json.name("classes"), classIndex.getCacheStats());
+		writeCacheStats(json.name("jars"), jarIndex.getCacheStats());
+		json.endObject();
+
+		// the latencies are kept by the JMX metrics only
+		json.name("searches").beginObject();
+		Map<String, LatencyStats> searches = new TreeMap<>();
+		if (Config.instance().getMetricsJmxEnabled()) {
+			searches.putAll(JmxMetrics.getInstance().getSearchStats());
+		}
+		for (Map.Entry<String, LatencyStats> entry : searches.entrySet()) {
+			LatencyStats stats = entry.getValue();
+			json.name(entry.getKey()).beginObject()
+				.name("count").value(stats.getCount())
+				.name("hits").value(stats.getItems())
+				.name("meanMillis").value(stats.getMeanMillis())
+				.name("p50Millis").value(stats.getP50Millis())
+				.name("p90Millis").value(stats.getP90Millis())
+				.name("p99Millis").value(stats.getP99Millis())
+				.name("maxMillis").value(stats.getMaxMillis())
+				.endObject();
+		}
+		json.endObject().endObject().flush();
+		send(exchange, 200, body);
+	}
+
+	private static void writeCacheStats(JsonWriter json, CacheStats stats) throws IOException {
+		json.beginObject()
+			.name("hits").value(stats.hitCount())
+			.name("misses").value(stats.missCount())
+			.name("evictions").value(stats.evictionCount())
+			.name("hitRate").value(stats.hitRate())
+			.endObject();
+	}
+}
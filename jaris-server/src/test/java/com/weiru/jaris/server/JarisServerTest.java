@@ -0,0 +1,200 @@
+/*
+ * Jaris - Jar Indexed Search
+ * Copyright (C) 2006 Wei Ru (wei.ru@logicinspiration.com)
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation (See 
+ * license.txt for details).
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ */
+package com.weiru.jaris.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.weiru.jaris.config.Config;
+import com.weiru.jaris.indexing.IndexerFactory;
+import com.weiru.jaris.jar.ClassInfo;
+import com.weiru.jaris.jar.ClassInfoIndex;
+import com.weiru.jaris.jar.ClassInfoIndexService;
+import com.weiru.jaris.jar.JarInfo;
+import com.weiru.jaris.jar.JarInfoIndexService;
+
+/**
+ * Starts a JarisServer on a free port over an index of generated classes
+ */
+public class JarisServerTest {
+
+	// more than fit in one page, so the search is streamed in several
+	private static final int CLASSES = SearchHandler.PAGE_SIZE * 2 + 200;
+	private static final String NESTED_JAR = "widgets.jar!/BOOT-INF/lib/parts 1.0.jar";
+
+	private static File index;
+	private static JarisServer server;
+
+	@BeforeClass
+	public static void startServer() throws Exception {
+		index = Files.createTempDirectory("jaris-server-test").toFile();
+		Config.instance().getConfiguration().setProperty("index-location", index.getPath());
+		List<ClassInfo> infos = new ArrayList<ClassInfo>();
+		for (int i = 0; i < CLASSES; i++) {
+			ClassInfo info = new ClassInfo("org.sample.Widget" + i, i == 0 ? NESTED_JAR : "widgets.jar");
+			info.setJarPath("/repo/widgets.jar");
+			infos.add(info);
+		}
+		ClassInfoIndexService.getService().addAll(infos);
+		JarInfo jar = new JarInfo(new File("/repo/widgets.jar"));
+		jar.setFingerprint("f00d");
+		JarInfoIndexService.getService().add(jar);
+		server = new JarisServer(0, 2, ClassInfoIndexService.getService(), JarInfoIndexService.getService());
+		server.start();
+	}
+
+	@AfterClass
+	public static void stopServer() throws Exception {
+		server.stop();
+		IndexerFactory.closeAll();
+		delete(index);
+	}
+
+	@Test
+	public void testSearchStreamsAllPages() throws IOException {
+		HttpURLConnection connection = get(server, "/search?term=Widget*");
+		assertEquals(200, connection.getResponseCode());
+		assertEquals("chunked", connection.getHeaderField("Transfer-Encoding"));
+		String body = read(connection.getInputStream());
+		assertTrue(body, body.startsWith("{\"totalHits\":" + CLASSES + ","));
+		assertEquals(CLASSES, count(body, "\"class\":"));
+		assertFalse(body.contains("\"cursor\""));
+	}
+
+	@Test
+	public void testSearchContinuesAtCursor() throws IOException {
+		String first = read(get(server, "/search?term=Widget*&limit=" + (SearchHandler.PAGE_SIZE + 100)).getInputStream());
+		assertEquals(SearchHandler.PAGE_SIZE + 100, count(first, "\"class\":"));
+		String cursor = value(first, "cursor");
+		assertNotNull(first, cursor);
+
+		String rest = read(get(server, "/search?term=Widget*&cursor=" + cursor).getInputStream());
+		assertEquals(CLASSES - SearchHandler.PAGE_SIZE - 100, count(rest, "\"class\":"));
+		assertNull(value(rest, "cursor"));
+	}
+
+	@Test
+	public void testSearchNestedJar() throws IOException {
+		String jar = URLEncoder.encode(NESTED_JAR, "UTF-8");
+		String body = read(get(server, "/search?class=org.sample.Widget0&jar=" + jar).getInputStream());
+		assertEquals(body, 1, count(body, "\"class\":"));
+		body = read(get(server, "/search?field=jar&term=" + jar).getInputStream());
+		assertEquals(body, 1, count(body, "\"class\":"));
+	}
+
+	@Test
+	public void testBadRequests() throws IOException {
+		HttpURLConnection connection = get(server, "/search");
+		assertEquals(400, connection.getResponseCode());
+		assertTrue(read(connection.getErrorStream()).startsWith("{\"error\":"));
+		// a well-formed cursor into a reader that is not pinned
+		assertEquals(400, get(server, "/search?term=Widget*&cursor=1.1.1").getResponseCode());
+		assertEquals(400, get(server, "/search?term=Widget*&field=nope").getResponseCode());
+	}
+
+	@Test
+	public void testStats() throws IOException {
+		HttpURLConnection connection = get(server, "/stats");
+		assertEquals(200, connection.getResponseCode());
+		assertNotNull(connection.getHeaderField("Content-Length"));
+		String body = read(connection.getInputStream());
+		assertTrue(body, body.startsWith("{\"classes\":" + CLASSES + ",\"jars\":1,\"jarContents\":1,"));
+		assertTrue(body, body.contains("\"cache\":{\"classes\":{\"hits\":"));
+	}
+
+	@Test
+	public void testUnexpectedFailure() throws IOException {
+		ClassInfoIndex broken = (ClassInfoIndex) Proxy.newProxyInstance(getClass().getClassLoader(), 
+				new Class<?>[] {ClassInfoIndex.class}, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						throw new IllegalStateException("broken index");
+					}
+				});
+		JarisServer brokenServer = new JarisServer(0, 1, broken, JarInfoIndexService.getService());
+		brokenServer.start();
+		try {
+			HttpURLConnection connection = get(brokenServer, "/search?term=Widget*");
+			assertEquals(500, connection.getResponseCode());
+			assertTrue(read(connection.getErrorStream()).contains("broken index"));
+		} finally {
+			brokenServer.stop();
+		}
+	}
+
+	private static HttpURLConnection get(JarisServer target, String path) throws IOException {
+		URL url = new URL("http", target.getAddress().getHostString(), target.getAddress().getPort(), path);
+		return (HttpURLConnection) url.openConnection();
+	}
+
+	private static String read(InputStream in) throws IOException {
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			for (int n; (n = in.read(buffer)) > 0; ) {
+				out.write(buffer, 0, n);
+			}
+			return new String(out.toByteArray(), StandardCharsets.UTF_8);
+		} finally {
+			in.close();
+		}
+	}
+
+	private static int count(String text, String part) {
+		int count = 0;
+		for (int i = text.indexOf(part); i >= 0; i = text.indexOf(part, i + part.length())) {
+			count++;
+		}
+		return count;
+	}
+
+	private static String value(String json, String name) {
+		Matcher m = Pattern.compile("\"" + name + "\":\"([^\"]*)\"").matcher(json);
+		return m.find() ? m.group(1) : null;
+	}
+
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+}